@@ -0,0 +1,66 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.benchmark;
+
+import java.util.UUID;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLIndex;
+
+/**
+ * A typical player entity mixing boxed, primitive, text and UUID columns.
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@MySQLField("bench_players")
+public class BenchPlayer {
+
+	@SQLId
+	@MySQLColumn("id")
+	private Long id;
+
+	@SQLIndex(unique = true)
+	@MySQLColumn(value = "uuid", isNotNull = true)
+	private UUID uuid;
+
+	@MySQLColumn(value = "name", isNotNull = true)
+	private String name;
+
+	@MySQLColumn("level")
+	private int level;
+
+	@MySQLColumn("balance")
+	private double balance;
+
+	@MySQLColumn("online")
+	private boolean online;
+
+	@MySQLColumn("last_seen")
+	private long lastSeen;
+
+	@MySQLColumn("world")
+	private String world;
+
+	public BenchPlayer() {
+	}
+
+	public BenchPlayer(UUID uuid, String name) {
+		this.uuid = uuid;
+		this.name = name;
+		this.world = "world";
+		this.lastSeen = System.currentTimeMillis();
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public void setLevel(int level) {
+		this.level = level;
+	}
+}
@@ -0,0 +1,45 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.benchmark;
+
+import java.sql.SQLException;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.ConnectionPool;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.Database;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.PoolSettings;
+
+/**
+ * Creates {@link Database} instances backed by the {@link StubDriver}.
+ * <p>
+ * The database is never {@link Database#connect() connected}, which would need a running server,
+ * the pool starts on the first borrowed connection instead.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+final class BenchmarkDatabase {
+
+	private BenchmarkDatabase() {
+	}
+
+	/**
+	 * Creates a database served by the stub driver.
+	 *
+	 * @param metrics Whether statement metrics are recorded.
+	 * @return The database.
+	 */
+	static Database create(boolean metrics) throws SQLException {
+		StubDriver.register();
+		Database database = new Database("stub", 3306, "bench", "bench", "bench", new PoolSettings());
+		database.getMetrics().setEnabled(metrics);
+		database.getMetrics().setSlowQueryThreshold(0L);
+		return database;
+	}
+
+	/**
+	 * Closes the pool of a database created by {@link #create(boolean)}.
+	 */
+	static void close(Database database) {
+		ConnectionPool pool = database.getPool();
+		if(pool != null) pool.close();
+	}
+}
@@ -0,0 +1,49 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar.
+ * <p>
+ * Accepts the usual JMH command line. Unless {@code -rf} or {@code -rff} is given, results are
+ * written as JSON to {@code jmh-result.json} so runs can be compared across releases.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class BenchmarkMain {
+
+	private static final String RESULT_FILE = "jmh-result.json";
+
+	private BenchmarkMain() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if(cmd.shouldHelp()) {
+			cmd.showHelp();
+			return;
+		}
+		Runner runner;
+		if(cmd.getResultFormat().hasValue() || cmd.getResult().hasValue()) {
+			runner = new Runner(cmd);
+		} else {
+			Options options = new OptionsBuilder()
+					.parent(cmd)
+					.resultFormat(ResultFormatType.JSON)
+					.result(RESULT_FILE)
+					.build();
+			runner = new Runner(options);
+		}
+		if(cmd.shouldList() || cmd.shouldListWithParams()) {
+			runner.list();
+			return;
+		}
+		runner.run();
+	}
+}
@@ -0,0 +1,67 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.BenchmarkAccess;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.ColumnMetadata;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.EntityMetadata;
+
+/**
+ * Measures parameter binding, both for loose values and through the column codecs of an entity.
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BindingBenchmark {
+
+	private PreparedStatement ps;
+	private Object[] values;
+	private List<ColumnMetadata> columns;
+	private BenchPlayer player;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ps = StubDriver.prepareStatement("INSERT INTO bench_players VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+		values = new Object[] {42L, 7, "name", 0.5d, true, UUID.randomUUID(), new BigDecimal("12.50"), new Timestamp(0L)};
+		columns = EntityMetadata.of(BenchPlayer.class).getColumns();
+		player = new BenchPlayer(UUID.randomUUID(), "bench");
+	}
+
+	@Benchmark
+	public void bindValues() throws SQLException {
+		for(int i = 0; i < values.length; i++) {
+			BenchmarkAccess.bind(ps, i + 1, values[i]);
+		}
+	}
+
+	@Benchmark
+	public void bindColumns() throws SQLException {
+		for(int i = 0; i < columns.size(); i++) {
+			columns.get(i).bind(ps, i + 1, player);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.BenchmarkAccess;
+
+/**
+ * Measures generation of the {@code CREATE TABLE} statement from the cached entity metadata.
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DdlBenchmark {
+
+	@Benchmark
+	public String createTableSql() {
+		return BenchmarkAccess.createTableSql(BenchPlayer.class);
+	}
+}
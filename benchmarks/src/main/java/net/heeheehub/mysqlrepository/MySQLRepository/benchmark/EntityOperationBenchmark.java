@@ -0,0 +1,84 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.benchmark;
+
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.Database;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.IdentityMap;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.SQLSession;
+
+/**
+ * Measures single-entity operations: a lookup by id, an insert and a dirty-checked update.
+ * <p>
+ * Inserts run inside one transaction per trial, the session keeps at most 10 000 entities per
+ * class so the identity map does not grow with the iteration count.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityOperationBenchmark {
+
+	@Param({"true", "false"})
+	public boolean metrics;
+
+	private Database database;
+	private SQLSession session;
+	private BenchPlayer managed;
+	private long nextId;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		database = BenchmarkDatabase.create(metrics);
+		session = new SQLSession(database, 10_000, IdentityMap.ReferenceMode.STRONG);
+		StubDriver.setRows(1);
+		managed = session.get(BenchPlayer.class, 1L);
+		session.beginTransaction();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		session.endTransaction();
+		session.close();
+		BenchmarkDatabase.close(database);
+	}
+
+	@Benchmark
+	public BenchPlayer get() {
+		session.detach(managed);
+		managed = session.get(BenchPlayer.class, ++nextId);
+		return managed;
+	}
+
+	@Benchmark
+	public Long persists() throws Exception {
+		return session.persists(new BenchPlayer(UUID.randomUUID(), "bench"));
+	}
+
+	@Benchmark
+	public void update() throws Exception {
+		managed.setLevel(managed.getLevel() + 1);
+		session.update(managed);
+	}
+}
@@ -0,0 +1,86 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.benchmark;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.Database;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.SQLSession;
+
+/**
+ * Measures row mapping: a query of {@code rows} rows, the whole table, and a batched lookup by ids.
+ * <p>
+ * The identity map is cleared before every invocation so each row is hydrated rather than returned
+ * from the session.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HydrationBenchmark {
+
+	@Param({"1", "100", "100000"})
+	public int rows;
+
+	@Param({"true", "false"})
+	public boolean metrics;
+
+	private Database database;
+	private SQLSession session;
+	private List<Long> ids;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		database = BenchmarkDatabase.create(metrics);
+		session = new SQLSession(database);
+		ids = new ArrayList<>(rows);
+		for(long id = 1; id <= rows; id++) ids.add(id);
+		StubDriver.setRows(rows);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		session.close();
+		BenchmarkDatabase.close(database);
+	}
+
+	@Benchmark
+	public List<BenchPlayer> executeQuery() {
+		session.clear();
+		return session.executeQuery(BenchPlayer.class, "SELECT * FROM bench_players WHERE level >= 0");
+	}
+
+	@Benchmark
+	public List<BenchPlayer> getAllRows() {
+		session.clear();
+		return session.getAll(BenchPlayer.class);
+	}
+
+	@Benchmark
+	public Map<Long, BenchPlayer> getAllByIds() {
+		session.clear();
+		return session.getAll(BenchPlayer.class, ids);
+	}
+}
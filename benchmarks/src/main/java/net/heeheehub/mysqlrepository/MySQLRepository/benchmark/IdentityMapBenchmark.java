@@ -0,0 +1,82 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.BenchmarkAccess;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.IdentityMap;
+
+/**
+ * Measures identity map lookups and inserts against the string-keyed map the sessions used before.
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentityMapBenchmark {
+
+	private static final int ENTRIES = 10_000;
+
+	@Param({"STRONG", "WEAK"})
+	public IdentityMap.ReferenceMode mode;
+
+	private IdentityMap map;
+	private Map<String, Object> baseline;
+	private BenchPlayer[] players;
+	private int cursor;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		map = new IdentityMap(0, mode);
+		baseline = new HashMap<>();
+		players = new BenchPlayer[ENTRIES];
+		for(int i = 0; i < ENTRIES; i++) {
+			players[i] = new BenchPlayer();
+			BenchmarkAccess.put(map, BenchPlayer.class, i, players[i]);
+			baseline.put(BenchPlayer.class.getName() + ":" + i, players[i]);
+		}
+	}
+
+	@Benchmark
+	public Object hit() {
+		cursor = (cursor + 1) % ENTRIES;
+		return BenchmarkAccess.get(map, BenchPlayer.class, cursor);
+	}
+
+	@Benchmark
+	public Object miss() {
+		cursor = (cursor + 1) % ENTRIES;
+		return BenchmarkAccess.get(map, BenchPlayer.class, ENTRIES + cursor);
+	}
+
+	@Benchmark
+	public void put() {
+		cursor = (cursor + 1) % ENTRIES;
+		BenchmarkAccess.put(map, BenchPlayer.class, cursor, players[cursor]);
+	}
+
+	@Benchmark
+	public Object stringKeyHit() {
+		cursor = (cursor + 1) % ENTRIES;
+		return baseline.get(BenchPlayer.class.getName() + ":" + cursor);
+	}
+}
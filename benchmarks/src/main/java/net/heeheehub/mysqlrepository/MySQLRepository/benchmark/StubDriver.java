@@ -0,0 +1,279 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * An in-process JDBC driver accepting {@code jdbc:mysql:} URLs, so the benchmarks need no server.
+ * <p>
+ * Statements succeed without doing anything. Queries return {@link #setRows(int) a configured number}
+ * of synthetic rows, or one row per distinct bound parameter for {@code IN (...)} lookups, and values
+ * are derived from the row number: {@code getLong} returns the row number starting at 1, strings and
+ * UUIDs come from precomputed tables. Generated keys are unique per driver. Every JDBC object is a
+ * dynamic proxy, which adds a small constant cost per call that is the same from one release to the next.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class StubDriver implements Driver {
+
+	private static final StubDriver INSTANCE = new StubDriver();
+	private static final int TABLE_SIZE = 1024;
+	private static final String[] STRINGS = new String[TABLE_SIZE];
+	private static final String[] UUIDS = new String[TABLE_SIZE];
+	private static final byte[] BYTES = new byte[32];
+	private static final Timestamp TIMESTAMP = new Timestamp(1_700_000_000_000L);
+	private static final AtomicLong KEYS = new AtomicLong(1_000_000L);
+	private static volatile int rows = 1;
+	private static boolean registered;
+
+	static {
+		for(int i = 0; i < TABLE_SIZE; i++) {
+			STRINGS[i] = "player-" + i;
+			UUIDS[i] = new UUID(0x1234_5678_9abc_def0L, i).toString();
+		}
+	}
+
+	private StubDriver() {
+	}
+
+	/**
+	 * Registers the driver once with the {@link DriverManager}.
+	 */
+	public static synchronized void register() throws SQLException {
+		if(registered) return;
+		DriverManager.registerDriver(INSTANCE);
+		registered = true;
+	}
+
+	/**
+	 * Sets the number of rows returned by queries that are not {@code IN (...)} lookups.
+	 */
+	public static void setRows(int rows) {
+		StubDriver.rows = rows;
+	}
+
+	/**
+	 * Creates a standalone prepared statement, for benchmarks binding parameters without a session.
+	 */
+	public static PreparedStatement prepareStatement(String sql) {
+		return proxy(PreparedStatement.class, new StatementHandler(sql));
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) {
+		return acceptsURL(url) ? proxy(Connection.class, new ConnectionHandler()) : null;
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith("jdbc:mysql:");
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] {type}, handler);
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if(!type.isPrimitive() || type == void.class) return null;
+		if(type == boolean.class) return false;
+		if(type == char.class) return '\0';
+		if(type == byte.class) return (byte) 0;
+		if(type == short.class) return (short) 0;
+		if(type == int.class) return 0;
+		if(type == long.class) return 0L;
+		if(type == float.class) return 0f;
+		return 0d;
+	}
+
+	private static Object common(Object proxy, Method method, Object[] args) {
+		return switch(method.getName()) {
+		case "equals" -> proxy == args[0];
+		case "hashCode" -> System.identityHashCode(proxy);
+		case "toString" -> "Stub" + proxy.getClass().getInterfaces()[0].getSimpleName();
+		default -> defaultValue(method.getReturnType());
+		};
+	}
+
+	private static final class ConnectionHandler implements InvocationHandler {
+		private boolean autoCommit = true;
+		private boolean closed;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			switch(method.getName()) {
+			case "prepareStatement":
+				return proxy(PreparedStatement.class, new StatementHandler((String) args[0]));
+			case "createStatement":
+				return proxy(PreparedStatement.class, new StatementHandler(null));
+			case "setAutoCommit":
+				autoCommit = (Boolean) args[0];
+				return null;
+			case "getAutoCommit":
+				return autoCommit;
+			case "isValid":
+				return !closed;
+			case "isClosed":
+				return closed;
+			case "close":
+				closed = true;
+				return null;
+			default:
+				return common(proxy, method, args);
+			}
+		}
+	}
+
+	private static final class StatementHandler implements InvocationHandler {
+		private final String sql;
+		private final Set<Object> bound = new HashSet<>();
+		private int batch;
+		private int keys;
+		private boolean closed;
+
+		private StatementHandler(String sql) {
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			if(name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+				bound.add(args[1]);
+				return null;
+			}
+			switch(name) {
+			case "executeQuery":
+				return proxy(ResultSet.class, new ResultSetHandler(rowCount(args), false));
+			case "executeUpdate":
+				keys = 1;
+				bound.clear();
+				return 1;
+			case "execute":
+				bound.clear();
+				return false;
+			case "addBatch":
+				batch++;
+				bound.clear();
+				return null;
+			case "executeBatch":
+				int[] counts = new int[batch];
+				java.util.Arrays.fill(counts, 1);
+				keys = batch;
+				batch = 0;
+				return counts;
+			case "getGeneratedKeys":
+				return proxy(ResultSet.class, new ResultSetHandler(keys, true));
+			case "clearParameters":
+				bound.clear();
+				return null;
+			case "isClosed":
+				return closed;
+			case "close":
+				closed = true;
+				return null;
+			default:
+				return common(proxy, method, args);
+			}
+		}
+
+		private int rowCount(Object[] args) {
+			String query = args != null && args.length > 0 ? (String) args[0] : sql;
+			int count;
+			if(query != null && query.contains(" IN (")) count = bound.size();
+			else if(query != null && query.contains("COUNT(")) count = 1;
+			else count = rows;
+			bound.clear();
+			return count;
+		}
+	}
+
+	private static final class ResultSetHandler implements InvocationHandler {
+		private final int rowCount;
+		private final boolean generatedKeys;
+		private final long firstKey;
+		private int row = -1;
+
+		private ResultSetHandler(int rowCount, boolean generatedKeys) {
+			this.rowCount = rowCount;
+			this.generatedKeys = generatedKeys;
+			this.firstKey = generatedKeys ? KEYS.getAndAdd(rowCount) : 0L;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			switch(method.getName()) {
+			case "next":
+				return ++row < rowCount;
+			case "getLong":
+				return generatedKeys ? firstKey + row : row + 1L;
+			case "getInt":
+				return row;
+			case "getDouble":
+				return row * 0.5;
+			case "getFloat":
+				return row * 0.5f;
+			case "getBoolean":
+				return (row & 1) == 0;
+			case "getString":
+				return STRINGS[row & (TABLE_SIZE - 1)];
+			case "getObject":
+				return UUIDS[row & (TABLE_SIZE - 1)];
+			case "getBytes":
+				return BYTES.clone();
+			case "getTimestamp":
+				return TIMESTAMP;
+			case "wasNull":
+				return false;
+			case "getMetaData":
+				return proxy(ResultSetMetaData.class, (p, m, a) -> m.getName().equals("getColumnCount") ? 8 : common(p, m, a));
+			default:
+				return common(proxy, method, args);
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Exposes the package-private paths of the repository to the benchmarks.
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class BenchmarkAccess {
+
+	private BenchmarkAccess() {
+	}
+
+	/**
+	 * @see SQLSession#setupPreparedStatementParams(PreparedStatement, int, Object)
+	 */
+	public static void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+		SQLSession.setupPreparedStatementParams(ps, index, value);
+	}
+
+	/**
+	 * Looks an entity up in an identity map.
+	 */
+	public static Object get(IdentityMap map, Class<?> type, long id) {
+		return map.get(type, id);
+	}
+
+	/**
+	 * Adds an entity to an identity map, without a snapshot.
+	 */
+	public static void put(IdentityMap map, Class<?> type, long id, Object entity) {
+		map.put(type, id, entity, null);
+	}
+
+	/**
+	 * @see SchemaBootstrap#createTableSql(String, EntityMetadata)
+	 */
+	public static String createTableSql(Class<?> type) {
+		EntityMetadata meta = EntityMetadata.of(type);
+		return SchemaBootstrap.createTableSql(meta.getTableName(), meta);
+	}
+}
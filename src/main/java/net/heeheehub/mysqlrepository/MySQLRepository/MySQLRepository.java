@@ -1,18 +1,35 @@
 package net.heeheehub.mysqlrepository.MySQLRepository;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.ConnectionPool;
 import net.heeheehub.mysqlrepository.MySQLRepository.repo.Database;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.EntityCache;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.MainThreadGuard;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.PoolSettings;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.QueryMetrics;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.ReplicaSet;
 import net.heeheehub.mysqlrepository.MySQLRepository.repo.SQLSession;
+import net.heeheehub.mysqlrepository.MySQLRepository.repo.ShardSet;
 import net.md_5.bungee.api.ChatColor;
 
 public class MySQLRepository extends JavaPlugin {
 	
 	private final static Map<String, Database> databases = new HashMap<>();
+	private final static Map<String, List<Class<?>>> pendingEntities = new HashMap<>();
+	private final static Map<String, ShardSet> shardSets = new HashMap<>();
+	private static final int STATS_LINES = 10;
+	private static final int SLOW_QUERY_LINES = 3;
 	private static String mainDb;
 	public static MySQLRepository instance;
 	@Override
@@ -28,30 +45,77 @@ public class MySQLRepository extends JavaPlugin {
 		}
 		instance = this;
 		mainDb = getConfig().getString("main.name");
-		registerGlobalDatabase(
-				new Database(
-						getConfig().getString("main.host"), 
-						getConfig().getInt("main.port"), 
-						mainDb, 
-						getConfig().getString("main.user"), 
-						getConfig().getString("main.password")
-						)
-				, false);
+		Database main = new Database(
+				getConfig().getString("main.host"), 
+				getConfig().getInt("main.port"), 
+				mainDb, 
+				getConfig().getString("main.user"), 
+				getConfig().getString("main.password"),
+				readPoolSettings("main")
+				);
+		main.setBatchSize(getConfig().getInt("main.batch-size", Database.DEFAULT_BATCH_SIZE));
+		main.setFetchSize(getConfig().getInt("main.fetch-size", Database.DEFAULT_FETCH_SIZE));
+		main.setAsyncQueueCapacity(getConfig().getInt("main.async-queue-capacity", Database.DEFAULT_ASYNC_QUEUE_CAPACITY));
+		main.getWriteBehind().setFlushInterval(getConfig().getLong("main.write-behind-interval", Database.DEFAULT_WRITE_BEHIND_INTERVAL));
+		main.getCache().setMaxWeight(getConfig().getLong("main.cache-max-weight", EntityCache.DEFAULT_MAX_WEIGHT));
+		main.getMetrics().setEnabled(getConfig().getBoolean("main.metrics.enabled", true));
+		main.getMetrics().setSlowQueryThreshold(getConfig().getLong("main.metrics.slow-query-threshold", QueryMetrics.DEFAULT_SLOW_QUERY_THRESHOLD));
+		main.getMainThreadGuard().setMode(readMainThreadMode("main"));
+		main.getMainThreadGuard().setSampleRate(getConfig().getInt("main.main-thread.sample-rate", MainThreadGuard.DEFAULT_SAMPLE_RATE));
+		readReplicas(main, "main");
+		registerGlobalDatabase(main, false);
 		for(String l : getConfig().getConfigurationSection("db.").getKeys(false)) {
-			registerGlobalDatabase(
-					new Database(
-							getConfig().getString("db." + l + ".host"), 
-							getConfig().getInt("db." + l + ".port"), 
-							getConfig().getString("db." + l + ".name"), 
-							getConfig().getString("db." + l + ".user"), 
-							getConfig().getString("db." + l + ".password")
-							), true
+			Database database = new Database(
+					getConfig().getString("db." + l + ".host"), 
+					getConfig().getInt("db." + l + ".port"), 
+					getConfig().getString("db." + l + ".name"), 
+					getConfig().getString("db." + l + ".user"), 
+					getConfig().getString("db." + l + ".password"),
+					readPoolSettings("db." + l)
 					);
+			database.setBatchSize(getConfig().getInt("db." + l + ".batch-size", Database.DEFAULT_BATCH_SIZE));
+			database.setFetchSize(getConfig().getInt("db." + l + ".fetch-size", Database.DEFAULT_FETCH_SIZE));
+			database.setAsyncQueueCapacity(getConfig().getInt("db." + l + ".async-queue-capacity", Database.DEFAULT_ASYNC_QUEUE_CAPACITY));
+			database.getWriteBehind().setFlushInterval(getConfig().getLong("db." + l + ".write-behind-interval", Database.DEFAULT_WRITE_BEHIND_INTERVAL));
+			database.getCache().setMaxWeight(getConfig().getLong("db." + l + ".cache-max-weight", EntityCache.DEFAULT_MAX_WEIGHT));
+			database.getMetrics().setEnabled(getConfig().getBoolean("db." + l + ".metrics.enabled", true));
+			database.getMetrics().setSlowQueryThreshold(getConfig().getLong("db." + l + ".metrics.slow-query-threshold", QueryMetrics.DEFAULT_SLOW_QUERY_THRESHOLD));
+			database.getMainThreadGuard().setMode(readMainThreadMode("db." + l));
+			database.getMainThreadGuard().setSampleRate(getConfig().getInt("db." + l + ".main-thread.sample-rate", MainThreadGuard.DEFAULT_SAMPLE_RATE));
+			readReplicas(database, "db." + l);
+			registerGlobalDatabase(database, true);
 			Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &aRegistered " + getConfig().getString("db." + l + ".name")));
 		}
+		ConfigurationSection sets = getConfig().getConfigurationSection("shard-sets");
+		if(sets != null) {
+			for(String name : sets.getKeys(false)) {
+				List<Database> shards = new ArrayList<>();
+				for(String dbName : sets.getStringList(name)) {
+					Database shard = databases.get(dbName);
+					if(shard == null) {
+						Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cShard set " + name + " lists unknown database " + dbName));
+						shards = null;
+						break;
+					}
+					shards.add(shard);
+				}
+				if(shards == null) continue;
+				try {
+					registerShardSet(new ShardSet(name, shards));
+				} catch (RuntimeException e) {
+					Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cShard set " + name + " is invalid: " + e.getMessage()));
+					continue;
+				}
+				Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &aRegistered shard set " + name + " of " + shards.size() + " databases"));
+			}
+		}
 		getMainDatabase().connect();
 		Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &aConnected to mysql db" + mainDb));
-	
+		
+		bootstrapSchemas();
+		
+		// Runs on the first tick: blocking while plugins are enabled does not stall the server.
+		Bukkit.getScheduler().runTask(this, () -> MainThreadGuard.setArmed(true));
 		
 		Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &aMySQLRepo enabled"));
 		
@@ -59,9 +123,94 @@ public class MySQLRepository extends JavaPlugin {
 	
 	@Override
 	public void onDisable() {
+		MainThreadGuard.setArmed(false);
+		for(Database database : databases.values()) {
+			try {
+				database.getWriteBehind().flush();
+			} catch (Exception e) {
+				Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cFailed to flush pending writes of " + database.getDbName() + ": " + e.getMessage()));
+			}
+			database.disconnect();
+		}
 		Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cMySQLRepo disabled"));
 	}
 	
+	@Override
+	public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+		boolean blocking = args.length > 0 && args[0].equalsIgnoreCase("blocking");
+		if(args.length == 0 || !(blocking || args[0].equalsIgnoreCase("stats"))) {
+			sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cUsage: /" + label + " <stats|blocking> [database]"));
+			return true;
+		}
+		if(args.length > 1) {
+			Database database = databases.get(args[1]);
+			if(database == null) {
+				sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cUnknown database " + args[1]));
+				return true;
+			}
+			if(blocking) sendBlocking(sender, database);
+			else sendStats(sender, database);
+		} else {
+			for(Database database : databases.values()) {
+				if(blocking) sendBlocking(sender, database);
+				else sendStats(sender, database);
+			}
+		}
+		return true;
+	}
+	
+	private static void sendBlocking(CommandSender sender, Database database) {
+		MainThreadGuard guard = database.getMainThreadGuard();
+		List<MainThreadGuard.Offender> report = guard.getReport();
+		sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &a" + database.getDbName()
+				+ "&7: &f" + guard.getBlockedCount() + "&7 statements on the server thread, mode &f" + guard.getMode()));
+		for(MainThreadGuard.Offender offender : report.subList(0, Math.min(STATS_LINES, report.size()))) {
+			sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format(Locale.ROOT,
+					"&7 &e%.1f ms/min &7%s at &f%s&7: &f%d&7 calls, &f%.0f&7 ms total, &f%.1f&7 ms max",
+					offender.getMillisPerMinute(), offender.getPlugin(), offender.getLocation(), offender.getCalls(),
+					offender.getTotalMillis(), offender.getMaxMillis())));
+		}
+	}
+	
+	private static void sendStats(CommandSender sender, Database database) {
+		QueryMetrics metrics = database.getMetrics();
+		ConnectionPool pool = database.getPool();
+		sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &a" + database.getDbName()
+				+ (metrics.isEnabled() ? "" : " &c(metrics disabled)")));
+		if(pool != null) {
+			sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format(Locale.ROOT,
+					"&7 Pool: &f%d&7 active, &f%d&7 idle, &f%d&7/&f%d&7 open, &f%d&7 waiting, wait &f%.2f&7 ms avg / &f%.1f&7 ms max, &f%d&7 timeouts",
+					pool.getActive(), pool.getIdle(), pool.getTotal(), pool.getSettings().getMaxSize(), pool.getWaiting(),
+					pool.getMeanBorrowWait(), pool.getMaxBorrowWait(), pool.getBorrowTimeouts())));
+		} else {
+			sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&7 Pool: not started"));
+		}
+		for(ReplicaSet.Replica replica : database.getReplicas().getReplicas()) {
+			ConnectionPool replicaPool = replica.getPool();
+			sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format(Locale.ROOT,
+					"&7 Replica %s:%d: %s&7, lag &f%s&7, &f%d&7 reads, &f%d&7 active",
+					replica.getHost(), replica.getPort(), replica.isAvailable() ? "&aavailable" : "&cleft out",
+					replica.getLag() < 0 ? "unknown" : replica.getLag() + " ms", replica.getReads(),
+					replicaPool == null ? 0 : replicaPool.getActive())));
+		}
+		sender.sendMessage(ChatColor.translateAlternateColorCodes('&', "&7 Statements: &f" + metrics.getStatementCount()
+				+ "&7, errors: &f" + metrics.getErrorCount() + "&7, slow: &f" + metrics.getSlowQueryCount()
+				+ "&7 (> " + metrics.getSlowQueryThreshold() + " ms)"));
+		List<QueryMetrics.OperationStats> operations = metrics.getOperations();
+		for(QueryMetrics.OperationStats stats : operations.subList(0, Math.min(STATS_LINES, operations.size()))) {
+			sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format(Locale.ROOT,
+					"&7 %s.%s: &f%d&7 calls, p50 &f%.2f&7 ms, p99 &f%.2f&7 ms, &f%d&7 rows, &f%d&7 KiB%s",
+					stats.getEntity(), stats.getOperation(), stats.getCount(), stats.getP50Millis(), stats.getP99Millis(),
+					stats.getRows(), stats.getBytes() / 1024, stats.getErrors() > 0 ? ", &c" + stats.getErrors() + " errors" : "")));
+		}
+		List<QueryMetrics.SlowQuery> slowQueries = metrics.getSlowQueries();
+		for(QueryMetrics.SlowQuery slow : slowQueries.subList(0, Math.min(SLOW_QUERY_LINES, slowQueries.size()))) {
+			sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format(Locale.ROOT,
+					"&7 Slow: &e%.1f ms &7%s.%s from &f%s&7: %s",
+					slow.getMillis(), slow.getEntity(), slow.getOperation(), slow.getCaller(), slow.getSql())));
+		}
+	}
+	
 	public static Database getDatabase(String dbName) {
 		return databases.get(dbName);
 	}
@@ -75,6 +224,34 @@ public class MySQLRepository extends JavaPlugin {
 			instance.getConfig().set("db." + dbName + ".port", database.getPort());
 			instance.getConfig().set("db." + dbName + ".user", database.getUser());
 			instance.getConfig().set("db." + dbName + ".password", database.getPassword());
+			instance.getConfig().set("db." + dbName + ".batch-size", database.getBatchSize());
+			instance.getConfig().set("db." + dbName + ".fetch-size", database.getFetchSize());
+			instance.getConfig().set("db." + dbName + ".async-queue-capacity", database.getAsyncQueueCapacity());
+			instance.getConfig().set("db." + dbName + ".write-behind-interval", database.getWriteBehind().getFlushInterval());
+			instance.getConfig().set("db." + dbName + ".cache-max-weight", database.getCache().getMaxWeight());
+			instance.getConfig().set("db." + dbName + ".metrics.enabled", database.getMetrics().isEnabled());
+			instance.getConfig().set("db." + dbName + ".metrics.slow-query-threshold", database.getMetrics().getSlowQueryThreshold());
+			instance.getConfig().set("db." + dbName + ".main-thread.mode", database.getMainThreadGuard().getMode().name().toLowerCase(Locale.ROOT));
+			instance.getConfig().set("db." + dbName + ".main-thread.sample-rate", database.getMainThreadGuard().getSampleRate());
+			savePoolSettings("db." + dbName, database.getPoolSettings());
+			ReplicaSet replicas = database.getReplicas();
+			instance.getConfig().set("db." + dbName + ".replicas", null);
+			if(!replicas.isEmpty()) {
+				instance.getConfig().set("db." + dbName + ".replicas.selection", replicas.getSelection().name().toLowerCase(Locale.ROOT).replace('_', '-'));
+				instance.getConfig().set("db." + dbName + ".replicas.max-lag", replicas.getMaxLag());
+				instance.getConfig().set("db." + dbName + ".replicas.lag-check-interval", replicas.getLagCheckInterval());
+				instance.getConfig().set("db." + dbName + ".replicas.read-your-writes", replicas.isReadYourWrites());
+				List<ReplicaSet.Replica> hosts = replicas.getReplicas();
+				for(int i = 0; i < hosts.size(); i++) {
+					ReplicaSet.Replica replica = hosts.get(i);
+					String path = "db." + dbName + ".replicas.hosts.replica" + (i + 1);
+					instance.getConfig().set(path + ".host", replica.getHost());
+					instance.getConfig().set(path + ".port", replica.getPort());
+					instance.getConfig().set(path + ".user", replica.getUser());
+					instance.getConfig().set(path + ".password", replica.getPassword());
+					savePoolSettings(path, replica.getPoolSettings());
+				}
+			}
 			instance.saveConfig();
 		}
 	
@@ -82,4 +259,123 @@ public class MySQLRepository extends JavaPlugin {
 	public static Database getMainDatabase() {
 		return databases.get(mainDb);
 	}
+	
+	/**
+	 * @return The shard set with a name, declared under {@code shard-sets} or registered, or {@code null}.
+	 */
+	public static ShardSet getShardSet(String name) {
+		return shardSets.get(name);
+	}
+	
+	/**
+	 * Registers a shard set so other plugins can look it up by name. It must be created before the pools
+	 * of its databases start, so from {@code onLoad} or before their first connection.
+	 */
+	public static void registerShardSet(ShardSet shardSet) {
+		shardSets.put(shardSet.getName(), shardSet);
+	}
+	
+	/**
+	 * Registers entity classes of the main database for the schema bootstrap.
+	 *
+	 * @see #registerEntities(String, Class...)
+	 */
+	public static void registerEntities(Class<?>... classes) {
+		registerEntities(null, classes);
+	}
+	
+	/**
+	 * Registers entity classes so their tables and columns are created when this plugin is enabled,
+	 * instead of on the first failed write. Call it from {@code onLoad} to join the startup bootstrap;
+	 * classes registered later are bootstrapped immediately.
+	 *
+	 * @param dbName  The database name, or {@code null} for the main database.
+	 * @param classes The entity classes.
+	 */
+	public static synchronized void registerEntities(String dbName, Class<?>... classes) {
+		Database database = dbName == null ? getMainDatabase() : databases.get(dbName);
+		if(database == null || !database.getSchema().isBootstrapped()) {
+			List<Class<?>> pending = pendingEntities.computeIfAbsent(dbName == null ? "" : dbName, k -> new ArrayList<>());
+			for(Class<?> clazz : classes) pending.add(clazz);
+			return;
+		}
+		database.getSchema().register(classes);
+	}
+	
+	private static synchronized void bootstrapSchemas() {
+		List<Class<?>> main = pendingEntities.remove("");
+		if(main != null) pendingEntities.computeIfAbsent(mainDb, k -> new ArrayList<>()).addAll(main);
+		for(Database database : databases.values()) {
+			List<Class<?>> pending = pendingEntities.remove(database.getDbName());
+			if(pending != null) database.getSchema().register(pending.toArray(new Class<?>[0]));
+			long start = System.nanoTime();
+			try {
+				database.getSchema().bootstrap();
+			} catch (RuntimeException e) {
+				Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cSchema bootstrap of " + database.getDbName() + " failed: " + e.getMessage()));
+				continue;
+			}
+			if(pending != null) {
+				Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &aBootstrapped " + pending.size() + " entities of " + database.getDbName()
+						+ " in " + (System.nanoTime() - start) / 1_000_000 + " ms"));
+			}
+		}
+		for(String dbName : pendingEntities.keySet()) {
+			Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cEntities registered for unknown database " + dbName));
+		}
+		pendingEntities.clear();
+	}
+	
+	private static void savePoolSettings(String path, PoolSettings pool) {
+		instance.getConfig().set(path + ".pool.min-size", pool.getMinSize());
+		instance.getConfig().set(path + ".pool.max-size", pool.getMaxSize());
+		instance.getConfig().set(path + ".pool.idle-timeout", pool.getIdleTimeout());
+		instance.getConfig().set(path + ".pool.borrow-timeout", pool.getBorrowTimeout());
+		instance.getConfig().set(path + ".pool.leak-threshold", pool.getLeakThreshold());
+	}
+	
+	private void readReplicas(Database database, String path) {
+		ReplicaSet replicas = database.getReplicas();
+		String selection = getConfig().getString(path + ".replicas.selection", "round-robin");
+		try {
+			replicas.setSelection(ReplicaSet.Selection.valueOf(selection.toUpperCase(Locale.ROOT).replace('-', '_')));
+		} catch (IllegalArgumentException e) {
+			Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cUnknown replica selection " + selection + " in " + path + ", using round-robin"));
+		}
+		replicas.setMaxLag(getConfig().getLong(path + ".replicas.max-lag", ReplicaSet.DEFAULT_MAX_LAG));
+		replicas.setLagCheckInterval(getConfig().getLong(path + ".replicas.lag-check-interval", ReplicaSet.DEFAULT_LAG_CHECK_INTERVAL));
+		replicas.setReadYourWrites(getConfig().getBoolean(path + ".replicas.read-your-writes", true));
+		ConfigurationSection hosts = getConfig().getConfigurationSection(path + ".replicas.hosts");
+		if(hosts == null) return;
+		for(String r : hosts.getKeys(false)) {
+			String replica = path + ".replicas.hosts." + r;
+			replicas.add(
+					getConfig().getString(replica + ".host"),
+					getConfig().getInt(replica + ".port", database.getPort()),
+					getConfig().getString(replica + ".user", database.getUser()),
+					getConfig().getString(replica + ".password", database.getPassword()),
+					readPoolSettings(replica)
+					);
+		}
+	}
+	
+	private MainThreadGuard.Mode readMainThreadMode(String path) {
+		String mode = getConfig().getString(path + ".main-thread.mode", "warn");
+		try {
+			return MainThreadGuard.Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aMySQLRepository&7] &cUnknown main-thread mode " + mode + " in " + path + ", using warn"));
+			return MainThreadGuard.Mode.WARN;
+		}
+	}
+	
+	private PoolSettings readPoolSettings(String path) {
+		return new PoolSettings(
+				getConfig().getInt(path + ".pool.min-size", PoolSettings.DEFAULT_MIN_SIZE),
+				getConfig().getInt(path + ".pool.max-size", PoolSettings.DEFAULT_MAX_SIZE),
+				getConfig().getLong(path + ".pool.idle-timeout", PoolSettings.DEFAULT_IDLE_TIMEOUT),
+				getConfig().getLong(path + ".pool.borrow-timeout", PoolSettings.DEFAULT_BORROW_TIMEOUT),
+				getConfig().getLong(path + ".pool.leak-threshold", PoolSettings.DEFAULT_LEAK_THRESHOLD)
+				);
+	}
 }
@@ -10,4 +10,8 @@ import java.lang.annotation.Target;
 public @interface MySQLField {
     String value();
     boolean autoMapped() default false;
+    boolean cached() default false;
+    long cacheTtl() default 300_000L;
+    int cacheMaxEntries() default 10_000;
+    boolean binaryUuids() default false;
 }
@@ -0,0 +1,18 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.object;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stores a {@code UUID} column as {@code BINARY(16)} instead of {@code VARCHAR(36)}.
+ * Use {@code @MySQLField(binaryUuids = true)} to store every {@code UUID} column of a class this way.
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface SQLBinaryUuid {
+}
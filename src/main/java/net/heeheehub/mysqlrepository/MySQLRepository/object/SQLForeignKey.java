@@ -1,6 +1,31 @@
 package net.heeheehub.mysqlrepository.MySQLRepository.object;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a foreign key from a column to a column of another table, emitted as a constraint when the
+ * table is created.
+ * <p>
+ * On a field of type {@code Ref<T>}, the column also maps a relation to the entity class {@code T}, whose
+ * table must be {@link #table()}. The column stores the value of {@link #attribute()} and the referenced
+ * entity is loaded lazily, see {@code Ref}.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
 public @interface SQLForeignKey {
+	/**
+	 * The referenced table.
+	 */
 	String table();
+	/**
+	 * The referenced column, usually the {@code @SQLId} of the referenced table.
+	 */
 	String attribute();
 }
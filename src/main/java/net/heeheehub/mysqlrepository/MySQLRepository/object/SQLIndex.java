@@ -0,0 +1,33 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.object;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index on a column. Fields sharing the same {@link #name()} form one composite
+ * index, ordered by {@link #order()}. A field may belong to several indexes.
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+@Repeatable(SQLIndexes.class)
+public @interface SQLIndex {
+	/**
+	 * The index name. Defaults to {@code idx_<table>_<column>}, or {@code uk_<table>_<column>} for unique indexes.
+	 */
+	String name() default "";
+	boolean unique() default false;
+	/**
+	 * The position of the column in a composite index.
+	 */
+	int order() default 0;
+	/**
+	 * The number of leading characters indexed, for long VARCHAR/TEXT columns. {@code 0} indexes the whole value.
+	 */
+	int prefixLength() default 0;
+}
@@ -0,0 +1,18 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.object;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Container of repeated {@link SQLIndex} annotations.
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface SQLIndexes {
+	SQLIndex[] value();
+}
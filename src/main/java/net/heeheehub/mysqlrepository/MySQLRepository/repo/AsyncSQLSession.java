@@ -0,0 +1,332 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Non-blocking front of an {@link SQLSession}.
+ * <p>
+ * Every operation runs on the {@link Database}'s {@link SQLExecutor} and returns a
+ * {@link CompletableFuture}. Operations of one session run one at a time, in submission order, and each
+ * is only handed to the executor once the previous one finished, so a busy session queues behind itself
+ * instead of holding executor slots other sessions need. When a callback plugin is given, futures complete on
+ * the server thread through the Bukkit scheduler so callbacks may touch the Bukkit API.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public class AsyncSQLSession {
+
+	/**
+	 * Work run against the wrapped session.
+	 *
+	 * @param <T> The result type.
+	 */
+	@FunctionalInterface
+	public interface SQLWork<T> {
+		T run(SQLSession session) throws Exception;
+	}
+
+	private final SQLSession session;
+	private final SQLExecutor executor;
+	private final Executor callbackExecutor;
+	private final int queueCapacity;
+	private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+	private int queued;
+
+	/**
+	 * Constructs an asynchronous session whose futures complete on a database thread.
+	 *
+	 * @param database The database to work against.
+	 * @throws SQLException if a database access error occurs.
+	 */
+	public AsyncSQLSession(Database database) throws SQLException {
+		this(database, null);
+	}
+
+	/**
+	 * Constructs an asynchronous session.
+	 *
+	 * @param database       The database to work against.
+	 * @param callbackPlugin The plugin used to schedule completions on the server thread,
+	 *                       or {@code null} to complete on a database thread.
+	 * @throws SQLException if a database access error occurs.
+	 */
+	public AsyncSQLSession(Database database, Plugin callbackPlugin) throws SQLException {
+		this.session = new SQLSession(database);
+		if(callbackPlugin != null) session.setOwner(callbackPlugin.getName());
+		this.executor = database.getExecutor();
+		this.queueCapacity = database.getAsyncQueueCapacity();
+		this.callbackExecutor = callbackPlugin == null ? null : r -> {
+			if(callbackPlugin.isEnabled()) Bukkit.getScheduler().runTask(callbackPlugin, r);
+			else r.run();
+		};
+	}
+
+	/**
+	 * Runs arbitrary work against the wrapped session.
+	 *
+	 * @param work The work to run.
+	 * @param <T>  The result type.
+	 * @return A future completed with the work result, or exceptionally with a
+	 *         {@link RejectedExecutionException} if the session already has as many operations waiting as
+	 *         {@link Database#getAsyncQueueCapacity()}.
+	 */
+	public <T> CompletableFuture<T> submit(SQLWork<T> work) {
+		CompletableFuture<T> future;
+		synchronized(this) {
+			if(queued >= queueCapacity) {
+				return CompletableFuture.failedFuture(new RejectedExecutionException("Session queue is full ("
+						+ queueCapacity + " waiting operations)"));
+			}
+			queued++;
+			future = tail.handle((result, error) -> null)
+					.thenCompose(ignored -> executor.submit(() -> work.run(session)));
+			tail = future;
+		}
+		future.whenComplete((result, error) -> {
+			synchronized(this) {
+				queued--;
+			}
+		});
+		if(callbackExecutor == null) return future;
+		return future.whenCompleteAsync((result, error) -> {}, callbackExecutor);
+	}
+
+	/**
+	 * Runs work inside a transaction that is committed when the work returns and rolled back when it throws.
+	 *
+	 * @param work The work to run.
+	 * @param <T>  The result type.
+	 * @return A future completed with the work result.
+	 */
+	public <T> CompletableFuture<T> inTransaction(SQLWork<T> work) {
+		return submit(session -> {
+			SQLTransaction tx = session.beginTransaction();
+			try {
+				T result = work.run(session);
+				tx.commit();
+				return result;
+			} catch (Exception e) {
+				if(tx.isActive()) tx.rollback();
+				throw e;
+			}
+		});
+	}
+
+	/**
+	 * Persists an object in its own transaction.
+	 *
+	 * @param object The object to be persisted.
+	 * @return A future completed with the ID of the persisted object.
+	 * @see SQLSession#persists(Object)
+	 */
+	public CompletableFuture<Long> persists(Object object) {
+		return inTransaction(session -> session.persists(object));
+	}
+
+	/**
+	 * Persists a collection of objects in one transaction.
+	 *
+	 * @param objects The objects to be persisted.
+	 * @return A future completed once every object is written.
+	 * @see SQLSession#persistAll(Collection)
+	 */
+	public CompletableFuture<Void> persistAll(Collection<?> objects) {
+		return inTransaction(session -> {
+			session.persistAll(objects);
+			return null;
+		});
+	}
+
+	/**
+	 * @see SQLSession#upsert(Object, String...)
+	 */
+	public CompletableFuture<Long> upsert(Object object, String... updateColumns) {
+		return submit(session -> session.upsert(object, updateColumns));
+	}
+
+	/**
+	 * @see SQLSession#upsertAll(Collection, String...)
+	 */
+	public CompletableFuture<Void> upsertAll(Collection<?> objects, String... updateColumns) {
+		return submit(session -> {
+			session.upsertAll(objects, updateColumns);
+			return null;
+		});
+	}
+
+	/**
+	 * @see SQLSession#get(Class, Long)
+	 */
+	public <T> CompletableFuture<T> get(Class<T> clazz, Long id) {
+		return submit(session -> session.get(clazz, id));
+	}
+
+	/**
+	 * @see SQLSession#get(Class, String, UUID)
+	 */
+	public <T> CompletableFuture<T> get(Class<T> clazz, String uuidCol, UUID uuid) {
+		return submit(session -> session.get(clazz, uuidCol, uuid));
+	}
+
+	/**
+	 * @see SQLSession#getAll(Class)
+	 */
+	public <T> CompletableFuture<List<T>> getAll(Class<T> clazz) {
+		return submit(session -> session.getAll(clazz));
+	}
+
+	/**
+	 * @see SQLSession#getAll(Class, Collection)
+	 */
+	public <T> CompletableFuture<Map<Long, T>> getAll(Class<T> clazz, Collection<Long> ids) {
+		return submit(session -> session.getAll(clazz, ids));
+	}
+
+	/**
+	 * @see SQLSession#getAll(Class, String, Collection)
+	 */
+	public <T> CompletableFuture<Map<UUID, T>> getAll(Class<T> clazz, String uuidCol, Collection<UUID> uuids) {
+		return submit(session -> session.getAll(clazz, uuidCol, uuids));
+	}
+
+	/**
+	 * @see SQLSession#page(Class, int, String)
+	 */
+	public <T> CompletableFuture<Page<T>> page(Class<T> clazz, int size, String token) {
+		return submit(session -> session.page(clazz, size, token));
+	}
+
+	/**
+	 * Reads one page of a query built against the wrapped session, for example
+	 * {@code page(s -> s.query(Top.class, Row.class).ge("score", 10), "id", true, 50, token)}.
+	 *
+	 * @see Query#page(String, boolean, int, String)
+	 */
+	public <T> CompletableFuture<Page<T>> page(Function<SQLSession, Query<T>> query, String keyColumn,
+			boolean ascending, int size, String token) {
+		return submit(session -> query.apply(session).page(keyColumn, ascending, size, token));
+	}
+
+	/**
+	 * @see SQLSession#executeQuery(Class, String)
+	 */
+	public <T> CompletableFuture<List<T>> executeQuery(Class<T> clazz, String query) {
+		return submit(session -> session.executeQuery(clazz, query));
+	}
+
+	/**
+	 * @see SQLSession#executeQuery(Class, Class, String)
+	 */
+	public <P> CompletableFuture<List<P>> executeQuery(Class<?> clazz, Class<P> projection, String query) {
+		return submit(session -> session.executeQuery(clazz, projection, query));
+	}
+
+	/**
+	 * @see SQLSession#executeNativeQuery(String)
+	 */
+	public CompletableFuture<List<Object[]>> executeNativeQuery(String query) {
+		return submit(session -> session.executeNativeQuery(query));
+	}
+
+	/**
+	 * @see SQLSession#getIdBy(Class, String, Object)
+	 */
+	public CompletableFuture<Long> getIdBy(Class<?> clazz, String column, Object value) {
+		return submit(session -> session.getIdBy(clazz, column, value));
+	}
+
+	/**
+	 * @see SQLSession#update(Object)
+	 */
+	public CompletableFuture<Void> update(Object o) {
+		return submit(session -> {
+			session.update(o);
+			return null;
+		});
+	}
+
+	/**
+	 * @see SQLSession#updateAll(Collection)
+	 */
+	public CompletableFuture<Void> updateAll(Collection<?> objects) {
+		return submit(session -> {
+			session.updateAll(objects);
+			return null;
+		});
+	}
+
+	/**
+	 * @see SQLSession#delete(Object)
+	 */
+	public CompletableFuture<Void> delete(Object o) {
+		return submit(session -> {
+			session.delete(o);
+			return null;
+		});
+	}
+
+	/**
+	 * @see SQLSession#deleteAll(Collection)
+	 */
+	public CompletableFuture<Void> deleteAll(Collection<?> objects) {
+		return submit(session -> {
+			session.deleteAll(objects);
+			return null;
+		});
+	}
+
+	/**
+	 * @see SQLSession#clear()
+	 */
+	public CompletableFuture<Void> clear() {
+		return submit(session -> {
+			session.clear();
+			return null;
+		});
+	}
+
+	/**
+	 * @see SQLSession#detach(Object)
+	 */
+	public CompletableFuture<Void> detach(Object entity) {
+		return submit(session -> {
+			session.detach(entity);
+			return null;
+		});
+	}
+
+	/**
+	 * @see SQLSession#setReadYourWrites(boolean)
+	 */
+	public CompletableFuture<Void> setReadYourWrites(boolean readYourWrites) {
+		return submit(session -> {
+			session.setReadYourWrites(readYourWrites);
+			return null;
+		});
+	}
+
+	/**
+	 * Closes the wrapped session, rolling back an unfinished transaction.
+	 *
+	 * @return A future completed when the session is closed.
+	 */
+	public CompletableFuture<Void> close() {
+		return submit(session -> {
+			session.close();
+			return null;
+		});
+	}
+}
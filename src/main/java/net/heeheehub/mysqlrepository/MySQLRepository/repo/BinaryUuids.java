@@ -0,0 +1,41 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.UUID;
+
+/**
+ * Converts {@link UUID}s to and from the 16 big-endian bytes stored in {@code BINARY(16)} columns.
+ * <p>
+ * The byte order matches {@code UNHEX(REPLACE(uuid, '-', ''))}, so values written by the session and by
+ * {@link SchemaBootstrap#migrateUuidColumn(Class, String)} compare equal.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+final class BinaryUuids {
+
+	private BinaryUuids() {
+	}
+
+	static byte[] toBytes(UUID uuid) {
+		byte[] bytes = new byte[16];
+		long msb = uuid.getMostSignificantBits();
+		long lsb = uuid.getLeastSignificantBits();
+		for(int i = 0; i < 8; i++) {
+			bytes[i] = (byte) (msb >>> (56 - 8 * i));
+			bytes[i + 8] = (byte) (lsb >>> (56 - 8 * i));
+		}
+		return bytes;
+	}
+
+	static UUID fromBytes(byte[] bytes) {
+		if(bytes.length != 16) throw new IllegalArgumentException("A binary UUID must be 16 bytes, got " + bytes.length);
+		long msb = 0;
+		long lsb = 0;
+		for(int i = 0; i < 8; i++) {
+			msb = (msb << 8) | (bytes[i] & 0xff);
+			lsb = (lsb << 8) | (bytes[i + 8] & 0xff);
+		}
+		return new UUID(msb, lsb);
+	}
+}
@@ -0,0 +1,204 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Global registry of {@link ColumnCodec}s by Java type.
+ * <p>
+ * Codecs for primitives and their wrappers, {@link String}, {@link BigDecimal}, {@code byte[]}, {@link UUID},
+ * the {@code java.sql} and {@code java.util} dates, {@link LocalDate}, {@link LocalDateTime} and {@link Instant}
+ * are built in, and enums are stored by name. Other types are bound as text and read with {@code getObject}
+ * unless a codec is registered for them, so entity fields of a type that cannot hold a {@link String} are
+ * rejected when the metadata of their class is built. Values of the built-in mutable types, {@code byte[]} and the dates,
+ * are copied by cloning them. Codecs are resolved when the metadata of an entity class is first
+ * built, so register them before the classes using them are touched, typically in {@code onLoad} or {@code onEnable}.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class CodecRegistry {
+
+	@FunctionalInterface
+	private interface Binder<T> {
+		void bind(PreparedStatement ps, int index, T value) throws SQLException;
+	}
+
+	@FunctionalInterface
+	private interface Reader<T> {
+		T read(ResultSet rs, int index) throws SQLException;
+	}
+
+	private static final Map<Class<?>, ColumnCodec<?>> CODECS = new ConcurrentHashMap<>();
+	private static final Map<Class<?>, ColumnCodec<?>> ENUMS = new ConcurrentHashMap<>();
+
+	static final ColumnCodec<UUID> BINARY_UUID = codec("BINARY(16)",
+			(ps, i, v) -> ps.setBytes(i, BinaryUuids.toBytes(v)),
+			(rs, i) -> uuid(rs.getObject(i)));
+
+	static final ColumnCodec<Object> FALLBACK = codec("TEXT",
+			(ps, i, v) -> ps.setString(i, v.toString()),
+			ResultSet::getObject);
+
+	static {
+		ColumnCodec<Integer> ints = codec("INT", (ps, i, v) -> ps.setInt(i, v), (rs, i) -> {
+			int v = rs.getInt(i);
+			return rs.wasNull() ? null : v;
+		});
+		ColumnCodec<Long> longs = codec("BIGINT", (ps, i, v) -> ps.setLong(i, v), (rs, i) -> {
+			long v = rs.getLong(i);
+			return rs.wasNull() ? null : v;
+		});
+		ColumnCodec<Short> shorts = codec("SMALLINT", (ps, i, v) -> ps.setShort(i, v), (rs, i) -> {
+			short v = rs.getShort(i);
+			return rs.wasNull() ? null : v;
+		});
+		ColumnCodec<Byte> bytes = codec("TINYINT", (ps, i, v) -> ps.setByte(i, v), (rs, i) -> {
+			byte v = rs.getByte(i);
+			return rs.wasNull() ? null : v;
+		});
+		ColumnCodec<Boolean> booleans = codec("BOOLEAN", (ps, i, v) -> ps.setBoolean(i, v), (rs, i) -> {
+			boolean v = rs.getBoolean(i);
+			return rs.wasNull() ? null : v;
+		});
+		ColumnCodec<Float> floats = codec("FLOAT", (ps, i, v) -> ps.setFloat(i, v), (rs, i) -> {
+			float v = rs.getFloat(i);
+			return rs.wasNull() ? null : v;
+		});
+		ColumnCodec<Double> doubles = codec("DOUBLE", (ps, i, v) -> ps.setDouble(i, v), (rs, i) -> {
+			double v = rs.getDouble(i);
+			return rs.wasNull() ? null : v;
+		});
+		ColumnCodec<Character> chars = codec("CHAR(1)", (ps, i, v) -> ps.setString(i, v.toString()), (rs, i) -> {
+			String v = rs.getString(i);
+			return v == null || v.isEmpty() ? null : v.charAt(0);
+		});
+		register(int.class, ints);
+		register(Integer.class, ints);
+		register(long.class, longs);
+		register(Long.class, longs);
+		register(short.class, shorts);
+		register(Short.class, shorts);
+		register(byte.class, bytes);
+		register(Byte.class, bytes);
+		register(boolean.class, booleans);
+		register(Boolean.class, booleans);
+		register(float.class, floats);
+		register(Float.class, floats);
+		register(double.class, doubles);
+		register(Double.class, doubles);
+		register(char.class, chars);
+		register(Character.class, chars);
+		register(String.class, codec("VARCHAR(255)", PreparedStatement::setString, ResultSet::getString));
+		register(BigDecimal.class, codec("DECIMAL(19,4)", PreparedStatement::setBigDecimal, ResultSet::getBigDecimal));
+		register(byte[].class, codec("BLOB", PreparedStatement::setBytes, ResultSet::getBytes, byte[]::clone));
+		register(UUID.class, codec("VARCHAR(36)", (ps, i, v) -> ps.setString(i, v.toString()), (rs, i) -> uuid(rs.getObject(i))));
+		register(java.sql.Date.class, codec("DATE", PreparedStatement::setDate, ResultSet::getDate, v -> (java.sql.Date) v.clone()));
+		register(java.sql.Time.class, codec("TIME", PreparedStatement::setTime, ResultSet::getTime, v -> (java.sql.Time) v.clone()));
+		register(Timestamp.class, codec("DATETIME", PreparedStatement::setTimestamp, ResultSet::getTimestamp, v -> (Timestamp) v.clone()));
+		register(java.util.Date.class, codec("DATETIME", (ps, i, v) -> ps.setTimestamp(i, new Timestamp(v.getTime())), (rs, i) -> {
+			Timestamp v = rs.getTimestamp(i);
+			return v == null ? null : new java.util.Date(v.getTime());
+		}, v -> (java.util.Date) v.clone()));
+		register(LocalDate.class, codec("DATE", (ps, i, v) -> ps.setDate(i, java.sql.Date.valueOf(v)), (rs, i) -> {
+			java.sql.Date v = rs.getDate(i);
+			return v == null ? null : v.toLocalDate();
+		}));
+		register(LocalDateTime.class, codec("DATETIME", (ps, i, v) -> ps.setTimestamp(i, Timestamp.valueOf(v)), (rs, i) -> {
+			Timestamp v = rs.getTimestamp(i);
+			return v == null ? null : v.toLocalDateTime();
+		}));
+		register(Instant.class, codec("DATETIME(3)", (ps, i, v) -> ps.setTimestamp(i, Timestamp.from(v)), (rs, i) -> {
+			Timestamp v = rs.getTimestamp(i);
+			return v == null ? null : v.toInstant();
+		}));
+	}
+
+	private CodecRegistry() {
+	}
+
+	/**
+	 * Registers or replaces the codec of a type. Columns resolved earlier keep their codec.
+	 *
+	 * @param type  The Java type.
+	 * @param codec The codec.
+	 * @param <T>   The Java type.
+	 */
+	public static <T> void register(Class<T> type, ColumnCodec<? super T> codec) {
+		CODECS.put(type, codec);
+	}
+
+	/**
+	 * Resolves the codec of a type: a registered codec, then the codec of the closest registered
+	 * superclass or interface, then the by-name codec for enums, then the text fallback.
+	 *
+	 * @param type The Java type.
+	 * @return The codec.
+	 */
+	@SuppressWarnings("unchecked")
+	public static ColumnCodec<Object> resolve(Class<?> type) {
+		ColumnCodec<?> codec = CODECS.get(type);
+		if(codec != null) return (ColumnCodec<Object>) codec;
+		if(type.isEnum()) return (ColumnCodec<Object>) ENUMS.computeIfAbsent(type, CodecRegistry::enumCodec);
+		for(Class<?> superType = type.getSuperclass(); superType != null && superType != Object.class; superType = superType.getSuperclass()) {
+			codec = CODECS.get(superType);
+			if(codec != null) return (ColumnCodec<Object>) codec;
+		}
+		for(Class<?> iface : type.getInterfaces()) {
+			codec = CODECS.get(iface);
+			if(codec != null) return (ColumnCodec<Object>) codec;
+		}
+		return FALLBACK;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static ColumnCodec<?> enumCodec(Class<?> type) {
+		Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+		return ColumnCodec.<Enum>ofString("VARCHAR(64)", Enum::name, name -> Enum.valueOf(enumType, name));
+	}
+
+	private static UUID uuid(Object value) {
+		if(value == null) return null;
+		if(value instanceof byte[] bytes) return BinaryUuids.fromBytes(bytes);
+		return UUID.fromString(value.toString());
+	}
+
+	private static <T> ColumnCodec<T> codec(String sqlType, Binder<T> binder, Reader<T> reader) {
+		return codec(sqlType, binder, reader, UnaryOperator.identity());
+	}
+
+	private static <T> ColumnCodec<T> codec(String sqlType, Binder<T> binder, Reader<T> reader, UnaryOperator<T> copier) {
+		return new ColumnCodec<>() {
+			@Override
+			public void bind(PreparedStatement ps, int index, T value) throws SQLException {
+				binder.bind(ps, index, value);
+			}
+
+			@Override
+			public T read(ResultSet rs, int index) throws SQLException {
+				return reader.read(rs, index);
+			}
+
+			@Override
+			public String sqlType() {
+				return sqlType;
+			}
+
+			@Override
+			public T copy(T value) {
+				return copier.apply(value);
+			}
+		};
+	}
+}
@@ -0,0 +1,126 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Function;
+
+import com.google.gson.Gson;
+
+/**
+ * Converts one Java type to and from a JDBC column.
+ * <p>
+ * Codecs are registered per type in the {@link CodecRegistry} and resolved once per column when the
+ * {@link EntityMetadata} of a class is built, so reads and writes no longer dispatch on the value type.
+ * {@code null} values never reach a codec: the session binds SQL {@code NULL} itself.
+ * </p>
+ * <pre>{@code
+ * CodecRegistry.register(Location.class, ColumnCodec.ofString("VARCHAR(128)",
+ *         loc -> loc.getWorld().getName() + ";" + loc.getX() + ";" + loc.getY() + ";" + loc.getZ(),
+ *         LocationParser::parse));
+ * }</pre>
+ *
+ * @param <T> The Java type.
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public interface ColumnCodec<T> {
+
+	/**
+	 * Binds a non-null value as a statement parameter.
+	 */
+	void bind(PreparedStatement ps, int index, T value) throws SQLException;
+
+	/**
+	 * Reads a column of the current row.
+	 *
+	 * @return The value, or {@code null} if the column is SQL {@code NULL}.
+	 */
+	T read(ResultSet rs, int index) throws SQLException;
+
+	/**
+	 * @return The MySQL column type used when tables and columns are created.
+	 */
+	String sqlType();
+
+	/**
+	 * Copies a non-null value, so that mutating one leaves the other unchanged. The {@link EntityCache}
+	 * keeps and hands out copies made here.
+	 * <p>
+	 * The default returns the value itself, which is only right for immutable types: codecs of mutable
+	 * types must override it. Codecs created by {@link #ofString} and {@link #json} copy a value by
+	 * encoding and decoding it.
+	 * </p>
+	 *
+	 * @return A value equal to the given one and sharing no mutable state with it.
+	 */
+	default T copy(T value) {
+		return value;
+	}
+
+	/**
+	 * Captures the state of a non-null value for dirty checking. Two values must have {@link Object#equals equal}
+	 * snapshots exactly when they are stored the same, and a snapshot must not change when the value is mutated.
+	 * <p>
+	 * The default returns {@link #copy(Object)}. Codecs created by {@link #ofString} and {@link #json} return
+	 * the encoded text, so values of types without {@code equals} are compared by what is stored.
+	 * </p>
+	 *
+	 * @return The snapshot.
+	 */
+	default Object snapshot(T value) {
+		return copy(value);
+	}
+
+	/**
+	 * Creates a codec storing values as text. Values are copied by encoding and decoding them, and
+	 * compared by their text for dirty checking.
+	 *
+	 * @param sqlType The MySQL column type, such as {@code VARCHAR(64)} or {@code TEXT}.
+	 * @param encode  Converts a value to its text.
+	 * @param decode  Parses the text back.
+	 * @param <T>     The Java type.
+	 * @return The codec.
+	 */
+	static <T> ColumnCodec<T> ofString(String sqlType, Function<T, String> encode, Function<String, T> decode) {
+		return new ColumnCodec<>() {
+			@Override
+			public void bind(PreparedStatement ps, int index, T value) throws SQLException {
+				ps.setString(index, encode.apply(value));
+			}
+
+			@Override
+			public T read(ResultSet rs, int index) throws SQLException {
+				String value = rs.getString(index);
+				return value == null ? null : decode.apply(value);
+			}
+
+			@Override
+			public String sqlType() {
+				return sqlType;
+			}
+
+			@Override
+			public T copy(T value) {
+				return decode.apply(encode.apply(value));
+			}
+
+			@Override
+			public Object snapshot(T value) {
+				return encode.apply(value);
+			}
+		};
+	}
+
+	/**
+	 * Creates a codec storing values as JSON documents through Gson.
+	 *
+	 * @param type The Java type.
+	 * @param <T>  The Java type.
+	 * @return The codec, using a {@code JSON} column.
+	 */
+	static <T> ColumnCodec<T> json(Class<T> type) {
+		Gson gson = new Gson();
+		return ofString("JSON", gson::toJson, json -> gson.fromJson(json, type));
+	}
+}
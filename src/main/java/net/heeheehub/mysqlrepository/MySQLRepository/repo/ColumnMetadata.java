@@ -0,0 +1,332 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLForeignKey;
+
+/**
+ * Describes one mapped column of an entity class.
+ * <p>
+ * Instances are created once per field by {@link EntityMetadata} and are immutable. The {@link ColumnCodec}
+ * of the field is resolved on creation, and {@code int}, {@code long} and {@code double} fields are read and
+ * bound without boxing. A {@link Ref} field maps a {@link RelationMetadata relation} and stores the key of
+ * the referenced entity.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class ColumnMetadata {
+
+	private final String name;
+	private final Field field;
+	private final boolean id;
+	private final boolean notNull;
+	private final boolean primaryKey;
+	private final SQLForeignKey foreignKey;
+	private final boolean binaryUuid;
+	private final RelationMetadata relation;
+	private final FieldAccessor accessor;
+	private final ColumnCodec<Object> codec;
+	private final RowReader reader;
+	private final EntityBinder binder;
+
+	@FunctionalInterface
+	private interface RowReader {
+		void read(ResultSet rs, int index, Object entity) throws SQLException;
+	}
+
+	@FunctionalInterface
+	private interface EntityBinder {
+		void bind(PreparedStatement ps, int index, Object entity) throws SQLException;
+	}
+
+	/**
+	 * A value bound through the codec of a column.
+	 */
+	record Parameter(ColumnMetadata column, Object value) {
+		void bind(PreparedStatement ps, int index) throws SQLException {
+			column.bindValue(ps, index, value);
+		}
+	}
+
+	ColumnMetadata(String name, Field field, boolean id, boolean notNull, boolean primaryKey, SQLForeignKey foreignKey) {
+		this(name, field, id, notNull, primaryKey, foreignKey, false);
+	}
+
+	ColumnMetadata(String name, Field field, boolean id, boolean notNull, boolean primaryKey, SQLForeignKey foreignKey,
+			boolean binaryUuid) {
+		if(binaryUuid && field.getType() != UUID.class) {
+			throw new IllegalArgumentException("Field " + field.getName() + " is not a UUID and cannot be stored as BINARY(16)");
+		}
+		this.binaryUuid = binaryUuid;
+		this.name = name;
+		this.field = field;
+		this.id = id;
+		this.notNull = notNull;
+		this.primaryKey = primaryKey;
+		this.foreignKey = foreignKey;
+		this.accessor = new FieldAccessor(field);
+		this.relation = field.getType() == Ref.class ? new RelationMetadata(field, foreignKey) : null;
+
+		@SuppressWarnings("unchecked")
+		ColumnCodec<Object> codec = relation != null ? relation.getCodec()
+				: binaryUuid ? (ColumnCodec<Object>) (ColumnCodec<?>) CodecRegistry.BINARY_UUID
+				: CodecRegistry.resolve(field.getType());
+		this.codec = codec;
+		Class<?> type = field.getType();
+		if(type == long.class) {
+			this.reader = (rs, i, entity) -> accessor.setLong(entity, rs.getLong(i));
+			this.binder = (ps, i, entity) -> ps.setLong(i, accessor.getLong(entity));
+		}else if(type == int.class) {
+			this.reader = (rs, i, entity) -> accessor.setInt(entity, rs.getInt(i));
+			this.binder = (ps, i, entity) -> ps.setInt(i, accessor.getInt(entity));
+		}else if(type == double.class) {
+			this.reader = (rs, i, entity) -> accessor.setDouble(entity, rs.getDouble(i));
+			this.binder = (ps, i, entity) -> ps.setDouble(i, accessor.getDouble(entity));
+		}else if(type.isPrimitive()) {
+			this.reader = (rs, i, entity) -> {
+				Object value = codec.read(rs, i);
+				if(value != null) accessor.set(entity, value);
+			};
+			this.binder = (ps, i, entity) -> codec.bind(ps, i, accessor.get(entity));
+		}else {
+			this.reader = (rs, i, entity) -> accessor.set(entity, codec.read(rs, i));
+			this.binder = (ps, i, entity) -> bindValue(ps, i, accessor.get(entity));
+		}
+	}
+
+	/**
+	 * Reads this column of the current row into an entity.
+	 *
+	 * @param rs     The result set.
+	 * @param index  The index of the column in the result set.
+	 * @param entity The entity instance.
+	 * @throws SQLException if the column cannot be read.
+	 */
+	public void read(ResultSet rs, int index, Object entity) throws SQLException {
+		reader.read(rs, index, entity);
+	}
+
+	/**
+	 * Binds the value of this column of an entity as a statement parameter.
+	 *
+	 * @param ps     The statement.
+	 * @param index  The parameter index.
+	 * @param entity The entity instance.
+	 * @throws SQLException if the parameter cannot be bound.
+	 */
+	public void bind(PreparedStatement ps, int index, Object entity) throws SQLException {
+		binder.bind(ps, index, entity);
+	}
+
+	/**
+	 * Reads this column of the current row without assigning it.
+	 *
+	 * @param rs    The result set.
+	 * @param index The index of the column in the result set.
+	 * @return The value, or {@code null} if the column is SQL {@code NULL}.
+	 * @throws SQLException if the column cannot be read.
+	 */
+	public Object readValue(ResultSet rs, int index) throws SQLException {
+		return codec.read(rs, index);
+	}
+
+	/**
+	 * Binds a value of this column's type as a statement parameter.
+	 *
+	 * @param ps    The statement.
+	 * @param index The parameter index.
+	 * @param value The value, possibly {@code null}.
+	 * @throws SQLException if the parameter cannot be bound.
+	 */
+	public void bindValue(PreparedStatement ps, int index, Object value) throws SQLException {
+		if(value == null) ps.setObject(index, null);
+		else codec.bind(ps, index, value);
+	}
+
+	/**
+	 * Reads the value of this column from an entity.
+	 *
+	 * @param entity The entity instance.
+	 * @return The field value.
+	 */
+	public Object get(Object entity) {
+		return accessor.get(entity);
+	}
+
+	/**
+	 * Writes the value of this column into an entity.
+	 *
+	 * @param entity The entity instance.
+	 * @param value  The value to assign.
+	 */
+	public void set(Object entity, Object value) {
+		accessor.set(entity, value);
+	}
+
+	/**
+	 * Reads the value stored in this column for an entity: the field value, or the key of a relation.
+	 *
+	 * @param entity The entity instance.
+	 * @return The stored value.
+	 */
+	public Object getStored(Object entity) {
+		Object value = accessor.get(entity);
+		return relation != null ? relation.keyOf(value) : value;
+	}
+
+	/**
+	 * Writes a value read by {@link #getStored(Object)} into an entity, as an unloaded reference for a relation.
+	 *
+	 * @param entity The entity instance.
+	 * @param value  The stored value.
+	 */
+	public void setStored(Object entity, Object value) {
+		accessor.set(entity, relation != null && value != null ? Ref.read(value) : value);
+	}
+
+	/**
+	 * Wraps a value compared with or written to this column so the session binds it through the column's codec.
+	 *
+	 * @param value The value.
+	 * @return The parameter.
+	 */
+	public Object toParameter(Object value) {
+		return new Parameter(this, value);
+	}
+
+	/**
+	 * @return The codec converting the values of this column.
+	 */
+	public ColumnCodec<Object> getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Reads the value of a {@code long} column without boxing.
+	 *
+	 * @param entity The entity instance.
+	 * @return The field value.
+	 */
+	public long getLong(Object entity) {
+		return accessor.getLong(entity);
+	}
+
+	/**
+	 * Writes the value of a {@code long} column without boxing.
+	 *
+	 * @param entity The entity instance.
+	 * @param value  The value to assign.
+	 */
+	public void setLong(Object entity, long value) {
+		accessor.setLong(entity, value);
+	}
+
+	/**
+	 * Reads the value of an {@code int} column without boxing.
+	 *
+	 * @param entity The entity instance.
+	 * @return The field value.
+	 */
+	public int getInt(Object entity) {
+		return accessor.getInt(entity);
+	}
+
+	/**
+	 * Writes the value of an {@code int} column without boxing.
+	 *
+	 * @param entity The entity instance.
+	 * @param value  The value to assign.
+	 */
+	public void setInt(Object entity, int value) {
+		accessor.setInt(entity, value);
+	}
+
+	/**
+	 * Reads the value of a {@code double} column without boxing.
+	 *
+	 * @param entity The entity instance.
+	 * @return The field value.
+	 */
+	public double getDouble(Object entity) {
+		return accessor.getDouble(entity);
+	}
+
+	/**
+	 * Writes the value of a {@code double} column without boxing.
+	 *
+	 * @param entity The entity instance.
+	 * @param value  The value to assign.
+	 */
+	public void setDouble(Object entity, double value) {
+		accessor.setDouble(entity, value);
+	}
+
+	/**
+	 * @return The column name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The mapped field.
+	 */
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * @return {@code true} if this UUID column is stored as {@code BINARY(16)}.
+	 */
+	public boolean isBinaryUuid() {
+		return binaryUuid;
+	}
+
+	/**
+	 * @return The Java type of the mapped field.
+	 */
+	public Class<?> getType() {
+		return field.getType();
+	}
+
+	/**
+	 * @return {@code true} if this is the {@code @SQLId} column.
+	 */
+	public boolean isId() {
+		return id;
+	}
+
+	/**
+	 * @return {@code true} if the column is declared NOT NULL.
+	 */
+	public boolean isNotNull() {
+		return notNull;
+	}
+
+	/**
+	 * @return {@code true} if the column is annotated with {@code @SQLPrimaryKey}.
+	 */
+	public boolean isPrimaryKey() {
+		return primaryKey;
+	}
+
+	/**
+	 * @return The relation mapped by a {@code Ref} field, or {@code null} for a plain column.
+	 */
+	public RelationMetadata getRelation() {
+		return relation;
+	}
+
+	/**
+	 * @return The foreign key declaration, or {@code null} if there is none.
+	 */
+	public SQLForeignKey getForeignKey() {
+		return foreignKey;
+	}
+}
@@ -0,0 +1,460 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded pool of physical JDBC connections.
+ * <p>
+ * Connections handed out by {@link #borrow()} are proxies; calling {@link Connection#close()}
+ * on them returns the physical connection to the pool instead of closing it. The pool never
+ * opens more than {@link PoolSettings#getMaxSize()} connections, validates connections that
+ * sat idle longer than the validation bypass window, closes idle connections above the minimum
+ * size, and reports connections that stay borrowed longer than the leak threshold.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public class ConnectionPool {
+
+	private static final Logger LOGGER = Logger.getLogger("MySQLRepository");
+	private static final long HOUSEKEEPING_PERIOD = 30_000L;
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final PoolSettings settings;
+	private final String initSql;
+	private final Semaphore permits;
+	private final Deque<PhysicalConnection> idle = new ConcurrentLinkedDeque<>();
+	private final Set<Lease> borrowed = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger total = new AtomicInteger();
+	private final LongAdder borrows = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private volatile boolean closed;
+	private final ScheduledExecutorService housekeeper;
+
+	/**
+	 * Constructs a pool and opens its minimum number of connections.
+	 *
+	 * @param url      The JDBC url.
+	 * @param user     The username for the database.
+	 * @param password The password for the database user.
+	 * @param settings The pool settings.
+	 * @throws SQLException if the initial connections cannot be opened.
+	 */
+	public ConnectionPool(String url, String user, String password, PoolSettings settings) throws SQLException {
+		this(url, user, password, settings, null);
+	}
+
+	/**
+	 * Constructs a pool running a statement on every connection it opens, and opens its minimum number of connections.
+	 *
+	 * @param url      The JDBC url.
+	 * @param user     The username for the database.
+	 * @param password The password for the database user.
+	 * @param settings The pool settings.
+	 * @param initSql  The statement run on every new connection, typically {@code SET SESSION ...}, or {@code null}.
+	 * @throws SQLException if the initial connections cannot be opened.
+	 */
+	public ConnectionPool(String url, String user, String password, PoolSettings settings, String initSql) throws SQLException {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.settings = settings;
+		this.initSql = initSql;
+		this.permits = new Semaphore(settings.getMaxSize(), true);
+		fill();
+		long period = Math.min(HOUSEKEEPING_PERIOD, Math.max(1_000L, settings.getIdleTimeout()));
+		this.housekeeper = housekeeper("MySQLRepository-pool-housekeeper");
+		this.housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a single daemon thread running background tasks, to be shut down by its owner when it closes.
+	 *
+	 * @param name The name of the thread.
+	 * @return The executor.
+	 */
+	static ScheduledExecutorService housekeeper(String name) {
+		return Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, name);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Borrows a connection from the pool, waiting at most the configured borrow timeout.
+	 * <p>
+	 * The returned connection must be closed to give it back to the pool.
+	 * </p>
+	 *
+	 * @return A pooled {@link Connection}.
+	 * @throws SQLTimeoutException if no connection became available in time.
+	 * @throws SQLException        if the pool is closed or a new connection cannot be opened.
+	 */
+	public Connection borrow() throws SQLException {
+		if(closed) throw new SQLException("Connection pool is closed");
+		long started = System.nanoTime();
+		try {
+			boolean acquired = permits.tryAcquire(settings.getBorrowTimeout(), TimeUnit.MILLISECONDS);
+			recordWait(System.nanoTime() - started);
+			if(!acquired) {
+				timeouts.increment();
+				throw new SQLTimeoutException("Timed out after " + settings.getBorrowTimeout() + "ms waiting for a connection (active="
+						+ getActive() + ", idle=" + getIdle() + ", max=" + settings.getMaxSize() + ")");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection", e);
+		}
+
+		try {
+			PhysicalConnection physical = take();
+			Lease lease = new Lease(physical, settings.getLeakThreshold() > 0 ? new Exception("Connection borrowed here") : null);
+			borrowed.add(lease);
+			return lease.proxy;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private void recordWait(long nanos) {
+		borrows.increment();
+		waitNanos.add(nanos);
+		long max = maxWaitNanos.get();
+		while(nanos > max && !maxWaitNanos.compareAndSet(max, nanos)) max = maxWaitNanos.get();
+	}
+
+	private PhysicalConnection take() throws SQLException {
+		while(true) {
+			PhysicalConnection physical = idle.pollFirst();
+			if(physical != null) {
+				if(isUsable(physical)) return physical;
+				discard(physical);
+				continue;
+			}
+			int current = total.get();
+			if(current < settings.getMaxSize()) {
+				if(total.compareAndSet(current, current + 1)) {
+					return open();
+				}
+				continue;
+			}
+			// Every physical connection exists but one is on its way back to the idle deque.
+			Thread.onSpinWait();
+		}
+	}
+
+	private PhysicalConnection open() throws SQLException {
+		try {
+			Connection connection = DriverManager.getConnection(url, user, password);
+			if(initSql != null) {
+				try (Statement stmt = connection.createStatement()) {
+					stmt.execute(initSql);
+				} catch (SQLException | RuntimeException e) {
+					connection.close();
+					throw e;
+				}
+			}
+			try {
+				return new PhysicalConnection(connection);
+			} catch (SQLException | RuntimeException e) {
+				connection.close();
+				throw e;
+			}
+		} catch (SQLException | RuntimeException e) {
+			total.decrementAndGet();
+			throw e;
+		}
+	}
+
+	private boolean isUsable(PhysicalConnection physical) {
+		try {
+			if(physical.connection.isClosed()) return false;
+			if(System.currentTimeMillis() - physical.lastUsed <= settings.getValidationBypass()) return true;
+			return physical.connection.isValid((int) Math.max(1, settings.getBorrowTimeout() / 1000));
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void discard(PhysicalConnection physical) {
+		total.decrementAndGet();
+		try {
+			physical.connection.close();
+		} catch (SQLException ignored) {
+		}
+	}
+
+	private void release(Lease lease) {
+		borrowed.remove(lease);
+		PhysicalConnection physical = lease.physical;
+		boolean reusable = !closed;
+		try {
+			if(reusable && !physical.connection.isClosed()) {
+				if(!physical.connection.getAutoCommit()) {
+					physical.connection.rollback();
+					physical.connection.setAutoCommit(true);
+				}
+				if(lease.stateChanged) physical.restore();
+			}
+			reusable = reusable && !physical.connection.isClosed();
+		} catch (SQLException e) {
+			reusable = false;
+		}
+		if(reusable) {
+			physical.lastUsed = System.currentTimeMillis();
+			idle.offerFirst(physical);
+		} else {
+			discard(physical);
+		}
+		permits.release();
+	}
+
+	private void fill() throws SQLException {
+		while(!closed && total.get() < settings.getMinSize()) {
+			int current = total.get();
+			if(!total.compareAndSet(current, current + 1)) continue;
+			PhysicalConnection physical = open();
+			physical.lastUsed = System.currentTimeMillis();
+			idle.offerLast(physical);
+		}
+	}
+
+	private void housekeep() {
+		long now = System.currentTimeMillis();
+		Iterator<PhysicalConnection> it = idle.descendingIterator();
+		while(it.hasNext() && total.get() > settings.getMinSize()) {
+			PhysicalConnection physical = it.next();
+			if(now - physical.lastUsed > settings.getIdleTimeout() && idle.removeFirstOccurrence(physical)) {
+				discard(physical);
+			}
+		}
+
+		if(settings.getLeakThreshold() > 0) {
+			for(Lease lease : borrowed) {
+				if(!lease.reported && now - lease.borrowedAt > settings.getLeakThreshold()) {
+					lease.reported = true;
+					LOGGER.log(Level.WARNING, "Connection to " + url + " has been borrowed for " + (now - lease.borrowedAt)
+							+ "ms without being closed, possible leak", lease.origin);
+				}
+			}
+		}
+
+		try {
+			fill();
+		} catch (SQLException e) {
+			LOGGER.log(Level.WARNING, "Failed to refill connection pool for " + url + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Closes the pool, stops its housekeeping thread and closes every idle connection. Borrowed
+	 * connections are closed when they are returned.
+	 */
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+		PhysicalConnection physical;
+		while((physical = idle.pollFirst()) != null) {
+			discard(physical);
+		}
+	}
+
+	/**
+	 * Marks a borrowed connection as held once more, so it is only returned to the pool
+	 * after {@link Connection#close()} has been called a matching number of times.
+	 *
+	 * @param connection A connection obtained from {@link #borrow()}.
+	 * @return The same connection.
+	 */
+	static Connection retain(Connection connection) {
+		if(Proxy.isProxyClass(connection.getClass()) && Proxy.getInvocationHandler(connection) instanceof Lease lease) {
+			lease.holds.incrementAndGet();
+		}
+		return connection;
+	}
+
+	/**
+	 * @return The number of connections currently borrowed.
+	 */
+	public int getActive() {
+		return borrowed.size();
+	}
+
+	/**
+	 * @return The number of open connections waiting in the pool.
+	 */
+	public int getIdle() {
+		return idle.size();
+	}
+
+	/**
+	 * @return The number of physical connections opened by the pool.
+	 */
+	public int getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * @return An estimate of the number of threads waiting to borrow a connection.
+	 */
+	public int getWaiting() {
+		return permits.getQueueLength();
+	}
+
+	/**
+	 * @return The number of borrow attempts, timed out ones included.
+	 */
+	public long getBorrowCount() {
+		return borrows.sum();
+	}
+
+	/**
+	 * @return The number of borrow attempts that timed out.
+	 */
+	public long getBorrowTimeouts() {
+		return timeouts.sum();
+	}
+
+	/**
+	 * @return The mean time spent waiting for a connection, in milliseconds.
+	 */
+	public double getMeanBorrowWait() {
+		long count = borrows.sum();
+		return count == 0 ? 0.0 : waitNanos.sum() / 1_000_000.0 / count;
+	}
+
+	/**
+	 * @return The longest time spent waiting for a connection, in milliseconds.
+	 */
+	public double getMaxBorrowWait() {
+		return maxWaitNanos.get() / 1_000_000.0;
+	}
+
+	/**
+	 * Resets the borrow and wait statistics.
+	 */
+	public void resetStatistics() {
+		borrows.reset();
+		timeouts.reset();
+		waitNanos.reset();
+		maxWaitNanos.set(0L);
+	}
+
+	/**
+	 * @return The settings of this pool.
+	 */
+	public PoolSettings getSettings() {
+		return settings;
+	}
+
+	/**
+	 * @return {@code true} if the pool has been closed.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * A physical connection and the session state it was opened with, restored when a borrower changed it.
+	 */
+	private static final class PhysicalConnection {
+		private final Connection connection;
+		private final boolean readOnly;
+		private final int isolation;
+		private final String catalog;
+		private volatile long lastUsed;
+
+		private PhysicalConnection(Connection connection) throws SQLException {
+			this.connection = connection;
+			this.readOnly = connection.isReadOnly();
+			this.isolation = connection.getTransactionIsolation();
+			this.catalog = connection.getCatalog();
+		}
+
+		private void restore() throws SQLException {
+			if(connection.isReadOnly() != readOnly) connection.setReadOnly(readOnly);
+			if(connection.getTransactionIsolation() != isolation) connection.setTransactionIsolation(isolation);
+			if(catalog != null && !catalog.equals(connection.getCatalog())) connection.setCatalog(catalog);
+		}
+	}
+
+	private final class Lease implements InvocationHandler {
+		private final PhysicalConnection physical;
+		private final Exception origin;
+		private final long borrowedAt = System.currentTimeMillis();
+		private final AtomicInteger holds = new AtomicInteger(1);
+		private final Connection proxy;
+		private volatile boolean returned;
+		private volatile boolean reported;
+		private volatile boolean stateChanged;
+
+		private Lease(PhysicalConnection physical, Exception origin) {
+			this.physical = physical;
+			this.origin = origin;
+			this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if(!returned && holds.decrementAndGet() == 0) {
+						returned = true;
+						release(this);
+					}
+					return null;
+				case "isClosed":
+					if(returned) return true;
+					break;
+				case "setReadOnly":
+				case "setTransactionIsolation":
+				case "setCatalog":
+					if(returned) throw new SQLException("Connection has already been returned to the pool");
+					stateChanged = true;
+					break;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "PooledConnection[" + physical.connection + "]";
+				default:
+					if(returned) throw new SQLException("Connection has already been returned to the pool");
+			}
+			try {
+				return method.invoke(physical.connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
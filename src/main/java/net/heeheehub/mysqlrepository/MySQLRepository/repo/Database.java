@@ -5,7 +5,6 @@ import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 
@@ -13,7 +12,8 @@ import java.sql.SQLException;
  * Manages the connection to a MySQL database.
  * <p>
  * This class handles the establishment, management, and termination of a database connection.
- * It provides methods to connect, disconnect, and retrieve the current connection object.
+ * Connections are served by a bounded {@link ConnectionPool} which is started lazily on first use
+ * and caps the number of connections opened against the server.
  * </p>
  *
  * @author Naphon
@@ -21,6 +21,26 @@ import java.sql.SQLException;
  */
 public class Database {
 
+    /**
+     * The default number of rows sent per JDBC batch by the bulk session operations.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * The default number of asynchronous tasks allowed to wait for a connection.
+     */
+    public static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1000;
+
+    /**
+     * The default number of milliseconds between write-behind flushes.
+     */
+    public static final long DEFAULT_WRITE_BEHIND_INTERVAL = 5_000L;
+
+    /**
+     * The default number of rows fetched per round trip by streaming queries.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
     private String host;
     private int port;
     private String dbName;
@@ -28,6 +48,21 @@ public class Database {
     private String password;
     private Connection conn;
     private String url;
+    private PoolSettings poolSettings;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int asyncQueueCapacity = DEFAULT_ASYNC_QUEUE_CAPACITY;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private volatile SQLExecutor executor;
+    private final WriteBehindBuffer writeBehind = new WriteBehindBuffer(this, DEFAULT_WRITE_BEHIND_INTERVAL);
+    private final EntityCache cache = new EntityCache(EntityCache.DEFAULT_MAX_WEIGHT);
+    private final SchemaBootstrap schema = new SchemaBootstrap(this);
+    private final MainThreadGuard mainThreadGuard;
+    private final QueryMetrics metrics;
+    private final DatabaseMonitor monitor = new DatabaseMonitor(this);
+    private final ReplicaSet replicas = new ReplicaSet(this);
+    private volatile ConnectionPool pool;
+    private volatile String initSql;
+    private volatile int idIncrement = 1;
     /**
      * Constructs a new Database object with the specified connection details.
      *
@@ -38,28 +73,54 @@ public class Database {
      * @param password The password for the database user.
      */
     public Database(String host, int port, String dbName, String user, String password){
+        this(host, port, dbName, user, password, new PoolSettings());
+    }
+
+    /**
+     * Constructs a new Database object with the specified connection details and pool settings.
+     *
+     * @param host         The database host address.
+     * @param port         The database port number.
+     * @param dbName       The name of the database.
+     * @param user         The username for the database.
+     * @param password     The password for the database user.
+     * @param poolSettings The settings of the connection pool serving this database.
+     */
+    public Database(String host, int port, String dbName, String user, String password, PoolSettings poolSettings){
         this.host = host;
         this.port = port;
         this.dbName = dbName;
         this.user = user;
         this.password = password;
         this.conn = null;
-        this.url = "jdbc:mysql://" + host + ":" + port + "/" + dbName;
+        this.poolSettings = poolSettings;
+        this.mainThreadGuard = new MainThreadGuard(dbName);
+        this.metrics = new QueryMetrics(dbName, mainThreadGuard);
+        this.url = url(host, port, dbName);
+    }
+
+    /**
+     * Builds the JDBC url of a database for the MariaDB driver: batches are sent as bulk statements and
+     * prepared statements are prepared on the server and cached per connection. Streaming queries need
+     * no option, the driver streams a result set as soon as its statement has a fetch size.
+     */
+    static String url(String host, int port, String dbName) {
+        return "jdbc:mysql://" + host + ":" + port + "/" + dbName
+                + "?useBulkStmts=true&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=250";
     }
 
     /**
      * Establishes a connection to the database.
      * <p>
-     * This method attempts to connect to the MySQL database using the provided
-     * credentials. It logs a success message to the console upon a successful
+     * This method starts the connection pool and checks that a connection can be borrowed
+     * using the provided credentials. It logs a success message to the console upon a successful
      * connection.
      * </p>
      *
      * @throws RuntimeException if the connection fails.
      */
     public void connect(){
-        try {
-            this.conn = DriverManager.getConnection(url, user, password);
+        try (Connection test = getConnection()) {
             Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aSQLRepo&7] &aConnected to MySQL successfully!"));
         }catch (SQLException ex){
             throw new RuntimeException("Failed to connect to the database (" + dbName + "): " + ex.getMessage(), ex);
@@ -69,33 +130,87 @@ public class Database {
     /**
      * Closes the database connection.
      * <p>
-     * This method safely closes the active connection and logs a disconnection message.
+     * This method returns the legacy connection, shuts the connection pool down and logs a disconnection message.
      * </p>
      *
      * @throws RuntimeException if an error occurs while closing the connection.
      */
-    public void disconnect(){
+    public synchronized void disconnect(){
         try {
-            conn.close();
+            if(conn != null) {
+                conn.close();
+                conn = null;
+            }
+            writeBehind.shutdown();
+            if(executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+            if(pool != null) {
+                pool.close();
+                pool = null;
+            }
+            replicas.close();
+            monitor.unregister();
             Bukkit.getConsoleSender().sendMessage(ChatColor.translateAlternateColorCodes('&', "&7[&aSQLRepo&7] &cDisconnected from " + dbName + "!"));
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
         }
     }
+
+    /**
+     * Borrows a connection from the connection pool, starting the pool if needed.
+     * <p>
+     * Closing the returned connection gives it back to the pool. Starting the pool registers the
+     * {@link DatabaseMXBean} of this database, so databases that are never explicitly connected are monitored too.
+     * </p>
+     *
+     * @return A pooled {@link Connection}.
+     * @throws SQLException if the pool cannot be started or no connection became available in time.
+     */
+    public Connection getConnection() throws SQLException {
+        ConnectionPool pool = this.pool;
+        if(pool == null) {
+            synchronized (this) {
+                if(this.pool == null) {
+                    this.pool = new ConnectionPool(url, user, password, poolSettings, initSql);
+                    monitor.register();
+                }
+                pool = this.pool;
+            }
+        }
+        return pool.borrow();
+    }
     
     /**
-     * Creates and returns a new database connection instance without closing the old one.
+     * Borrows a connection for a read, from a replica in rotation when the database has any.
+     * <p>
+     * Falls back to {@link #getConnection()} when no replica is available. Closing the returned
+     * connection gives it back to its pool.
+     * </p>
+     *
+     * @return A pooled {@link Connection}.
+     * @throws SQLException if no connection of the primary became available in time.
+     * @see ReplicaSet
+     */
+    public Connection getReadConnection() throws SQLException {
+        Connection conn = replicas.borrow();
+        return conn != null ? conn : getConnection();
+    }
+
+    /**
+     * Borrows a connection from the connection pool.
      * <p>
      * This is useful for multi-threaded applications where each thread needs its own
-     * dedicated connection.
+     * connection. The connection must be closed to give it back to the pool.
      * </p>
      *
-     * @return A new {@link Connection} object. Returns {@code null} if an error occurs.
+     * @return A pooled {@link Connection} object. Returns {@code null} if an error occurs.
      */
     public Connection newConnection() {
     	Connection conn = null;
 		try {
-			conn = DriverManager.getConnection(url, user, password);
+			conn = getConnection();
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -103,13 +218,204 @@ public class Database {
     }
 
     /**
-     * Retrieves the current database connection.
+     * Retrieves the long-lived connection of this database, borrowing it from the pool on first use.
+     * <p>
+     * The connection stays borrowed until {@link #disconnect()} is called.
+     * </p>
      *
      * @return The active {@link Connection} object.
+     * @deprecated Use {@link #getConnection()} and close the connection when done.
      */
-    public Connection getConn() {
+    @Deprecated
+    public synchronized Connection getConn() {
+        if(conn == null) {
+            conn = newConnection();
+        }
         return conn;
     }
+
+    /**
+     * Sets the statement run on every connection the pool opens.
+     *
+     * @param initSql The statement, or {@code null} for none.
+     * @throws IllegalStateException if the pool has already been started.
+     */
+    synchronized void setInitSql(String initSql) {
+        if(pool != null) throw new IllegalStateException("The pool of " + dbName + " has already been started");
+        this.initSql = initSql;
+    }
+
+    String getInitSql() {
+        return initSql;
+    }
+
+    /**
+     * Sets the {@code auto_increment_increment} the connections of this database run with.
+     */
+    void setIdIncrement(int idIncrement) {
+        this.idIncrement = idIncrement;
+    }
+
+    /**
+     * @return The {@code auto_increment_increment} of the connections of this database, {@code 1} unless it is a shard.
+     */
+    int getIdIncrement() {
+        return idIncrement;
+    }
+
+    /**
+     * Retrieves the connection pool serving this database.
+     *
+     * @return The {@link ConnectionPool}, or {@code null} if it has not been started yet.
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Retrieves the settings of the connection pool.
+     *
+     * @return The {@link PoolSettings}.
+     */
+    public PoolSettings getPoolSettings() {
+        return poolSettings;
+    }
+
+    /**
+     * Retrieves the executor running asynchronous work against this database, creating it on first use.
+     * <p>
+     * It runs at most as many tasks at once as the pool has connections.
+     * </p>
+     *
+     * @return The {@link SQLExecutor}.
+     */
+    public SQLExecutor getExecutor() {
+        SQLExecutor executor = this.executor;
+        if(executor == null) {
+            synchronized (this) {
+                if(this.executor == null) {
+                    this.executor = new SQLExecutor(poolSettings.getMaxSize(), asyncQueueCapacity);
+                }
+                executor = this.executor;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Retrieves the write-behind buffer of this database. Entity classes registered on it are
+     * written in periodic batches instead of on every {@link SQLSession#update(Object)}.
+     *
+     * @return The {@link WriteBehindBuffer}.
+     */
+    public WriteBehindBuffer getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Retrieves the second-level cache shared by every session of this database.
+     *
+     * @return The {@link EntityCache}.
+     */
+    public EntityCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Retrieves the schema bootstrap of this database. Entity classes registered on it get their
+     * tables and columns created ahead of time instead of on the first failed write.
+     *
+     * @return The {@link SchemaBootstrap}.
+     */
+    public SchemaBootstrap getSchema() {
+        return schema;
+    }
+
+    /**
+     * Retrieves the statement metrics of this database, recorded by every session.
+     *
+     * @return The {@link QueryMetrics}.
+     */
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Retrieves the read replicas of this database.
+     *
+     * @return The {@link ReplicaSet}, empty unless replicas were added.
+     */
+    public ReplicaSet getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Retrieves the guard against statements run on the server thread, shared by every session.
+     *
+     * @return The {@link MainThreadGuard}.
+     */
+    public MainThreadGuard getMainThreadGuard() {
+        return mainThreadGuard;
+    }
+
+    /**
+     * Retrieves the number of asynchronous tasks allowed to wait for a connection.
+     *
+     * @return The queue capacity.
+     */
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    /**
+     * Sets the number of asynchronous tasks allowed to wait for a connection.
+     * Takes effect if the executor has not been started yet.
+     *
+     * @param asyncQueueCapacity The queue capacity.
+     */
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+        if(asyncQueueCapacity < 0) throw new IllegalArgumentException("Queue capacity cannot be negative");
+        this.asyncQueueCapacity = asyncQueueCapacity;
+    }
+
+    /**
+     * Retrieves the number of rows fetched per round trip by {@link SQLSession#stream(Class, String, boolean)}.
+     *
+     * @return The fetch size.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the number of rows fetched per round trip by streaming queries.
+     *
+     * @param fetchSize The fetch size, at least 1.
+     */
+    public void setFetchSize(int fetchSize) {
+        if(fetchSize < 1) throw new IllegalArgumentException("Fetch size must be at least 1");
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Retrieves the number of rows sent per JDBC batch by {@link SQLSession#persistAll(java.util.Collection)}
+     * and the other bulk operations.
+     *
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of rows sent per JDBC batch.
+     *
+     * @param batchSize The batch size, at least 1.
+     */
+    public void setBatchSize(int batchSize) {
+        if(batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.batchSize = batchSize;
+    }
     /**
      * Retrieves the database host.
      *
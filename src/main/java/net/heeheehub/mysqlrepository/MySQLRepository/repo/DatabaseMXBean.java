@@ -0,0 +1,132 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.List;
+
+/**
+ * JMX view of one {@link Database}: its connection pool, its {@link QueryMetrics} and its {@link MainThreadGuard}.
+ * <p>
+ * An instance is registered on the platform MBean server as
+ * {@code net.heeheehub.mysqlrepository:type=Database,name=<dbName>} while the database is connected,
+ * so the metrics can be read with JConsole, VisualVM or any JMX exporter.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public interface DatabaseMXBean {
+
+	/**
+	 * @return The database name.
+	 */
+	String getName();
+
+	/**
+	 * @return The number of borrowed connections.
+	 */
+	int getActiveConnections();
+
+	/**
+	 * @return The number of idle pooled connections.
+	 */
+	int getIdleConnections();
+
+	/**
+	 * @return The number of open physical connections.
+	 */
+	int getTotalConnections();
+
+	/**
+	 * @return An estimate of the number of threads waiting for a connection.
+	 */
+	int getWaitingThreads();
+
+	/**
+	 * @return The number of connection borrows.
+	 */
+	long getBorrowCount();
+
+	/**
+	 * @return The number of connection borrows that timed out.
+	 */
+	long getBorrowTimeouts();
+
+	/**
+	 * @return The mean time spent waiting for a connection, in milliseconds.
+	 */
+	double getMeanBorrowWaitMillis();
+
+	/**
+	 * @return The longest time spent waiting for a connection, in milliseconds.
+	 */
+	double getMaxBorrowWaitMillis();
+
+	/**
+	 * @return The number of statements recorded.
+	 */
+	long getStatementCount();
+
+	/**
+	 * @return The number of statements that failed.
+	 */
+	long getErrorCount();
+
+	/**
+	 * @return The number of slow queries.
+	 */
+	long getSlowQueryCount();
+
+	/**
+	 * @return The statistics of every entity and operation.
+	 */
+	List<QueryMetrics.OperationStats> getOperations();
+
+	/**
+	 * @return The most recent slow queries, newest first.
+	 */
+	List<QueryMetrics.SlowQuery> getSlowQueries();
+
+	/**
+	 * @return {@code true} if statements are recorded.
+	 */
+	boolean isMetricsEnabled();
+
+	/**
+	 * @param enabled {@code true} to record statements.
+	 */
+	void setMetricsEnabled(boolean enabled);
+
+	/**
+	 * @return The slow-query threshold in milliseconds, {@code 0} if the slow-query log is disabled.
+	 */
+	long getSlowQueryThresholdMillis();
+
+	/**
+	 * @param millis The slow-query threshold in milliseconds, or {@code 0} to disable the slow-query log.
+	 */
+	void setSlowQueryThresholdMillis(long millis);
+
+	/**
+	 * @return What the main-thread guard does with statements run on the server thread.
+	 */
+	MainThreadGuard.Mode getMainThreadMode();
+
+	/**
+	 * @param mode What the main-thread guard does with statements run on the server thread.
+	 */
+	void setMainThreadMode(MainThreadGuard.Mode mode);
+
+	/**
+	 * @return The number of statements run or refused on the server thread.
+	 */
+	long getMainThreadBlockedCount();
+
+	/**
+	 * @return The call sites that blocked the server thread, by descending blocked milliseconds per minute.
+	 */
+	List<MainThreadGuard.Offender> getMainThreadOffenders();
+
+	/**
+	 * Discards the recorded statement metrics, the pool wait statistics and the main-thread report.
+	 */
+	void resetMetrics();
+}
@@ -0,0 +1,179 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The {@link DatabaseMXBean} of a {@link Database}. Pool values read {@code 0} while the pool is not started.
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+final class DatabaseMonitor implements DatabaseMXBean {
+
+	private static final Logger LOGGER = Logger.getLogger("MySQLRepository");
+
+	private final Database database;
+	private ObjectName name;
+
+	DatabaseMonitor(Database database) {
+		this.database = database;
+	}
+
+	/**
+	 * Registers this bean on the platform MBean server, replacing a bean left by a previous registration.
+	 */
+	synchronized void register() {
+		if(name != null) return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("net.heeheehub.mysqlrepository:type=Database,name=" + ObjectName.quote(database.getDbName()));
+			if(server.isRegistered(objectName)) server.unregisterMBean(objectName);
+			server.registerMBean(this, objectName);
+			name = objectName;
+		} catch (JMException e) {
+			LOGGER.log(Level.WARNING, "Failed to register the JMX bean of " + database.getDbName(), e);
+		}
+	}
+
+	synchronized void unregister() {
+		if(name == null) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException ignored) {
+		}
+		name = null;
+	}
+
+	@Override
+	public String getName() {
+		return database.getDbName();
+	}
+
+	@Override
+	public int getActiveConnections() {
+		ConnectionPool pool = database.getPool();
+		return pool == null ? 0 : pool.getActive();
+	}
+
+	@Override
+	public int getIdleConnections() {
+		ConnectionPool pool = database.getPool();
+		return pool == null ? 0 : pool.getIdle();
+	}
+
+	@Override
+	public int getTotalConnections() {
+		ConnectionPool pool = database.getPool();
+		return pool == null ? 0 : pool.getTotal();
+	}
+
+	@Override
+	public int getWaitingThreads() {
+		ConnectionPool pool = database.getPool();
+		return pool == null ? 0 : pool.getWaiting();
+	}
+
+	@Override
+	public long getBorrowCount() {
+		ConnectionPool pool = database.getPool();
+		return pool == null ? 0L : pool.getBorrowCount();
+	}
+
+	@Override
+	public long getBorrowTimeouts() {
+		ConnectionPool pool = database.getPool();
+		return pool == null ? 0L : pool.getBorrowTimeouts();
+	}
+
+	@Override
+	public double getMeanBorrowWaitMillis() {
+		ConnectionPool pool = database.getPool();
+		return pool == null ? 0.0 : pool.getMeanBorrowWait();
+	}
+
+	@Override
+	public double getMaxBorrowWaitMillis() {
+		ConnectionPool pool = database.getPool();
+		return pool == null ? 0.0 : pool.getMaxBorrowWait();
+	}
+
+	@Override
+	public long getStatementCount() {
+		return database.getMetrics().getStatementCount();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return database.getMetrics().getErrorCount();
+	}
+
+	@Override
+	public long getSlowQueryCount() {
+		return database.getMetrics().getSlowQueryCount();
+	}
+
+	@Override
+	public List<QueryMetrics.OperationStats> getOperations() {
+		return database.getMetrics().getOperations();
+	}
+
+	@Override
+	public List<QueryMetrics.SlowQuery> getSlowQueries() {
+		return database.getMetrics().getSlowQueries();
+	}
+
+	@Override
+	public boolean isMetricsEnabled() {
+		return database.getMetrics().isEnabled();
+	}
+
+	@Override
+	public void setMetricsEnabled(boolean enabled) {
+		database.getMetrics().setEnabled(enabled);
+	}
+
+	@Override
+	public long getSlowQueryThresholdMillis() {
+		return database.getMetrics().getSlowQueryThreshold();
+	}
+
+	@Override
+	public void setSlowQueryThresholdMillis(long millis) {
+		database.getMetrics().setSlowQueryThreshold(millis);
+	}
+
+	@Override
+	public MainThreadGuard.Mode getMainThreadMode() {
+		return database.getMainThreadGuard().getMode();
+	}
+
+	@Override
+	public void setMainThreadMode(MainThreadGuard.Mode mode) {
+		database.getMainThreadGuard().setMode(mode);
+	}
+
+	@Override
+	public long getMainThreadBlockedCount() {
+		return database.getMainThreadGuard().getBlockedCount();
+	}
+
+	@Override
+	public List<MainThreadGuard.Offender> getMainThreadOffenders() {
+		return database.getMainThreadGuard().getReport();
+	}
+
+	@Override
+	public void resetMetrics() {
+		database.getMetrics().reset();
+		database.getMainThreadGuard().reset();
+		ConnectionPool pool = database.getPool();
+		if(pool != null) pool.resetStatistics();
+	}
+}
@@ -0,0 +1,315 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Second-level entity cache shared by every {@link SQLSession} of a {@link Database}.
+ * <p>
+ * Only classes declared with {@code @MySQLField(cached = true)} are cached. Each class gets its own
+ * least-recently-used region bounded by {@code cacheMaxEntries} and {@code cacheTtl}, and the cache as
+ * a whole is bounded by an estimated weight in bytes, enforced by evicting the least recently used
+ * entries across all regions. Entries hold copies of the column values made by
+ * {@link ColumnCodec#copy(Object)}, and every hit builds a new instance from fresh copies, so sessions never
+ * share mutable state through the cache as long as the codecs of mutable types copy them.
+ * </p>
+ * <p>
+ * Sessions invalidate entries when they update or delete an entity, before the surrounding
+ * transaction commits. A concurrent reader may cache the old row again until the TTL expires.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public class EntityCache {
+
+	/**
+	 * The default maximum estimated weight of the cache in bytes.
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+	private static final class Entry {
+		private final Object[] values;
+		private final long expiresAt;
+		private final long weight;
+		private volatile long usedAt;
+
+		private Entry(Object[] values, long expiresAt, long weight, long usedAt) {
+			this.values = values;
+			this.expiresAt = expiresAt;
+			this.weight = weight;
+			this.usedAt = usedAt;
+		}
+	}
+
+	private final Map<Class<?>, Region> regions = new ConcurrentHashMap<>();
+	private final AtomicLong weight = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+	private volatile long maxWeight;
+
+	/**
+	 * Constructs a cache.
+	 *
+	 * @param maxWeight The maximum estimated weight in bytes.
+	 */
+	public EntityCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * Builds a new instance from the cached state of an entity.
+	 *
+	 * @param meta The entity metadata.
+	 * @param id   The entity ID.
+	 * @return A new instance, or {@code null} on a miss or if the class is not cached.
+	 */
+	public Object get(EntityMetadata meta, long id) {
+		if(!meta.isCached()) return null;
+		Entry entry = region(meta).get(id);
+		if(entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		Object instance = meta.newInstance();
+		List<ColumnMetadata> columns = meta.getColumns();
+		for(int i = 0; i < columns.size(); i++) {
+			ColumnMetadata column = columns.get(i);
+			column.setStored(instance, copy(column, entry.values[i]));
+		}
+		return instance;
+	}
+
+	/**
+	 * Stores a copy of the state of an entity.
+	 *
+	 * @param meta   The entity metadata.
+	 * @param id     The entity ID.
+	 * @param entity The entity.
+	 */
+	public void put(EntityMetadata meta, long id, Object entity) {
+		if(!meta.isCached()) return;
+		List<ColumnMetadata> columns = meta.getColumns();
+		Object[] values = new Object[columns.size()];
+		long entryWeight = 32L + 8L * values.length;
+		for(int i = 0; i < values.length; i++) {
+			ColumnMetadata column = columns.get(i);
+			values[i] = copy(column, column.getStored(entity));
+			entryWeight += weigh(values[i]);
+		}
+		long now = System.nanoTime();
+		region(meta).put(id, new Entry(values, now + meta.getCacheTtl() * 1_000_000L, entryWeight, now));
+		if(weight.get() > maxWeight) {
+			shrink();
+		}
+	}
+
+	/**
+	 * Evicts the least recently used entries of every region until the cache fits its weight bound,
+	 * so a class written often cannot keep the entries of other classes in the cache at its own expense.
+	 */
+	private void shrink() {
+		while(weight.get() > maxWeight) {
+			Region oldest = null;
+			long oldestUse = 0L;
+			for(Region region : regions.values()) {
+				Entry eldest = region.eldest();
+				if(eldest != null && (oldest == null || eldest.usedAt - oldestUse < 0)) {
+					oldest = region;
+					oldestUse = eldest.usedAt;
+				}
+			}
+			if(oldest == null) return;
+			oldest.evictOldest();
+		}
+	}
+
+	/**
+	 * Removes an entity from the cache.
+	 *
+	 * @param clazz The entity class.
+	 * @param id    The entity ID.
+	 */
+	public void invalidate(Class<?> clazz, long id) {
+		Region region = regions.get(clazz);
+		if(region != null && region.remove(id)) invalidations.increment();
+	}
+
+	/**
+	 * Removes every entity of a class from the cache.
+	 *
+	 * @param clazz The entity class.
+	 */
+	public void invalidateAll(Class<?> clazz) {
+		Region region = regions.get(clazz);
+		if(region != null) region.clear();
+	}
+
+	/**
+	 * Removes every entity from the cache.
+	 */
+	public void clear() {
+		for(Region region : regions.values()) region.clear();
+	}
+
+	private Region region(EntityMetadata meta) {
+		return regions.computeIfAbsent(meta.getType(), k -> new Region(meta.getCacheMaxEntries()));
+	}
+
+	private static Object copy(ColumnMetadata column, Object value) {
+		return value == null ? null : column.getCodec().copy(value);
+	}
+
+	/**
+	 * Estimates the heap bytes of a column value.
+	 */
+	static long weigh(Object value) {
+		if(value instanceof String s) return 40L + 2L * s.length();
+		if(value instanceof byte[] bytes) return 16L + bytes.length;
+		return 16L;
+	}
+
+	/**
+	 * @param maxWeight The maximum estimated weight in bytes.
+	 */
+	public void setMaxWeight(long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * @return The maximum estimated weight in bytes.
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @return The current estimated weight in bytes.
+	 */
+	public long getWeight() {
+		return weight.get();
+	}
+
+	/**
+	 * @return The number of cached entities.
+	 */
+	public int getSize() {
+		int size = 0;
+		for(Region region : regions.values()) size += region.size();
+		return size;
+	}
+
+	/**
+	 * @return The number of lookups served from the cache.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of lookups that missed the cache.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The share of lookups served from the cache, between 0 and 1.
+	 */
+	public double getHitRatio() {
+		long hits = this.hits.sum();
+		long total = hits + misses.sum();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * @return The number of entries removed to respect the size and weight bounds.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return The number of entries dropped because their TTL expired.
+	 */
+	public long getExpirations() {
+		return expirations.sum();
+	}
+
+	/**
+	 * @return The number of entries removed because the entity was written.
+	 */
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	private final class Region {
+		private final int maxEntries;
+		private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+		private Region(int maxEntries) {
+			this.maxEntries = maxEntries;
+		}
+
+		private synchronized Entry get(long id) {
+			Entry entry = entries.get(id);
+			if(entry == null) return null;
+			long now = System.nanoTime();
+			if(now - entry.expiresAt > 0) {
+				entries.remove(id);
+				weight.addAndGet(-entry.weight);
+				expirations.increment();
+				return null;
+			}
+			entry.usedAt = now;
+			return entry;
+		}
+
+		private synchronized void put(long id, Entry entry) {
+			Entry old = entries.put(id, entry);
+			weight.addAndGet(entry.weight - (old != null ? old.weight : 0));
+			while(entries.size() > maxEntries) evictEldest();
+		}
+
+		private synchronized boolean remove(long id) {
+			Entry old = entries.remove(id);
+			if(old == null) return false;
+			weight.addAndGet(-old.weight);
+			return true;
+		}
+
+		private synchronized Entry eldest() {
+			return entries.isEmpty() ? null : entries.values().iterator().next();
+		}
+
+		private synchronized void evictOldest() {
+			if(!entries.isEmpty()) evictEldest();
+		}
+
+		private synchronized void clear() {
+			for(Entry entry : entries.values()) weight.addAndGet(-entry.weight);
+			entries.clear();
+		}
+
+		private synchronized int size() {
+			return entries.size();
+		}
+
+		private void evictEldest() {
+			Iterator<Entry> it = entries.values().iterator();
+			Entry eldest = it.next();
+			it.remove();
+			weight.addAndGet(-eldest.weight);
+			evictions.increment();
+		}
+	}
+}
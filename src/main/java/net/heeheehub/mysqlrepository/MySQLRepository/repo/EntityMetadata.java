@@ -0,0 +1,454 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLBinaryUuid;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLForeignKey;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLIndex;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLPrimaryKey;
+
+/**
+ * Immutable mapping model of an entity class.
+ * <p>
+ * The annotations of a class are scanned once, on first use, and the result is cached for
+ * the lifetime of the class. It holds the table name, the ordered column list, the id column,
+ * the constraints declared on each column, the relations and the declared indexes.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class EntityMetadata {
+
+	private static final ClassValue<EntityMetadata> CACHE = new ClassValue<>() {
+		@Override
+		protected EntityMetadata computeValue(Class<?> type) {
+			return new EntityMetadata(type);
+		}
+	};
+
+	private final Class<?> type;
+	private final String tableName;
+	private final boolean autoMapped;
+	private final boolean cached;
+	private final long cacheTtl;
+	private final int cacheMaxEntries;
+	private final List<ColumnMetadata> columns;
+	private final List<ColumnMetadata> nonIdColumns;
+	private final List<ColumnMetadata> relationColumns;
+	private final Map<String, ColumnMetadata> columnsByName;
+	private final ColumnMetadata idColumn;
+	private final List<IndexMetadata> indexes;
+	private final Constructor<?> constructor;
+	private final MethodHandle constructorHandle;
+	private final String selectList;
+	private final String aliasedSelectList;
+	private final String insertSql;
+	private final String updateSql;
+	private final String selectByIdSql;
+	private final String deleteByIdSql;
+	private final long fullUpdateMask;
+	private final Map<Long, String> partialUpdateSql = new ConcurrentHashMap<>();
+	private final Map<String, String> selectInSql = new ConcurrentHashMap<>();
+	private final Map<String, String> querySql = new ConcurrentHashMap<>();
+	private final Map<String, String> upsertSql = new ConcurrentHashMap<>();
+
+	private EntityMetadata(Class<?> type) {
+		if(!type.isAnnotationPresent(MySQLField.class)) throw new RuntimeException("No such annotation declared for class " + type.getName());
+		MySQLField msF = type.getAnnotation(MySQLField.class);
+		this.type = type;
+		this.tableName = msF.value();
+		this.autoMapped = msF.autoMapped();
+		this.cached = msF.cached();
+		this.cacheTtl = msF.cacheTtl();
+		this.cacheMaxEntries = msF.cacheMaxEntries();
+
+		List<ColumnMetadata> columns = new ArrayList<>();
+		List<ColumnMetadata> nonIdColumns = new ArrayList<>();
+		List<ColumnMetadata> relationColumns = new ArrayList<>();
+		Map<String, ColumnMetadata> columnsByName = new HashMap<>();
+		ColumnMetadata idColumn = null;
+		Map<String, List<Map.Entry<SQLIndex, ColumnMetadata>>> indexMembers = new LinkedHashMap<>();
+
+		for(Field f : type.getDeclaredFields()) {
+			if(Modifier.isStatic(f.getModifiers()) || f.isSynthetic()) continue;
+			boolean isId = f.isAnnotationPresent(SQLId.class);
+			String columnName;
+			boolean isNotNull = false;
+
+			if(f.isAnnotationPresent(MySQLColumn.class)) {
+				MySQLColumn msC = f.getAnnotation(MySQLColumn.class);
+				columnName = msC.value();
+				isNotNull = msC.isNotNull();
+			}else if(isId || autoMapped) {
+				columnName = f.getName();
+			}else {
+				continue;
+			}
+
+			boolean binaryUuid = f.isAnnotationPresent(SQLBinaryUuid.class) || (msF.binaryUuids() && f.getType() == UUID.class);
+			ColumnMetadata column = new ColumnMetadata(columnName, f, isId, isNotNull,
+					f.isAnnotationPresent(SQLPrimaryKey.class), f.getAnnotation(SQLForeignKey.class), binaryUuid);
+			if(column.getCodec() == CodecRegistry.FALLBACK && !f.getType().isAssignableFrom(String.class)) {
+				throw new IllegalArgumentException("Field " + type.getSimpleName() + "." + f.getName() + " of type " + f.getType().getName()
+						+ " has no column codec and would be read back as text. Register one with CodecRegistry.register("
+						+ f.getType().getSimpleName() + ".class, ...) before " + type.getSimpleName() + " is first used.");
+			}
+			if(isId) {
+				if(idColumn != null) {
+					throw new RuntimeException("Table " + tableName + " can only have one SQLId column!");
+				}
+				idColumn = column;
+			}else {
+				nonIdColumns.add(column);
+			}
+			columns.add(column);
+			if(column.getRelation() != null) relationColumns.add(column);
+			columnsByName.put(columnName, column);
+			for(SQLIndex index : f.getAnnotationsByType(SQLIndex.class)) {
+				String name = !index.name().isEmpty() ? index.name()
+						: (index.unique() ? "uk_" : "idx_") + tableName + "_" + columnName;
+				indexMembers.computeIfAbsent(name, k -> new ArrayList<>()).add(Map.entry(index, column));
+			}
+		}
+
+		List<IndexMetadata> indexes = new ArrayList<>();
+		for(Map.Entry<String, List<Map.Entry<SQLIndex, ColumnMetadata>>> index : indexMembers.entrySet()) {
+			List<Map.Entry<SQLIndex, ColumnMetadata>> members = index.getValue();
+			members.sort(Comparator.comparingInt(member -> member.getKey().order()));
+			List<ColumnMetadata> indexColumns = new ArrayList<>();
+			List<Integer> prefixLengths = new ArrayList<>();
+			boolean unique = false;
+			for(Map.Entry<SQLIndex, ColumnMetadata> member : members) {
+				indexColumns.add(member.getValue());
+				prefixLengths.add(member.getKey().prefixLength());
+				unique |= member.getKey().unique();
+			}
+			indexes.add(new IndexMetadata(index.getKey(), unique, indexColumns, prefixLengths));
+		}
+
+		this.columns = Collections.unmodifiableList(columns);
+		this.nonIdColumns = Collections.unmodifiableList(nonIdColumns);
+		this.relationColumns = Collections.unmodifiableList(relationColumns);
+		this.columnsByName = Collections.unmodifiableMap(columnsByName);
+		this.idColumn = idColumn;
+		this.indexes = Collections.unmodifiableList(indexes);
+		this.fullUpdateMask = nonIdColumns.size() >= 64 ? -1L : (1L << nonIdColumns.size()) - 1;
+		this.constructor = findConstructor(type);
+		this.constructorHandle = constructor != null ? FieldAccessor.constructor(constructor) : null;
+		this.selectList = joinColumns(columns, "`, `", "`", "`");
+		this.aliasedSelectList = joinColumns(columns, "`, obj.`", "obj.`", "`");
+		this.insertSql = "INSERT INTO `" + tableName + "` (" + joinColumns(columns, "`, `", "`", "`")
+				+ ") VALUES (" + "?, ".repeat(columns.size()).replaceFirst(", $", "") + ")";
+		if(idColumn != null) {
+			this.updateSql = "UPDATE `" + tableName + "` SET " + joinColumns(nonIdColumns, "` = ?, `", "`", "` = ?")
+					+ " WHERE `" + idColumn.getName() + "` = ?";
+			this.selectByIdSql = "SELECT " + selectList + " FROM `" + tableName + "` WHERE `" + idColumn.getName() + "` = ? LIMIT 1";
+			this.deleteByIdSql = "DELETE FROM `" + tableName + "` WHERE `" + idColumn.getName() + "` = ?";
+		}else {
+			this.updateSql = null;
+			this.selectByIdSql = null;
+			this.deleteByIdSql = null;
+		}
+	}
+
+	private static Constructor<?> findConstructor(Class<?> type) {
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return constructor;
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static String joinColumns(List<ColumnMetadata> columns, String separator, String prefix, String suffix) {
+		StringBuilder builder = new StringBuilder(prefix);
+		for(int i = 0; i < columns.size(); i++) {
+			if(i > 0) builder.append(separator);
+			builder.append(columns.get(i).getName());
+		}
+		return builder.append(suffix).toString();
+	}
+
+	/**
+	 * Retrieves the metadata of an entity class, building it on first use.
+	 *
+	 * @param clazz The entity class, annotated with {@code @MySQLField}.
+	 * @return The cached {@link EntityMetadata}.
+	 * @throws RuntimeException if the class has no {@code @MySQLField} annotation or several {@code @SQLId} fields.
+	 */
+	public static EntityMetadata of(Class<?> clazz) {
+		return CACHE.get(clazz);
+	}
+
+	/**
+	 * Creates a new, empty instance of the entity through its no-argument constructor.
+	 *
+	 * @return The new instance.
+	 * @throws IllegalStateException if the class has no no-argument constructor or it fails.
+	 */
+	public Object newInstance() {
+		if(constructor == null) throw new IllegalStateException("Class " + type.getSimpleName() + " has no no-argument constructor");
+		try {
+			if(constructorHandle != null) return (Object) constructorHandle.invokeExact();
+			return constructor.newInstance();
+		} catch (Throwable e) {
+			throw new IllegalStateException("Failed to instantiate " + type.getSimpleName(), e);
+		}
+	}
+
+	/**
+	 * Reads the id of an entity.
+	 *
+	 * @param entity The entity instance.
+	 * @return The id, or {@code null} if it is unset or the class has no {@code @SQLId} field.
+	 */
+	public Long getId(Object entity) {
+		if(idColumn == null) return null;
+		return (Long) idColumn.get(entity);
+	}
+
+	/**
+	 * Retrieves the id column, failing if the class declares none.
+	 *
+	 * @return The {@code @SQLId} column.
+	 * @throws RuntimeException if the class has no {@code @SQLId} field.
+	 */
+	public ColumnMetadata requireIdColumn() {
+		if(idColumn == null) throw new RuntimeException("Class " + type.getSimpleName() + " has no @SQLId field");
+		return idColumn;
+	}
+
+	/**
+	 * @return The quoted column list selecting every column in the order of {@link #getColumns()}.
+	 */
+	public String getSelectList() {
+		return selectList;
+	}
+
+	/**
+	 * @return The column list of {@link #getSelectList()} qualified with the {@code obj} table alias.
+	 */
+	public String getAliasedSelectList() {
+		return aliasedSelectList;
+	}
+
+	/**
+	 * @return The {@code INSERT} statement writing every column.
+	 */
+	public String getInsertSql() {
+		return insertSql;
+	}
+
+	/**
+	 * @return The {@code UPDATE} statement writing every non-id column by id, or {@code null} without an id column.
+	 */
+	public String getUpdateSql() {
+		return updateSql;
+	}
+
+	/**
+	 * Retrieves the {@code UPDATE} statement writing a subset of the non-id columns by id.
+	 * Statements are built once per column subset.
+	 *
+	 * @param mask A bit mask over {@link #getNonIdColumns()}, as computed by the session's dirty check.
+	 * @return The statement, or the full {@link #getUpdateSql()} if every column is selected.
+	 */
+	public String getUpdateSql(long mask) {
+		if(mask == fullUpdateMask || updateSql == null) return updateSql;
+		return partialUpdateSql.computeIfAbsent(mask, m -> {
+			List<ColumnMetadata> selected = new ArrayList<>();
+			for(int i = 0; i < nonIdColumns.size(); i++) {
+				if((m & (1L << i)) != 0) selected.add(nonIdColumns.get(i));
+			}
+			return "UPDATE `" + tableName + "` SET " + joinColumns(selected, "` = ?, `", "`", "` = ?")
+					+ " WHERE `" + idColumn.getName() + "` = ?";
+		});
+	}
+
+	/**
+	 * Retrieves the {@code INSERT ... ON DUPLICATE KEY UPDATE} statement writing every column and
+	 * overwriting a subset of them when the row exists. Statements are built once per column subset.
+	 * <p>
+	 * The id column is assigned {@code LAST_INSERT_ID(id)} on conflict, so the generated key of the
+	 * statement is the id of the matched row as well as of an inserted one.
+	 * </p>
+	 *
+	 * @param updateColumns The non-id columns overwritten on conflict, or none to overwrite them all.
+	 * @return The statement, binding the columns in the order of {@link #getColumns()}.
+	 * @throws IllegalArgumentException if a column is not mapped or is the id column.
+	 */
+	public String getUpsertSql(String... updateColumns) {
+		return upsertSql.computeIfAbsent(String.join(",", updateColumns), k -> {
+			List<ColumnMetadata> selected = new ArrayList<>();
+			if(updateColumns.length == 0) {
+				selected.addAll(nonIdColumns);
+			}else {
+				for(String name : updateColumns) {
+					ColumnMetadata column = columnsByName.get(name);
+					if(column == null || column.isId()) {
+						throw new IllegalArgumentException("Cannot upsert column " + name + " of class " + type.getSimpleName());
+					}
+					selected.add(column);
+				}
+			}
+			StringBuilder update = new StringBuilder();
+			if(idColumn != null) {
+				update.append('`').append(idColumn.getName()).append("` = LAST_INSERT_ID(`").append(idColumn.getName()).append("`)");
+			}
+			for(ColumnMetadata column : selected) {
+				if(update.length() > 0) update.append(", ");
+				update.append('`').append(column.getName()).append("` = VALUES(`").append(column.getName()).append("`)");
+			}
+			if(update.length() == 0) throw new IllegalArgumentException("Class " + type.getSimpleName() + " has no column to upsert");
+			return insertSql + " ON DUPLICATE KEY UPDATE " + update;
+		});
+	}
+
+	/**
+	 * Retrieves the {@code SELECT} statement loading the rows whose column matches one of
+	 * {@code size} values. Statements are built once per column and size.
+	 *
+	 * @param column The column compared with {@code IN}.
+	 * @param size   The number of placeholders in the {@code IN} list.
+	 * @return The statement.
+	 */
+	public String getSelectInSql(String column, int size) {
+		return selectInSql.computeIfAbsent(column + "#" + size, k -> "SELECT " + selectList + " FROM `" + tableName + "` WHERE `" + column
+				+ "` IN (" + "?, ".repeat(size).replaceFirst(", $", "") + ")");
+	}
+
+	/**
+	 * Retrieves the SQL of a {@link Query} shape, building it on first use.
+	 *
+	 * @param shape   A key identifying the columns, operators and clauses of the query, but not its values.
+	 * @param builder Builds the SQL of the shape.
+	 * @return The cached SQL.
+	 */
+	String getQuerySql(String shape, Function<String, String> builder) {
+		return querySql.computeIfAbsent(shape, builder);
+	}
+
+	/**
+	 * @return The mask selecting every non-id column in {@link #getUpdateSql(long)}.
+	 */
+	public long getFullUpdateMask() {
+		return fullUpdateMask;
+	}
+
+	/**
+	 * @return The {@code SELECT} statement loading one row by id, or {@code null} without an id column.
+	 */
+	public String getSelectByIdSql() {
+		return selectByIdSql;
+	}
+
+	/**
+	 * @return The {@code DELETE} statement removing one row by id, or {@code null} without an id column.
+	 */
+	public String getDeleteByIdSql() {
+		return deleteByIdSql;
+	}
+
+	/**
+	 * @return The entity class.
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * @return The table name declared by {@code @MySQLField}.
+	 */
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * @return {@code true} if every field is mapped without an explicit {@code @MySQLColumn}.
+	 */
+	public boolean isAutoMapped() {
+		return autoMapped;
+	}
+
+	/**
+	 * @return {@code true} if loaded entities are kept in the shared {@link EntityCache}.
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * @return Milliseconds a cached entity stays valid.
+	 */
+	public long getCacheTtl() {
+		return cacheTtl;
+	}
+
+	/**
+	 * @return The number of entities of this class kept in the shared cache.
+	 */
+	public int getCacheMaxEntries() {
+		return cacheMaxEntries;
+	}
+
+	/**
+	 * @return Every mapped column, including the id column, in declaration order.
+	 */
+	public List<ColumnMetadata> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return Every mapped column except the id column, in declaration order.
+	 */
+	public List<ColumnMetadata> getNonIdColumns() {
+		return nonIdColumns;
+	}
+
+	/**
+	 * @return The columns mapping a relation through a {@code Ref} field, in declaration order.
+	 */
+	public List<ColumnMetadata> getRelationColumns() {
+		return relationColumns;
+	}
+
+	/**
+	 * @param columnName The column name.
+	 * @return The column, or {@code null} if no field is mapped to it.
+	 */
+	public ColumnMetadata getColumn(String columnName) {
+		return columnsByName.get(columnName);
+	}
+
+	/**
+	 * @return The indexes declared with {@code @SQLIndex}.
+	 */
+	public List<IndexMetadata> getIndexes() {
+		return indexes;
+	}
+
+	/**
+	 * @return The {@code @SQLId} column, or {@code null} if the class declares none.
+	 */
+	public ColumnMetadata getIdColumn() {
+		return idColumn;
+	}
+}
@@ -0,0 +1,94 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.List;
+
+/**
+ * Captures the column values of a managed entity so updates can be limited to changed columns.
+ * <p>
+ * A snapshot holds one slot per non-id column, filled by the {@link ColumnCodec#snapshot(Object)} of the
+ * column: immutable values are kept by reference, built-in mutable ones such as dates are copied and values
+ * of text codecs are kept as the text they are stored as, so mutating a value in place still marks its
+ * column changed. Strings longer than {@value #INLINE_LIMIT} characters and every {@code byte[]} are reduced
+ * to their length and a 64-bit hash, so large TEXT/BLOB columns do not double the memory held by the session.
+ * Relations are captured by the key they store.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+final class EntitySnapshot {
+
+	static final int INLINE_LIMIT = 64;
+
+	private record Digest(int length, long hash) {}
+
+	private EntitySnapshot() {
+	}
+
+	/**
+	 * Captures the current non-id column values of an entity.
+	 */
+	static Object[] take(EntityMetadata meta, Object entity) {
+		List<ColumnMetadata> columns = meta.getNonIdColumns();
+		Object[] snapshot = new Object[columns.size()];
+		for(int i = 0; i < snapshot.length; i++) {
+			ColumnMetadata column = columns.get(i);
+			snapshot[i] = capture(column, column.getStored(entity));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Compares an entity against its snapshot.
+	 *
+	 * @return A bit mask over {@link EntityMetadata#getNonIdColumns()} with one bit set per changed column.
+	 *         Entities with more than 64 non-id columns report every column as changed once any differs.
+	 */
+	static long dirtyMask(EntityMetadata meta, Object[] snapshot, Object entity) {
+		List<ColumnMetadata> columns = meta.getNonIdColumns();
+		long mask = 0L;
+		for(int i = 0; i < snapshot.length; i++) {
+			ColumnMetadata column = columns.get(i);
+			if(!matches(snapshot[i], column, column.getStored(entity))) {
+				if(snapshot.length > 64) return meta.getFullUpdateMask();
+				mask |= 1L << i;
+			}
+		}
+		return mask;
+	}
+
+	private static Object capture(ColumnMetadata column, Object value) {
+		if(value == null) return null;
+		if(value instanceof String s) return s.length() > INLINE_LIMIT ? digest(s) : s;
+		if(value instanceof byte[] bytes) return digest(bytes);
+		Object snapshot = column.getCodec().snapshot(value);
+		if(snapshot instanceof String s && s.length() > INLINE_LIMIT) return digest(s);
+		if(snapshot instanceof byte[] bytes) return digest(bytes);
+		return snapshot;
+	}
+
+	private static boolean matches(Object captured, ColumnMetadata column, Object value) {
+		if(captured == value) return true;
+		if(captured == null || value == null) return false;
+		if(captured instanceof Digest digest && value instanceof String s && s.length() != digest.length()) return false;
+		return captured.equals(capture(column, value));
+	}
+
+	private static Digest digest(String s) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < s.length(); i++) {
+			hash ^= s.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return new Digest(s.length(), hash);
+	}
+
+	private static Digest digest(byte[] bytes) {
+		long hash = 0xcbf29ce484222325L;
+		for(byte b : bytes) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return new Digest(bytes.length, hash);
+	}
+}
@@ -0,0 +1,144 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes one entity field through method handles resolved once.
+ * <p>
+ * Fields of type {@code int}, {@code long} and {@code double} get typed handles so values
+ * can be copied without boxing. If a handle cannot be created for the field, every access
+ * falls back to {@link Field#get(Object)} and {@link Field#set(Object, Object)}.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+final class FieldAccessor {
+
+	private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private final Field field;
+	private final MethodHandle getter;
+	private final MethodHandle setter;
+	private final MethodHandle primitiveGetter;
+	private final MethodHandle primitiveSetter;
+
+	FieldAccessor(Field field) {
+		this.field = field;
+		field.setAccessible(true);
+		Class<?> type = field.getType();
+		boolean primitive = type == int.class || type == long.class || type == double.class;
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle getter = null;
+		MethodHandle setter = null;
+		MethodHandle primitiveGetter = null;
+		MethodHandle primitiveSetter = null;
+		try {
+			MethodHandle rawGetter = lookup.unreflectGetter(field);
+			getter = rawGetter.asType(GETTER);
+			if(primitive) primitiveGetter = rawGetter.asType(MethodType.methodType(type, Object.class));
+		} catch (IllegalAccessException e) {
+			// Reflection fallback below
+		}
+		try {
+			MethodHandle rawSetter = lookup.unreflectSetter(field);
+			setter = rawSetter.asType(SETTER);
+			if(primitive) primitiveSetter = rawSetter.asType(MethodType.methodType(void.class, Object.class, type));
+		} catch (IllegalAccessException e) {
+			// Reflection fallback below
+		}
+		this.getter = getter;
+		this.setter = setter;
+		this.primitiveGetter = primitiveGetter;
+		this.primitiveSetter = primitiveSetter;
+	}
+
+	Object get(Object entity) {
+		try {
+			if(getter != null) return (Object) getter.invokeExact(entity);
+			return field.get(entity);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot read field " + field.getName(), e);
+		}
+	}
+
+	void set(Object entity, Object value) {
+		try {
+			if(setter != null) setter.invokeExact(entity, value);
+			else field.set(entity, value);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot write field " + field.getName(), e);
+		}
+	}
+
+	long getLong(Object entity) {
+		try {
+			if(primitiveGetter != null) return (long) primitiveGetter.invokeExact(entity);
+			return field.getLong(entity);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot read field " + field.getName(), e);
+		}
+	}
+
+	void setLong(Object entity, long value) {
+		try {
+			if(primitiveSetter != null) primitiveSetter.invokeExact(entity, value);
+			else field.setLong(entity, value);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot write field " + field.getName(), e);
+		}
+	}
+
+	int getInt(Object entity) {
+		try {
+			if(primitiveGetter != null) return (int) primitiveGetter.invokeExact(entity);
+			return field.getInt(entity);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot read field " + field.getName(), e);
+		}
+	}
+
+	void setInt(Object entity, int value) {
+		try {
+			if(primitiveSetter != null) primitiveSetter.invokeExact(entity, value);
+			else field.setInt(entity, value);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot write field " + field.getName(), e);
+		}
+	}
+
+	double getDouble(Object entity) {
+		try {
+			if(primitiveGetter != null) return (double) primitiveGetter.invokeExact(entity);
+			return field.getDouble(entity);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot read field " + field.getName(), e);
+		}
+	}
+
+	void setDouble(Object entity, double value) {
+		try {
+			if(primitiveSetter != null) primitiveSetter.invokeExact(entity, value);
+			else field.setDouble(entity, value);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot write field " + field.getName(), e);
+		}
+	}
+
+	/**
+	 * Creates a no-argument constructor handle returning {@code Object}, or {@code null} if the
+	 * constructor cannot be unreflected.
+	 */
+	static MethodHandle constructor(Constructor<?> constructor) {
+		try {
+			return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,430 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The identity map of an {@link SQLSession}: the managed entities and their snapshots by class and ID.
+ * <p>
+ * Each entity class gets its own open-addressing table keyed by the primitive {@code long} ID, so lookups
+ * neither box the key nor build a string. Entities can be held strongly, or through weak or soft references
+ * so the garbage collector may reclaim entities the plugin no longer uses; a reclaimed entity loses its
+ * snapshot and its next update writes every column. An optional cap bounds the entities kept per class by
+ * evicting the oldest managed entity first. Like the session, the map is not thread-safe; sizes read from
+ * another thread are approximate.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class IdentityMap {
+
+	/**
+	 * How managed entities are referenced.
+	 */
+	public enum ReferenceMode {
+		/** Entities stay managed until they are detached, evicted or the map is cleared. */
+		STRONG,
+		/** Entities are dropped once the plugin holds no reference to them. */
+		WEAK,
+		/** Entities are dropped when the JVM runs short of memory. */
+		SOFT
+	}
+
+	private final Map<Class<?>, Table> tables = new IdentityHashMap<>();
+	private ReferenceMode referenceMode;
+	private int maxEntriesPerClass;
+	private long evictions;
+	private long collected;
+
+	/**
+	 * Constructs an unbounded map holding entities strongly.
+	 */
+	public IdentityMap() {
+		this(0, ReferenceMode.STRONG);
+	}
+
+	/**
+	 * Constructs a map.
+	 *
+	 * @param maxEntriesPerClass The maximum number of entities kept per class, or {@code 0} for no cap.
+	 * @param referenceMode      How entities are referenced.
+	 */
+	public IdentityMap(int maxEntriesPerClass, ReferenceMode referenceMode) {
+		setMaxEntriesPerClass(maxEntriesPerClass);
+		setReferenceMode(referenceMode);
+	}
+
+	/**
+	 * @return How entities are referenced.
+	 */
+	public ReferenceMode getReferenceMode() {
+		return referenceMode;
+	}
+
+	/**
+	 * Sets how entities are referenced. Entities already managed keep their current reference.
+	 *
+	 * @param referenceMode How entities are referenced.
+	 */
+	public void setReferenceMode(ReferenceMode referenceMode) {
+		if(referenceMode == null) throw new IllegalArgumentException("referenceMode must not be null");
+		this.referenceMode = referenceMode;
+	}
+
+	/**
+	 * @return The maximum number of entities kept per class, {@code 0} for no cap.
+	 */
+	public int getMaxEntriesPerClass() {
+		return maxEntriesPerClass;
+	}
+
+	/**
+	 * Sets the maximum number of entities kept per class. The cap is enforced as entities are managed.
+	 *
+	 * @param maxEntriesPerClass The cap, or {@code 0} for no cap.
+	 */
+	public void setMaxEntriesPerClass(int maxEntriesPerClass) {
+		if(maxEntriesPerClass < 0) throw new IllegalArgumentException("maxEntriesPerClass must not be negative");
+		this.maxEntriesPerClass = maxEntriesPerClass;
+	}
+
+	/**
+	 * @return The number of managed entities over all classes, including entities collected but not yet purged.
+	 */
+	public int size() {
+		int size = 0;
+		for(Table table : tables.values()) size += table.size;
+		return size;
+	}
+
+	/**
+	 * @param type The entity class.
+	 * @return The number of managed entities of the class.
+	 */
+	public int size(Class<?> type) {
+		Table table = tables.get(type);
+		return table == null ? 0 : table.size;
+	}
+
+	/**
+	 * @return The number of entities of each class, in no particular order.
+	 */
+	public Map<Class<?>, Integer> sizes() {
+		Map<Class<?>, Integer> sizes = new IdentityHashMap<>();
+		for(Map.Entry<Class<?>, Table> entry : tables.entrySet()) sizes.put(entry.getKey(), entry.getValue().size);
+		return sizes;
+	}
+
+	/**
+	 * @return The number of entities evicted by the cap since the map was created.
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return The number of weak or soft entities reclaimed by the garbage collector and purged.
+	 */
+	public long getCollected() {
+		return collected;
+	}
+
+	/**
+	 * Forgets every managed entity.
+	 */
+	public void clear() {
+		tables.clear();
+	}
+
+	/**
+	 * Forgets every managed entity of a class.
+	 *
+	 * @param type The entity class.
+	 */
+	public void clear(Class<?> type) {
+		tables.remove(type);
+	}
+
+	Object get(Class<?> type, long id) {
+		Table table = tables.get(type);
+		return table == null ? null : table.get(id);
+	}
+
+	boolean contains(Class<?> type, long id) {
+		return get(type, id) != null;
+	}
+
+	Object[] getSnapshot(Class<?> type, long id) {
+		Table table = tables.get(type);
+		return table == null ? null : table.getSnapshot(id);
+	}
+
+	void put(Class<?> type, long id, Object entity, Object[] snapshot) {
+		Table table = tables.get(type);
+		if(table == null) {
+			table = new Table();
+			tables.put(type, table);
+		}
+		table.put(id, entity, snapshot);
+	}
+
+	/**
+	 * Replaces the snapshot of an entity that is still managed.
+	 */
+	void replaceSnapshot(Class<?> type, long id, Object[] snapshot) {
+		Table table = tables.get(type);
+		if(table != null) table.replaceSnapshot(id, snapshot);
+	}
+
+	void remove(Class<?> type, long id) {
+		Table table = tables.get(type);
+		if(table != null) table.remove(id);
+	}
+
+	private interface Keyed {
+		long id();
+	}
+
+	private static final class WeakEntry extends WeakReference<Object> implements Keyed {
+		private final long id;
+
+		WeakEntry(Object entity, long id, ReferenceQueue<Object> queue) {
+			super(entity, queue);
+			this.id = id;
+		}
+
+		@Override
+		public long id() {
+			return id;
+		}
+	}
+
+	private static final class SoftEntry extends SoftReference<Object> implements Keyed {
+		private final long id;
+
+		SoftEntry(Object entity, long id, ReferenceQueue<Object> queue) {
+			super(entity, queue);
+			this.id = id;
+		}
+
+		@Override
+		public long id() {
+			return id;
+		}
+	}
+
+	/**
+	 * Linear-probing table of one class. Slots hold the entity itself or its {@link Reference};
+	 * removed slots become tombstones until the next rehash. Insertion order is kept in a ring of
+	 * IDs and insertion stamps so the cap evicts the oldest entity; ring entries whose stamp no longer
+	 * matches the slot belong to removed or re-managed entities and are skipped.
+	 */
+	private final class Table {
+		private static final byte FREE = 0, FULL = 1, REMOVED = 2;
+
+		private long[] keys = new long[16];
+		private Object[] values = new Object[16];
+		private Object[][] snapshots = new Object[16][];
+		private long[] stamps = new long[16];
+		private byte[] states = new byte[16];
+		private int size;
+		private int used;
+		private long nextStamp;
+
+		private long[] orderIds = new long[16];
+		private long[] orderStamps = new long[16];
+		private int orderHead;
+		private int orderCount;
+
+		private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+		Object get(long id) {
+			int slot = find(id);
+			if(slot < 0) return null;
+			Object entity = dereference(values[slot]);
+			if(entity == null) {
+				removeSlot(slot);
+				collected++;
+			}
+			return entity;
+		}
+
+		Object[] getSnapshot(long id) {
+			int slot = find(id);
+			if(slot < 0) return null;
+			if(dereference(values[slot]) == null) {
+				removeSlot(slot);
+				collected++;
+				return null;
+			}
+			return snapshots[slot];
+		}
+
+		void put(long id, Object entity, Object[] snapshot) {
+			purge();
+			Object value = switch(referenceMode) {
+			case STRONG -> entity;
+			case WEAK -> new WeakEntry(entity, id, queue);
+			case SOFT -> new SoftEntry(entity, id, queue);
+			};
+			int slot = find(id);
+			if(slot >= 0) {
+				values[slot] = value;
+				snapshots[slot] = snapshot;
+				return;
+			}
+			if(maxEntriesPerClass > 0) {
+				while(size >= maxEntriesPerClass && evictOldest()) evictions++;
+			}
+			if((used + 1) * 4 > keys.length * 3) rehash(size + 1 > keys.length / 2 ? keys.length * 2 : keys.length);
+			slot = insertionSlot(id);
+			if(states[slot] == FREE) used++;
+			long stamp = nextStamp++;
+			keys[slot] = id;
+			values[slot] = value;
+			snapshots[slot] = snapshot;
+			stamps[slot] = stamp;
+			states[slot] = FULL;
+			size++;
+			pushOrder(id, stamp);
+		}
+
+		void replaceSnapshot(long id, Object[] snapshot) {
+			int slot = find(id);
+			if(slot >= 0) snapshots[slot] = snapshot;
+		}
+
+		void remove(long id) {
+			int slot = find(id);
+			if(slot >= 0) removeSlot(slot);
+		}
+
+		private int find(long id) {
+			int mask = keys.length - 1;
+			for(int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+				byte state = states[slot];
+				if(state == FREE) return -1;
+				if(state == FULL && keys[slot] == id) return slot;
+			}
+		}
+
+		private int insertionSlot(long id) {
+			int mask = keys.length - 1;
+			int slot = hash(id) & mask;
+			while(states[slot] == FULL) slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		private void removeSlot(int slot) {
+			Object value = values[slot];
+			if(value instanceof Reference<?> reference) reference.clear();
+			values[slot] = null;
+			snapshots[slot] = null;
+			states[slot] = REMOVED;
+			size--;
+		}
+
+		private void rehash(int capacity) {
+			long[] oldKeys = keys;
+			Object[] oldValues = values;
+			Object[][] oldSnapshots = snapshots;
+			long[] oldStamps = stamps;
+			byte[] oldStates = states;
+			keys = new long[capacity];
+			values = new Object[capacity];
+			snapshots = new Object[capacity][];
+			stamps = new long[capacity];
+			states = new byte[capacity];
+			used = size;
+			for(int i = 0; i < oldKeys.length; i++) {
+				if(oldStates[i] != FULL) continue;
+				int slot = insertionSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				snapshots[slot] = oldSnapshots[i];
+				stamps[slot] = oldStamps[i];
+				states[slot] = FULL;
+			}
+		}
+
+		private void purge() {
+			for(Reference<?> reference; (reference = queue.poll()) != null;) {
+				int slot = find(((Keyed) reference).id());
+				if(slot >= 0 && values[slot] == reference) {
+					removeSlot(slot);
+					collected++;
+				}
+			}
+		}
+
+		private void pushOrder(long id, long stamp) {
+			if(orderCount == orderIds.length) {
+				if(orderCount > size * 2) compactOrder();
+				if(orderCount == orderIds.length) resizeOrder(orderIds.length * 2);
+			}
+			int index = (orderHead + orderCount) & (orderIds.length - 1);
+			orderIds[index] = id;
+			orderStamps[index] = stamp;
+			orderCount++;
+		}
+
+		private boolean evictOldest() {
+			while(orderCount > 0) {
+				long id = orderIds[orderHead];
+				long stamp = orderStamps[orderHead];
+				orderHead = (orderHead + 1) & (orderIds.length - 1);
+				orderCount--;
+				int slot = find(id);
+				if(slot >= 0 && stamps[slot] == stamp) {
+					removeSlot(slot);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Drops the ring entries of removed and re-managed entities, leaving one entry per managed entity.
+		 */
+		private void compactOrder() {
+			int count = 0;
+			for(int i = 0; i < orderCount; i++) {
+				int index = (orderHead + i) & (orderIds.length - 1);
+				int slot = find(orderIds[index]);
+				if(slot < 0 || stamps[slot] != orderStamps[index]) continue;
+				int target = (orderHead + count) & (orderIds.length - 1);
+				orderIds[target] = orderIds[index];
+				orderStamps[target] = orderStamps[index];
+				count++;
+			}
+			orderCount = count;
+		}
+
+		private void resizeOrder(int capacity) {
+			long[] ids = new long[capacity];
+			long[] orderedStamps = new long[capacity];
+			for(int i = 0; i < orderCount; i++) {
+				int index = (orderHead + i) & (orderIds.length - 1);
+				ids[i] = orderIds[index];
+				orderedStamps[i] = orderStamps[index];
+			}
+			orderIds = ids;
+			orderStamps = orderedStamps;
+			orderHead = 0;
+		}
+
+		private Object dereference(Object value) {
+			return value instanceof Reference<?> reference ? reference.get() : value;
+		}
+
+		private int hash(long id) {
+			long h = id * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+}
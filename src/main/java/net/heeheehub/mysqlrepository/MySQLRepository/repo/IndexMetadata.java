@@ -0,0 +1,69 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes one index declared with {@code @SQLIndex} on an entity class.
+ * <p>
+ * Instances are created once per index by {@link EntityMetadata} and are immutable.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class IndexMetadata {
+
+	private final String name;
+	private final boolean unique;
+	private final List<ColumnMetadata> columns;
+	private final List<Integer> prefixLengths;
+
+	IndexMetadata(String name, boolean unique, List<ColumnMetadata> columns, List<Integer> prefixLengths) {
+		this.name = name;
+		this.unique = unique;
+		this.columns = Collections.unmodifiableList(columns);
+		this.prefixLengths = Collections.unmodifiableList(prefixLengths);
+	}
+
+	/**
+	 * @return The index definition used by {@code CREATE TABLE} and {@code ALTER TABLE ... ADD}.
+	 */
+	String getDefinition() {
+		StringBuilder def = new StringBuilder(unique ? "UNIQUE INDEX `" : "INDEX `").append(name).append("` (");
+		for(int i = 0; i < columns.size(); i++) {
+			if(i > 0) def.append(", ");
+			def.append('`').append(columns.get(i).getName()).append('`');
+			if(prefixLengths.get(i) > 0) def.append('(').append(prefixLengths.get(i)).append(')');
+		}
+		return def.append(')').toString();
+	}
+
+	/**
+	 * @return The index name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return {@code true} if the index is unique.
+	 */
+	public boolean isUnique() {
+		return unique;
+	}
+
+	/**
+	 * @return The indexed columns, in index order.
+	 */
+	public List<ColumnMetadata> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return The indexed prefix length of each column, {@code 0} for the whole value.
+	 */
+	public List<Integer> getPrefixLengths() {
+		return prefixLengths;
+	}
+}
@@ -0,0 +1,342 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.bukkit.Bukkit;
+
+/**
+ * Detects statements run on the server thread of one {@link Database}.
+ * <p>
+ * A statement issued from the primary thread stalls the tick for its whole round trip. Depending on the
+ * {@link Mode}, the guard records such statements, logs them with the calling plugin and stack, or refuses
+ * them. Recorded statements are aggregated per plugin and call site into a report ordered by blocked
+ * milliseconds per minute over the last {@value #WINDOW_MINUTES} minutes, to point at the hot paths worth
+ * moving to an {@link AsyncSQLSession}.
+ * </p>
+ * <p>
+ * The guard only applies once {@link #setArmed(boolean) armed}, which the plugin does when the server starts
+ * ticking: loading data while plugins are enabled or flushing it on shutdown does not stall any tick.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class MainThreadGuard {
+
+	/**
+	 * What the guard does with a statement run on the server thread.
+	 */
+	public enum Mode {
+		/**
+		 * Statements are not inspected.
+		 */
+		OFF,
+		/**
+		 * Every statement is recorded, and logged with its stack at most once per call site and minute.
+		 */
+		WARN,
+		/**
+		 * One statement in {@link MainThreadGuard#getSampleRate()} is recorded and its counts extrapolated.
+		 * Nothing is logged.
+		 */
+		SAMPLE,
+		/**
+		 * Statements are recorded and refused with an {@link IllegalStateException}.
+		 */
+		THROW
+	}
+
+	/**
+	 * The default number of statements per sample in {@link Mode#SAMPLE}.
+	 */
+	public static final int DEFAULT_SAMPLE_RATE = 100;
+
+	/**
+	 * The number of minutes covered by the report.
+	 */
+	public static final int WINDOW_MINUTES = 10;
+
+	private static final Logger LOGGER = Logger.getLogger("MySQLRepository");
+	private static final String PACKAGE = MainThreadGuard.class.getPackageName();
+	private static final int STACK_DEPTH = 12;
+	private static final long LOG_INTERVAL = 60_000L;
+	private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+	private static volatile boolean armed;
+
+	private final String dbName;
+	private final Map<String, Site> sites = new ConcurrentHashMap<>();
+	private final AtomicLong sampled = new AtomicLong();
+	private volatile Mode mode = Mode.WARN;
+	private volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+
+	MainThreadGuard(String dbName) {
+		this.dbName = dbName;
+	}
+
+	/**
+	 * Arms or disarms the guards of every database.
+	 *
+	 * @param armed {@code true} once the server is ticking, {@code false} when it stops.
+	 */
+	public static void setArmed(boolean armed) {
+		MainThreadGuard.armed = armed;
+	}
+
+	/**
+	 * @return {@code true} if the guards inspect statements.
+	 */
+	public static boolean isArmed() {
+		return armed;
+	}
+
+	/**
+	 * @return {@code true} if the current statement runs on the server thread and has to be inspected.
+	 */
+	boolean isBlocking() {
+		return armed && mode != Mode.OFF && Bukkit.getServer() != null && Bukkit.isPrimaryThread();
+	}
+
+	/**
+	 * Refuses a statement about to run on the server thread in {@link Mode#THROW}.
+	 *
+	 * @param owner The plugin owning the session, used when the caller cannot be found on the stack.
+	 * @throws IllegalStateException in {@link Mode#THROW}.
+	 */
+	void check(String owner) {
+		if(mode != Mode.THROW) return;
+		blocked(null, null, null, 0L, owner);
+		throw new IllegalStateException("Synchronous access to " + dbName + " from the server thread, use an AsyncSQLSession");
+	}
+
+	/**
+	 * Records a statement that ran on the server thread.
+	 *
+	 * @param sql     The statement, or {@code null} for one refused before running.
+	 * @param elapsed The time the statement took in nanoseconds.
+	 * @param owner   The plugin owning the session, used when the caller cannot be found on the stack.
+	 */
+	void blocked(Class<?> type, QueryMetrics.Operation operation, String sql, long elapsed, String owner) {
+		Mode mode = this.mode;
+		long weight = 1L;
+		if(mode == Mode.SAMPLE) {
+			int rate = sampleRate;
+			if(sampled.getAndIncrement() % rate != 0) return;
+			weight = rate;
+		}
+		List<StackWalker.StackFrame> stack = STACK_WALKER.walk(frames -> frames
+				.dropWhile(frame -> isInternal(frame.getDeclaringClass()))
+				.limit(STACK_DEPTH)
+				.collect(Collectors.toList()));
+		StackWalker.StackFrame top = stack.isEmpty() ? null : stack.get(0);
+		String plugin = top == null ? null : QueryMetrics.pluginName(top.getDeclaringClass());
+		if(plugin == null) plugin = owner != null ? owner : "MySQLRepository";
+		String location = top == null ? "unknown"
+				: top.getClassName() + "." + top.getMethodName() + "(" + top.getFileName() + ":" + top.getLineNumber() + ")";
+		String pluginName = plugin;
+		Site site = sites.computeIfAbsent(pluginName + " " + location, k -> new Site(pluginName, location));
+		long now = System.currentTimeMillis();
+		boolean log = site.record(elapsed * weight, weight, elapsed, now);
+		if(log && mode == Mode.WARN) {
+			StringBuilder message = new StringBuilder(String.format("Server thread blocked %.1fms on %s by %s: %s %s: %s",
+					elapsed / 1_000_000.0, dbName, plugin, QueryMetrics.entityName(type), operation, QueryMetrics.shape(sql)));
+			for(StackWalker.StackFrame frame : stack) message.append("\n\tat ").append(frame.toStackTraceElement());
+			LOGGER.warning(message.toString());
+		}
+	}
+
+	/**
+	 * @return {@code true} for classes of this library and of the JDK, which are skipped to find the call site.
+	 */
+	private static boolean isInternal(Class<?> type) {
+		ClassLoader loader = type.getClassLoader();
+		return type.getPackageName().equals(PACKAGE) || loader == null || loader == ClassLoader.getPlatformClassLoader();
+	}
+
+	/**
+	 * @return What the guard does with statements run on the server thread.
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Sets what the guard does with statements run on the server thread.
+	 *
+	 * @param mode The mode.
+	 */
+	public void setMode(Mode mode) {
+		if(mode == null) throw new IllegalArgumentException("Mode must not be null");
+		this.mode = mode;
+	}
+
+	/**
+	 * @return The number of statements per sample in {@link Mode#SAMPLE}.
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Sets the number of statements per sample in {@link Mode#SAMPLE}.
+	 *
+	 * @param sampleRate The rate, {@code 1} to record every statement.
+	 */
+	public void setSampleRate(int sampleRate) {
+		if(sampleRate < 1) throw new IllegalArgumentException("Sample rate must be positive");
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * @return The call sites that blocked the server thread, by descending blocked milliseconds per minute.
+	 */
+	public List<Offender> getReport() {
+		long minute = System.currentTimeMillis() / 60_000L;
+		List<Offender> report = new ArrayList<>();
+		for(Site site : sites.values()) report.add(site.snapshot(minute));
+		report.sort(Comparator.comparingDouble(Offender::getMillisPerMinute).reversed()
+				.thenComparing(Comparator.comparingDouble(Offender::getTotalMillis).reversed()));
+		return report;
+	}
+
+	/**
+	 * @return The number of statements run or refused on the server thread, extrapolated in {@link Mode#SAMPLE}.
+	 */
+	public long getBlockedCount() {
+		long count = 0L;
+		for(Site site : sites.values()) count += site.calls();
+		return count;
+	}
+
+	/**
+	 * Discards the report.
+	 */
+	public void reset() {
+		sites.clear();
+		sampled.set(0L);
+	}
+
+	/**
+	 * Counters of one plugin and call site. Blocking statements run on the server thread, so updates are
+	 * practically uncontended.
+	 */
+	private static final class Site {
+		private final String plugin;
+		private final String location;
+		private final long[] minutes = new long[WINDOW_MINUTES];
+		private final long[] minuteNanos = new long[WINDOW_MINUTES];
+		private long firstMinute = -1L;
+		private long calls;
+		private long totalNanos;
+		private long maxNanos;
+		private long lastLogged;
+
+		private Site(String plugin, String location) {
+			this.plugin = plugin;
+			this.location = location;
+		}
+
+		/**
+		 * @return {@code true} if the statement should be logged.
+		 */
+		synchronized boolean record(long nanos, long weight, long elapsed, long now) {
+			long minute = now / 60_000L;
+			if(firstMinute < 0) firstMinute = minute;
+			int slot = (int) (minute % WINDOW_MINUTES);
+			if(minutes[slot] != minute) {
+				minutes[slot] = minute;
+				minuteNanos[slot] = 0L;
+			}
+			minuteNanos[slot] += nanos;
+			calls += weight;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, elapsed);
+			if(now - lastLogged < LOG_INTERVAL) return false;
+			lastLogged = now;
+			return true;
+		}
+
+		synchronized long calls() {
+			return calls;
+		}
+
+		synchronized Offender snapshot(long minute) {
+			long windowNanos = 0L;
+			for(int i = 0; i < WINDOW_MINUTES; i++) {
+				if(minutes[i] > minute - WINDOW_MINUTES) windowNanos += minuteNanos[i];
+			}
+			long covered = Math.max(1L, Math.min(WINDOW_MINUTES, minute - firstMinute + 1));
+			return new Offender(plugin, location, calls, totalNanos / 1_000_000.0, maxNanos / 1_000_000.0,
+					windowNanos / 1_000_000.0 / covered);
+		}
+	}
+
+	/**
+	 * A call site that blocked the server thread, at the time the report was read.
+	 */
+	public static final class Offender {
+		private final String plugin;
+		private final String location;
+		private final long calls;
+		private final double totalMillis;
+		private final double maxMillis;
+		private final double millisPerMinute;
+
+		Offender(String plugin, String location, long calls, double totalMillis, double maxMillis, double millisPerMinute) {
+			this.plugin = plugin;
+			this.location = location;
+			this.calls = calls;
+			this.totalMillis = totalMillis;
+			this.maxMillis = maxMillis;
+			this.millisPerMinute = millisPerMinute;
+		}
+
+		/**
+		 * @return The name of the plugin that issued the statements.
+		 */
+		public String getPlugin() {
+			return plugin;
+		}
+
+		/**
+		 * @return The first frame outside this library, as {@code Class.method(File:line)}.
+		 */
+		public String getLocation() {
+			return location;
+		}
+
+		/**
+		 * @return The number of statements.
+		 */
+		public long getCalls() {
+			return calls;
+		}
+
+		/**
+		 * @return The time the server thread was blocked since the report was reset, in milliseconds.
+		 */
+		public double getTotalMillis() {
+			return totalMillis;
+		}
+
+		/**
+		 * @return The longest single statement in milliseconds.
+		 */
+		public double getMaxMillis() {
+			return maxMillis;
+		}
+
+		/**
+		 * @return The blocked milliseconds per minute, averaged over the last {@value MainThreadGuard#WINDOW_MINUTES} minutes.
+		 */
+		public double getMillisPerMinute() {
+			return millisPerMinute;
+		}
+	}
+}
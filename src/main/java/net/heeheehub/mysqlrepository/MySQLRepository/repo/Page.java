@@ -0,0 +1,107 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One page of a keyset-paginated query.
+ * <p>
+ * Pages are read with {@code WHERE key > ? ORDER BY key LIMIT ?} instead of an {@code OFFSET}, so every
+ * page costs the same no matter how deep it is. The continuation token encodes the sort key of the last
+ * item; pass it back to {@link Query#page(String, boolean, int, String)} to read the next page. Tokens are
+ * opaque, URL-safe strings that can be stored or sent to another thread. Pages are immutable.
+ * </p>
+ *
+ * @param <T> The item type, an entity or a projection.
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class Page<T> {
+
+	private final List<T> items;
+	private final String nextToken;
+
+	Page(List<T> items, String nextToken) {
+		this.items = Collections.unmodifiableList(items);
+		this.nextToken = nextToken;
+	}
+
+	/**
+	 * @return The items of this page, in key order.
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * @return The token of the next page, or {@code null} if this is the last page.
+	 */
+	public String getNextToken() {
+		return nextToken;
+	}
+
+	/**
+	 * @return {@code true} if another page follows.
+	 */
+	public boolean hasNext() {
+		return nextToken != null;
+	}
+
+	/**
+	 * @return {@code true} if keys of a field type can be encoded into a continuation token.
+	 */
+	static boolean supports(Class<?> type) {
+		return type == long.class || type == Long.class || type == int.class || type == Integer.class
+				|| type == double.class || type == Double.class || type == String.class || type == UUID.class;
+	}
+
+	/**
+	 * Encodes the sort key of the last item of a page.
+	 */
+	static String encode(String column, Object key) {
+		String tag;
+		if(key instanceof Long) tag = "L";
+		else if(key instanceof Integer) tag = "I";
+		else if(key instanceof Double) tag = "D";
+		else if(key instanceof String) tag = "S";
+		else if(key instanceof UUID) tag = "U";
+		else throw new IllegalArgumentException("Unsupported keyset column type for " + column + ": "
+				+ (key == null ? "null" : key.getClass().getSimpleName()));
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((column + "\u0000" + tag + key).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a continuation token produced for a column.
+	 *
+	 * @throws IllegalArgumentException if the token is malformed or was produced for another column.
+	 */
+	static Object decode(String column, String token) {
+		String decoded;
+		try {
+			decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Malformed continuation token", e);
+		}
+		int separator = decoded.indexOf('\u0000');
+		if(separator < 0 || separator + 1 >= decoded.length() || !decoded.substring(0, separator).equals(column)) {
+			throw new IllegalArgumentException("Continuation token does not belong to column " + column);
+		}
+		String value = decoded.substring(separator + 2);
+		try {
+			return switch(decoded.charAt(separator + 1)) {
+			case 'L' -> Long.parseLong(value);
+			case 'I' -> Integer.parseInt(value);
+			case 'D' -> Double.parseDouble(value);
+			case 'S' -> value;
+			case 'U' -> UUID.fromString(value);
+			default -> throw new IllegalArgumentException("Malformed continuation token");
+			};
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed continuation token", e);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+/**
+ * Holds the tuning values of a {@link ConnectionPool}.
+ * <p>
+ * Every {@link Database} owns one pool configured by an instance of this class.
+ * Values are read from the {@code pool} section of a database entry in {@code config.yml};
+ * anything left out falls back to the defaults below.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public class PoolSettings {
+
+	public static final int DEFAULT_MIN_SIZE = 2;
+	public static final int DEFAULT_MAX_SIZE = 10;
+	public static final long DEFAULT_IDLE_TIMEOUT = 600_000L;
+	public static final long DEFAULT_BORROW_TIMEOUT = 5_000L;
+	public static final long DEFAULT_LEAK_THRESHOLD = 0L;
+	public static final long DEFAULT_VALIDATION_BYPASS = 500L;
+
+	private int minSize;
+	private int maxSize;
+	private long idleTimeout;
+	private long borrowTimeout;
+	private long leakThreshold;
+	private long validationBypass;
+
+	/**
+	 * Constructs settings holding the default values.
+	 */
+	public PoolSettings() {
+		this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT, DEFAULT_BORROW_TIMEOUT, DEFAULT_LEAK_THRESHOLD);
+	}
+
+	/**
+	 * Constructs pool settings.
+	 *
+	 * @param minSize       The number of connections kept open even when idle.
+	 * @param maxSize       The hard cap of connections opened against the server.
+	 * @param idleTimeout   Milliseconds after which an idle connection above {@code minSize} is closed.
+	 * @param borrowTimeout Milliseconds a caller waits for a free connection before failing.
+	 * @param leakThreshold Milliseconds a connection may stay borrowed before a leak warning is logged, {@code 0} disables it.
+	 */
+	public PoolSettings(int minSize, int maxSize, long idleTimeout, long borrowTimeout, long leakThreshold) {
+		if(maxSize < 1) throw new IllegalArgumentException("Pool max size must be at least 1");
+		if(minSize < 0 || minSize > maxSize) throw new IllegalArgumentException("Pool min size must be between 0 and " + maxSize);
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.idleTimeout = idleTimeout;
+		this.borrowTimeout = borrowTimeout;
+		this.leakThreshold = leakThreshold;
+		this.validationBypass = DEFAULT_VALIDATION_BYPASS;
+	}
+
+	/**
+	 * @return The number of connections kept open even when idle.
+	 */
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * @return The hard cap of connections opened against the server.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return Milliseconds after which an idle connection above the minimum size is closed.
+	 */
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * @return Milliseconds a caller waits for a free connection.
+	 */
+	public long getBorrowTimeout() {
+		return borrowTimeout;
+	}
+
+	/**
+	 * @return Milliseconds a connection may stay borrowed before a leak is reported, {@code 0} when disabled.
+	 */
+	public long getLeakThreshold() {
+		return leakThreshold;
+	}
+
+	/**
+	 * Connections returned to the pool more recently than this are handed out without
+	 * a validation round trip.
+	 *
+	 * @return The validation bypass window in milliseconds.
+	 */
+	public long getValidationBypass() {
+		return validationBypass;
+	}
+
+	/**
+	 * Sets the validation bypass window.
+	 *
+	 * @param validationBypass The window in milliseconds, {@code 0} validates on every borrow.
+	 */
+	public void setValidationBypass(long validationBypass) {
+		this.validationBypass = validationBypass;
+	}
+}
@@ -0,0 +1,198 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+
+/**
+ * Mapping model of a projection: a record or plain class receiving a subset of an entity's columns.
+ * <p>
+ * Columns are named like entity columns: by {@code @MySQLColumn} when present, otherwise by the
+ * record component or field name. Records are built through their canonical constructor; other classes
+ * need a no-argument constructor and have every non-static field assigned. Values are converted by the
+ * {@link ColumnCodec} of each component or field type, resolved once. Projections are never
+ * managed by a session nor cached, and reading them selects only their own columns.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+final class ProjectionMetadata {
+
+	private static final ClassValue<ProjectionMetadata> CACHE = new ClassValue<>() {
+		@Override
+		protected ProjectionMetadata computeValue(Class<?> type) {
+			return new ProjectionMetadata(type);
+		}
+	};
+
+	private final Class<?> type;
+	private final List<String> columnNames;
+	private final String selectList;
+	private final Class<?>[] componentTypes;
+	private final ColumnCodec<Object>[] componentCodecs;
+	private final Object[] componentDefaults;
+	private final MethodHandle canonicalConstructor;
+	private final MethodHandle[] componentAccessors;
+	private final List<ColumnMetadata> fields;
+	private final Constructor<?> constructor;
+
+	@SuppressWarnings("unchecked")
+	private ProjectionMetadata(Class<?> type) {
+		this.type = type;
+		List<String> columnNames = new ArrayList<>();
+		if(type.isRecord()) {
+			RecordComponent[] components = type.getRecordComponents();
+			this.componentTypes = new Class<?>[components.length];
+			this.componentAccessors = new MethodHandle[components.length];
+			this.componentCodecs = new ColumnCodec[components.length];
+			this.componentDefaults = new Object[components.length];
+			try {
+				for(int i = 0; i < components.length; i++) {
+					componentTypes[i] = components[i].getType();
+					componentCodecs[i] = CodecRegistry.resolve(componentTypes[i]);
+					if(componentTypes[i].isPrimitive()) componentDefaults[i] = Array.get(Array.newInstance(componentTypes[i], 1), 0);
+					columnNames.add(columnName(field(type, components[i].getName())));
+					components[i].getAccessor().setAccessible(true);
+					componentAccessors[i] = MethodHandles.lookup().unreflect(components[i].getAccessor())
+							.asType(MethodType.methodType(Object.class, Object.class));
+				}
+				Constructor<?> canonical = type.getDeclaredConstructor(componentTypes);
+				canonical.setAccessible(true);
+				this.canonicalConstructor = MethodHandles.lookup().unreflectConstructor(canonical)
+						.asType(MethodType.methodType(Object.class, componentTypes))
+						.asSpreader(Object[].class, componentTypes.length);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Cannot access the canonical constructor of " + type.getSimpleName(), e);
+			}
+			this.fields = null;
+			this.constructor = null;
+		}else {
+			List<ColumnMetadata> fields = new ArrayList<>();
+			for(Field f : type.getDeclaredFields()) {
+				if(Modifier.isStatic(f.getModifiers()) || f.isSynthetic()) continue;
+				String columnName = columnName(f);
+				fields.add(new ColumnMetadata(columnName, f, false, false, false, null));
+				columnNames.add(columnName);
+			}
+			try {
+				this.constructor = type.getDeclaredConstructor();
+				constructor.setAccessible(true);
+			} catch (NoSuchMethodException e) {
+				throw new IllegalStateException("Projection " + type.getSimpleName() + " has no no-argument constructor", e);
+			}
+			this.fields = Collections.unmodifiableList(fields);
+			this.componentTypes = null;
+			this.componentCodecs = null;
+			this.componentDefaults = null;
+			this.componentAccessors = null;
+			this.canonicalConstructor = null;
+		}
+		if(columnNames.isEmpty()) throw new IllegalStateException("Projection " + type.getSimpleName() + " declares no columns");
+		this.columnNames = Collections.unmodifiableList(columnNames);
+		this.selectList = "`" + String.join("`, `", columnNames) + "`";
+	}
+
+	/**
+	 * Retrieves the metadata of a projection class, building it on first use.
+	 *
+	 * @param type The record or class receiving the columns.
+	 * @return The metadata.
+	 */
+	static ProjectionMetadata of(Class<?> type) {
+		return CACHE.get(type);
+	}
+
+	private static Field field(Class<?> type, String name) {
+		try {
+			return type.getDeclaredField(name);
+		} catch (NoSuchFieldException e) {
+			throw new IllegalStateException("Record component " + name + " has no backing field", e);
+		}
+	}
+
+	private static String columnName(Field f) {
+		MySQLColumn msC = f.getAnnotation(MySQLColumn.class);
+		return msC != null ? msC.value() : f.getName();
+	}
+
+	/**
+	 * Builds an instance from the current row, whose columns are in the order of {@link #getColumnNames()}.
+	 */
+	Object map(ResultSet rs) throws SQLException {
+		if(canonicalConstructor != null) {
+			Object[] args = new Object[componentTypes.length];
+			for(int i = 0; i < args.length; i++) {
+				Object value = componentCodecs[i].read(rs, i + 1);
+				args[i] = value != null ? value : componentDefaults[i];
+			}
+			try {
+				return canonicalConstructor.invoke(args);
+			} catch (Throwable e) {
+				throw new IllegalStateException("Failed to instantiate " + type.getSimpleName(), e);
+			}
+		}
+		Object instance;
+		try {
+			instance = constructor.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed to instantiate " + type.getSimpleName(), e);
+		}
+		for(int i = 0; i < fields.size(); i++) {
+			fields.get(i).read(rs, i + 1, instance);
+		}
+		return instance;
+	}
+
+	/**
+	 * Reads the value of one of the projection's columns from an instance.
+	 *
+	 * @param instance The projection instance.
+	 * @param column   The column name.
+	 * @return The value.
+	 * @throws IllegalArgumentException if the projection does not select the column.
+	 */
+	Object get(Object instance, String column) {
+		int index = columnNames.indexOf(column);
+		if(index < 0) throw new IllegalArgumentException("Projection " + type.getSimpleName() + " does not select column " + column);
+		if(componentAccessors == null) return fields.get(index).get(instance);
+		try {
+			return componentAccessors[index].invoke(instance);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Failed to read " + column + " from " + type.getSimpleName(), e);
+		}
+	}
+
+	/**
+	 * @return The projection class.
+	 */
+	Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * @return The selected column names, in mapping order.
+	 */
+	List<String> getColumnNames() {
+		return columnNames;
+	}
+
+	/**
+	 * @return The quoted, comma separated column list of the {@code SELECT} clause.
+	 */
+	String getSelectList() {
+		return selectList;
+	}
+}
@@ -0,0 +1,383 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Typed, parameterized query over the entities of a class.
+ * <p>
+ * Conditions are combined with {@code AND} and every value is bound as a statement parameter, so
+ * queries that differ only in their values share the same SQL text. That text is generated once per
+ * query shape (the columns, operators, ordering and paging used) and cached in the {@link EntityMetadata},
+ * which lets the driver reuse one server-side prepared statement per shape on each pooled connection.
+ * Column names are checked against the entity metadata and unknown columns are rejected.
+ * </p>
+ * <p>
+ * Queries created with {@link SQLSession#query(Class, Class)} select only the columns of a projection
+ * and return projections instead of managed entities.
+ * </p>
+ * <p>
+ * Relations read by a query are loaded lazily, in one batch per referenced class, see {@link Ref}.
+ * {@link #fetch(String)} loads a relation with the entities instead, through a {@code LEFT JOIN}.
+ * </p>
+ * <pre>{@code
+ * List<Account> rich = session.query(Account.class)
+ *         .eq("world", "survival")
+ *         .ge("balance", 1000)
+ *         .orderBy("balance", false)
+ *         .limit(10)
+ *         .list();
+ * }</pre>
+ *
+ * @param <T> The result type, the entity or a projection.
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public class Query<T> {
+
+	private record Condition(String column, String operator, int arity) {}
+
+	private record Order(String column, boolean ascending) {}
+
+	private final SQLSession session;
+	private final EntityMetadata meta;
+	private final ProjectionMetadata projection;
+	private final List<Condition> conditions = new ArrayList<>();
+	private final List<Order> orders = new ArrayList<>();
+	private final List<Object> params = new ArrayList<>();
+	private final List<ColumnMetadata> fetches = new ArrayList<>();
+	private long limit = -1;
+	private long offset = -1;
+
+	Query(SQLSession session, Class<?> clazz, Class<T> resultType) {
+		this.session = session;
+		this.meta = EntityMetadata.of(clazz);
+		if(resultType == clazz) {
+			this.projection = null;
+		}else {
+			this.projection = ProjectionMetadata.of(resultType);
+			for(String column : projection.getColumnNames()) column(column);
+		}
+	}
+
+	private Query(Query<T> other) {
+		this.session = other.session;
+		this.meta = other.meta;
+		this.projection = other.projection;
+		this.conditions.addAll(other.conditions);
+		this.orders.addAll(other.orders);
+		this.params.addAll(other.params);
+		this.fetches.addAll(other.fetches);
+		this.limit = other.limit;
+		this.offset = other.offset;
+	}
+
+	/**
+	 * Matches rows whose column equals a value, or is {@code NULL} if the value is {@code null}.
+	 */
+	public Query<T> eq(String column, Object value) {
+		if(value == null) return isNull(column);
+		return where(column, "=", value);
+	}
+
+	/**
+	 * Matches rows whose column differs from a value, or is not {@code NULL} if the value is {@code null}.
+	 */
+	public Query<T> ne(String column, Object value) {
+		if(value == null) return isNotNull(column);
+		return where(column, "<>", value);
+	}
+
+	/**
+	 * Matches rows whose column is greater than a value.
+	 */
+	public Query<T> gt(String column, Object value) {
+		return where(column, ">", value);
+	}
+
+	/**
+	 * Matches rows whose column is greater than or equal to a value.
+	 */
+	public Query<T> ge(String column, Object value) {
+		return where(column, ">=", value);
+	}
+
+	/**
+	 * Matches rows whose column is less than a value.
+	 */
+	public Query<T> lt(String column, Object value) {
+		return where(column, "<", value);
+	}
+
+	/**
+	 * Matches rows whose column is less than or equal to a value.
+	 */
+	public Query<T> le(String column, Object value) {
+		return where(column, "<=", value);
+	}
+
+	/**
+	 * Matches rows whose column matches a {@code LIKE} pattern.
+	 */
+	public Query<T> like(String column, String pattern) {
+		return where(column, "LIKE", pattern);
+	}
+
+	/**
+	 * Matches rows whose column lies between two values, inclusive.
+	 */
+	public Query<T> between(String column, Object from, Object to) {
+		conditions.add(new Condition(column(column), "BETWEEN", 2));
+		params.add(meta.getColumn(column).toParameter(from));
+		params.add(meta.getColumn(column).toParameter(to));
+		return this;
+	}
+
+	/**
+	 * Matches rows whose column equals one of the values. The list of placeholders is padded to a
+	 * power of two by repeating the last value, so collections of similar sizes share a statement.
+	 * An empty collection matches nothing.
+	 */
+	public Query<T> in(String column, Collection<?> values) {
+		column = column(column);
+		if(values.isEmpty()) {
+			conditions.add(new Condition(column, "NONE", 0));
+			return this;
+		}
+		int size = Integer.highestOneBit(values.size());
+		if(size < values.size()) size <<= 1;
+		conditions.add(new Condition(column, "IN", size));
+		ColumnMetadata metaColumn = meta.getColumn(column);
+		Object last = null;
+		for(Object value : values) {
+			last = metaColumn.toParameter(value);
+			params.add(last);
+		}
+		for(int i = values.size(); i < size; i++) params.add(last);
+		return this;
+	}
+
+	/**
+	 * Matches rows whose column is {@code NULL}.
+	 */
+	public Query<T> isNull(String column) {
+		conditions.add(new Condition(column(column), "IS NULL", 0));
+		return this;
+	}
+
+	/**
+	 * Matches rows whose column is not {@code NULL}.
+	 */
+	public Query<T> isNotNull(String column) {
+		conditions.add(new Condition(column(column), "IS NOT NULL", 0));
+		return this;
+	}
+
+	/**
+	 * Orders the results by a column. May be called several times to add tie-breakers.
+	 */
+	public Query<T> orderBy(String column, boolean ascending) {
+		orders.add(new Order(column(column), ascending));
+		return this;
+	}
+
+	/**
+	 * Loads a relation with the entities, by joining the referenced table, instead of lazily on first access.
+	 * Referenced entities already managed by the session are reused.
+	 *
+	 * @param column The column of a {@code Ref} field annotated with {@code @SQLForeignKey}.
+	 * @throws IllegalArgumentException if the column does not map a relation.
+	 * @throws IllegalStateException    if the query returns projections.
+	 */
+	public Query<T> fetch(String column) {
+		if(projection != null) throw new IllegalStateException("Relations cannot be fetched into a projection");
+		ColumnMetadata relation = meta.getColumn(column(column));
+		if(relation.getRelation() == null) {
+			throw new IllegalArgumentException("Column " + column + " of class " + meta.getType().getSimpleName() + " does not map a relation");
+		}
+		if(!fetches.contains(relation)) fetches.add(relation);
+		return this;
+	}
+
+	/**
+	 * Limits the number of results.
+	 */
+	public Query<T> limit(long limit) {
+		if(limit < 0) throw new IllegalArgumentException("Limit cannot be negative");
+		this.limit = limit;
+		return this;
+	}
+
+	/**
+	 * Skips a number of results.
+	 */
+	public Query<T> offset(long offset) {
+		if(offset < 0) throw new IllegalArgumentException("Offset cannot be negative");
+		this.offset = offset;
+		return this;
+	}
+
+	/**
+	 * Runs the query. Results join the session's persistence context like {@link SQLSession#executeQuery(Class, String)}.
+	 *
+	 * @return The matching entities.
+	 */
+	public List<T> list() {
+		if(projection != null) return session.executeProjection(meta.getType(), projection, sql(false, limit), boundParams(limit));
+		return session.executeQuery(meta, sql(false, limit), boundParams(limit), fetches);
+	}
+
+	/**
+	 * Runs the query with a limit of one.
+	 *
+	 * @return The first matching entity, or {@code null} if none matches.
+	 */
+	public T first() {
+		List<T> results = projection != null ? session.executeProjection(meta.getType(), projection, sql(false, 1), boundParams(1))
+				: session.executeQuery(meta, sql(false, 1), boundParams(1), fetches);
+		return results.isEmpty() ? null : results.get(0);
+	}
+
+	/**
+	 * Runs the query through a database cursor, see {@link SQLSession#stream(Class, String, boolean)}.
+	 * The stream must be closed.
+	 *
+	 * @param manage {@code true} to add each entity to the persistence context. Ignored for projections.
+	 * @return A lazily populated stream of the matching entities.
+	 */
+	public Stream<T> stream(boolean manage) {
+		if(projection != null) return session.streamProjection(meta.getType(), projection, sql(false, limit), boundParams(limit));
+		return session.stream(meta, sql(false, limit), boundParams(limit), manage, fetches);
+	}
+
+	/**
+	 * Reads one page of the matching rows ordered by a sort key, see {@link Page}.
+	 * <p>
+	 * The key must be unique, such as the {@code @SQLId} column, and should be indexed. It must be a
+	 * {@code long}, {@code int}, {@code double}, {@code String} or {@code UUID} field; relations and other
+	 * codec-mapped columns cannot be used. For projections the projection must select it. This query is left unchanged, so it can be reused for the next page.
+	 * </p>
+	 *
+	 * @param keyColumn The column the pages are ordered by.
+	 * @param ascending {@code true} to page in ascending key order.
+	 * @param size      The maximum number of items per page.
+	 * @param token     The continuation token of the previous page, or {@code null} for the first page.
+	 * @return The page.
+	 * @throws IllegalStateException    if {@link #orderBy}, {@link #limit} or {@link #offset} was used.
+	 * @throws IllegalArgumentException if the key column is not a scalar column, or the token is malformed
+	 *                                  or belongs to another column.
+	 */
+	public Page<T> page(String keyColumn, boolean ascending, int size, String token) {
+		if(size < 1) throw new IllegalArgumentException("Page size must be positive");
+		if(!orders.isEmpty() || limit >= 0 || offset >= 0) {
+			throw new IllegalStateException("Keyset pages cannot be combined with orderBy, limit or offset");
+		}
+		ColumnMetadata key = meta.getColumn(column(keyColumn));
+		if(!Page.supports(key.getType())) {
+			throw new IllegalArgumentException("Keyset pages need a scalar key column, " + keyColumn + " is a "
+					+ key.getType().getSimpleName());
+		}
+		if(projection != null && !projection.getColumnNames().contains(keyColumn)) {
+			throw new IllegalArgumentException("Projection " + projection.getType().getSimpleName() + " does not select column " + keyColumn);
+		}
+
+		Query<T> page = new Query<>(this);
+		if(token != null) page.where(keyColumn, ascending ? ">" : "<", Page.decode(keyColumn, token));
+		page.orderBy(keyColumn, ascending).limit(size + 1L);
+		List<T> items = page.list();
+		if(items.size() <= size) return new Page<>(items, null);
+
+		items = new ArrayList<>(items.subList(0, size));
+		T last = items.get(size - 1);
+		Object lastKey = projection != null ? projection.get(last, keyColumn) : key.get(last);
+		return new Page<>(items, Page.encode(keyColumn, lastKey));
+	}
+
+	/**
+	 * Counts the matching rows, ignoring ordering and paging.
+	 *
+	 * @return The number of matching rows.
+	 */
+	public long count() {
+		return session.executeCount(meta.getType(), sql(true, -1), params);
+	}
+
+	private Query<T> where(String column, String operator, Object value) {
+		conditions.add(new Condition(column(column), operator, 1));
+		params.add(meta.getColumn(column).toParameter(value));
+		return this;
+	}
+
+	private String column(String column) {
+		if(meta.getColumn(column) == null) {
+			throw new IllegalArgumentException("Unknown column " + column + " for class " + meta.getType().getSimpleName());
+		}
+		return column;
+	}
+
+	private List<Object> boundParams(long limit) {
+		if(limit < 0 && offset < 0) return params;
+		List<Object> bound = new ArrayList<>(params.size() + 2);
+		bound.addAll(params);
+		bound.add(limit < 0 ? Long.MAX_VALUE : limit);
+		if(offset >= 0) bound.add(offset);
+		return bound;
+	}
+
+	private String sql(boolean count, long limit) {
+		StringBuilder shape = new StringBuilder(count ? "C" : projection != null ? "P " + projection.getType().getName() : "S");
+		for(Condition condition : conditions) {
+			shape.append('|').append(condition.column()).append(' ').append(condition.operator()).append(' ').append(condition.arity());
+		}
+		if(!count) {
+			for(ColumnMetadata fetch : fetches) shape.append("|f ").append(fetch.getName());
+			for(Order order : orders) shape.append("|o ").append(order.column()).append(order.ascending() ? " +" : " -");
+			if(limit >= 0 || offset >= 0) shape.append("|L");
+			if(offset >= 0) shape.append("|O");
+		}
+		return meta.getQuerySql(shape.toString(), k -> build(count, limit >= 0 || offset >= 0));
+	}
+
+	private String build(boolean count, boolean paged) {
+		String select = count ? "COUNT(*)" : projection != null ? projection.getSelectList() : meta.getAliasedSelectList();
+		StringBuilder sql = new StringBuilder("SELECT ").append(select);
+		if(!count) {
+			for(int i = 0; i < fetches.size(); i++) {
+				for(ColumnMetadata column : fetches.get(i).getRelation().getTarget().getColumns()) {
+					sql.append(", r").append(i).append(".`").append(column.getName()).append('`');
+				}
+			}
+		}
+		sql.append(" FROM `").append(meta.getTableName()).append("` obj");
+		if(!count) {
+			for(int i = 0; i < fetches.size(); i++) {
+				RelationMetadata relation = fetches.get(i).getRelation();
+				sql.append(" LEFT JOIN `").append(relation.getTarget().getTableName()).append("` r").append(i)
+						.append(" ON r").append(i).append(".`").append(relation.getAttribute()).append("` = obj.`")
+						.append(fetches.get(i).getName()).append('`');
+			}
+		}
+		for(int i = 0; i < conditions.size(); i++) {
+			Condition condition = conditions.get(i);
+			sql.append(i == 0 ? " WHERE " : " AND ");
+			switch(condition.operator()) {
+			case "NONE" -> sql.append("1 = 0");
+			case "IS NULL", "IS NOT NULL" -> sql.append("obj.`").append(condition.column()).append("` ").append(condition.operator());
+			case "BETWEEN" -> sql.append("obj.`").append(condition.column()).append("` BETWEEN ? AND ?");
+			case "IN" -> sql.append("obj.`").append(condition.column()).append("` IN (")
+					.append("?, ".repeat(condition.arity() - 1)).append("?)");
+			default -> sql.append("obj.`").append(condition.column()).append("` ").append(condition.operator()).append(" ?");
+			}
+		}
+		if(count) return sql.toString();
+		for(int i = 0; i < orders.size(); i++) {
+			Order order = orders.get(i);
+			sql.append(i == 0 ? " ORDER BY obj.`" : ", obj.`").append(order.column()).append(order.ascending() ? "` ASC" : "` DESC");
+		}
+		if(paged) sql.append(" LIMIT ?");
+		if(offset >= 0) sql.append(" OFFSET ?");
+		return sql.toString();
+	}
+}
@@ -0,0 +1,577 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Statement metrics of one {@link Database}.
+ * <p>
+ * Every statement run by an {@link SQLSession} is recorded under its entity class and {@link Operation}:
+ * a latency histogram, the rows read or written, an estimate of the column bytes carried and the number
+ * of failures. Recording allocates nothing; histograms use fixed log-linear buckets (about 6% precision)
+ * updated with atomic increments, so metrics can stay enabled in production. Statements slower than the
+ * slow-query threshold are logged with their SQL shape and the plugin that issued them, and the most recent
+ * ones are kept for {@link #getSlowQueries()}.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class QueryMetrics {
+
+	/**
+	 * The kind of statement recorded.
+	 */
+	public enum Operation {
+		SELECT, COUNT, INSERT, UPDATE, UPSERT, DELETE, NATIVE, DDL
+	}
+
+	/**
+	 * The default slow-query threshold in milliseconds.
+	 */
+	public static final long DEFAULT_SLOW_QUERY_THRESHOLD = 250L;
+
+	private static final Logger LOGGER = Logger.getLogger("MySQLRepository");
+	private static final int SLOW_QUERY_HISTORY = 50;
+	private static final int MAX_SHAPE_LENGTH = 512;
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w`])-?\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final Operation[] OPERATIONS = Operation.values();
+	private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+	private final String dbName;
+	private final MainThreadGuard guard;
+	private final Map<Class<?>, Stats[]> stats = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedDeque<SlowQuery> slowQueries = new ConcurrentLinkedDeque<>();
+	private final LongAdder slowQueryCount = new LongAdder();
+	private volatile boolean enabled = true;
+	private volatile long slowQueryThresholdNanos = DEFAULT_SLOW_QUERY_THRESHOLD * 1_000_000L;
+
+	QueryMetrics(String dbName, MainThreadGuard guard) {
+		this.dbName = dbName;
+		this.guard = guard;
+	}
+
+	/**
+	 * Marks the start of a statement.
+	 *
+	 * @param owner The plugin owning the session.
+	 * @return The start time, or {@code 0} when metrics are disabled and the statement is not run on the server thread.
+	 * @throws IllegalStateException if the {@link MainThreadGuard} refuses statements on the server thread.
+	 */
+	long start(String owner) {
+		if(guard.isBlocking()) {
+			guard.check(owner);
+			return System.nanoTime();
+		}
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Records a statement that completed.
+	 *
+	 * @param type    The entity or projection class, or {@code null} for native statements.
+	 * @param started The value returned by {@link #start(String)}.
+	 * @param rows    The rows read or written.
+	 * @param bytes   The estimated column bytes read or written.
+	 * @param owner   The plugin owning the session, used when the caller cannot be found on the stack.
+	 */
+	void record(Class<?> type, Operation operation, String sql, long started, long rows, long bytes, String owner) {
+		if(started == 0L) return;
+		long elapsed = System.nanoTime() - started;
+		if(guard.isBlocking()) guard.blocked(type, operation, sql, elapsed, owner);
+		if(!enabled) return;
+		Stats entry = stats(type, operation);
+		entry.record(elapsed);
+		entry.rows.add(rows);
+		entry.bytes.add(bytes);
+		if(elapsed >= slowQueryThresholdNanos && slowQueryThresholdNanos > 0) slow(type, operation, sql, elapsed, rows, owner);
+	}
+
+	/**
+	 * Records a statement that failed.
+	 */
+	void failure(Class<?> type, Operation operation, String sql, long started, String owner) {
+		if(started == 0L) return;
+		long elapsed = System.nanoTime() - started;
+		if(guard.isBlocking()) guard.blocked(type, operation, sql, elapsed, owner);
+		if(!enabled) return;
+		Stats entry = stats(type, operation);
+		entry.record(elapsed);
+		entry.errors.increment();
+		if(elapsed >= slowQueryThresholdNanos && slowQueryThresholdNanos > 0) slow(type, operation, sql, elapsed, 0L, owner);
+	}
+
+	/**
+	 * Estimates the column bytes of an entity, or returns {@code 0} when metrics are disabled.
+	 */
+	long weigh(EntityMetadata meta, Object entity) {
+		if(!enabled || entity == null) return 0L;
+		long bytes = 0L;
+		for(ColumnMetadata column : meta.getColumns()) bytes += EntityCache.weigh(column.get(entity));
+		return bytes;
+	}
+
+	/**
+	 * Estimates the column bytes of entities, or returns {@code 0} when metrics are disabled.
+	 */
+	long weigh(EntityMetadata meta, Collection<?> entities) {
+		if(!enabled) return 0L;
+		long bytes = 0L;
+		for(Object entity : entities) bytes += weigh(meta, entity);
+		return bytes;
+	}
+
+	/**
+	 * Estimates the column bytes of projections, or returns {@code 0} when metrics are disabled.
+	 */
+	long weigh(ProjectionMetadata projection, Collection<?> instances) {
+		if(!enabled) return 0L;
+		long bytes = 0L;
+		for(Object instance : instances) bytes += weigh(projection, instance);
+		return bytes;
+	}
+
+	/**
+	 * Estimates the column bytes of a projection, or returns {@code 0} when metrics are disabled.
+	 */
+	long weigh(ProjectionMetadata projection, Object instance) {
+		if(!enabled || instance == null) return 0L;
+		long bytes = 0L;
+		for(String column : projection.getColumnNames()) bytes += EntityCache.weigh(projection.get(instance, column));
+		return bytes;
+	}
+
+	/**
+	 * Estimates the bytes of a native row, or returns {@code 0} when metrics are disabled.
+	 */
+	long weigh(Object[] row) {
+		if(!enabled) return 0L;
+		long bytes = 0L;
+		for(Object value : row) bytes += EntityCache.weigh(value);
+		return bytes;
+	}
+
+	private Stats stats(Class<?> type, Operation operation) {
+		Stats[] byOperation = stats.get(type == null ? Void.class : type);
+		if(byOperation == null) byOperation = stats.computeIfAbsent(type == null ? Void.class : type, k -> new Stats[OPERATIONS.length]);
+		Stats entry = byOperation[operation.ordinal()];
+		if(entry == null) {
+			synchronized(byOperation) {
+				entry = byOperation[operation.ordinal()];
+				if(entry == null) byOperation[operation.ordinal()] = entry = new Stats();
+			}
+		}
+		return entry;
+	}
+
+	private void slow(Class<?> type, Operation operation, String sql, long elapsed, long rows, String owner) {
+		SlowQuery query = new SlowQuery(System.currentTimeMillis(), entityName(type), operation.name(),
+				elapsed / 1_000_000.0, rows, caller(owner), shape(sql));
+		slowQueryCount.increment();
+		slowQueries.addFirst(query);
+		while(slowQueries.size() > SLOW_QUERY_HISTORY) slowQueries.pollLast();
+		LOGGER.warning(String.format("Slow query on %s: %s %s took %.1fms (%d rows) from %s: %s",
+				dbName, query.getEntity(), query.getOperation(), query.getMillis(), rows, query.getCaller(), query.getSql()));
+	}
+
+	/**
+	 * Reduces a statement to its shape: literals become {@code ?} and whitespace is collapsed,
+	 * so statements differing only in their values read the same.
+	 */
+	static String shape(String sql) {
+		if(sql == null) return "";
+		String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+		shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+		shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+		return shape.length() > MAX_SHAPE_LENGTH ? shape.substring(0, MAX_SHAPE_LENGTH) + "..." : shape;
+	}
+
+	/**
+	 * Finds the plugin that issued the statement: the nearest frame loaded by another plugin, falling back
+	 * to the owner of the session when the statement runs on a database thread.
+	 */
+	private static String caller(String owner) {
+		ClassLoader own = QueryMetrics.class.getClassLoader();
+		String caller = STACK_WALKER.walk(frames -> frames
+				.map(StackWalker.StackFrame::getDeclaringClass)
+				.filter(c -> c.getClassLoader() != own && c.getClassLoader() != null && c.getClassLoader() != ClassLoader.getPlatformClassLoader())
+				.map(QueryMetrics::pluginName)
+				.filter(name -> name != null)
+				.findFirst()
+				.orElse(null));
+		if(caller != null) return caller;
+		return owner != null ? owner : "MySQLRepository";
+	}
+
+	static String pluginName(Class<?> type) {
+		try {
+			JavaPlugin plugin = JavaPlugin.getProvidingPlugin(type);
+			return plugin == null ? null : plugin.getName();
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			return null;
+		}
+	}
+
+	static String entityName(Class<?> type) {
+		return type == null || type == Void.class ? "native" : type.getSimpleName();
+	}
+
+	/**
+	 * @return {@code true} if statements are recorded.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables recording. Recorded values are kept.
+	 *
+	 * @param enabled {@code true} to record statements.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return The slow-query threshold in milliseconds, {@code 0} if the slow-query log is disabled.
+	 */
+	public long getSlowQueryThreshold() {
+		return slowQueryThresholdNanos / 1_000_000L;
+	}
+
+	/**
+	 * Sets the duration from which statements are logged as slow.
+	 *
+	 * @param millis The threshold in milliseconds, or {@code 0} to disable the slow-query log.
+	 */
+	public void setSlowQueryThreshold(long millis) {
+		if(millis < 0) throw new IllegalArgumentException("Slow query threshold must not be negative");
+		this.slowQueryThresholdNanos = millis * 1_000_000L;
+	}
+
+	/**
+	 * @return The statistics of every entity and operation recorded so far, by descending total time.
+	 */
+	public List<OperationStats> getOperations() {
+		List<OperationStats> snapshot = new ArrayList<>();
+		for(Map.Entry<Class<?>, Stats[]> entry : stats.entrySet()) {
+			Stats[] byOperation = entry.getValue();
+			for(int i = 0; i < byOperation.length; i++) {
+				Stats stat = byOperation[i];
+				if(stat != null) snapshot.add(stat.snapshot(entityName(entry.getKey()), OPERATIONS[i].name()));
+			}
+		}
+		snapshot.sort(Comparator.comparingDouble(OperationStats::getTotalMillis).reversed());
+		return snapshot;
+	}
+
+	/**
+	 * @return The most recent slow queries, newest first.
+	 */
+	public List<SlowQuery> getSlowQueries() {
+		return new ArrayList<>(slowQueries);
+	}
+
+	/**
+	 * @return The number of slow queries since the metrics were created or reset.
+	 */
+	public long getSlowQueryCount() {
+		return slowQueryCount.sum();
+	}
+
+	/**
+	 * @return The number of statements recorded.
+	 */
+	public long getStatementCount() {
+		long count = 0L;
+		for(Stats[] byOperation : stats.values()) {
+			for(Stats stat : byOperation) if(stat != null) count += stat.count.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of statements that failed.
+	 */
+	public long getErrorCount() {
+		long count = 0L;
+		for(Stats[] byOperation : stats.values()) {
+			for(Stats stat : byOperation) if(stat != null) count += stat.errors.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * Discards every recorded value and slow query.
+	 */
+	public void reset() {
+		stats.clear();
+		slowQueries.clear();
+		slowQueryCount.reset();
+	}
+
+	/**
+	 * Latency histogram and counters of one entity and operation. Latencies are bucketed in microseconds:
+	 * values below 32 have their own bucket, larger ones share 16 buckets per power of two.
+	 */
+	static final class Stats {
+		private static final int LINEAR = 32;
+		private static final int SUB_BUCKETS = 16;
+		private static final int MAX_EXPONENT = 40;
+		static final int BUCKETS = LINEAR + (MAX_EXPONENT - 4) * SUB_BUCKETS;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+
+		void record(long nanos) {
+			buckets.incrementAndGet(bucket(nanos / 1_000L));
+			count.increment();
+			totalNanos.add(nanos);
+			long max = maxNanos.get();
+			while(nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+		}
+
+		static int bucket(long micros) {
+			if(micros < LINEAR) return (int) Math.max(0L, micros);
+			int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT - 1);
+			int sub = (int) ((Math.min(micros, (1L << MAX_EXPONENT) - 1) >>> (exponent - 4)) & (SUB_BUCKETS - 1));
+			return LINEAR + (exponent - 5) * SUB_BUCKETS + sub;
+		}
+
+		/**
+		 * @return The midpoint of a bucket in microseconds.
+		 */
+		static double value(int bucket) {
+			if(bucket < LINEAR) return bucket;
+			int exponent = (bucket - LINEAR) / SUB_BUCKETS + 5;
+			int sub = (bucket - LINEAR) % SUB_BUCKETS;
+			long lower = (long) (SUB_BUCKETS + sub) << (exponent - 4);
+			return lower + (1L << (exponent - 4)) / 2.0;
+		}
+
+		private double percentile(long[] counts, long total, double fraction) {
+			if(total == 0) return 0.0;
+			long rank = Math.max(1L, (long) Math.ceil(total * fraction));
+			long seen = 0L;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= rank) return value(i) / 1_000.0;
+			}
+			return value(counts.length - 1) / 1_000.0;
+		}
+
+		OperationStats snapshot(String entity, String operation) {
+			long[] counts = new long[BUCKETS];
+			long total = 0L;
+			for(int i = 0; i < BUCKETS; i++) {
+				counts[i] = buckets.get(i);
+				total += counts[i];
+			}
+			long n = count.sum();
+			double totalMillis = totalNanos.sum() / 1_000_000.0;
+			return new OperationStats(entity, operation, n, errors.sum(), rows.sum(), bytes.sum(),
+					totalMillis, n == 0 ? 0.0 : totalMillis / n, percentile(counts, total, 0.5),
+					percentile(counts, total, 0.99), maxNanos.get() / 1_000_000.0);
+		}
+	}
+
+	/**
+	 * Statistics of one entity class and operation at the time they were read.
+	 */
+	public static final class OperationStats {
+		private final String entity;
+		private final String operation;
+		private final long count;
+		private final long errors;
+		private final long rows;
+		private final long bytes;
+		private final double totalMillis;
+		private final double meanMillis;
+		private final double p50Millis;
+		private final double p99Millis;
+		private final double maxMillis;
+
+		OperationStats(String entity, String operation, long count, long errors, long rows, long bytes,
+				double totalMillis, double meanMillis, double p50Millis, double p99Millis, double maxMillis) {
+			this.entity = entity;
+			this.operation = operation;
+			this.count = count;
+			this.errors = errors;
+			this.rows = rows;
+			this.bytes = bytes;
+			this.totalMillis = totalMillis;
+			this.meanMillis = meanMillis;
+			this.p50Millis = p50Millis;
+			this.p99Millis = p99Millis;
+			this.maxMillis = maxMillis;
+		}
+
+		/**
+		 * @return The simple name of the entity class, or {@code native} for native queries.
+		 */
+		public String getEntity() {
+			return entity;
+		}
+
+		/**
+		 * @return The operation name.
+		 */
+		public String getOperation() {
+			return operation;
+		}
+
+		/**
+		 * @return The number of statements, failed ones included.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return The number of failed statements.
+		 */
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return The rows read or written.
+		 */
+		public long getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return The estimated column bytes read or written.
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return The time spent in these statements, in milliseconds.
+		 */
+		public double getTotalMillis() {
+			return totalMillis;
+		}
+
+		/**
+		 * @return The mean latency in milliseconds.
+		 */
+		public double getMeanMillis() {
+			return meanMillis;
+		}
+
+		/**
+		 * @return The median latency in milliseconds.
+		 */
+		public double getP50Millis() {
+			return p50Millis;
+		}
+
+		/**
+		 * @return The 99th percentile latency in milliseconds.
+		 */
+		public double getP99Millis() {
+			return p99Millis;
+		}
+
+		/**
+		 * @return The highest latency in milliseconds.
+		 */
+		public double getMaxMillis() {
+			return maxMillis;
+		}
+	}
+
+	/**
+	 * A statement that took longer than the slow-query threshold.
+	 */
+	public static final class SlowQuery {
+		private final long timestamp;
+		private final String entity;
+		private final String operation;
+		private final double millis;
+		private final long rows;
+		private final String caller;
+		private final String sql;
+
+		SlowQuery(long timestamp, String entity, String operation, double millis, long rows, String caller, String sql) {
+			this.timestamp = timestamp;
+			this.entity = entity;
+			this.operation = operation;
+			this.millis = millis;
+			this.rows = rows;
+			this.caller = caller;
+			this.sql = sql;
+		}
+
+		/**
+		 * @return When the statement completed, in epoch milliseconds.
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * @return The simple name of the entity class, or {@code native} for native queries.
+		 */
+		public String getEntity() {
+			return entity;
+		}
+
+		/**
+		 * @return The operation name.
+		 */
+		public String getOperation() {
+			return operation;
+		}
+
+		/**
+		 * @return The duration in milliseconds.
+		 */
+		public double getMillis() {
+			return millis;
+		}
+
+		/**
+		 * @return The rows read or written.
+		 */
+		public long getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return The name of the plugin that issued the statement.
+		 */
+		public String getCaller() {
+			return caller;
+		}
+
+		/**
+		 * @return The SQL shape of the statement, with literals replaced by {@code ?}.
+		 */
+		public String getSql() {
+			return sql;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lazy reference to an entity, mapped by a field annotated with {@code @SQLForeignKey}.
+ * <p>
+ * The column of the field stores the key of the referenced entity. References read by a session start
+ * unloaded. The first {@link #get()} loads every unloaded reference to the same class read by the same
+ * statement with one {@code IN} query, so walking the relations of a list of entities costs one statement
+ * instead of one per entity. Relations can also be fetched with the entities through a join,
+ * see {@link Query#fetch(String)}.
+ * </p>
+ * <pre>{@code
+ * @SQLForeignKey(table = "guilds", attribute = "id")
+ * @MySQLColumn("guild_id")
+ * private Ref<Guild> guild;
+ *
+ * for(GuildMember member : session.query(GuildMember.class).eq("rank", "officer").list()) {
+ *     member.getGuild().get(); // one query for the guilds of every member
+ * }
+ * }</pre>
+ * <p>
+ * Loading runs on the session that read the reference, which must still be open. Like the session,
+ * references are not thread-safe: load the relations of entities read by an {@link AsyncSQLSession} inside
+ * its work or with {@link Query#fetch(String)}. A relation is changed by assigning a new reference, never
+ * by mutating one.
+ * </p>
+ *
+ * @param <T> The referenced entity class.
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class Ref<T> {
+
+	private final Object key;
+	private T value;
+	private boolean loaded;
+	private Batch batch;
+
+	private Ref(Object key, T value, boolean loaded) {
+		this.key = key;
+		this.value = value;
+		this.loaded = loaded;
+	}
+
+	/**
+	 * Creates a reference to an entity. Its key is read from the entity when it is written, so the
+	 * entity must be persisted first when the key is generated.
+	 *
+	 * @param entity The referenced entity.
+	 * @param <T>    The entity class.
+	 * @return A loaded reference.
+	 */
+	public static <T> Ref<T> to(T entity) {
+		if(entity == null) throw new IllegalArgumentException("Referenced entity must not be null");
+		return new Ref<>(null, entity, true);
+	}
+
+	/**
+	 * Creates an unloaded reference to the entity with a key, to write a relation without loading it.
+	 * It cannot be loaded until it is read back by a session.
+	 *
+	 * @param key The value of the referenced column.
+	 * @param <T> The entity class.
+	 * @return An unloaded reference.
+	 */
+	public static <T> Ref<T> of(Object key) {
+		if(key == null) throw new IllegalArgumentException("Referenced key must not be null");
+		return new Ref<>(key, null, false);
+	}
+
+	static <T> Ref<T> read(Object key) {
+		return new Ref<>(key, null, false);
+	}
+
+	/**
+	 * Retrieves the referenced entity, loading it with the other pending references of its statement.
+	 *
+	 * @return The entity, or {@code null} if no row has the key.
+	 * @throws IllegalStateException if the reference is not loaded and was not read by a session,
+	 *                               or that session is closed.
+	 * @throws RuntimeException      if a database error occurs.
+	 */
+	public T get() {
+		if(!loaded) {
+			if(batch == null) throw new IllegalStateException("Reference to " + key + " was not read by a session");
+			batch.load();
+		}
+		return value;
+	}
+
+	/**
+	 * @return The key this reference was read or created with, or {@code null} if it was created from an entity.
+	 */
+	public Object getKey() {
+		return key;
+	}
+
+	/**
+	 * @return {@code true} if the entity is loaded, so {@link #get()} does not query.
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	@SuppressWarnings("unchecked")
+	void resolve(Object value) {
+		this.value = (T) value;
+		this.loaded = true;
+		this.batch = null;
+	}
+
+	boolean isPending() {
+		return !loaded && batch == null;
+	}
+
+	@Override
+	public String toString() {
+		return "Ref[" + (key != null ? key : value) + (loaded ? "" : ", unloaded") + "]";
+	}
+
+	/**
+	 * The unloaded references to one class read by one statement, loaded together.
+	 */
+	static final class Batch {
+		private final SQLSession session;
+		private final RelationMetadata relation;
+		private List<Ref<?>> pending = new ArrayList<>();
+
+		Batch(SQLSession session, RelationMetadata relation) {
+			this.session = session;
+			this.relation = relation;
+		}
+
+		void add(Ref<?> ref) {
+			ref.batch = this;
+			pending.add(ref);
+		}
+
+		private void load() {
+			List<Ref<?>> refs = pending;
+			pending = new ArrayList<>();
+			try {
+				session.load(relation, refs);
+			} catch (RuntimeException e) {
+				for(Ref<?> ref : refs) {
+					if(!ref.loaded) add(ref);
+				}
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLForeignKey;
+
+/**
+ * Describes a relation mapped by a {@code Ref<T>} field annotated with {@code @SQLForeignKey}.
+ * <p>
+ * The referenced class is resolved lazily, on first use, so entity classes may reference each other or
+ * themselves. Its table must be the one named by the foreign key. The column of the relation is stored
+ * with the codec of the referenced column, and its {@link #getCodec() codec} binds references, referenced
+ * entities and raw keys alike.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class RelationMetadata {
+
+	private final Field field;
+	private final Class<?> targetType;
+	private final String attribute;
+	private final ColumnCodec<Object> codec = new RelationCodec();
+	private volatile ColumnMetadata targetColumn;
+
+	RelationMetadata(Field field, SQLForeignKey foreignKey) {
+		if(foreignKey == null) {
+			throw new IllegalArgumentException("Ref field " + field.getName() + " must be annotated with @SQLForeignKey");
+		}
+		Type type = field.getGenericType();
+		if(!(type instanceof ParameterizedType parameterized) || !(parameterized.getActualTypeArguments()[0] instanceof Class<?> target)) {
+			throw new IllegalArgumentException("Ref field " + field.getName() + " must declare the referenced class, as in Ref<Guild>");
+		}
+		this.field = field;
+		this.targetType = target;
+		this.attribute = foreignKey.attribute();
+		MySQLField table = target.getAnnotation(MySQLField.class);
+		if(table == null || !table.value().equals(foreignKey.table())) {
+			throw new IllegalArgumentException("Ref field " + field.getName() + " references table " + foreignKey.table()
+					+ " but " + target.getSimpleName() + " is not mapped to it");
+		}
+	}
+
+	/**
+	 * @return The metadata of the referenced class.
+	 */
+	public EntityMetadata getTarget() {
+		return EntityMetadata.of(targetType);
+	}
+
+	/**
+	 * @return The referenced column.
+	 * @throws IllegalStateException if the referenced class does not map it.
+	 */
+	public ColumnMetadata getTargetColumn() {
+		ColumnMetadata column = targetColumn;
+		if(column == null) {
+			column = getTarget().getColumn(attribute);
+			if(column == null) {
+				throw new IllegalStateException("Ref field " + field.getName() + " references column " + attribute
+						+ " which " + targetType.getSimpleName() + " does not map");
+			}
+			targetColumn = column;
+		}
+		return column;
+	}
+
+	/**
+	 * @return The referenced class.
+	 */
+	public Class<?> getTargetType() {
+		return targetType;
+	}
+
+	/**
+	 * @return The name of the referenced column.
+	 */
+	public String getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * @return {@code true} if the relation references the {@code @SQLId} of its class.
+	 */
+	public boolean isById() {
+		return getTargetColumn().isId();
+	}
+
+	/**
+	 * @return The codec storing the key of a relation.
+	 */
+	public ColumnCodec<Object> getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Finds the key stored for a reference, a referenced entity or a raw key.
+	 *
+	 * @return The key, or {@code null} for {@code null}.
+	 */
+	public Object keyOf(Object value) {
+		if(value instanceof Ref<?> ref) {
+			if(ref.getKey() != null) return ref.getKey();
+			Object entity = ref.get();
+			return entity == null ? null : getTargetColumn().get(entity);
+		}
+		if(targetType.isInstance(value)) return getTargetColumn().get(value);
+		return value;
+	}
+
+	/**
+	 * Stores references by the codec of the referenced column and reads them back unloaded.
+	 */
+	private final class RelationCodec implements ColumnCodec<Object> {
+		@Override
+		public void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+			Object key = keyOf(value);
+			if(key == null) ps.setObject(index, null);
+			else getTargetColumn().getCodec().bind(ps, index, key);
+		}
+
+		@Override
+		public Object read(ResultSet rs, int index) throws SQLException {
+			Object key = getTargetColumn().getCodec().read(rs, index);
+			return key == null ? null : Ref.read(key);
+		}
+
+		@Override
+		public String sqlType() {
+			return getTargetColumn().getCodec().sqlType();
+		}
+	}
+}
@@ -0,0 +1,434 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The read replicas of one {@link Database}.
+ * <p>
+ * Sessions send reads outside a transaction to a replica chosen {@link Selection round-robin or by load},
+ * each replica having its own {@link ConnectionPool}. Writes and everything inside an {@link SQLTransaction}
+ * stay on the primary. The replication lag of every replica is polled in the background; replicas lagging
+ * more than {@link #getMaxLag()}, not replicating or unreachable are left out until they recover, and reads
+ * fall back to the primary when no replica is left.
+ * </p>
+ * <p>
+ * A session that has written sends its reads to the primary for {@link #getReadYourWritesWindow()} when
+ * {@link SQLSession#setReadYourWrites(boolean) read-your-writes} is on, long enough for any replica still
+ * in rotation to have applied the write.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class ReplicaSet {
+
+	/**
+	 * How a replica is picked for a read.
+	 */
+	public enum Selection {
+		/**
+		 * Replicas take turns.
+		 */
+		ROUND_ROBIN,
+		/**
+		 * The replica with the fewest borrowed and awaited connections is picked.
+		 */
+		LEAST_LOADED
+	}
+
+	/**
+	 * The default replication lag in milliseconds from which a replica is left out.
+	 */
+	public static final long DEFAULT_MAX_LAG = 5_000L;
+
+	/**
+	 * The default number of milliseconds between two lag checks.
+	 */
+	public static final long DEFAULT_LAG_CHECK_INTERVAL = 5_000L;
+
+	private static final Logger LOGGER = Logger.getLogger("MySQLRepository");
+	private static final String[] LAG_COLUMNS = {"Seconds_Behind_Source", "Seconds_Behind_Master"};
+
+	private final Database database;
+	private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile Selection selection = Selection.ROUND_ROBIN;
+	private volatile long maxLag = DEFAULT_MAX_LAG;
+	private volatile long lagCheckInterval = DEFAULT_LAG_CHECK_INTERVAL;
+	private volatile boolean readYourWrites = true;
+	private ScheduledExecutorService lagChecker;
+	private ScheduledFuture<?> lagCheck;
+	private boolean closed;
+
+	ReplicaSet(Database database) {
+		this.database = database;
+	}
+
+	/**
+	 * Adds a replica of the database, using the credentials of the primary.
+	 *
+	 * @see #add(String, int, String, String, PoolSettings)
+	 */
+	public Replica add(String host, int port, PoolSettings poolSettings) {
+		return add(host, port, database.getUser(), database.getPassword(), poolSettings);
+	}
+
+	/**
+	 * Adds a replica of the database. Its pool is started on the first read routed to it.
+	 *
+	 * @param host         The replica host address.
+	 * @param port         The replica port number.
+	 * @param user         The username on the replica.
+	 * @param password     The password of the user.
+	 * @param poolSettings The settings of the pool serving this replica.
+	 * @return The replica.
+	 */
+	public synchronized Replica add(String host, int port, String user, String password, PoolSettings poolSettings) {
+		if(closed) throw new IllegalStateException("Replica set is closed");
+		Replica replica = new Replica(host, port, user, password, poolSettings, Database.url(host, port, database.getDbName()));
+		replicas.add(replica);
+		if(lagCheck == null) {
+			lagChecker = ConnectionPool.housekeeper("MySQLRepository-replica-lag-check");
+			lagCheck = lagChecker.scheduleWithFixedDelay(this::checkLag, 0L, lagCheckInterval, TimeUnit.MILLISECONDS);
+		}
+		return replica;
+	}
+
+	/**
+	 * Borrows a connection from a replica in rotation.
+	 *
+	 * @return A pooled replica connection, or {@code null} if every replica is left out or busy.
+	 */
+	Connection borrow() {
+		List<Replica> candidates = replicas;
+		int size = candidates.size();
+		if(size == 0) return null;
+		if(selection == Selection.LEAST_LOADED) {
+			Replica best = null;
+			int bestLoad = Integer.MAX_VALUE;
+			for(Replica replica : candidates) {
+				if(!replica.isAvailable()) continue;
+				int load = replica.load();
+				if(load < bestLoad) {
+					best = replica;
+					bestLoad = load;
+				}
+			}
+			return best == null ? null : best.borrow();
+		}
+		int start = Math.floorMod(next.getAndIncrement(), size);
+		for(int i = 0; i < size; i++) {
+			Replica replica = candidates.get((start + i) % size);
+			if(!replica.isAvailable()) continue;
+			Connection conn = replica.borrow();
+			if(conn != null) return conn;
+		}
+		return null;
+	}
+
+	private void checkLag() {
+		for(Replica replica : replicas) {
+			replica.checkLag(maxLag);
+		}
+	}
+
+	/**
+	 * Stops the lag checks and closes the pools of every replica.
+	 */
+	synchronized void close() {
+		closed = true;
+		if(lagChecker != null) lagChecker.shutdownNow();
+		for(Replica replica : replicas) replica.close();
+	}
+
+	/**
+	 * @return The replicas, in the order they were added.
+	 */
+	public List<Replica> getReplicas() {
+		return new ArrayList<>(replicas);
+	}
+
+	/**
+	 * @return {@code true} if no replica was added.
+	 */
+	public boolean isEmpty() {
+		return replicas.isEmpty();
+	}
+
+	/**
+	 * @return How a replica is picked for a read.
+	 */
+	public Selection getSelection() {
+		return selection;
+	}
+
+	/**
+	 * Sets how a replica is picked for a read.
+	 *
+	 * @param selection The selection strategy.
+	 */
+	public void setSelection(Selection selection) {
+		if(selection == null) throw new IllegalArgumentException("Selection must not be null");
+		this.selection = selection;
+	}
+
+	/**
+	 * @return The replication lag in milliseconds from which a replica is left out, {@code 0} if lag is ignored.
+	 */
+	public long getMaxLag() {
+		return maxLag;
+	}
+
+	/**
+	 * Sets the replication lag from which a replica is left out.
+	 *
+	 * @param maxLag The lag in milliseconds, or {@code 0} to ignore lag. Lag is reported in whole seconds.
+	 */
+	public void setMaxLag(long maxLag) {
+		if(maxLag < 0) throw new IllegalArgumentException("Maximum lag must not be negative");
+		this.maxLag = maxLag;
+	}
+
+	/**
+	 * @return The number of milliseconds between two lag checks.
+	 */
+	public long getLagCheckInterval() {
+		return lagCheckInterval;
+	}
+
+	/**
+	 * Sets the number of milliseconds between two lag checks.
+	 *
+	 * @param lagCheckInterval The interval in milliseconds.
+	 */
+	public synchronized void setLagCheckInterval(long lagCheckInterval) {
+		if(lagCheckInterval < 100) throw new IllegalArgumentException("Lag check interval must be at least 100ms");
+		this.lagCheckInterval = lagCheckInterval;
+		if(lagCheck != null && !closed) {
+			lagCheck.cancel(false);
+			lagCheck = lagChecker.scheduleWithFixedDelay(this::checkLag, lagCheckInterval, lagCheckInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * @return {@code true} if new sessions read their own writes from the primary.
+	 */
+	public boolean isReadYourWrites() {
+		return readYourWrites;
+	}
+
+	/**
+	 * Sets whether new sessions read their own writes from the primary.
+	 *
+	 * @param readYourWrites The default of {@link SQLSession#setReadYourWrites(boolean)}.
+	 */
+	public void setReadYourWrites(boolean readYourWrites) {
+		this.readYourWrites = readYourWrites;
+	}
+
+	/**
+	 * @return How long in milliseconds a session that wrote keeps reading from the primary: the maximum lag
+	 *         plus one lag check interval, or forever when lag is ignored.
+	 */
+	public long getReadYourWritesWindow() {
+		long maxLag = this.maxLag;
+		return maxLag == 0 ? Long.MAX_VALUE : maxLag + lagCheckInterval;
+	}
+
+	/**
+	 * One read replica and its connection pool.
+	 */
+	public static final class Replica {
+		private final String host;
+		private final int port;
+		private final String user;
+		private final String password;
+		private final PoolSettings poolSettings;
+		private final String url;
+		private final LongAdder reads = new LongAdder();
+		private volatile ConnectionPool pool;
+		private volatile boolean reachable = true;
+		private volatile boolean lagging;
+		private volatile long lag = -1L;
+		private boolean closed;
+
+		private Replica(String host, int port, String user, String password, PoolSettings poolSettings, String url) {
+			this.host = host;
+			this.port = port;
+			this.user = user;
+			this.password = password;
+			this.poolSettings = poolSettings;
+			this.url = url;
+		}
+
+		private ConnectionPool pool() throws SQLException {
+			ConnectionPool pool = this.pool;
+			if(pool == null) {
+				synchronized (this) {
+					if(closed) throw new SQLException("Replica " + host + ":" + port + " is closed");
+					if(this.pool == null) this.pool = new ConnectionPool(url, user, password, poolSettings);
+					pool = this.pool;
+				}
+			}
+			return pool;
+		}
+
+		/**
+		 * @return A connection, or {@code null} if the replica is saturated or unreachable.
+		 */
+		private Connection borrow() {
+			try {
+				Connection conn = pool().borrow();
+				reads.increment();
+				return conn;
+			} catch (SQLTimeoutException e) {
+				return null;
+			} catch (SQLException e) {
+				if(reachable) LOGGER.log(Level.WARNING, "Replica " + host + ":" + port + " left out: " + e.getMessage());
+				reachable = false;
+				return null;
+			}
+		}
+
+		private int load() {
+			ConnectionPool pool = this.pool;
+			return pool == null ? 0 : pool.getActive() + pool.getWaiting();
+		}
+
+		private void checkLag(long maxLag) {
+			long lag;
+			try (Connection conn = pool().borrow()) {
+				lag = readLag(conn);
+			} catch (SQLException e) {
+				if(reachable) LOGGER.log(Level.WARNING, "Replica " + host + ":" + port + " left out: " + e.getMessage());
+				reachable = false;
+				return;
+			}
+			if(!reachable) LOGGER.info("Replica " + host + ":" + port + " is reachable again");
+			reachable = true;
+			this.lag = lag;
+			boolean lagging = maxLag > 0 && (lag < 0 || lag > maxLag);
+			if(lagging && !this.lagging) {
+				LOGGER.warning("Replica " + host + ":" + port + " left out: " + (lag < 0 ? "replication is stopped" : "lagging " + lag + "ms"));
+			} else if(!lagging && this.lagging) {
+				LOGGER.info("Replica " + host + ":" + port + " caught up");
+			}
+			this.lagging = lagging;
+		}
+
+		/**
+		 * @return The lag in milliseconds, {@code 0} for a server that is not replicating and {@code -1} when
+		 *         replication is stopped.
+		 */
+		private static long readLag(Connection conn) throws SQLException {
+			try (Statement stmt = conn.createStatement(); ResultSet rs = replicaStatus(stmt)) {
+				if(!rs.next()) return 0L;
+				ResultSetMetaData meta = rs.getMetaData();
+				for(int i = 1; i <= meta.getColumnCount(); i++) {
+					String label = meta.getColumnLabel(i);
+					for(String column : LAG_COLUMNS) {
+						if(!column.equalsIgnoreCase(label)) continue;
+						long seconds = rs.getLong(i);
+						return rs.wasNull() ? -1L : seconds * 1_000L;
+					}
+				}
+				return -1L;
+			}
+		}
+
+		/**
+		 * Runs {@code SHOW REPLICA STATUS}, or {@code SHOW SLAVE STATUS} on servers predating it.
+		 */
+		private static ResultSet replicaStatus(Statement stmt) throws SQLException {
+			try {
+				return stmt.executeQuery("SHOW REPLICA STATUS");
+			} catch (SQLException e) {
+				return stmt.executeQuery("SHOW SLAVE STATUS");
+			}
+		}
+
+		private synchronized void close() {
+			closed = true;
+			if(pool != null) pool.close();
+		}
+
+		/**
+		 * @return {@code true} if the replica is reachable and not lagging.
+		 */
+		public boolean isAvailable() {
+			return reachable && !lagging;
+		}
+
+		/**
+		 * @return The replication lag in milliseconds measured by the last check, {@code -1} if unknown
+		 *         or replication is stopped.
+		 */
+		public long getLag() {
+			return lag;
+		}
+
+		/**
+		 * @return The number of reads routed to this replica.
+		 */
+		public long getReads() {
+			return reads.sum();
+		}
+
+		/**
+		 * @return The pool of this replica, or {@code null} if it has not been started yet.
+		 */
+		public ConnectionPool getPool() {
+			return pool;
+		}
+
+		/**
+		 * @return The replica host address.
+		 */
+		public String getHost() {
+			return host;
+		}
+
+		/**
+		 * @return The replica port number.
+		 */
+		public int getPort() {
+			return port;
+		}
+
+		/**
+		 * @return The username on the replica.
+		 */
+		public String getUser() {
+			return user;
+		}
+
+		/**
+		 * @return The password of the user.
+		 */
+		public String getPassword() {
+			return password;
+		}
+
+		/**
+		 * @return The settings of the pool serving this replica.
+		 */
+		public PoolSettings getPoolSettings() {
+			return poolSettings;
+		}
+	}
+}
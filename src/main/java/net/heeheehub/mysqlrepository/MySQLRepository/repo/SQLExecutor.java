@@ -0,0 +1,157 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs database work off the server thread.
+ * <p>
+ * Each task runs on its own virtual thread, but at most {@code maxConcurrency} tasks touch the
+ * database at once; the others wait in line. When more than {@code queueCapacity} tasks are
+ * waiting, new tasks are rejected with a {@link RejectedExecutionException} instead of piling up.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public class SQLExecutor {
+
+	private final ExecutorService executor;
+	private final Semaphore running;
+	private final int maxConcurrency;
+	private final int queueCapacity;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Constructs an executor.
+	 *
+	 * @param maxConcurrency The number of tasks allowed to run at once.
+	 * @param queueCapacity  The number of tasks allowed to wait for a free slot.
+	 */
+	public SQLExecutor(int maxConcurrency, int queueCapacity) {
+		if(maxConcurrency < 1) throw new IllegalArgumentException("Max concurrency must be at least 1");
+		if(queueCapacity < 0) throw new IllegalArgumentException("Queue capacity cannot be negative");
+		this.maxConcurrency = maxConcurrency;
+		this.queueCapacity = queueCapacity;
+		this.running = new Semaphore(maxConcurrency, true);
+		this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("MySQLRepository-async-", 0).factory());
+	}
+
+	/**
+	 * Submits a task.
+	 *
+	 * @param task The work to run.
+	 * @param <T>  The result type.
+	 * @return A future completed with the task result, or exceptionally with a
+	 *         {@link RejectedExecutionException} if the queue is full.
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> task) {
+		if(pending.incrementAndGet() > maxConcurrency + queueCapacity) {
+			pending.decrementAndGet();
+			rejected.increment();
+			return CompletableFuture.failedFuture(new RejectedExecutionException("Database queue is full ("
+					+ queueCapacity + " waiting tasks)"));
+		}
+		submitted.increment();
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> run(task, future));
+		} catch (RejectedExecutionException e) {
+			pending.decrementAndGet();
+			rejected.increment();
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private <T> void run(Callable<T> task, CompletableFuture<T> future) {
+		try {
+			running.acquire();
+			try {
+				future.complete(task.call());
+			} finally {
+				running.release();
+			}
+		} catch (Throwable e) {
+			if(e instanceof InterruptedException) Thread.currentThread().interrupt();
+			failed.increment();
+			future.completeExceptionally(e);
+		} finally {
+			pending.decrementAndGet();
+			completed.increment();
+		}
+	}
+
+	/**
+	 * Stops accepting tasks. Tasks already submitted still run.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * @return The number of tasks currently running.
+	 */
+	public int getActive() {
+		return maxConcurrency - running.availablePermits();
+	}
+
+	/**
+	 * @return The number of tasks waiting for a free slot.
+	 */
+	public int getQueued() {
+		return Math.max(0, pending.get() - getActive());
+	}
+
+	/**
+	 * @return The total number of accepted tasks.
+	 */
+	public long getSubmitted() {
+		return submitted.sum();
+	}
+
+	/**
+	 * @return The total number of finished tasks, successful or not.
+	 */
+	public long getCompleted() {
+		return completed.sum();
+	}
+
+	/**
+	 * @return The total number of tasks that finished with an exception.
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * @return The total number of tasks rejected because the queue was full.
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * @return The number of tasks allowed to run at once.
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * @return The number of tasks allowed to wait for a free slot.
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+}
@@ -1,15 +1,15 @@
 package net.heeheehub.mysqlrepository.MySQLRepository.repo;
 
-import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
-import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
-import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLForeignKey;
-import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
-import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLPrimaryKey;
-
 import java.lang.instrument.IllegalClassFormatException;
-import java.lang.reflect.Field;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -18,6 +18,9 @@ import java.util.*;
  * This class acts as a central point for interacting with a MySQL database.
  * It provides methods for persisting, retrieving, updating, and deleting objects
  * that are mapped to database tables. It also manages database connections and transactions.
+ * Connections are borrowed from the {@link Database}'s pool for each operation, or shared with
+ * the active {@link SQLTransaction}. Reads outside a transaction go to a {@link ReplicaSet replica}
+ * when the database has any.
  * </p>
  *
  * @author Naphon
@@ -25,26 +28,64 @@ import java.util.*;
  */
 public class SQLSession {
 
+    private static final Logger LOGGER = Logger.getLogger("MySQLRepository");
+    private static final int IN_CHUNK = 256;
+    private static final Pattern READ_ONLY = Pattern.compile(
+            "^\\s*(?:\\(\\s*)*(?:SELECT|SHOW|DESCRIBE|DESC|EXPLAIN)\\b(?!.*\\b(?:FOR\\s+UPDATE|LOCK\\s+IN\\s+SHARE\\s+MODE|FOR\\s+SHARE|INTO)\\b)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
     private Database database;
-    private Map<String, Object> persistenceContext;
+    private final IdentityMap identityMap;
+    private final QueryMetrics metrics;
     private SQLTransaction tx;
     private boolean isClosed;
+    private String owner;
+    private boolean readYourWrites;
+    private long lastWrite;
+    private boolean buffered;
+    private long bufferedEpoch;
+    private boolean replicaRead;
     
     
     /**
      * Constructs a new SQLSession with a given database connection.
-     * This constructor establishes a connection to the database and initializes
-     * the persistence context and transaction manager.
+     * This constructor initializes the persistence context and transaction manager;
+     * connections are borrowed from the database's pool on demand.
      *
      * @param database The database object containing connection details.
      * @throws SQLException if a database access error occurs.
      */
     public SQLSession(Database database) throws SQLException {
-        this.database = new Database(database.getHost(), database.getPort(), database.getDbName(), database.getUser(), database.getPassword());
-        this.database.connect();
+        this(database, 0, IdentityMap.ReferenceMode.STRONG);
+    }
+    
+    /**
+     * Constructs a new SQLSession with a bounded persistence context.
+     * <p>
+     * Long-lived sessions should cap the entities kept per class or hold them through weak or soft
+     * references, so rows read once do not stay on the heap for the lifetime of the session.
+     * </p>
+     *
+     * @param database           The database object containing connection details.
+     * @param maxEntriesPerClass The maximum number of managed entities per class, or {@code 0} for no cap.
+     * @param referenceMode      How managed entities are referenced.
+     * @throws SQLException if a database access error occurs.
+     */
+    public SQLSession(Database database, int maxEntriesPerClass, IdentityMap.ReferenceMode referenceMode) throws SQLException {
+        this.database = database;
         this.isClosed = false;
-        this.persistenceContext = new HashMap<>();
+        this.identityMap = new IdentityMap(maxEntriesPerClass, referenceMode);
+        this.metrics = database.getMetrics();
         this.tx = new SQLTransaction(database);
+        this.readYourWrites = database.getReplicas().isReadYourWrites();
+    }
+    
+    /**
+     * Names the plugin owning this session, reported by the slow-query log when the calling
+     * plugin cannot be found on the stack, as for statements run on a database thread.
+     */
+    void setOwner(String owner) {
+        this.owner = owner;
     }
     
     /**
@@ -58,6 +99,13 @@ public class SQLSession {
     	return tx;
     }
     
+    /**
+     * @return The transaction of this session, active or not. A session keeps the same one for its lifetime.
+     */
+    SQLTransaction getTransaction() {
+    	return tx;
+    }
+    
     /**
      * Ends the current transaction.
      *
@@ -66,6 +114,67 @@ public class SQLSession {
     public void endTransaction() throws SQLException {
     	tx.end();
     }
+    
+    private Connection connection() throws SQLException {
+    	if(tx.isActive()) return tx.share();
+    	return database.getConnection();
+    }
+    
+    /**
+     * Borrows the connection of a read: a replica's unless a transaction is active or this session
+     * has to read its own recent writes. Rows read from a replica may lag behind the primary and are
+     * not shared through the entity cache.
+     */
+    private Connection readConnection() throws SQLException {
+    	replicaRead = false;
+    	if(tx.isActive()) return tx.share();
+    	if(readsOwnWrites()) return database.getConnection();
+    	Connection replica = database.getReplicas().borrow();
+    	if(replica == null) return database.getConnection();
+    	replicaRead = true;
+    	return replica;
+    }
+    
+    /**
+     * @return {@code true} while a write of this session may not have reached the replicas yet. An update
+     *         buffered by the {@link WriteBehindBuffer} counts from the end of the flush that wrote it.
+     */
+    private boolean readsOwnWrites() {
+    	if(!readYourWrites) return false;
+    	if(buffered) {
+    		WriteBehindBuffer writeBehind = database.getWriteBehind();
+    		if(writeBehind.getWrittenEpoch() <= bufferedEpoch) return true;
+    		lastWrite = Math.max(lastWrite, writeBehind.getLastWritten());
+    		buffered = false;
+    	}
+    	return lastWrite != 0L
+    			&& System.currentTimeMillis() - lastWrite < database.getReplicas().getReadYourWritesWindow();
+    }
+    
+    /**
+     * @return {@code true} for a native statement that reads without locking, which a replica can serve.
+     */
+    static boolean isReadOnly(String query) {
+    	return READ_ONLY.matcher(query).find();
+    }
+    
+    /**
+     * Sets whether reads following a write of this session go to the primary of a database with replicas,
+     * so they see that write. Defaults to {@link ReplicaSet#isReadYourWrites()}.
+     *
+     * @param readYourWrites {@code true} to read recent writes from the primary.
+     * @see ReplicaSet#getReadYourWritesWindow()
+     */
+    public void setReadYourWrites(boolean readYourWrites) {
+    	this.readYourWrites = readYourWrites;
+    }
+    
+    /**
+     * @return {@code true} if reads following a write of this session go to the primary.
+     */
+    public boolean isReadYourWrites() {
+    	return readYourWrites;
+    }
 
     
     /**
@@ -86,59 +195,41 @@ public class SQLSession {
     public Long persists(Object object) throws SQLException, IllegalClassFormatException, IllegalAccessException {
         if(isClosed) throw new IllegalStateException("Session is closed.");
     	if(!tx.isActive()) throw new IllegalStateException("No active transaction");
-        Long id = getId(object);
-        String key;
-        if(id != null) {
-	        key = getKey(object, id);
-	        if(persistenceContext.containsKey(key)){
-	            update(object);
-	            return id;
-	        }
-        }
-        String tableName = getTableName(object);
-
-        Map<String, Field> params = getColumnData(object, true);
-        List<String> colNameList = new ArrayList<>(params.keySet());
-        StringBuilder codeBuilder = new StringBuilder("INSERT INTO ").
-                append(tableName).append(" (")
-                .append(String.join(", ", colNameList))
-                .append(") VALUES (")
-                .append("?,".repeat(colNameList.size()));
-
-        codeBuilder.setLength(codeBuilder.length()-1);
-        codeBuilder.append(")");
-
-        try(PreparedStatement ps = database.getConn().prepareStatement(codeBuilder.toString(), Statement.RETURN_GENERATED_KEYS)){
-            for (int i = 0; i < colNameList.size(); i++) {
-                Field field = params.get(colNameList.get(i));
-                field.setAccessible(true);
-                Object value = field.get(object);
-                if(value instanceof UUID uuid) {
-                	ps.setObject(i + 1, uuid.toString());
-                }else ps.setObject(i + 1, value);
-            }
-
-            ps.executeUpdate();
-
-            for (Field field : object.getClass().getDeclaredFields()) {
-                if (field.isAnnotationPresent(SQLId.class)) {
-                    field.setAccessible(true);
-                    try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            field.set(object, generatedKeys.getLong(1));
-                        }
+        return persists(object, false);
+    }
+    
+    private Long persists(Object object, boolean retried) throws SQLException, IllegalClassFormatException, IllegalAccessException {
+        EntityMetadata meta = EntityMetadata.of(object.getClass());
+        Long id = meta.getId(object);
+        if(id != null && identityMap.contains(meta.getType(), id)) {
+            update(object);
+            return id;
+        }
+        String tableName = meta.getTableName();
+        List<ColumnMetadata> columns = meta.getColumns();
+
+        try(Connection conn = connection(); PreparedStatement ps = conn.prepareStatement(meta.getInsertSql(), Statement.RETURN_GENERATED_KEYS)){
+            for (int i = 0; i < columns.size(); i++) {
+                bind(ps, i + 1, columns.get(i), object);
+            }
+
+            executeUpdate(ps, meta.getType(), QueryMetrics.Operation.INSERT, meta.getInsertSql(), metrics.weigh(meta, object));
+
+            ColumnMetadata idColumn = meta.getIdColumn();
+            if (idColumn != null) {
+                try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        idColumn.set(object, generatedKeys.getLong(1));
                     }
-                    break;
                 }
             }
 
-            id = getId(object);
-            key = getKey(object, id);
-            persistenceContext.put(key, object);
+            id = meta.getId(object);
+            manage(meta, id, object);
         }catch (SQLException ex){
-            if(ex.getErrorCode() == 1146){
+            if(ex.getErrorCode() == 1146 && !retried){
                 createTable(tableName, object.getClass());
-                return persists(object);
+                return persists(object, true);
             }else {
                 throw new RuntimeException(ex);
             }
@@ -148,8 +239,340 @@ public class SQLSession {
     }
 
     
+    /**
+     * Persists a collection of objects using JDBC batches.
+     * <p>
+     * Objects are grouped by class. Objects already in the persistence context are updated
+     * through {@link #updateAll(Collection)}; the others are inserted in batches of
+     * {@link Database#getBatchSize()} rows. Generated IDs are written back in order to the objects
+     * whose ID is {@code null} or {@code 0}, the value of an unsaved primitive {@code long} ID, and every
+     * inserted object is added to the persistence context, exactly like {@link #persists(Object)}.
+     * </p>
+     *
+     * @param objects The objects to be persisted.
+     * @throws SQLException          if a database access error occurs.
+     * @throws IllegalStateException if the session is closed or there is no active transaction.
+     */
+    public void persistAll(Collection<?> objects) throws SQLException {
+        if(isClosed) throw new IllegalStateException("Session is closed.");
+    	if(!tx.isActive()) throw new IllegalStateException("No active transaction");
+        for (Map.Entry<Class<?>, List<Object>> group : groupByClass(objects).entrySet()) {
+            EntityMetadata meta = EntityMetadata.of(group.getKey());
+            List<Object> updates = new ArrayList<>();
+            List<Object> generated = new ArrayList<>();
+            List<Object> assigned = new ArrayList<>();
+
+            for (Object object : group.getValue()) {
+                Long id = meta.getId(object);
+                if (id == null || id == 0L) {
+                    generated.add(object);
+                } else if (identityMap.contains(meta.getType(), id)) {
+                    updates.add(object);
+                } else {
+                    assigned.add(object);
+                }
+            }
+
+            if (!updates.isEmpty()) updateAll(updates);
+            if (!generated.isEmpty()) insertBatch(meta, generated, true, false);
+            if (!assigned.isEmpty()) insertBatch(meta, assigned, false, false);
+        }
+    }
+    
+    private void insertBatch(EntityMetadata meta, List<Object> objects, boolean readKeys, boolean retried) throws SQLException {
+        List<ColumnMetadata> columns = meta.getColumns();
+        ColumnMetadata idColumn = meta.getIdColumn();
+        int batchSize = database.getBatchSize();
+
+        try (Connection conn = connection();
+             PreparedStatement ps = readKeys
+                     ? conn.prepareStatement(meta.getInsertSql(), Statement.RETURN_GENERATED_KEYS)
+                     : conn.prepareStatement(meta.getInsertSql())) {
+            for (int start = 0; start < objects.size(); start += batchSize) {
+                List<Object> chunk = objects.subList(start, Math.min(start + batchSize, objects.size()));
+                for (Object object : chunk) {
+                    for (int i = 0; i < columns.size(); i++) {
+                        bind(ps, i + 1, columns.get(i), object);
+                    }
+                    ps.addBatch();
+                }
+                executeBatch(ps, meta.getType(), QueryMetrics.Operation.INSERT, meta.getInsertSql(), chunk.size(), metrics.weigh(meta, chunk));
+
+                if (readKeys && idColumn != null) readGeneratedKeys(ps, idColumn, chunk);
+
+                for (Object object : chunk) {
+                    Long id = meta.getId(object);
+                    if (id != null) manage(meta, id, object);
+                }
+            }
+        } catch (SQLException ex) {
+            if (ex.getErrorCode() == 1146 && !retried) {
+                createTable(meta.getTableName(), meta.getType());
+                insertBatch(meta, objects, readKeys, true);
+            } else {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+    
+    /**
+     * Inserts an object or, if a row with the same primary or unique key exists, overwrites it, in a
+     * single {@code INSERT ... ON DUPLICATE KEY UPDATE} statement.
+     * <p>
+     * Unlike {@link #persists(Object)} the outcome does not depend on the persistence context, so objects
+     * loaded by another session can be saved without a prior read. The statement joins the active
+     * transaction if there is one and runs on its own otherwise. The ID of the inserted or matched row
+     * is written back, and the object is added to the persistence context.
+     * </p>
+     *
+     * @param object        The object to save.
+     * @param updateColumns The columns overwritten when the row exists, or none to overwrite every non-id column.
+     * @return The ID of the saved object, or {@code null} if its class has no {@code @SQLId} field.
+     * @throws IllegalStateException    if the session is closed.
+     * @throws IllegalArgumentException if a column is not mapped or is the id column.
+     * @throws RuntimeException         if a database access error occurs.
+     */
+    public Long upsert(Object object, String... updateColumns) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        return upsert(object, updateColumns, false);
+    }
+    
+    private Long upsert(Object object, String[] updateColumns, boolean retried) {
+        EntityMetadata meta = EntityMetadata.of(object.getClass());
+        List<ColumnMetadata> columns = meta.getColumns();
+        ColumnMetadata idColumn = meta.getIdColumn();
+        String sql = meta.getUpsertSql(updateColumns);
+
+        try (Connection conn = connection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < columns.size(); i++) {
+                bind(ps, i + 1, columns.get(i), object);
+            }
+            executeUpdate(ps, meta.getType(), QueryMetrics.Operation.UPSERT, sql, metrics.weigh(meta, object));
+
+            if (idColumn != null) {
+                try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
+                    if (generatedKeys.next() && generatedKeys.getLong(1) != 0) {
+                        idColumn.set(object, generatedKeys.getLong(1));
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            if (ex.getErrorCode() == 1146 && !retried) {
+                createTable(meta.getTableName(), meta.getType());
+                return upsert(object, updateColumns, true);
+            }
+            throw new RuntimeException(ex);
+        }
+
+        Long id = meta.getId(object);
+        if (id != null) {
+            manage(meta, id, object);
+            database.getCache().invalidate(meta.getType(), id);
+        }
+        return id;
+    }
+    
+    /**
+     * Saves a collection of objects like {@link #upsert(Object, String...)}, in JDBC batches of
+     * {@link Database#getBatchSize()} rows per class.
+     * <p>
+     * Generated IDs of objects whose ID is {@code null} or {@code 0} are written back in order, as in {@link #persistAll(Collection)}.
+     * Objects without an ID that may match an existing row through another unique key should be saved with
+     * {@link #upsert(Object, String...)}, which reads back the ID of the matched row.
+     * </p>
+     *
+     * @param objects       The objects to save.
+     * @param updateColumns The columns overwritten when a row exists, or none to overwrite every non-id column.
+     * @throws IllegalStateException    if the session is closed.
+     * @throws IllegalArgumentException if a column is not mapped or is the id column.
+     * @throws RuntimeException         if a database access error occurs.
+     */
+    public void upsertAll(Collection<?> objects, String... updateColumns) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        for (Map.Entry<Class<?>, List<Object>> group : groupByClass(objects).entrySet()) {
+            EntityMetadata meta = EntityMetadata.of(group.getKey());
+            List<Object> generated = new ArrayList<>();
+            List<Object> assigned = new ArrayList<>();
+            for (Object object : group.getValue()) {
+                Long id = meta.getId(object);
+                if (meta.getIdColumn() != null && (id == null || id == 0L)) generated.add(object);
+                else assigned.add(object);
+            }
+            if (!generated.isEmpty()) upsertBatch(meta, generated, true, updateColumns, false);
+            if (!assigned.isEmpty()) upsertBatch(meta, assigned, false, updateColumns, false);
+        }
+    }
+    
+    private void upsertBatch(EntityMetadata meta, List<Object> objects, boolean readKeys, String[] updateColumns, boolean retried) {
+        List<ColumnMetadata> columns = meta.getColumns();
+        ColumnMetadata idColumn = meta.getIdColumn();
+        int batchSize = database.getBatchSize();
+        String sql = meta.getUpsertSql(updateColumns);
+
+        try (Connection conn = connection();
+             PreparedStatement ps = readKeys
+                     ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                     : conn.prepareStatement(sql)) {
+            for (int start = 0; start < objects.size(); start += batchSize) {
+                List<Object> chunk = objects.subList(start, Math.min(start + batchSize, objects.size()));
+                for (Object object : chunk) {
+                    for (int i = 0; i < columns.size(); i++) {
+                        bind(ps, i + 1, columns.get(i), object);
+                    }
+                    ps.addBatch();
+                }
+                executeBatch(ps, meta.getType(), QueryMetrics.Operation.UPSERT, sql, chunk.size(), metrics.weigh(meta, chunk));
+
+                if (readKeys) readGeneratedKeys(ps, idColumn, chunk);
+
+                for (Object object : chunk) {
+                    Long id = meta.getId(object);
+                    if (id != null) {
+                        manage(meta, id, object);
+                        database.getCache().invalidate(meta.getType(), id);
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            if (ex.getErrorCode() == 1146 && !retried) {
+                createTable(meta.getTableName(), meta.getType());
+                upsertBatch(meta, objects, readKeys, updateColumns, true);
+            } else {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+    
+    /**
+     * Updates a collection of existing objects using JDBC batches.
+     * <p>
+     * Objects are grouped by class and by the set of columns that changed since they were loaded,
+     * and sent in batches of {@link Database#getBatchSize()} rows. Unchanged objects are skipped.
+     * Every object must have a valid ID.
+     * </p>
+     *
+     * @param objects The objects to update.
+     * @throws SQLException          if a database access error occurs.
+     * @throws IllegalStateException if the session is closed.
+     */
+    public void updateAll(Collection<?> objects) throws SQLException {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        int batchSize = database.getBatchSize();
+        for (Map.Entry<Class<?>, List<Object>> group : groupByClass(objects).entrySet()) {
+            EntityMetadata meta = EntityMetadata.of(group.getKey());
+            meta.requireIdColumn();
+            Map<Long, List<Object>> byMask = new LinkedHashMap<>();
+            for (Object object : group.getValue()) {
+                long mask = dirtyMask(meta, object);
+                if (mask != 0L) byMask.computeIfAbsent(mask, k -> new ArrayList<>()).add(object);
+            }
+
+            for (Map.Entry<Long, List<Object>> shape : byMask.entrySet()) {
+                long mask = shape.getKey();
+                List<Object> entities = shape.getValue();
+                String sql = meta.getUpdateSql(mask);
+                try (Connection conn = connection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (int start = 0; start < entities.size(); start += batchSize) {
+                        List<Object> chunk = entities.subList(start, Math.min(start + batchSize, entities.size()));
+                        for (Object object : chunk) {
+                            int i = bindColumns(ps, meta, mask, object);
+                            ps.setLong(i, meta.getId(object));
+                            ps.addBatch();
+                        }
+                        executeBatch(ps, meta.getType(), QueryMetrics.Operation.UPDATE, sql, chunk.size(), metrics.weigh(meta, chunk));
+                    }
+                }
+                for (Object object : entities) {
+                    refreshSnapshot(meta, object);
+                    database.getCache().invalidate(meta.getType(), meta.getId(object));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Deletes a collection of objects using JDBC batches.
+     * <p>
+     * Objects are grouped by class, deleted by their {@code @SQLId} in batches of
+     * {@link Database#getBatchSize()} rows and removed from the persistence context.
+     * </p>
+     *
+     * @param objects The objects to delete.
+     * @throws IllegalStateException if the session is closed or a class has no {@code @SQLId} field.
+     * @throws RuntimeException      if a database access error occurs.
+     */
+    public void deleteAll(Collection<?> objects) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        int batchSize = database.getBatchSize();
+        for (Map.Entry<Class<?>, List<Object>> group : groupByClass(objects).entrySet()) {
+            EntityMetadata meta = EntityMetadata.of(group.getKey());
+            ColumnMetadata idColumn = meta.getIdColumn();
+            if (idColumn == null) {
+                throw new IllegalStateException("No @SQLId field found in " + group.getKey().getSimpleName());
+            }
+            List<Object> entities = group.getValue();
+            for (Object object : entities) {
+                if (idColumn.get(object) instanceof Long id) database.getWriteBehind().discard(meta.getType(), id);
+            }
+
+            try (Connection conn = connection(); PreparedStatement ps = conn.prepareStatement(meta.getDeleteByIdSql())) {
+                for (int start = 0; start < entities.size(); start += batchSize) {
+                    List<Object> chunk = entities.subList(start, Math.min(start + batchSize, entities.size()));
+                    for (Object object : chunk) {
+                        setupPreparedStatementParams(ps, 1, idColumn.get(object));
+                        ps.addBatch();
+                    }
+                    executeBatch(ps, meta.getType(), QueryMetrics.Operation.DELETE, meta.getDeleteByIdSql(), chunk.size(), 0L);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to delete objects", e);
+            }
+
+            for (Object object : entities) {
+                if (idColumn.get(object) instanceof Long id) {
+                    forget(meta, id);
+                    database.getCache().invalidate(meta.getType(), id);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Writes back the IDs generated by a batch, in order. The driver may derive the keys of a bulk
+     * insert from the increment it read when it connected, which misses the interleaving of a
+     * {@link ShardSet}, so the keys of an interleaved database are stepped from the first one instead.
+     */
+    private void readGeneratedKeys(PreparedStatement ps, ColumnMetadata idColumn, List<Object> chunk) throws SQLException {
+        int increment = database.getIdIncrement();
+        try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
+            if (increment > 1) {
+                if (!generatedKeys.next()) return;
+                long first = generatedKeys.getLong(1);
+                for (int i = 0; i < chunk.size(); i++) idColumn.set(chunk.get(i), first + (long) i * increment);
+                return;
+            }
+            for (Object object : chunk) {
+                if (!generatedKeys.next()) break;
+                idColumn.set(object, generatedKeys.getLong(1));
+            }
+        }
+    }
+    
+    private static Map<Class<?>, List<Object>> groupByClass(Collection<?> objects) {
+        Map<Class<?>, List<Object>> groups = new LinkedHashMap<>();
+        for (Object object : objects) {
+            groups.computeIfAbsent(object.getClass(), k -> new ArrayList<>()).add(object);
+        }
+        return groups;
+    }
+    
     /**
      * Retrieves an object from the database by its ID.
+     * <p>
+     * Classes declared with {@code @MySQLField(cached = true)} are served from the database's
+     * shared {@link EntityCache} when possible.
+     * </p>
      *
      * @param clazz The class of the object to retrieve.
      * @param id    The ID of the object.
@@ -161,60 +584,39 @@ public class SQLSession {
     public <T> T get(Class<T> clazz, Long id) {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
         try {
-            String tableName = getTableName(clazz);
-            String idColumn = null;
-            Field idField = null;
-
-            for (Field field : clazz.getDeclaredFields()) {
-                if (field.isAnnotationPresent(SQLId.class)) {
-                    idField = field;
-                    idField.setAccessible(true);
-
-                    if (field.isAnnotationPresent(MySQLColumn.class)) {
-                        idColumn = field.getAnnotation(MySQLColumn.class).value();
-                    } else {
-                        idColumn = field.getName();
-                    }
-                    break;
+            EntityMetadata meta = EntityMetadata.of(clazz);
+            meta.requireIdColumn();
+
+            if (id != null && meta.isCached()) {
+                @SuppressWarnings("unchecked")
+                T cached = (T) database.getCache().get(meta, id);
+                if (cached != null) {
+                    manage(meta, id, cached);
+                    attach(meta, List.of(cached));
+                    return cached;
                 }
             }
 
-            if (idColumn == null || idField == null) {
-                throw new RuntimeException("Class " + clazz.getSimpleName() + " has no @SQLId field");
-            }
-
-            String sql = "SELECT * FROM `" + tableName + "` WHERE `" + idColumn + "` = ? LIMIT 1";
-
-            try (PreparedStatement ps = database.newConnection().prepareStatement(sql)) {
+            long started = metrics.start(owner);
+            try (Connection conn = readConnection(); PreparedStatement ps = conn.prepareStatement(meta.getSelectByIdSql())) {
                 ps.setObject(1, id);
                 ResultSet rs = ps.executeQuery();
 
                 if (!rs.next()) {
+                    metrics.record(clazz, QueryMetrics.Operation.SELECT, meta.getSelectByIdSql(), started, 0L, 0L, owner);
                     return null;
                 }
 
-                T instance = clazz.getDeclaredConstructor().newInstance();
-
-                Map<String, Field> columnData = getColumnData(clazz, true);
-                for (Map.Entry<String, Field> entry : columnData.entrySet()) {
-                    String columnName = entry.getKey();
-                    Field field = entry.getValue();
-                    field.setAccessible(true);
-
-                    Object value = rs.getObject(columnName);
-                    field.set(instance, value);
-                }
-
-                if (!columnData.containsKey(idColumn)) {
-                    Object value = rs.getObject(idColumn);
-                    idField.set(instance, value);
-                }
-
-                persistenceContext.put(getKey(instance, id), instance);
+                T instance = mapRow(meta, rs);
+                metrics.record(clazz, QueryMetrics.Operation.SELECT, meta.getSelectByIdSql(), started, 1L, metrics.weigh(meta, instance), owner);
+                manage(meta, id, instance);
+                cache(meta, id, instance);
+                attach(meta, List.of(instance));
 
                 return instance;
 
             } catch (Exception e) {
+                metrics.failure(clazz, QueryMetrics.Operation.SELECT, meta.getSelectByIdSql(), started, owner);
                 throw new RuntimeException("Failed to retrieve object", e);
             }
 
@@ -238,39 +640,30 @@ public class SQLSession {
     public <T> T get(Class<T> clazz, String uuidCol, UUID uuid) {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
         try {
-            String tableName = getTableName(clazz);
+            EntityMetadata meta = EntityMetadata.of(clazz);
+            database.getSchema().checkLookup(meta, uuidCol);
 
-            String sql = "SELECT * FROM `" + tableName + "` WHERE `" + uuidCol + "` = ? LIMIT 1";
+            String sql = "SELECT " + meta.getSelectList() + " FROM `" + meta.getTableName() + "` WHERE `" + uuidCol + "` = ? LIMIT 1";
 
-            try (PreparedStatement ps = database.newConnection().prepareStatement(sql)) {
-                ps.setObject(1, uuid.toString());
+            long started = metrics.start(owner);
+            try (Connection conn = readConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+                setupPreparedStatementParams(ps, 1, parameter(meta, uuidCol, uuid));
                 ResultSet rs = ps.executeQuery();
 
                 if (!rs.next()) {
+                    metrics.record(clazz, QueryMetrics.Operation.SELECT, sql, started, 0L, 0L, owner);
                     return null;
                 }
 
-                T instance = clazz.getDeclaredConstructor().newInstance();
-
-                Map<String, Field> columnData = getColumnData(clazz, true);
-
-                for (Map.Entry<String, Field> entry : columnData.entrySet()) {
-                    String columnName = entry.getKey();
-                    Field field = entry.getValue();
-                    field.setAccessible(true);
-
-                    Object value = rs.getObject(columnName);
-
-                    if (field.getType() == UUID.class && value instanceof String) {
-                        field.set(instance, UUID.fromString((String) value));
-                    } else {
-                        field.set(instance, value);
-                    }
-                }
-                persistenceContext.put(getKey(instance, getId(instance)), instance);
+                T instance = mapRow(meta, rs);
+                metrics.record(clazz, QueryMetrics.Operation.SELECT, sql, started, 1L, metrics.weigh(meta, instance), owner);
+                manage(meta, meta.getId(instance), instance);
+                cache(meta, meta.getId(instance), instance);
+                attach(meta, List.of(instance));
                 return instance;
 
             } catch (Exception e) {
+                metrics.failure(clazz, QueryMetrics.Operation.SELECT, sql, started, owner);
                 throw new RuntimeException("Failed to retrieve object by UUID", e);
             }
 
@@ -279,6 +672,130 @@ public class SQLSession {
         }
     }
     
+    /**
+     * Retrieves several objects by their IDs.
+     * <p>
+     * Objects already in the persistence context or the shared cache are returned without a query.
+     * The others are loaded with {@code WHERE id IN (...)} statements of at most {@value #IN_CHUNK}
+     * IDs. Each chunk is padded to a power of two, so only a handful of statement shapes ever
+     * reach the server.
+     * </p>
+     *
+     * @param clazz The class of the objects to retrieve.
+     * @param ids   The IDs to look up.
+     * @param <T>   The type of the objects.
+     * @return The found objects by ID, in the order of {@code ids}. Missing IDs are absent.
+     * @throws IllegalStateException if the session is closed.
+     * @throws RuntimeException      if the class has no {@code @SQLId} field or a database error occurs.
+     */
+    public <T> Map<Long, T> getAll(Class<T> clazz, Collection<Long> ids) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        EntityMetadata meta = EntityMetadata.of(clazz);
+        ColumnMetadata idColumn = meta.requireIdColumn();
+        Map<Long, T> results = new LinkedHashMap<>();
+        List<Object> misses = new ArrayList<>();
+
+        for (Long id : ids) {
+            if (id == null || results.containsKey(id)) continue;
+            Object known = identityMap.get(clazz, id);
+            if (known == null && meta.isCached()) {
+                known = database.getCache().get(meta, id);
+                if (known != null) manage(meta, id, known);
+            }
+            results.put(id, clazz.cast(known));
+            if (known == null) misses.add(id);
+        }
+
+        for (T instance : this.<T>selectIn(meta, idColumn.getName(), misses, null)) {
+            Long id = meta.getId(instance);
+            manage(meta, id, instance);
+            cache(meta, id, instance);
+            results.put(id, instance);
+        }
+        results.values().removeIf(Objects::isNull);
+        attach(meta, results.values());
+        return results;
+    }
+    
+    /**
+     * Retrieves several objects by a UUID column.
+     * <p>
+     * The objects are loaded with chunked {@code WHERE uuidCol IN (...)} statements, as in
+     * {@link #getAll(Class, Collection)}.
+     * </p>
+     *
+     * @param clazz   The class of the objects to retrieve.
+     * @param uuidCol The name of the UUID column.
+     * @param uuids   The UUID values.
+     * @param <T>     The type of the objects.
+     * @return The found objects by UUID. Missing UUIDs are absent.
+     * @throws IllegalStateException    if the session is closed.
+     * @throws IllegalArgumentException if the class maps no column named {@code uuidCol}.
+     * @throws RuntimeException         if a database error occurs.
+     */
+    public <T> Map<UUID, T> getAll(Class<T> clazz, String uuidCol, Collection<UUID> uuids) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        EntityMetadata meta = EntityMetadata.of(clazz);
+        if (meta.getColumn(uuidCol) == null) {
+            throw new IllegalArgumentException("Unknown column " + uuidCol + " for class " + clazz.getSimpleName());
+        }
+        database.getSchema().checkLookup(meta, uuidCol);
+        List<Object> values = new ArrayList<>(new LinkedHashSet<>(uuids));
+        values.remove(null);
+        values.replaceAll(uuid -> parameter(meta, uuidCol, uuid));
+        Map<UUID, T> results = new LinkedHashMap<>();
+        List<UUID> keys = new ArrayList<>();
+
+        List<T> instances = this.<T>selectIn(meta, uuidCol, values, keys);
+        for (int i = 0; i < instances.size(); i++) {
+            T instance = instances.get(i);
+            Long id = meta.getId(instance);
+            if (id != null) manage(meta, id, instance);
+            results.put(keys.get(i), instance);
+        }
+        attach(meta, instances);
+        return results;
+    }
+    
+    private <T> List<T> selectIn(EntityMetadata meta, String column, List<Object> values, List<UUID> uuidKeys) {
+        List<T> results = new ArrayList<>(values.size());
+        if (values.isEmpty()) return results;
+
+        ColumnMetadata keyColumn = meta.getColumn(column);
+        int keyIndex = meta.getColumns().indexOf(keyColumn) + 1;
+        try (Connection conn = readConnection()) {
+            for (int start = 0; start < values.size(); start += IN_CHUNK) {
+                List<Object> chunk = values.subList(start, Math.min(start + IN_CHUNK, values.size()));
+                int size = Integer.highestOneBit(chunk.size());
+                if (size < chunk.size()) size <<= 1;
+
+                String sql = meta.getSelectInSql(column, size);
+                long started = metrics.start(owner);
+                int before = results.size();
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < size; i++) {
+                        Object value = chunk.get(Math.min(i, chunk.size() - 1));
+                        setupPreparedStatementParams(ps, i + 1, value);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            results.add(mapRow(meta, rs));
+                            if (uuidKeys != null) uuidKeys.add((UUID) keyColumn.readValue(rs, keyIndex));
+                        }
+                    }
+                } catch (SQLException e) {
+                    metrics.failure(meta.getType(), QueryMetrics.Operation.SELECT, sql, started, owner);
+                    throw e;
+                }
+                List<T> read = results.subList(before, results.size());
+                metrics.record(meta.getType(), QueryMetrics.Operation.SELECT, sql, started, read.size(), metrics.weigh(meta, read), owner);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve objects of class " + meta.getType().getSimpleName(), e);
+        }
+        return results;
+    }
+
     /**
      * Retrieves all objects of a given class from the database.
      *
@@ -305,11 +822,16 @@ public class SQLSession {
      */
     public void delete(String tableName, String idCol, long id) {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
+        deleteById(null, tableName, idCol, id);
+    }
+    
+    private void deleteById(Class<?> type, String tableName, String idCol, long id) {
         String sql = "DELETE FROM `" + tableName + "` WHERE `" + idCol + "` = ?";
+        if (type != null) database.getWriteBehind().discard(type, id);
 
-        try (PreparedStatement ps = database.getConn().prepareStatement(sql)) {
+        try (Connection conn = connection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, id);
-            ps.executeUpdate();
+            executeUpdate(ps, type, QueryMetrics.Operation.DELETE, sql, 0L);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete row by ID", e);
         }
@@ -317,13 +839,55 @@ public class SQLSession {
 
     
     /**
-     * Closes the database connection and the session.
+     * Closes the session, rolling back and returning the connection of an unfinished transaction
+     * and detaching every managed entity.
      */
     public void close() {
-    	this.database.disconnect();
+    	if(tx.isActive()) {
+    		try {
+    			tx.rollback();
+    		} catch (SQLException e) {
+    			LOGGER.log(Level.WARNING, "Failed to roll back the transaction of a closed session on " + database.getDbName(), e);
+    		}
+    	}
+    	identityMap.clear();
     	this.isClosed = true;
     }
     
+    /**
+     * Detaches every managed entity. Later updates of detached entities write every column.
+     *
+     * @throws IllegalStateException if the session is closed.
+     */
+    public void clear() {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+    	identityMap.clear();
+    }
+    
+    /**
+     * Detaches one entity so the session stops tracking it. A later {@link #persists(Object)} of the
+     * entity inserts it again; a later {@link #update(Object)} writes every column.
+     *
+     * @param entity The entity to detach.
+     * @throws IllegalStateException if the session is closed or the class has no {@code @SQLId} field.
+     */
+    public void detach(Object entity) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        EntityMetadata meta = EntityMetadata.of(entity.getClass());
+        meta.requireIdColumn();
+        Long id = meta.getId(entity);
+        if (id != null && identityMap.get(meta.getType(), id) == entity) forget(meta, id);
+    }
+    
+    /**
+     * Returns the identity map of this session, to read its size metrics or change its cap and reference mode.
+     *
+     * @return The identity map.
+     */
+    public IdentityMap getIdentityMap() {
+		return identityMap;
+	}
+    
     /**
      * Checks if the session is closed.
      *
@@ -344,41 +908,28 @@ public class SQLSession {
     public void delete(Object o) {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
         try {
-            Class<?> clazz = o.getClass();
-            String tableName = getTableName(clazz);
-            Field idField = null;
-            String idColumn = null;
-
-            for (Field f : clazz.getDeclaredFields()) {
-                if (f.isAnnotationPresent(SQLId.class)) {
-                    idField = f;
-                    f.setAccessible(true);
-
-                    if (f.isAnnotationPresent(MySQLColumn.class)) {
-                        idColumn = f.getAnnotation(MySQLColumn.class).value();
-                    } else {
-                        idColumn = f.getName();
-                    }
-                    break;
-                }
-            }
+            EntityMetadata meta = EntityMetadata.of(o.getClass());
+            ColumnMetadata idColumn = meta.getIdColumn();
 
-            if (idField == null) {
-                throw new IllegalStateException("No @SQLId field found in " + clazz.getSimpleName());
+            if (idColumn == null) {
+                throw new IllegalStateException("No @SQLId field found in " + o.getClass().getSimpleName());
             }
 
-            Object idValue = idField.get(o);
+            Object idValue = idColumn.get(o);
 
             if (idValue instanceof Long) {
-                delete(tableName, idColumn, (Long) idValue);
+                deleteById(meta.getType(), meta.getTableName(), idColumn.getName(), (Long) idValue);
             } else if (idValue instanceof UUID) {
-                delete(tableName, idColumn, (UUID) idValue);
+                delete(meta.getType(), idColumn.getName(), (UUID) idValue);
+                database.getCache().invalidateAll(meta.getType());
             } else {
                 throw new IllegalArgumentException("Unsupported ID type: " + idValue.getClass());
             }
 
-            String key = getKey(o, getId(o));
-            persistenceContext.remove(key);
+            if (idValue instanceof Long id) {
+                forget(meta, id);
+                database.getCache().invalidate(meta.getType(), id);
+            }
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to delete object", e);
@@ -400,17 +951,23 @@ public class SQLSession {
     public Long getIdBy(Class<?> clazz, String column, Object value) throws IllegalAccessException, IllegalClassFormatException, SQLException {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
     	Long id = null;
-    	String tableName = getTableName(clazz);
-    	String idCol = getIdColumn(clazz);
+    	EntityMetadata meta = EntityMetadata.of(clazz);
+    	String tableName = meta.getTableName();
+    	String idCol = meta.requireIdColumn().getName();
+    	database.getSchema().checkLookup(meta, column);
     	
-    	try(Connection conn = database.newConnection(); PreparedStatement ps = conn.prepareStatement("SELECT " + idCol + " FROM " + tableName + " WHERE `" + column + "` = ? limit 1")){
-    		setupPreparedStatementParams(ps, 1, value);
+    	String sql = "SELECT " + idCol + " FROM " + tableName + " WHERE `" + column + "` = ? limit 1";
+    	long started = metrics.start(owner);
+    	try(Connection conn = readConnection(); PreparedStatement ps = conn.prepareStatement(sql)){
+    		setupPreparedStatementParams(ps, 1, parameter(meta, column, value));
     		
     		ResultSet rs = ps.executeQuery();
     		if(rs.next()) {
     			id = rs.getLong(idCol);
     		}
+    		metrics.record(clazz, QueryMetrics.Operation.SELECT, sql, started, id == null ? 0L : 1L, id == null ? 0L : 8L, owner);
     	}catch(SQLException ex) {
+    		metrics.failure(clazz, QueryMetrics.Operation.SELECT, sql, started, owner);
     		if(ex.getErrorCode() == 1146) {
     			return -1L;
     		}else {
@@ -421,7 +978,60 @@ public class SQLSession {
     }
 
     /**
-     * Deletes a record from a specified table by its UUID.
+     * Deletes the record of an entity class by a UUID column, honouring {@code BINARY(16)} storage.
+     * <p>
+     * When the class has a numeric {@code @SQLId}, the IDs of the matching rows are read first so the
+     * deleted entities are detached, evicted from the entity cache and dropped from the write-behind buffer.
+     * </p>
+     *
+     * @param clazz   The entity class.
+     * @param uuidCol The name of the UUID column.
+     * @param uuid    The UUID value of the record to delete.
+     * @throws IllegalStateException if the session is closed.
+     * @throws RuntimeException      if a database access error occurs.
+     */
+    public void delete(Class<?> clazz, String uuidCol, UUID uuid) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        EntityMetadata meta = EntityMetadata.of(clazz);
+        ColumnMetadata idColumn = meta.getIdColumn();
+        boolean tracked = idColumn != null && !idColumn.getName().equals(uuidCol)
+                && (idColumn.getType() == Long.class || idColumn.getType() == long.class);
+        String sql = "DELETE FROM `" + meta.getTableName() + "` WHERE `" + uuidCol + "` = ?";
+        List<Long> ids = new ArrayList<>();
+
+        try (Connection conn = connection()) {
+            if (tracked) {
+                String select = "SELECT `" + idColumn.getName() + "` FROM `" + meta.getTableName() + "` WHERE `" + uuidCol + "` = ?";
+                long started = metrics.start(owner);
+                try (PreparedStatement ps = conn.prepareStatement(select)) {
+                    setupPreparedStatementParams(ps, 1, parameter(meta, uuidCol, uuid));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) ids.add(rs.getLong(1));
+                    }
+                    metrics.record(clazz, QueryMetrics.Operation.SELECT, select, started, ids.size(), ids.size() * 8L, owner);
+                } catch (SQLException | RuntimeException e) {
+                    metrics.failure(clazz, QueryMetrics.Operation.SELECT, select, started, owner);
+                    throw e;
+                }
+                for (Long id : ids) database.getWriteBehind().discard(meta.getType(), id);
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                setupPreparedStatementParams(ps, 1, parameter(meta, uuidCol, uuid));
+                executeUpdate(ps, clazz, QueryMetrics.Operation.DELETE, sql, 0L);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete row by UUID", e);
+        }
+
+        for (Long id : ids) {
+            forget(meta, id);
+            database.getCache().invalidate(meta.getType(), id);
+        }
+    }
+
+    /**
+     * Deletes a record from a specified table by its UUID, stored as {@code VARCHAR(36)}.
+     * Use {@link #delete(Class, String, UUID)} for {@code BINARY(16)} columns.
      *
      * @param tableName The name of the table.
      * @param uuidCol   The name of the UUID column.
@@ -433,9 +1043,9 @@ public class SQLSession {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
         String sql = "DELETE FROM `" + tableName + "` WHERE `" + uuidCol + "` = ?";
 
-        try (PreparedStatement ps = database.getConn().prepareStatement(sql)) {
+        try (Connection conn = connection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, uuid.toString()); // If UUID is stored as CHAR(36)
-            ps.executeUpdate();
+            executeUpdate(ps, null, QueryMetrics.Operation.DELETE, sql, 0L);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete row by UUID", e);
         }
@@ -447,103 +1057,36 @@ public class SQLSession {
      * <p>
      * This method inspects the annotations on the class fields to determine
      * column names, types, and constraints (e.g., primary keys, foreign keys, not null).
-     * It will create the table only if it does not already exist.
+     * It will create the table only if it does not already exist. The tables of the classes referenced
+     * by {@code Ref} relations are created first, so its foreign keys can be created.
      * </p>
      *
      * @param tableName The name of the table to create.
      * @param clazz     The class representing the table structure.
      * @throws IllegalStateException if the session is closed.
      * @throws RuntimeException      if the class has no {@code @MySQLField} or {@code @SQLId} annotation,
-     * or if the class has multiple {@code @SQLId} columns.
+     * if the class has multiple {@code @SQLId} columns, or if the table cannot be created.
      */
     public void createTable(String tableName, Class<?> clazz) {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
-        Map<String, Field> colsData = new LinkedHashMap<>();
-        Map<String, Boolean> notNullConstraints = new HashMap<>();
-        String idColumn = null;
-        List<String> primaryKeyColumns = new ArrayList<>();
-        List<String> foreignKeyDefs = new ArrayList<>();
-
-        boolean isAutoMapped = isAutoMapped(clazz);
-
-        for (Field f : clazz.getDeclaredFields()) {
-            String columnName;
-            boolean isNotNull = false;
-
-            if (f.isAnnotationPresent(MySQLColumn.class)) {
-                MySQLColumn msC = f.getAnnotation(MySQLColumn.class);
-                columnName = msC.value();
-                isNotNull = msC.isNotNull();
-            } else if (isAutoMapped) {
-                columnName = f.getName();
-            } else {
-                continue;
-            }
-
-            colsData.put(columnName, f);
-            notNullConstraints.put(columnName, isNotNull);
-
-            if (f.isAnnotationPresent(SQLId.class)) {
-                if (idColumn != null) {
-                    throw new RuntimeException("Table " + tableName + " can only have one SQLId column!");
-                }
-                idColumn = columnName;
-            }
-
-            if (f.isAnnotationPresent(SQLPrimaryKey.class)) {
-                primaryKeyColumns.add(columnName);
-            }
-
-            if (f.isAnnotationPresent(SQLForeignKey.class)) {
-                SQLForeignKey fk = f.getAnnotation(SQLForeignKey.class);
-                String fkDef = String.format("FOREIGN KEY (`%s`) REFERENCES `%s`(`%s`)",
-                        columnName, fk.table(), fk.attribute());
-                foreignKeyDefs.add(fkDef);
-            }
-        }
-
-        if (idColumn == null) {
-            throw new RuntimeException("Table " + tableName + " must have one SQLId column!");
-        }
-
-        StringBuilder codeBuilder = new StringBuilder("CREATE TABLE IF NOT EXISTS `")
-                .append(tableName).append("` (\n");
-
-        List<String> columnDefs = new ArrayList<>();
-
-        for (Map.Entry<String, Field> entry : colsData.entrySet()) {
-            String colName = entry.getKey();
-            Field field = entry.getValue();
-            Class<?> type = field.getType();
-            String sqlType = mapJavaTypeToMySQL(type);
-
-            StringBuilder colDef = new StringBuilder("  `").append(colName).append("` ").append(sqlType);
-
-            if (colName.equals(idColumn)) {
-                colDef.append(" AUTO_INCREMENT UNIQUE NOT NULL");
-                primaryKeyColumns.add(idColumn);
-            } else if (notNullConstraints.getOrDefault(colName, false) || primaryKeyColumns.contains(colName)) {
-                colDef.append(" NOT NULL");
-            }
-
-            columnDefs.add(colDef.toString());
-        }
-
-        if (!primaryKeyColumns.isEmpty()) {
-            columnDefs.add("PRIMARY KEY (" + String.join(", ", primaryKeyColumns) + ")");
+        createTable(tableName, EntityMetadata.of(clazz), new HashSet<>());
+    }
+    
+    private void createTable(String tableName, EntityMetadata meta, Set<Class<?>> visited) {
+        visited.add(meta.getType());
+        for (ColumnMetadata column : meta.getRelationColumns()) {
+            EntityMetadata target = column.getRelation().getTarget();
+            if (visited.add(target.getType())) createTable(target.getTableName(), target, visited);
         }
+        String sql = SchemaBootstrap.createTableSql(tableName, meta);
 
-        columnDefs.addAll(foreignKeyDefs);
-
-        codeBuilder.append(String.join(",\n", columnDefs));
-        codeBuilder.append("\n);");
-
-        String sql = codeBuilder.toString();
-
-        try (Connection conn = this.database.newConnection(); Statement stmt = conn.createStatement()) {
+        long started = metrics.start(owner);
+        try (Connection conn = database.getConnection(); Statement stmt = conn.createStatement()) {
             stmt.execute(sql);
+            metrics.record(meta.getType(), QueryMetrics.Operation.DDL, sql, started, 0L, 0L, owner);
         } catch (SQLException e) {
-            e.printStackTrace();
+            metrics.failure(meta.getType(), QueryMetrics.Operation.DDL, sql, started, owner);
+            throw new RuntimeException("Failed to create table " + tableName, e);
         }
     }
 
@@ -562,49 +1105,346 @@ public class SQLSession {
      * @throws RuntimeException      if a database access error or mapping error occurs.
      */
     public <T> List<T> executeQuery(Class<T> clazz, String query) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        EntityMetadata meta = EntityMetadata.of(clazz);
+        return executeQuery(meta, "SELECT " + meta.getAliasedSelectList() + " FROM " + meta.getTableName() + " obj " + query, List.of());
+    }
+    
+    /**
+     * Starts a typed, parameterized query over the entities of a class.
+     *
+     * @param clazz The class of the objects to retrieve.
+     * @param <T>   The type of the objects.
+     * @return A new {@link Query}.
+     * @throws IllegalStateException if the session is closed.
+     */
+    public <T> Query<T> query(Class<T> clazz) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+    	return new Query<>(this, clazz, clazz);
+    }
+    
+    /**
+     * Starts a typed, parameterized query over the rows of an entity class that reads only the
+     * columns of a projection.
+     * <p>
+     * The projection is a record, built through its canonical constructor, or a class with a no-argument
+     * constructor whose fields are assigned. Its components or fields are matched to columns by
+     * {@code @MySQLColumn} or by name, and every one must be a column of the entity. Projections are not
+     * added to the persistence context.
+     * </p>
+     *
+     * @param clazz      The entity class whose table is queried.
+     * @param projection The class receiving the selected columns.
+     * @param <P>        The projection type.
+     * @return A new {@link Query}.
+     * @throws IllegalStateException    if the session is closed.
+     * @throws IllegalArgumentException if the projection names a column the entity does not map.
+     */
+    public <P> Query<P> query(Class<?> clazz, Class<P> projection) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+    	return new Query<>(this, clazz, projection);
+    }
+    
+    /**
+     * Reads one page of the objects of a class in ascending {@code @SQLId} order.
+     *
+     * @param clazz The class of the objects to retrieve.
+     * @param size  The maximum number of objects per page.
+     * @param token The continuation token of the previous page, or {@code null} for the first page.
+     * @param <T>   The type of the objects.
+     * @return The page.
+     * @throws IllegalStateException if the session is closed.
+     * @see Query#page(String, boolean, int, String)
+     */
+    public <T> Page<T> page(Class<T> clazz, int size, String token) {
+    	return query(clazz).page(EntityMetadata.of(clazz).requireIdColumn().getName(), true, size, token);
+    }
+    
+    /**
+     * Executes a custom SQL query that reads only the columns of a projection.
+     *
+     * @param clazz      The entity class whose table is queried.
+     * @param projection The class receiving the selected columns, see {@link #query(Class, Class)}.
+     * @param query      The SQL query fragment (e.g., WHERE clause).
+     * @param <P>        The projection type.
+     * @return A list of projections.
+     * @throws IllegalStateException if the session is closed.
+     * @throws RuntimeException      if a database access error occurs.
+     */
+    public <P> List<P> executeQuery(Class<?> clazz, Class<P> projection, String query) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        EntityMetadata meta = EntityMetadata.of(clazz);
+        ProjectionMetadata pm = ProjectionMetadata.of(projection);
+        return executeProjection(clazz, pm, "SELECT " + pm.getSelectList() + " FROM " + meta.getTableName() + " obj " + query, List.of());
+    }
+    
+    @SuppressWarnings("unchecked")
+    <P> List<P> executeProjection(Class<?> type, ProjectionMetadata projection, String sql, List<Object> params) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        List<P> results = new ArrayList<>();
+        long started = metrics.start(owner);
+        try (Connection conn = readConnection();
+             PreparedStatement ps = prepare(conn, sql, params);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                results.add((P) projection.map(rs));
+            }
+            metrics.record(type, QueryMetrics.Operation.SELECT, sql, started, results.size(), metrics.weigh(projection, results), owner);
+        } catch (SQLException e) {
+            metrics.failure(type, QueryMetrics.Operation.SELECT, sql, started, owner);
+            throw new RuntimeException("Failed to execute query for projection " + projection.getType().getSimpleName(), e);
+        }
+        return results;
+    }
+    
+    <T> List<T> executeQuery(EntityMetadata meta, String sql, List<Object> params) {
+        return executeQuery(meta, sql, params, List.of());
+    }
+    
+    /**
+     * Runs a query whose select list ends with the columns of the relations fetched by a join, in order.
+     */
+    <T> List<T> executeQuery(EntityMetadata meta, String sql, List<Object> params, List<ColumnMetadata> fetches) {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
         List<T> results = new ArrayList<>();
+        Map<Class<?>, List<Object>> joined = new HashMap<>();
+        long started = metrics.start(owner);
 
-
-        String tableName = getTableName(clazz);
-        try (PreparedStatement ps = database.newConnection().prepareStatement("SELECT * FROM " + tableName + " obj " + query);
+        try (Connection conn = readConnection();
+             PreparedStatement ps = prepare(conn, sql, params);
              ResultSet rs = ps.executeQuery()) {
 
-            Map<String, Field> columnData = getColumnData(clazz, true);
-
             while (rs.next()) {
-                T instance = clazz.getDeclaredConstructor().newInstance();
-
-                for (Map.Entry<String, Field> entry : columnData.entrySet()) {
-                    String columnName = entry.getKey();
-                    Field field = entry.getValue();
-                    field.setAccessible(true);
-
-                    Object value = rs.getObject(columnName);
-
-                    if (field.getType() == UUID.class && value instanceof String) {
-                        field.set(instance, UUID.fromString((String) value));
-                    } else {
-                        field.set(instance, value);
-                    }
-                }
+                T instance = mapRow(meta, rs);
                 
-                Long id = getId(instance);
-                String key = getKey(instance, id);
-                persistenceContext.put(key, instance); 
+                manage(meta, meta.getId(instance), instance);
+                cache(meta, meta.getId(instance), instance);
+                if (!fetches.isEmpty()) mapJoined(meta, rs, instance, fetches, true, true, joined);
                 results.add(instance);
             }
+            metrics.record(meta.getType(), QueryMetrics.Operation.SELECT, sql, started, results.size(), metrics.weigh(meta, results), owner);
 
         } catch (Exception e) {
-            throw new RuntimeException("Failed to execute query for class " + clazz.getSimpleName(), e);
+            metrics.failure(meta.getType(), QueryMetrics.Operation.SELECT, sql, started, owner);
+            throw new RuntimeException("Failed to execute query for class " + meta.getType().getSimpleName(), e);
         }
 
+        attach(meta, results);
+        for (Map.Entry<Class<?>, List<Object>> related : joined.entrySet()) attach(EntityMetadata.of(related.getKey()), related.getValue());
         return results;
     }
+    
+    long executeCount(Class<?> type, String sql, List<Object> params) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        long started = metrics.start(owner);
+        try (Connection conn = readConnection();
+             PreparedStatement ps = prepare(conn, sql, params);
+             ResultSet rs = ps.executeQuery()) {
+            long count = rs.next() ? rs.getLong(1) : 0L;
+            metrics.record(type, QueryMetrics.Operation.COUNT, sql, started, 1L, 8L, owner);
+            return count;
+        } catch (SQLException e) {
+            metrics.failure(type, QueryMetrics.Operation.COUNT, sql, started, owner);
+            throw new RuntimeException("Failed to execute count query", e);
+        }
+    }
+    
+    private static PreparedStatement prepare(Connection conn, String sql, List<Object> params) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            for (int i = 0; i < params.size(); i++) {
+                setupPreparedStatementParams(ps, i + 1, params.get(i));
+            }
+        } catch (SQLException e) {
+            ps.close();
+            throw e;
+        }
+        return ps;
+    }
 
     
+    /**
+     * Streams all objects of a given class without loading the whole table into memory.
+     *
+     * @param clazz The class of the objects to retrieve.
+     * @param <T>   The type of the objects.
+     * @return A lazily mapped stream that must be closed, see {@link #stream(Class, String, boolean)}.
+     * @throws IllegalStateException if the session is closed.
+     * @throws RuntimeException      if a database error occurs.
+     */
+    public <T> Stream<T> streamAll(Class<T> clazz) {
+    	return stream(clazz, "", false);
+    }
+    
+    /**
+     * Executes a custom SQL query and streams the results, mapping each row only when it is consumed.
+     * <p>
+     * Rows are fetched from the server {@link Database#getFetchSize()} at a time through a cursor
+     * instead of being materialized. The connection stays borrowed until the stream is closed or
+     * fully consumed, so use the stream in a try-with-resources block. Streamed objects are added
+     * to the persistence context only when {@code manage} is {@code true}.
+     * </p>
+     *
+     * @param clazz  The class to which the query results will be mapped.
+     * @param query  The SQL query fragment (e.g., WHERE clause).
+     * @param manage Whether streamed objects are added to the persistence context.
+     * @param <T>    The type of the objects.
+     * @return A stream of mapped objects.
+     * @throws IllegalStateException if the session is closed.
+     * @throws RuntimeException      if a database access error occurs.
+     */
+    public <T> Stream<T> stream(Class<T> clazz, String query, boolean manage) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        EntityMetadata meta = EntityMetadata.of(clazz);
+        return stream(meta, "SELECT " + meta.getAliasedSelectList() + " FROM " + meta.getTableName() + " obj " + query, List.of(), manage);
+    }
+    
+    <T> Stream<T> stream(EntityMetadata meta, String sql, List<Object> params, boolean manage) {
+        return stream(meta, sql, params, manage, List.of());
+    }
+    
+    /**
+     * Streams a query whose select list ends with the columns of the relations fetched by a join, in order.
+     * The unloaded references of each streamed entity are loaded on their own.
+     */
+    <T> Stream<T> stream(EntityMetadata meta, String sql, List<Object> params, boolean manage, List<ColumnMetadata> fetches) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        Connection conn = null;
+        PreparedStatement ps = null;
+        long started = metrics.start(owner);
+        try {
+            conn = readConnection();
+            boolean cacheable = !replicaRead;
+            ps = prepare(conn, sql, params);
+            ps.setFetchSize(database.getFetchSize());
+            ResultSet rs = ps.executeQuery();
+            RowCursor<T> cursor = new RowCursor<>(meta.getType(), conn, ps, rs, row -> {
+                T instance = mapRow(meta, row);
+                if (manage) manage(meta, meta.getId(instance), instance);
+                if (!fetches.isEmpty()) {
+                    Map<Class<?>, List<Object>> joined = new HashMap<>();
+                    mapJoined(meta, row, instance, fetches, manage, cacheable, joined);
+                    for (Map.Entry<Class<?>, List<Object>> related : joined.entrySet()) attach(EntityMetadata.of(related.getKey()), related.getValue());
+                }
+                attach(meta, List.of(instance));
+                return instance;
+            }, instance -> metrics.weigh(meta, instance), metrics, sql, started, owner);
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+        } catch (SQLException e) {
+            metrics.failure(meta.getType(), QueryMetrics.Operation.SELECT, sql, started, owner);
+            closeQuietly(ps);
+            closeQuietly(conn);
+            throw new RuntimeException("Failed to execute query for class " + meta.getType().getSimpleName(), e);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    <P> Stream<P> streamProjection(Class<?> type, ProjectionMetadata projection, String sql, List<Object> params) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        Connection conn = null;
+        PreparedStatement ps = null;
+        long started = metrics.start(owner);
+        try {
+            conn = readConnection();
+            ps = prepare(conn, sql, params);
+            ps.setFetchSize(database.getFetchSize());
+            ResultSet rs = ps.executeQuery();
+            RowCursor<P> cursor = new RowCursor<>(type, conn, ps, rs, row -> (P) projection.map(row),
+                    instance -> metrics.weigh(projection, instance), metrics, sql, started, owner);
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+        } catch (SQLException e) {
+            metrics.failure(type, QueryMetrics.Operation.SELECT, sql, started, owner);
+            closeQuietly(ps);
+            closeQuietly(conn);
+            throw new RuntimeException("Failed to execute query for projection " + projection.getType().getSimpleName(), e);
+        }
+    }
+    
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+    
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+    
+    /**
+     * Maps rows lazily. The statement is recorded in the metrics when the cursor is closed, with the
+     * time from execution to close and the rows actually consumed.
+     */
+    private static final class RowCursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Class<?> type;
+        private final Connection conn;
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private final ToLongFunction<T> weigher;
+        private final QueryMetrics metrics;
+        private final String sql;
+        private final long started;
+        private final String owner;
+        private long rows;
+        private long bytes;
+        private boolean failed;
+        private boolean closed;
+
+        private RowCursor(Class<?> type, Connection conn, PreparedStatement ps, ResultSet rs, RowMapper<T> mapper,
+                ToLongFunction<T> weigher, QueryMetrics metrics, String sql, long started, String owner) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.type = type;
+            this.conn = conn;
+            this.ps = ps;
+            this.rs = rs;
+            this.mapper = mapper;
+            this.weigher = weigher;
+            this.metrics = metrics;
+            this.sql = sql;
+            this.started = started;
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) return false;
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                T instance = mapper.map(rs);
+                rows++;
+                bytes += weigher.applyAsLong(instance);
+                action.accept(instance);
+                return true;
+            } catch (SQLException e) {
+                failed = true;
+                close();
+                throw new RuntimeException("Failed to read row for class " + type.getSimpleName(), e);
+            }
+        }
+
+        private void close() {
+            if (closed) return;
+            closed = true;
+            if (failed) metrics.failure(type, QueryMetrics.Operation.SELECT, sql, started, owner);
+            else metrics.record(type, QueryMetrics.Operation.SELECT, sql, started, rows, bytes, owner);
+            closeQuietly(rs);
+            closeQuietly(ps);
+            closeQuietly(conn);
+        }
+    }
+    
     /**
      * Executes a native SQL query and returns the results as a list of object arrays.
+     * <p>
+     * Plain {@code SELECT}, {@code SHOW}, {@code DESCRIBE} and {@code EXPLAIN} statements may be served by
+     * a replica; anything else, including locking reads, runs on the primary.
+     * </p>
      *
      * @param query The native SQL query to execute.
      * @return A list of object arrays, where each array represents a row from the result set.
@@ -614,70 +1454,220 @@ public class SQLSession {
     public List<Object[]> executeNativeQuery(String query) {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
         List<Object[]> results = new ArrayList<>();
+        boolean readOnly = isReadOnly(query);
+        if(!readOnly) lastWrite = System.currentTimeMillis();
+        long started = metrics.start(owner);
 
-        try (PreparedStatement ps = database.newConnection().prepareStatement(query);
+        try (Connection conn = readOnly ? readConnection() : connection();
+             PreparedStatement ps = conn.prepareStatement(query);
              ResultSet rs = ps.executeQuery()) {
 
             int columnCount = rs.getMetaData().getColumnCount();
+            long bytes = 0L;
 
             while (rs.next()) {
                 Object[] row = new Object[columnCount];
                 for (int i = 0; i < columnCount; i++) {
                     row[i] = rs.getObject(i + 1);
                 }
+                bytes += metrics.weigh(row);
                 results.add(row);
             }
+            metrics.record(null, QueryMetrics.Operation.NATIVE, query, started, results.size(), bytes, owner);
         } catch (SQLException e) {
+            metrics.failure(null, QueryMetrics.Operation.NATIVE, query, started, owner);
             throw new RuntimeException("Failed to execute native query", e);
         }
 
         return results;
     }
 
-    private static String mapJavaTypeToMySQL(Class<?> type) {
-        if (type == int.class || type == Integer.class) return "INT";
-        if (type == long.class || type == Long.class) return "BIGINT";
-        if (type == short.class || type == Short.class) return "SMALLINT";
-        if (type == byte.class || type == Byte.class) return "TINYINT";
-        if (type == boolean.class || type == Boolean.class) return "BOOLEAN";
-        if (type == float.class || type == Float.class) return "FLOAT";
-        if (type == double.class || type == Double.class) return "DOUBLE";
-        if (type == char.class || type == Character.class) return "CHAR(1)";
-        if (type == String.class) return "VARCHAR(255)";
-        if (type == UUID.class) return "VARCHAR(36)";
-        if (type == java.util.Date.class || type == java.sql.Timestamp.class) return "DATETIME";
-        if (type == java.sql.Date.class) return "DATE";
-        if (type == java.sql.Time.class) return "TIME";
-        if (type == byte[].class) return "BLOB";
 
-        return "TEXT";
+    private void manage(EntityMetadata meta, long id, Object entity) {
+        identityMap.put(meta.getType(), id, entity, EntitySnapshot.take(meta, entity));
     }
-
-    private static String getKey(Object object, long id){
-        Class<?> clazz = object.getClass();
-        String key = clazz.getName() + "#" + id;
-        return key;
+    
+    private void forget(EntityMetadata meta, long id) {
+        identityMap.remove(meta.getType(), id);
     }
-
-    private static Long getId(Object o) throws IllegalAccessException, IllegalClassFormatException {
-        Class<?> clazz = o.getClass();
-        Long id = null;
-        boolean b = false;
-        for(Field field : clazz.getDeclaredFields()){
-            if(b){
-                throw new IllegalClassFormatException("Multiple ID field");
+    
+    /**
+     * Shares an entity read by this session through the entity cache, unless it was read inside a
+     * transaction and may hold changes that are not committed yet, or read from a replica that may lag.
+     */
+    private void cache(EntityMetadata meta, Long id, Object entity) {
+        if (id == null || tx.isActive() || replicaRead) return;
+        database.getCache().put(meta, id, entity);
+    }
+    
+    private long dirtyMask(EntityMetadata meta, Object entity) {
+        Long id = meta.getId(entity);
+        Object[] snapshot = id == null ? null : identityMap.getSnapshot(meta.getType(), id);
+        if (snapshot == null) return meta.getFullUpdateMask();
+        return EntitySnapshot.dirtyMask(meta, snapshot, entity);
+    }
+    
+    private void refreshSnapshot(EntityMetadata meta, Object entity) {
+        Long id = meta.getId(entity);
+        if (id != null) identityMap.replaceSnapshot(meta.getType(), id, EntitySnapshot.take(meta, entity));
+    }
+    
+    private static int bindColumns(PreparedStatement ps, EntityMetadata meta, long mask, Object entity) throws SQLException {
+        List<ColumnMetadata> columns = meta.getNonIdColumns();
+        int i = 1;
+        for (int c = 0; c < columns.size(); c++) {
+            if (c < 64 && (mask & (1L << c)) == 0) continue;
+            bind(ps, i, columns.get(c), entity);
+            i++;
+        }
+        return i;
+    }
+    
+    private static <T> T mapRow(EntityMetadata meta, ResultSet rs) throws SQLException {
+        return mapRow(meta, rs, 0);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T mapRow(EntityMetadata meta, ResultSet rs, int offset) throws SQLException {
+        T instance = (T) meta.newInstance();
+        List<ColumnMetadata> columns = meta.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).read(rs, offset + i + 1, instance);
+        }
+        return instance;
+    }
+    
+    /**
+     * Resolves the fetched relations of an entity from the joined columns of its row. Related entities
+     * already managed by this session are reused; the others are mapped and collected in {@code joined}.
+     */
+    private void mapJoined(EntityMetadata meta, ResultSet rs, Object instance, List<ColumnMetadata> fetches, boolean manage,
+            boolean cacheable, Map<Class<?>, List<Object>> joined) throws SQLException {
+        int offset = meta.getColumns().size();
+        for (ColumnMetadata column : fetches) {
+            RelationMetadata relation = column.getRelation();
+            EntityMetadata target = relation.getTarget();
+            if (column.get(instance) instanceof Ref<?> ref) {
+                Object related = null;
+                ColumnMetadata keyColumn = relation.getTargetColumn();
+                if (keyColumn.readValue(rs, offset + target.getColumns().indexOf(keyColumn) + 1) != null) {
+                    ColumnMetadata idColumn = target.getIdColumn();
+                    Long id = idColumn == null ? null : (Long) idColumn.readValue(rs, offset + target.getColumns().indexOf(idColumn) + 1);
+                    related = id == null ? null : identityMap.get(target.getType(), id);
+                    if (related == null) {
+                        related = mapRow(target, rs, offset);
+                        if (manage && id != null) {
+                            manage(target, id, related);
+                            if (cacheable) cache(target, id, related);
+                        }
+                        joined.computeIfAbsent(target.getType(), k -> new ArrayList<>()).add(related);
+                    }
+                }
+                ref.resolve(related);
             }
-            if(field.isAnnotationPresent(SQLId.class)){
-                field.setAccessible(true);
-                id = (Long) field.get(o);
+            offset += target.getColumns().size();
+        }
+    }
+    
+    /**
+     * Groups the unloaded references of entities read by one statement, so the first access to any
+     * of them loads every reference to the same class with one query.
+     */
+    private void attach(EntityMetadata meta, Collection<?> instances) {
+        List<ColumnMetadata> relations = meta.getRelationColumns();
+        if (relations.isEmpty() || instances.isEmpty()) return;
+        Map<String, Ref.Batch> batches = new HashMap<>();
+        for (Object instance : instances) {
+            for (ColumnMetadata column : relations) {
+                if (!(column.get(instance) instanceof Ref<?> ref) || !ref.isPending()) continue;
+                RelationMetadata relation = column.getRelation();
+                batches.computeIfAbsent(relation.getTargetType().getName() + "#" + relation.getAttribute(),
+                        k -> new Ref.Batch(this, relation)).add(ref);
             }
         }
-        return id;
+    }
+    
+    /**
+     * Loads the entities referenced by a batch of references to one class and resolves them. Entities
+     * already managed by this session are reused, and references to missing rows resolve to {@code null}.
+     *
+     * @throws IllegalStateException if the session is closed.
+     */
+    void load(RelationMetadata relation, List<Ref<?>> refs) {
+    	if(isClosed) throw new IllegalStateException("Session is closed.");
+        EntityMetadata target = relation.getTarget();
+        Map<Object, Object> found = new HashMap<>();
+        if (relation.isById()) {
+            List<Long> ids = new ArrayList<>(refs.size());
+            for (Ref<?> ref : refs) ids.add(((Number) ref.getKey()).longValue());
+            found.putAll(getAll(target.getType(), ids));
+        } else {
+            ColumnMetadata keyColumn = relation.getTargetColumn();
+            List<Object> keys = new ArrayList<>(refs.size());
+            for (Ref<?> ref : refs) keys.add(ref.getKey());
+            keys = new ArrayList<>(new LinkedHashSet<>(keys));
+            keys.replaceAll(keyColumn::toParameter);
+            List<Object> loaded = new ArrayList<>();
+            for (Object instance : this.selectIn(target, relation.getAttribute(), keys, null)) {
+                Long id = target.getId(instance);
+                Object known = id == null ? null : identityMap.get(target.getType(), id);
+                if (known == null) {
+                    known = instance;
+                    if (id != null) {
+                        manage(target, id, instance);
+                        cache(target, id, instance);
+                    }
+                    loaded.add(instance);
+                }
+                found.put(keyColumn.get(known), known);
+            }
+            attach(target, loaded);
+        }
+        for (Ref<?> ref : refs) ref.resolve(found.get(ref.getKey()));
+    }
+    
+    private static Object parameter(EntityMetadata meta, String column, Object value) {
+        ColumnMetadata metaColumn = meta.getColumn(column);
+        return metaColumn != null ? metaColumn.toParameter(value) : value;
+    }
+    
+    private static void bind(PreparedStatement ps, int i, ColumnMetadata column, Object entity) throws SQLException {
+        column.bind(ps, i, entity);
+    }
+    
+    private int executeUpdate(PreparedStatement ps, Class<?> type, QueryMetrics.Operation operation, String sql, long bytes) throws SQLException {
+        lastWrite = System.currentTimeMillis();
+        if (type != null && tx.isActive()) tx.touch(type);
+        long started = metrics.start(owner);
+        try {
+            int rows = ps.executeUpdate();
+            metrics.record(type, operation, sql, started, rows, bytes, owner);
+            return rows;
+        } catch (SQLException | RuntimeException e) {
+            metrics.failure(type, operation, sql, started, owner);
+            throw e;
+        }
+    }
+    
+    private void executeBatch(PreparedStatement ps, Class<?> type, QueryMetrics.Operation operation, String sql, int rows, long bytes) throws SQLException {
+        lastWrite = System.currentTimeMillis();
+        if (type != null && tx.isActive()) tx.touch(type);
+        long started = metrics.start(owner);
+        try {
+            ps.executeBatch();
+            metrics.record(type, operation, sql, started, rows, bytes, owner);
+        } catch (SQLException | RuntimeException e) {
+            metrics.failure(type, operation, sql, started, owner);
+            throw e;
+        }
     }
     /**
      * Updates an existing object in the database.
      * <p>
      * The object must have a valid ID. Only the fields marked for mapping will be updated.
+     * If the object was loaded or persisted by this session, only the columns that changed since
+     * then are written, and no statement is sent at all when nothing changed. If the object's class is registered on the database's {@link WriteBehindBuffer}, the
+     * object is only marked dirty and written by the next flush.
      * </p>
      *
      * @param o The object to update.
@@ -688,40 +1678,37 @@ public class SQLSession {
      */
     public void update(Object o) throws SQLException, IllegalClassFormatException, IllegalAccessException {
     	if(isClosed) throw new IllegalStateException("Session is closed.");
-        String tableName = getTableName(o);
-        Map<String, Field> params = getColumnData(o, false);
-        String idCol = getIdColumn(o);
-        Long id = getId(o);
-
-        StringBuilder codeBuilder = new StringBuilder("UPDATE ");
-        codeBuilder.append(tableName).append(" SET ");
-
-        List<String> paramKeys = new ArrayList<>(params.keySet());
-        for (int i = 0; i < paramKeys.size(); i++) {
-            codeBuilder.append(paramKeys.get(i)).append(" = ?");
-            if (i < paramKeys.size() - 1) {
-                codeBuilder.append(", ");
+        EntityMetadata meta = EntityMetadata.of(o.getClass());
+        WriteBehindBuffer writeBehind = database.getWriteBehind();
+        if(writeBehind.isRegistered(o.getClass())) {
+            Long pending = meta.getId(o);
+            if(pending != null) database.getCache().invalidate(meta.getType(), pending);
+            if(writeBehind.enqueue(o)) {
+                buffered = true;
+                bufferedEpoch = writeBehind.getFlushEpoch();
+                return;
             }
         }
-        codeBuilder.append(" WHERE ").append(idCol).append(" = ?");
-
-        try (PreparedStatement ps = database.getConn().prepareStatement(codeBuilder.toString())) {
-            int i = 1;
-            for (String key : paramKeys) {
-                Field field = params.get(key);
-                field.setAccessible(true);
-                Object value = field.get(o);
-                setupPreparedStatementParams(ps, i, value);                
-                i++;
-            }
+        meta.requireIdColumn();
+        Long id = meta.getId(o);
+        long mask = dirtyMask(meta, o);
+        if (mask == 0L) return;
+
+        String sql = meta.getUpdateSql(mask);
+        try (Connection conn = connection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = bindColumns(ps, meta, mask, o);
             ps.setLong(i, id);
-            ps.executeUpdate();
+            executeUpdate(ps, meta.getType(), QueryMetrics.Operation.UPDATE, sql, metrics.weigh(meta, o));
         }
+        refreshSnapshot(meta, o);
+        database.getCache().invalidate(meta.getType(), id);
     }
     
-    private static void setupPreparedStatementParams(PreparedStatement ps, int i, Object value) throws SQLException {
+    static void setupPreparedStatementParams(PreparedStatement ps, int i, Object value) throws SQLException {
     	if (value == null) {
             ps.setObject(i, null);
+        } else if (value instanceof ColumnMetadata.Parameter) {
+            ((ColumnMetadata.Parameter) value).bind(ps, i);
         } else if (value instanceof Integer) {
             ps.setInt(i, (Integer) value);
         } else if (value instanceof String) {
@@ -760,105 +1747,4 @@ public class SQLSession {
             ps.setString(i, value.toString());
         }
     }
-
-
-    private static String getTableName(Object o){
-        Class<?> clazz = o.getClass();
-        if(!clazz.isAnnotationPresent(MySQLField.class)) throw new RuntimeException("No such annotation declared for class " + clazz.getName());
-        MySQLField msF = clazz.getAnnotation(MySQLField.class);
-        return msF.value();
-    }
-    
-    private static String getTableName(Class<?> clazz){
-        if(!clazz.isAnnotationPresent(MySQLField.class)) throw new RuntimeException("No such annotation declared for class " + clazz.getName());
-        MySQLField msF = clazz.getAnnotation(MySQLField.class);
-        return msF.value();
-    }
-
-    private static boolean isAutoMapped(Object o){
-        Class<?> clazz = o.getClass();
-        if(!clazz.isAnnotationPresent(MySQLField.class)) throw new RuntimeException("No such annotation declared for class " + clazz.getName());
-        MySQLField msF = clazz.getAnnotation(MySQLField.class);
-        return msF.autoMapped();
-    }
-
-    private static boolean isAutoMapped(Class<?> clazz){
-        if(!clazz.isAnnotationPresent(MySQLField.class)) throw new RuntimeException("No such annotation declared for class " + clazz.getName());
-        MySQLField msF = clazz.getAnnotation(MySQLField.class);
-        return msF.autoMapped();
-    }
-
-    private static Map<String, Field> getColumnData(Object o, boolean includeId){
-        Map<String, Field> colsData = new LinkedHashMap<>();
-        Class<?> clazz = o.getClass();
-        boolean isAutoMapped = isAutoMapped(o);
-        for(Field f : clazz.getDeclaredFields()){
-            if(f.isAnnotationPresent(MySQLColumn.class)){
-                if(f.isAnnotationPresent(SQLId.class) && !includeId) continue;
-                MySQLColumn msC = f.getAnnotation(MySQLColumn.class);
-                colsData.put(msC.value(), f);
-            }else if(f.isAnnotationPresent(SQLId.class) && includeId){
-                colsData.put(f.getName(), f);
-            }else if(isAutoMapped){
-                colsData.put(f.getName(), f);
-            }
-        }
-        return colsData;
-    }
-    
-    private static Map<String, Field> getColumnData(Class<?> clazz, boolean includeId){
-        Map<String, Field> colsData = new LinkedHashMap<>();
-        boolean isAutoMapped = isAutoMapped(clazz);
-        for(Field f : clazz.getDeclaredFields()){
-            if(f.isAnnotationPresent(MySQLColumn.class)){
-                if(f.isAnnotationPresent(SQLId.class) && !includeId) continue;
-                MySQLColumn msC = f.getAnnotation(MySQLColumn.class);
-                colsData.put(msC.value(), f);
-            }else if(f.isAnnotationPresent(SQLId.class) && includeId){
-                colsData.put(f.getName(), f);
-            }else if(isAutoMapped){
-                colsData.put(f.getName(), f);
-            }
-        }
-        return colsData;
-    }
-
-    private static String getIdColumn(Object o)throws IllegalAccessException, IllegalClassFormatException {
-        Class<?> clazz = o.getClass();
-        String id = null;
-        boolean b = false;
-        for(Field field : clazz.getDeclaredFields()){
-            if(b){
-                throw new IllegalClassFormatException("Multiple ID field");
-            }
-            if(field.isAnnotationPresent(SQLId.class)){
-                if(field.isAnnotationPresent(MySQLColumn.class)) {
-                	MySQLColumn msC = field.getAnnotation(MySQLColumn.class);
-                	id = msC.value();
-                }else {
-                	id = field.getName();
-                }
-            }
-        }
-        return id;
-    }
-    
-    private static String getIdColumn(Class<?> clazz) throws IllegalAccessException, IllegalClassFormatException {
-        String id = null;
-        boolean b = false;
-        for(Field field : clazz.getDeclaredFields()){
-            if(b){
-                throw new IllegalClassFormatException("Multiple ID field");
-            }
-            if(field.isAnnotationPresent(SQLId.class)){
-                if(field.isAnnotationPresent(MySQLColumn.class)) {
-                	MySQLColumn msC = field.getAnnotation(MySQLColumn.class);
-                	id = msC.value();
-                }else {
-                	id = field.getName();
-                }
-            }
-        }
-        return id;
-    }
 }
@@ -1,12 +1,18 @@
 package net.heeheehub.mysqlrepository.MySQLRepository.repo;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Manages database transactions.
  * <p>
  * This class provides methods to begin, commit, and rollback a database transaction.
  * It ensures that database operations are atomic, consistent, isolated, and durable (ACID).
+ * A pooled connection is borrowed when the transaction begins and returned when it ends.
+ * Entities read inside a transaction are not shared through the {@link EntityCache}, and the cached
+ * entities of every class the transaction wrote are evicted when it is rolled back.
  * </p>
  *
  * @author Naphon
@@ -18,6 +24,10 @@ public class SQLTransaction {
 	
 	private boolean active = false;
 	
+	private Connection conn;
+	
+	private final Set<Class<?>> touched = new HashSet<>();
+	
 	/**
      * Constructs an SQLTransaction instance.
      *
@@ -32,13 +42,40 @@ public class SQLTransaction {
 		if(active) {
 			throw new IllegalStateException("Transaction is already active");
 		}
-		database.getConn().setAutoCommit(false);
+		conn = database.getConnection();
+		try {
+			conn.setAutoCommit(false);
+		} catch (SQLException ex) {
+			conn.close();
+			conn = null;
+			throw ex;
+		}
 		active = true;
 	}
 	
 	void end() throws SQLException {
-		active = false;
-		database.getConn().setAutoCommit(true);
+		if(!active) return;
+		try {
+			evictTouched();
+		} finally {
+			reset();
+		}
+	}
+	
+	/**
+	 * Records that the transaction wrote rows of an entity class.
+	 */
+	void touch(Class<?> type) {
+		touched.add(type);
+	}
+	
+	/**
+	 * Retrieves the connection of the active transaction, held once more by the caller.
+	 * The caller must close it when done.
+	 */
+	Connection share() {
+		if(!active) throw new IllegalStateException("No active transaction");
+		return ConnectionPool.retain(conn);
 	}
 	
 	/**
@@ -55,7 +92,7 @@ public class SQLTransaction {
 		if(!active) throw new IllegalStateException("No active transaction");
 		
 		try {
-			database.getConn().commit();
+			conn.commit();
 		} finally {
 			reset();
 		}
@@ -76,15 +113,29 @@ public class SQLTransaction {
 		if(!active) throw new IllegalStateException("No active transaction");
 		
 		try {
-			database.getConn().rollback();
+			conn.rollback();
 		} finally {
-			reset();
+			try {
+				evictTouched();
+			} finally {
+				reset();
+			}
 		}
 	}
 	
+	private void evictTouched() {
+		for(Class<?> type : touched) database.getCache().invalidateAll(type);
+	}
+	
 	private void reset() throws SQLException {
-		database.getConn().setAutoCommit(true);
 		active = false;
+		touched.clear();
+		try {
+			conn.setAutoCommit(true);
+		} finally {
+			conn.close();
+			conn = null;
+		}
 	}
 	
 	/**
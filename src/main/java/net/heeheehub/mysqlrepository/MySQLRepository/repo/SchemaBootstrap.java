@@ -0,0 +1,377 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLForeignKey;
+
+/**
+ * Creates and extends the tables of registered entity classes ahead of time.
+ * <p>
+ * Without registration a table is created lazily, when the first write fails with error 1146.
+ * Registered classes are instead checked by {@link #bootstrap()}, normally when the plugin is enabled:
+ * the columns of every registered table are read from {@code INFORMATION_SCHEMA} in one query, missing
+ * tables are created and missing columns and {@code @SQLIndex} indexes are added, one table per task on the {@link Database}'s
+ * {@link SQLExecutor}. Tables referencing another table being created through a foreign key wait for it, and
+ * the classes referenced by {@code Ref} relations are checked along with the registered ones.
+ * Existing columns and indexes are never altered or dropped. Classes registered after the bootstrap are checked right away.
+ * </p>
+ * <p>
+ * The bootstrap also remembers which columns lead an index. {@code UUID} columns without one are reported
+ * at startup, and typed lookups by a column without one are reported once per column, since they scan the table.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public class SchemaBootstrap {
+
+	private static final Logger LOGGER = Logger.getLogger("MySQLRepository");
+
+	private final Database database;
+	private final Set<Class<?>> registered = new LinkedHashSet<>();
+	private final Map<String, Set<String>> indexedColumns = new ConcurrentHashMap<>();
+	private final Set<String> warnedLookups = ConcurrentHashMap.newKeySet();
+	private boolean bootstrapped;
+
+	/**
+	 * Constructs a bootstrap for a database.
+	 *
+	 * @param database The database holding the tables.
+	 */
+	public SchemaBootstrap(Database database) {
+		this.database = database;
+	}
+
+	/**
+	 * Registers entity classes. If the schema was already bootstrapped, their tables are checked now.
+	 *
+	 * @param classes The entity classes, annotated with {@code @MySQLField}.
+	 * @return The bootstrap time of each table checked now in milliseconds, empty before the bootstrap.
+	 * @throws RuntimeException if a class is not an entity or a table cannot be created.
+	 */
+	public Map<String, Double> register(Class<?>... classes) {
+		List<Class<?>> added = new ArrayList<>();
+		synchronized (this) {
+			for(Class<?> clazz : classes) {
+				EntityMetadata.of(clazz);
+				if(registered.add(clazz)) added.add(clazz);
+			}
+			if(!bootstrapped || added.isEmpty()) return new LinkedHashMap<>();
+		}
+		return bootstrap(added);
+	}
+
+	/**
+	 * @param clazz The entity class.
+	 * @return {@code true} if the class is registered.
+	 */
+	public synchronized boolean isRegistered(Class<?> clazz) {
+		return registered.contains(clazz);
+	}
+
+	/**
+	 * @return {@code true} once {@link #bootstrap()} completed.
+	 */
+	public synchronized boolean isBootstrapped() {
+		return bootstrapped;
+	}
+
+	/**
+	 * Creates the missing tables and columns of every registered class.
+	 *
+	 * @return The bootstrap time of each table in milliseconds, in registration order.
+	 * @throws RuntimeException if the schema cannot be read or a table cannot be created or altered.
+	 */
+	public Map<String, Double> bootstrap() {
+		List<Class<?>> classes;
+		synchronized (this) {
+			classes = new ArrayList<>(registered);
+		}
+		Map<String, Double> timings = bootstrap(classes);
+		synchronized (this) {
+			bootstrapped = true;
+		}
+		return timings;
+	}
+
+	private Map<String, Double> bootstrap(List<Class<?>> classes) {
+		Map<String, Double> timings = new LinkedHashMap<>();
+		if(classes.isEmpty()) return timings;
+		Map<String, EntityMetadata> entities = new LinkedHashMap<>();
+		for(Class<?> clazz : classes) {
+			EntityMetadata meta = EntityMetadata.of(clazz);
+			entities.put(meta.getTableName(), meta);
+		}
+		List<EntityMetadata> referencing = new ArrayList<>(entities.values());
+		for(int i = 0; i < referencing.size(); i++) {
+			for(ColumnMetadata column : referencing.get(i).getRelationColumns()) {
+				EntityMetadata target = column.getRelation().getTarget();
+				if(entities.putIfAbsent(target.getTableName(), target) == null) referencing.add(target);
+			}
+		}
+		Map<String, Set<String>> existing = new HashMap<>();
+		Map<String, Set<String>> existingIndexes = new HashMap<>();
+		Map<String, Set<String>> leading = new HashMap<>();
+		readSchema(entities.keySet(), existing, existingIndexes, leading);
+
+		Map<String, String> statements = new LinkedHashMap<>();
+		Set<String> creating = new HashSet<>();
+		for(EntityMetadata meta : entities.values()) {
+			String table = meta.getTableName().toLowerCase(Locale.ROOT);
+			Set<String> indexed = leading.computeIfAbsent(table, k -> new HashSet<>());
+			for(IndexMetadata index : meta.getIndexes()) {
+				indexed.add(index.getColumns().get(0).getName().toLowerCase(Locale.ROOT));
+			}
+			Set<String> columns = existing.get(table);
+			if(columns == null) {
+				statements.put(meta.getTableName(), createTableSql(meta.getTableName(), meta));
+				creating.add(meta.getTableName());
+				for(ColumnMetadata column : meta.getColumns()) {
+					if(column.isId() || column.getForeignKey() != null) indexed.add(column.getName().toLowerCase(Locale.ROOT));
+				}
+				ColumnMetadata first = firstPrimaryKey(meta);
+				if(first != null) indexed.add(first.getName().toLowerCase(Locale.ROOT));
+				continue;
+			}
+			List<String> additions = new ArrayList<>();
+			for(ColumnMetadata column : meta.getColumns()) {
+				if(!columns.contains(column.getName().toLowerCase(Locale.ROOT))) {
+					additions.add("ADD COLUMN " + columnDefinition(column, false));
+				}
+			}
+			Set<String> indexNames = existingIndexes.getOrDefault(table, Set.of());
+			for(IndexMetadata index : meta.getIndexes()) {
+				if(!indexNames.contains(index.getName().toLowerCase(Locale.ROOT))) additions.add("ADD " + index.getDefinition());
+			}
+			if(!additions.isEmpty()) {
+				statements.put(meta.getTableName(), "ALTER TABLE `" + meta.getTableName() + "` " + String.join(", ", additions));
+			}else {
+				timings.put(meta.getTableName(), 0.0);
+			}
+		}
+
+		Set<String> done = new HashSet<>();
+		while(!statements.isEmpty()) {
+			List<String> wave = new ArrayList<>();
+			for(String table : statements.keySet()) {
+				if(ready(entities.get(table), creating, done)) wave.add(table);
+			}
+			if(wave.isEmpty()) wave.addAll(statements.keySet());
+
+			Map<String, CompletableFuture<Double>> futures = new LinkedHashMap<>();
+			for(String table : wave) {
+				String sql = statements.remove(table);
+				futures.put(table, database.getExecutor().submit(() -> execute(sql)));
+			}
+			for(Map.Entry<String, CompletableFuture<Double>> future : futures.entrySet()) {
+				try {
+					double millis = future.getValue().join();
+					timings.put(future.getKey(), millis);
+					LOGGER.info("Bootstrapped table " + future.getKey() + " of " + database.getDbName() + " in "
+							+ String.format(Locale.ROOT, "%.1f", millis) + " ms ("
+							+ (creating.contains(future.getKey()) ? "created" : "added columns") + ")");
+				} catch (CompletionException e) {
+					throw new RuntimeException("Failed to bootstrap table " + future.getKey(), e.getCause());
+				}
+				done.add(future.getKey());
+			}
+		}
+
+		for(EntityMetadata meta : entities.values()) {
+			Set<String> indexed = leading.get(meta.getTableName().toLowerCase(Locale.ROOT));
+			indexedColumns.put(meta.getTableName().toLowerCase(Locale.ROOT), indexed);
+			for(ColumnMetadata column : meta.getColumns()) {
+				if(column.getType() == UUID.class && !indexed.contains(column.getName().toLowerCase(Locale.ROOT))) {
+					LOGGER.warning("Column " + meta.getTableName() + "." + column.getName() + " of " + database.getDbName()
+							+ " holds UUIDs but has no index; lookups by it scan the table. Declare it with @SQLIndex.");
+				}
+			}
+		}
+		return timings;
+	}
+
+	/**
+	 * Converts an existing {@code VARCHAR(36)} UUID column to {@code BINARY(16)} in place, keeping its indexes.
+	 * <p>
+	 * The column is first made binary so its text is kept byte for byte, then every value is replaced by
+	 * {@code UNHEX(REPLACE(value, '-', ''))} and the column is shrunk to 16 bytes. Columns that are already
+	 * {@code BINARY(16)} are left alone, so the call can be repeated. The field should be declared with
+	 * {@code @SQLBinaryUuid} once migrated. Run it while nothing else writes the table.
+	 * </p>
+	 *
+	 * @param clazz  The entity class.
+	 * @param column The UUID column to convert.
+	 * @return {@code true} if the column was converted, {@code false} if it already was binary.
+	 * @throws IllegalArgumentException if the column is not a mapped {@code UUID} column.
+	 * @throws RuntimeException         if a database access error occurs.
+	 */
+	public boolean migrateUuidColumn(Class<?> clazz, String column) {
+		EntityMetadata meta = EntityMetadata.of(clazz);
+		ColumnMetadata metaColumn = meta.getColumn(column);
+		if(metaColumn == null || metaColumn.getType() != UUID.class) {
+			throw new IllegalArgumentException("Column " + column + " of class " + clazz.getSimpleName() + " is not a UUID column");
+		}
+		String table = "`" + meta.getTableName() + "`";
+		String nullability = metaColumn.isNotNull() || metaColumn.isId() || metaColumn.isPrimaryKey() ? " NOT NULL" : " NULL";
+		try (Connection conn = database.getConnection(); Statement stmt = conn.createStatement()) {
+			try (PreparedStatement ps = conn.prepareStatement("SELECT DATA_TYPE, CHARACTER_OCTET_LENGTH FROM INFORMATION_SCHEMA.COLUMNS"
+					+ " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+				ps.setString(1, meta.getTableName());
+				ps.setString(2, column);
+				try (ResultSet rs = ps.executeQuery()) {
+					if(!rs.next()) throw new IllegalArgumentException("Column " + column + " does not exist in " + meta.getTableName());
+					if("binary".equalsIgnoreCase(rs.getString(1)) && rs.getInt(2) == 16) return false;
+				}
+			}
+			long start = System.nanoTime();
+			stmt.execute("ALTER TABLE " + table + " MODIFY `" + column + "` VARBINARY(36)" + nullability);
+			stmt.executeUpdate("UPDATE " + table + " SET `" + column + "` = UNHEX(REPLACE(`" + column + "`, '-', ''))"
+					+ " WHERE LENGTH(`" + column + "`) = 36");
+			stmt.execute("ALTER TABLE " + table + " MODIFY `" + column + "` BINARY(16)" + nullability);
+			LOGGER.info("Migrated " + meta.getTableName() + "." + column + " of " + database.getDbName() + " to BINARY(16) in "
+					+ (System.nanoTime() - start) / 1_000_000 + " ms");
+			return true;
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to migrate " + meta.getTableName() + "." + column + " to BINARY(16)", e);
+		}
+	}
+
+	/**
+	 * Reports, once per column, a typed lookup by a column that leads no index of a bootstrapped table.
+	 *
+	 * @param meta   The entity metadata.
+	 * @param column The column the lookup filters on.
+	 */
+	void checkLookup(EntityMetadata meta, String column) {
+		Set<String> indexed = indexedColumns.get(meta.getTableName().toLowerCase(Locale.ROOT));
+		if(indexed == null || indexed.contains(column.toLowerCase(Locale.ROOT))) return;
+		if(warnedLookups.add(meta.getTableName() + "." + column)) {
+			LOGGER.warning("Lookup of " + meta.getType().getSimpleName() + " by " + column + " has no supporting index on "
+					+ meta.getTableName() + " and scans the table. Declare it with @SQLIndex.");
+		}
+	}
+
+	private static ColumnMetadata firstPrimaryKey(EntityMetadata meta) {
+		for(ColumnMetadata column : meta.getColumns()) {
+			if(column.isPrimaryKey()) return column;
+		}
+		return meta.getIdColumn();
+	}
+
+	private static boolean ready(EntityMetadata meta, Set<String> creating, Set<String> done) {
+		for(ColumnMetadata column : meta.getColumns()) {
+			SQLForeignKey fk = column.getForeignKey();
+			if(fk != null && !fk.table().equals(meta.getTableName()) && creating.contains(fk.table()) && !done.contains(fk.table())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private double execute(String sql) throws SQLException {
+		long start = System.nanoTime();
+		try (Connection conn = database.getConnection(); Statement stmt = conn.createStatement()) {
+			stmt.execute(sql);
+		}
+		return (System.nanoTime() - start) / 1_000_000.0;
+	}
+
+	private void readSchema(Set<String> tables, Map<String, Set<String>> columns, Map<String, Set<String>> indexes,
+			Map<String, Set<String>> leading) {
+		String in = " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME IN (" + "?, ".repeat(tables.size() - 1) + "?)";
+		try (Connection conn = database.getConnection();
+			 PreparedStatement columnQuery = conn.prepareStatement("SELECT TABLE_NAME, COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS" + in);
+			 PreparedStatement indexQuery = conn.prepareStatement("SELECT TABLE_NAME, INDEX_NAME, COLUMN_NAME, SEQ_IN_INDEX FROM INFORMATION_SCHEMA.STATISTICS" + in)) {
+			int i = 1;
+			for(String table : tables) {
+				columnQuery.setString(i, table);
+				indexQuery.setString(i++, table);
+			}
+			try (ResultSet rs = columnQuery.executeQuery()) {
+				while(rs.next()) {
+					columns.computeIfAbsent(rs.getString(1).toLowerCase(Locale.ROOT), k -> new HashSet<>())
+							.add(rs.getString(2).toLowerCase(Locale.ROOT));
+				}
+			}
+			try (ResultSet rs = indexQuery.executeQuery()) {
+				while(rs.next()) {
+					String table = rs.getString(1).toLowerCase(Locale.ROOT);
+					indexes.computeIfAbsent(table, k -> new HashSet<>()).add(rs.getString(2).toLowerCase(Locale.ROOT));
+					if(rs.getInt(4) == 1) {
+						leading.computeIfAbsent(table, k -> new HashSet<>()).add(rs.getString(3).toLowerCase(Locale.ROOT));
+					}
+				}
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to read the schema of " + database.getDbName(), e);
+		}
+	}
+
+	/**
+	 * Builds the {@code CREATE TABLE IF NOT EXISTS} statement of an entity.
+	 *
+	 * @throws RuntimeException if the class has no {@code @SQLId} field.
+	 */
+	static String createTableSql(String tableName, EntityMetadata meta) {
+		if(meta.getIdColumn() == null) {
+			throw new RuntimeException("Table " + tableName + " must have one SQLId column!");
+		}
+		List<String> primaryKeyColumns = new ArrayList<>();
+		List<String> foreignKeyDefs = new ArrayList<>();
+		for(ColumnMetadata column : meta.getColumns()) {
+			if(column.isPrimaryKey()) primaryKeyColumns.add(column.getName());
+			if(column.getForeignKey() != null) {
+				SQLForeignKey fk = column.getForeignKey();
+				foreignKeyDefs.add(String.format("FOREIGN KEY (`%s`) REFERENCES `%s`(`%s`)",
+						column.getName(), fk.table(), fk.attribute()));
+			}
+		}
+
+		List<String> columnDefs = new ArrayList<>();
+		for(ColumnMetadata column : meta.getColumns()) {
+			columnDefs.add("  " + columnDefinition(column, primaryKeyColumns.contains(column.getName())));
+			if(column.isId() && !primaryKeyColumns.contains(column.getName())) primaryKeyColumns.add(column.getName());
+		}
+		if(!primaryKeyColumns.isEmpty()) {
+			columnDefs.add("PRIMARY KEY (" + String.join(", ", primaryKeyColumns) + ")");
+		}
+		for(IndexMetadata index : meta.getIndexes()) {
+			columnDefs.add(index.getDefinition());
+		}
+		columnDefs.addAll(foreignKeyDefs);
+
+		return "CREATE TABLE IF NOT EXISTS `" + tableName + "` (\n" + String.join(",\n", columnDefs) + "\n);";
+	}
+
+	/**
+	 * Builds the definition of one column, as used by {@code CREATE TABLE} and {@code ADD COLUMN}.
+	 */
+	static String columnDefinition(ColumnMetadata column, boolean primaryKey) {
+		StringBuilder def = new StringBuilder("`").append(column.getName()).append("` ")
+				.append(column.getCodec().sqlType());
+		if(column.isId()) {
+			def.append(" AUTO_INCREMENT UNIQUE NOT NULL");
+		}else if(column.isNotNull() || primaryKey) {
+			def.append(" NOT NULL");
+		}
+		return def.toString();
+	}
+}
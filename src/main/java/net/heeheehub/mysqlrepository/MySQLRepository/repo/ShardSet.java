@@ -0,0 +1,190 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set of databases sharing the rows of the entity classes mapped to it.
+ * <p>
+ * Every mapped class has a table on each shard, and each row lives on exactly one shard, chosen from its
+ * shard key: a column such as a player {@code UUID}, or the {@code @SQLId} itself. Rows with the same key
+ * value always land on the same shard. A {@link ShardedSession} routes single-entity operations to that
+ * shard and fans the others out to every shard.
+ * </p>
+ * <p>
+ * Auto-increment IDs are interleaved so they stay unique across the set and tell where a row lives: every
+ * connection to shard {@code i} of {@code n} runs with {@code auto_increment_increment = n} and
+ * {@code auto_increment_offset = i + 1}, so {@link #shardOf(long)} finds the shard of any ID. For the same
+ * reason a shard set must be created before the pools of its databases are started, its databases must not
+ * belong to another set, and the shards must not be reordered once rows exist. The IDs of a batched insert
+ * are stepped by {@code n} from the first generated one, since the driver would assume consecutive IDs.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public final class ShardSet {
+
+	private final String name;
+	private final List<Database> shards;
+	private final Map<Class<?>, String> keys = new ConcurrentHashMap<>();
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Constructs a shard set.
+	 *
+	 * @param name   The name of the set.
+	 * @param shards The databases holding the shards, in a fixed order.
+	 * @throws IllegalArgumentException if no database is given or a database is given twice.
+	 * @throws IllegalStateException    if the pool of a database is already started or it belongs to another set.
+	 */
+	public ShardSet(String name, List<Database> shards) {
+		if(shards.isEmpty()) throw new IllegalArgumentException("Shard set " + name + " has no database");
+		if(shards.stream().distinct().count() != shards.size()) throw new IllegalArgumentException("Shard set " + name + " lists a database twice");
+		this.name = name;
+		this.shards = List.copyOf(shards);
+		for(int i = 0; i < shards.size(); i++) {
+			Database shard = shards.get(i);
+			if(shard.getPool() != null) throw new IllegalStateException("The pool of " + shard.getDbName() + " has already been started");
+			if(shard.getInitSql() != null && !shard.getInitSql().equals(initSql(i))) {
+				throw new IllegalStateException(shard.getDbName() + " already belongs to another shard set");
+			}
+		}
+		for(int i = 0; i < shards.size(); i++) {
+			shards.get(i).setInitSql(initSql(i));
+			shards.get(i).setIdIncrement(shards.size());
+		}
+	}
+
+	private String initSql(int index) {
+		return "SET SESSION auto_increment_increment = " + shards.size() + ", auto_increment_offset = " + (index + 1);
+	}
+
+	/**
+	 * Maps an entity class to this set, keyed by its {@code @SQLId}. New rows are spread evenly.
+	 *
+	 * @param clazz The entity class.
+	 * @return This shard set.
+	 * @throws RuntimeException if the class has no {@code @SQLId} field.
+	 */
+	public ShardSet map(Class<?> clazz) {
+		EntityMetadata meta = EntityMetadata.of(clazz);
+		return map(clazz, meta.requireIdColumn().getName());
+	}
+
+	/**
+	 * Maps an entity class to this set, keyed by a column. The value of that column must be set before
+	 * the entity is persisted and must never change. Its table is registered on the schema of every shard.
+	 *
+	 * @param clazz     The entity class.
+	 * @param keyColumn The name of the shard key column.
+	 * @return This shard set.
+	 * @throws IllegalArgumentException if the class has no such column.
+	 */
+	public ShardSet map(Class<?> clazz, String keyColumn) {
+		EntityMetadata meta = EntityMetadata.of(clazz);
+		if(meta.getColumn(keyColumn) == null) {
+			throw new IllegalArgumentException(clazz.getSimpleName() + " has no column " + keyColumn);
+		}
+		meta.requireIdColumn();
+		keys.put(clazz, keyColumn);
+		for(Database shard : shards) shard.getSchema().register(clazz);
+		return this;
+	}
+
+	/**
+	 * @return {@code true} if the class is mapped to this set.
+	 */
+	public boolean isMapped(Class<?> clazz) {
+		return keys.containsKey(clazz);
+	}
+
+	/**
+	 * @return The name of the shard key column of a mapped class.
+	 * @throws IllegalArgumentException if the class is not mapped to this set.
+	 */
+	public String getKeyColumn(Class<?> clazz) {
+		String key = keys.get(clazz);
+		if(key == null) throw new IllegalArgumentException(clazz.getSimpleName() + " is not mapped to shard set " + name);
+		return key;
+	}
+
+	/**
+	 * @return The index of the shard holding the row with an ID.
+	 */
+	public int shardOf(long id) {
+		return (int) Math.floorMod(id - 1, (long) shards.size());
+	}
+
+	/**
+	 * Finds the shard of a shard key value. The value is hashed from its string form, which is stable
+	 * across restarts for numbers, strings and {@code UUID}s.
+	 *
+	 * @param clazz The mapped entity class.
+	 * @param key   The value of its shard key column.
+	 * @return The index of the shard.
+	 */
+	public int shardOfKey(Class<?> clazz, Object key) {
+		if(key == null) throw new IllegalArgumentException("Shard key of " + clazz.getSimpleName() + " must not be null");
+		EntityMetadata meta = EntityMetadata.of(clazz);
+		if(getKeyColumn(clazz).equals(meta.getIdColumn().getName())) return shardOf(((Number) key).longValue());
+		int hash = String.valueOf(key).hashCode();
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		return Math.floorMod(hash, shards.size());
+	}
+
+	/**
+	 * Finds the shard a mapped entity lives on or is inserted into: from its ID once it has one, from its
+	 * shard key otherwise, or in turn when it is keyed by an ID it does not have yet.
+	 *
+	 * @return The index of the shard.
+	 */
+	public int shardOfEntity(Object entity) {
+		EntityMetadata meta = EntityMetadata.of(entity.getClass());
+		Long id = meta.getId(entity);
+		if(id != null) return shardOf(id);
+		ColumnMetadata key = meta.getColumn(getKeyColumn(entity.getClass()));
+		if(key == meta.getIdColumn()) return Math.floorMod(next.getAndIncrement(), shards.size());
+		return shardOfKey(entity.getClass(), key.getStored(entity));
+	}
+
+	/**
+	 * @return The name of this set.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The database of a shard.
+	 */
+	public Database getShard(int index) {
+		return shards.get(index);
+	}
+
+	/**
+	 * @return The databases of this set, in shard order.
+	 */
+	public List<Database> getShards() {
+		return shards;
+	}
+
+	/**
+	 * @return The mapped entity classes.
+	 */
+	public List<Class<?>> getMappedClasses() {
+		return new ArrayList<>(keys.keySet());
+	}
+
+	/**
+	 * @return The number of shards.
+	 */
+	public int size() {
+		return shards.size();
+	}
+}
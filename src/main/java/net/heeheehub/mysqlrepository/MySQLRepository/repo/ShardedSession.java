@@ -0,0 +1,366 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.instrument.IllegalClassFormatException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Session over the shards of a {@link ShardSet}.
+ * <p>
+ * It holds one {@link SQLSession} per shard. Operations on one entity, by its ID or shard key, are routed to
+ * the shard holding it. Operations that cannot be routed run on every shard in parallel, each on the
+ * {@link SQLExecutor} of its database while the first shard runs on the calling thread, and their results are
+ * merged in shard order. {@code ORDER BY} and {@code LIMIT} of a fanned-out query therefore apply per shard.
+ * </p>
+ * <p>
+ * Transactions span every shard but are not atomic across them: {@link #commit()} commits the shards one
+ * after the other, and a failure leaves the shards committed before it committed. Keep the rows written
+ * together on one shard, by giving them the same shard key, when they must change together.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public class ShardedSession {
+
+	private final ShardSet shardSet;
+	private final List<SQLSession> sessions;
+	private final List<SQLTransaction> transactions;
+	private boolean isClosed;
+
+	/**
+	 * Constructs a session over every shard of a set.
+	 *
+	 * @param shardSet The shard set.
+	 * @throws SQLException if a database access error occurs.
+	 */
+	public ShardedSession(ShardSet shardSet) throws SQLException {
+		this.shardSet = shardSet;
+		List<SQLSession> sessions = new ArrayList<>(shardSet.size());
+		List<SQLTransaction> transactions = new ArrayList<>(shardSet.size());
+		for(Database shard : shardSet.getShards()) {
+			SQLSession session = new SQLSession(shard);
+			sessions.add(session);
+			transactions.add(session.getTransaction());
+		}
+		this.sessions = List.copyOf(sessions);
+		this.transactions = List.copyOf(transactions);
+	}
+
+	/**
+	 * Starts a transaction on every shard.
+	 *
+	 * @throws SQLException if a database access error occurs. Transactions already started are rolled back.
+	 * @throws IllegalStateException if the session is closed or a transaction is already active.
+	 */
+	public void beginTransaction() throws SQLException {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		for(int i = 0; i < sessions.size(); i++) {
+			try {
+				sessions.get(i).beginTransaction();
+			} catch (SQLException | RuntimeException e) {
+				for(int j = 0; j < i; j++) {
+					try {
+						sessions.get(j).endTransaction();
+					} catch (SQLException suppressed) {
+						e.addSuppressed(suppressed);
+					}
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Commits the transaction of every shard, in shard order. Every shard is attempted even when one fails.
+	 *
+	 * @throws SQLException if a shard failed to commit, with the failures of later shards suppressed.
+	 * @throws IllegalStateException if no transaction is active.
+	 */
+	public void commit() throws SQLException {
+		if(!transactions.get(0).isActive()) throw new IllegalStateException("No active transaction");
+		SQLException failure = null;
+		for(SQLTransaction tx : transactions) {
+			try {
+				tx.commit();
+			} catch (SQLException e) {
+				if(failure == null) failure = e;
+				else failure.addSuppressed(e);
+			}
+		}
+		if(failure != null) throw failure;
+	}
+
+	/**
+	 * Rolls back the transaction of every shard.
+	 *
+	 * @throws SQLException if a shard failed to roll back, with the failures of later shards suppressed.
+	 */
+	public void rollback() throws SQLException {
+		SQLException failure = null;
+		for(SQLTransaction tx : transactions) {
+			if(!tx.isActive()) continue;
+			try {
+				tx.rollback();
+			} catch (SQLException e) {
+				if(failure == null) failure = e;
+				else failure.addSuppressed(e);
+			}
+		}
+		if(failure != null) throw failure;
+	}
+
+	/**
+	 * Ends the transaction of every shard without committing what is left.
+	 *
+	 * @throws SQLException if a database access error occurs.
+	 */
+	public void endTransaction() throws SQLException {
+		SQLException failure = null;
+		for(SQLSession session : sessions) {
+			try {
+				session.endTransaction();
+			} catch (SQLException e) {
+				if(failure == null) failure = e;
+				else failure.addSuppressed(e);
+			}
+		}
+		if(failure != null) throw failure;
+	}
+
+	/**
+	 * Persists an object on its shard.
+	 *
+	 * @see SQLSession#persists(Object)
+	 */
+	public Long persists(Object object) throws SQLException, IllegalClassFormatException, IllegalAccessException {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		return sessions.get(shardSet.shardOfEntity(object)).persists(object);
+	}
+
+	/**
+	 * Persists objects with one batch per shard.
+	 *
+	 * @see SQLSession#persistAll(Collection)
+	 */
+	public void persistAll(Collection<?> objects) throws SQLException {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		List<List<Object>> groups = group(objects, shardSet::shardOfEntity);
+		for(int i = 0; i < groups.size(); i++) {
+			if(!groups.get(i).isEmpty()) sessions.get(i).persistAll(groups.get(i));
+		}
+	}
+
+	/**
+	 * Updates an object on its shard.
+	 *
+	 * @throws IllegalArgumentException if the object has no ID.
+	 * @see SQLSession#update(Object)
+	 */
+	public void update(Object o) throws SQLException, IllegalClassFormatException, IllegalAccessException {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		sessions.get(shardOfId(o)).update(o);
+	}
+
+	/**
+	 * Deletes an object from its shard.
+	 *
+	 * @throws IllegalArgumentException if the object has no ID.
+	 * @see SQLSession#delete(Object)
+	 */
+	public void delete(Object o) {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		sessions.get(shardOfId(o)).delete(o);
+	}
+
+	/**
+	 * Retrieves an object by its ID from the shard the ID belongs to.
+	 *
+	 * @see SQLSession#get(Class, Long)
+	 */
+	public <T> T get(Class<T> clazz, Long id) {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		shardSet.getKeyColumn(clazz);
+		if(id == null) return null;
+		return sessions.get(shardSet.shardOf(id)).get(clazz, id);
+	}
+
+	/**
+	 * Retrieves an object by a UUID column: from one shard when it is the shard key, from the first shard
+	 * holding it otherwise.
+	 *
+	 * @see SQLSession#get(Class, String, UUID)
+	 */
+	public <T> T get(Class<T> clazz, String uuidCol, UUID uuid) {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		if(uuidCol.equals(shardSet.getKeyColumn(clazz))) {
+			return sessions.get(shardSet.shardOfKey(clazz, uuid)).get(clazz, uuidCol, uuid);
+		}
+		for(T found : fanOut(session -> session.get(clazz, uuidCol, uuid))) {
+			if(found != null) return found;
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves several objects by ID, with one fanned-out lookup per shard holding some of them.
+	 *
+	 * @return The found objects by ID, in the order of {@code ids}. Missing IDs are absent.
+	 * @see SQLSession#getAll(Class, Collection)
+	 */
+	public <T> Map<Long, T> getAll(Class<T> clazz, Collection<Long> ids) {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		shardSet.getKeyColumn(clazz);
+		List<Long> present = new ArrayList<>(ids);
+		present.removeIf(Objects::isNull);
+		List<List<Long>> groups = group(present, shardSet::shardOf);
+		List<Map<Long, T>> found = fanOut(groups, (session, group) -> session.getAll(clazz, group));
+		Map<Long, T> results = new LinkedHashMap<>();
+		for(Long id : present) {
+			T instance = found.get(shardSet.shardOf(id)).get(id);
+			if(instance != null) results.put(id, instance);
+		}
+		return results;
+	}
+
+	/**
+	 * Retrieves every object of a class from every shard.
+	 *
+	 * @see SQLSession#getAll(Class)
+	 */
+	public <T> List<T> getAll(Class<T> clazz) {
+		return executeQuery(clazz, "");
+	}
+
+	/**
+	 * Runs a query fragment on every shard and concatenates the results in shard order.
+	 * {@code ORDER BY} and {@code LIMIT} apply to each shard separately.
+	 *
+	 * @see SQLSession#executeQuery(Class, String)
+	 */
+	public <T> List<T> executeQuery(Class<T> clazz, String query) {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		shardSet.getKeyColumn(clazz);
+		List<T> results = new ArrayList<>();
+		for(List<T> shard : fanOut(session -> session.executeQuery(clazz, query))) results.addAll(shard);
+		return results;
+	}
+
+	/**
+	 * Closes the session of every shard.
+	 */
+	public void close() {
+		for(SQLSession session : sessions) session.close();
+		this.isClosed = true;
+	}
+
+	/**
+	 * Detaches every managed entity of every shard.
+	 *
+	 * @throws IllegalStateException if the session is closed.
+	 */
+	public void clear() {
+		if(isClosed) throw new IllegalStateException("Session is closed.");
+		for(SQLSession session : sessions) session.clear();
+	}
+
+	/**
+	 * @return {@code true} if the session is closed.
+	 */
+	public boolean isClosed() {
+		return isClosed;
+	}
+
+	/**
+	 * @return The shard set of this session.
+	 */
+	public ShardSet getShardSet() {
+		return shardSet;
+	}
+
+	/**
+	 * Retrieves the session of one shard, for operations this class does not route.
+	 *
+	 * @param index The index of the shard.
+	 * @return Its session.
+	 */
+	public SQLSession getSession(int index) {
+		return sessions.get(index);
+	}
+
+	private int shardOfId(Object o) {
+		shardSet.getKeyColumn(o.getClass());
+		Long id = EntityMetadata.of(o.getClass()).getId(o);
+		if(id == null) throw new IllegalArgumentException(o.getClass().getSimpleName() + " has no ID");
+		return shardSet.shardOf(id);
+	}
+
+	private <E> List<List<E>> group(Collection<? extends E> elements, Function<? super E, Integer> shardOf) {
+		List<List<E>> groups = new ArrayList<>(sessions.size());
+		for(int i = 0; i < sessions.size(); i++) groups.add(new ArrayList<>());
+		for(E element : elements) groups.get(shardOf.apply(element)).add(element);
+		return groups;
+	}
+
+	private <R> List<R> fanOut(Function<SQLSession, R> work) {
+		return fanOut(null, (session, ignored) -> work.apply(session));
+	}
+
+	/**
+	 * Runs work on every shard, or on the shards with a non-empty group, and collects the results by shard.
+	 * Shards without work get a {@code null} result, or an empty map for grouped work.
+	 */
+	@SuppressWarnings("unchecked")
+	private <E, R> List<R> fanOut(List<List<E>> groups, ShardWork<E, R> work) {
+		int n = sessions.size();
+		List<CompletableFuture<R>> futures = new ArrayList<>(n);
+		int inline = -1;
+		for(int i = 0; i < n; i++) {
+			List<E> group = groups == null ? null : groups.get(i);
+			if(groups != null && group.isEmpty()) {
+				futures.add(CompletableFuture.completedFuture((R) Map.of()));
+				continue;
+			}
+			if(inline < 0) {
+				inline = i;
+				futures.add(null);
+				continue;
+			}
+			SQLSession session = sessions.get(i);
+			futures.add(shardSet.getShard(i).getExecutor().submit(() -> work.run(session, group)));
+		}
+		List<R> results = new ArrayList<>(n);
+		RuntimeException failure = null;
+		for(int i = 0; i < n; i++) {
+			try {
+				if(i == inline) results.add(work.run(sessions.get(i), groups == null ? null : groups.get(i)));
+				else results.add(futures.get(i).join());
+			} catch (CompletionException e) {
+				RuntimeException cause = e.getCause() instanceof RuntimeException r ? r : new RuntimeException(e.getCause());
+				if(failure == null) failure = cause;
+				else failure.addSuppressed(cause);
+				results.add(null);
+			} catch (RuntimeException e) {
+				if(failure == null) failure = e;
+				else failure.addSuppressed(e);
+				results.add(null);
+			}
+		}
+		if(failure != null) throw failure;
+		return results;
+	}
+
+	@FunctionalInterface
+	private interface ShardWork<E, R> {
+		R run(SQLSession session, List<E> group);
+	}
+}
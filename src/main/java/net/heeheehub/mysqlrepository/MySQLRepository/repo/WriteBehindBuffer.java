@@ -0,0 +1,282 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces updates of frequently mutated entities and writes them in periodic batches.
+ * <p>
+ * Once an entity class is registered, {@link SQLSession#update(Object)} (and {@link SQLSession#persists(Object)}
+ * for entities already in the persistence context) no longer writes it immediately: the entity is marked
+ * dirty under its class and {@code @SQLId}. Repeated updates of the same entity before the next flush
+ * collapse into one. Dirty entities are written with {@link SQLSession#updateAll(java.util.Collection)} in one
+ * transaction per flush on a background thread, and {@link #flush()} writes them synchronously, for example
+ * when the plugin is disabled.
+ * </p>
+ * <p>
+ * Buffered writes are not part of the caller's transaction and are only durable after the next flush.
+ * The entity instance itself is buffered, so the flush writes its state at flush time. Buffering an update
+ * evicts the entity from the {@link EntityCache}, and deleting the entity drops its buffered update.
+ * </p>
+ *
+ * @author Naphon
+ * @version 1.0-SNAPSHOT
+ */
+public class WriteBehindBuffer {
+
+	private static final Logger LOGGER = Logger.getLogger("MySQLRepository");
+
+	private record Key(Class<?> type, long id) {}
+
+	private final Database database;
+	private final Set<Class<?>> registered = ConcurrentHashMap.newKeySet();
+	private final Map<Key, Object> dirty = new ConcurrentHashMap<>();
+	private final LongAdder enqueued = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong totalFlushNanos = new AtomicLong();
+	private volatile long lastFlushNanos;
+	private volatile long flushEpoch;
+	private volatile long writtenEpoch;
+	private volatile long lastWritten;
+	private long flushInterval;
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Constructs a buffer writing to a database.
+	 *
+	 * @param database      The database dirty entities are written to.
+	 * @param flushInterval Milliseconds between background flushes.
+	 */
+	public WriteBehindBuffer(Database database, long flushInterval) {
+		this.database = database;
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Enables write-behind for an entity class and starts the background flush if needed.
+	 *
+	 * @param clazz The entity class.
+	 */
+	public synchronized void register(Class<?> clazz) {
+		EntityMetadata.of(clazz).requireIdColumn();
+		registered.add(clazz);
+		if(scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "MySQLRepository-write-behind-" + database.getDbName());
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Disables write-behind for an entity class. Entities already buffered are still written.
+	 *
+	 * @param clazz The entity class.
+	 */
+	public void unregister(Class<?> clazz) {
+		registered.remove(clazz);
+	}
+
+	/**
+	 * @param clazz The entity class.
+	 * @return {@code true} if updates of the class are buffered.
+	 */
+	public boolean isRegistered(Class<?> clazz) {
+		return !registered.isEmpty() && registered.contains(clazz);
+	}
+
+	/**
+	 * Marks an entity dirty.
+	 *
+	 * @param entity The entity, of a registered class.
+	 * @return {@code true} if the entity was buffered, {@code false} if it has no ID and must be written directly.
+	 */
+	boolean enqueue(Object entity) {
+		Long id = EntityMetadata.of(entity.getClass()).getId(entity);
+		if(id == null) return false;
+		enqueued.increment();
+		if(dirty.put(new Key(entity.getClass(), id), entity) != null) {
+			coalesced.increment();
+		}
+		return true;
+	}
+
+	/**
+	 * Drops the buffered update of an entity whose row is deleted, so the next flush does not write it.
+	 *
+	 * @param type The entity class.
+	 * @param id   The ID of the entity.
+	 */
+	void discard(Class<?> type, long id) {
+		if(!dirty.isEmpty()) dirty.remove(new Key(type, id));
+	}
+
+	/**
+	 * Writes every dirty entity now, in one transaction.
+	 * <p>
+	 * If the write fails, the entities are put back unless they were marked dirty again meanwhile.
+	 * </p>
+	 *
+	 * @throws Exception if the write fails.
+	 */
+	public synchronized void flush() throws Exception {
+		if(dirty.isEmpty()) return;
+		long epoch = ++flushEpoch;
+		List<Map.Entry<Key, Object>> batch = new ArrayList<>(dirty.size());
+		for(Key key : dirty.keySet()) {
+			Object entity = dirty.remove(key);
+			if(entity != null) batch.add(Map.entry(key, entity));
+		}
+		if(batch.isEmpty()) return;
+
+		List<Object> entities = new ArrayList<>(batch.size());
+		for(Map.Entry<Key, Object> entry : batch) entities.add(entry.getValue());
+
+		long start = System.nanoTime();
+		SQLSession session = new SQLSession(database);
+		try {
+			SQLTransaction tx = session.beginTransaction();
+			try {
+				session.updateAll(entities);
+				tx.commit();
+			} catch (Exception e) {
+				if(tx.isActive()) tx.rollback();
+				throw e;
+			}
+		} catch (Exception e) {
+			for(Map.Entry<Key, Object> entry : batch) dirty.putIfAbsent(entry.getKey(), entry.getValue());
+			throw e;
+		} finally {
+			session.close();
+		}
+		long elapsed = System.nanoTime() - start;
+		lastWritten = System.currentTimeMillis();
+		writtenEpoch = epoch;
+		lastFlushNanos = elapsed;
+		totalFlushNanos.addAndGet(elapsed);
+		flushes.incrementAndGet();
+		written.add(entities.size());
+	}
+
+	/**
+	 * @return The number of flushes started. An entity buffered when it was {@code n} is written by the
+	 *         first flush whose {@link #getWrittenEpoch() epoch} is greater than {@code n}.
+	 */
+	long getFlushEpoch() {
+		return flushEpoch;
+	}
+
+	/**
+	 * @return The epoch of the last successful flush.
+	 */
+	long getWrittenEpoch() {
+		return writtenEpoch;
+	}
+
+	/**
+	 * @return The time the last successful flush committed, in epoch milliseconds.
+	 */
+	long getLastWritten() {
+		return lastWritten;
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "Write-behind flush to " + database.getDbName() + " failed, retrying next cycle", e);
+		}
+	}
+
+	/**
+	 * Stops the background flush. Call {@link #flush()} first to write pending entities.
+	 */
+	public synchronized void shutdown() {
+		if(scheduler != null) {
+			scheduler.shutdown();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Sets the interval of background flushes. Takes effect when the first class is registered.
+	 *
+	 * @param flushInterval Milliseconds between flushes.
+	 */
+	public synchronized void setFlushInterval(long flushInterval) {
+		if(flushInterval < 1) throw new IllegalArgumentException("Flush interval must be positive");
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * @return Milliseconds between background flushes.
+	 */
+	public long getFlushInterval() {
+		return flushInterval;
+	}
+
+	/**
+	 * @return The number of dirty entities waiting to be written.
+	 */
+	public int getDepth() {
+		return dirty.size();
+	}
+
+	/**
+	 * @return The share of buffered updates absorbed by an update of the same entity, between 0 and 1.
+	 */
+	public double getCoalescingRatio() {
+		long total = enqueued.sum();
+		return total == 0 ? 0 : (double) coalesced.sum() / total;
+	}
+
+	/**
+	 * @return The total number of buffered updates.
+	 */
+	public long getEnqueued() {
+		return enqueued.sum();
+	}
+
+	/**
+	 * @return The total number of rows written by flushes.
+	 */
+	public long getWritten() {
+		return written.sum();
+	}
+
+	/**
+	 * @return The number of successful flushes.
+	 */
+	public long getFlushCount() {
+		return flushes.get();
+	}
+
+	/**
+	 * @return The duration of the last successful flush in milliseconds.
+	 */
+	public double getLastFlushMillis() {
+		return lastFlushNanos / 1_000_000.0;
+	}
+
+	/**
+	 * @return The average duration of successful flushes in milliseconds.
+	 */
+	public double getAverageFlushMillis() {
+		long count = flushes.get();
+		return count == 0 ? 0 : totalFlushNanos.get() / 1_000_000.0 / count;
+	}
+}
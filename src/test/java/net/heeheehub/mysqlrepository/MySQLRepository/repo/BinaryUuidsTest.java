@@ -0,0 +1,57 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit tests of {@link BinaryUuids}.
+ */
+public class BinaryUuidsTest extends TestCase {
+
+	public BinaryUuidsTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(BinaryUuidsTest.class);
+	}
+
+	public void testBytesMatchUnhexOfTheTextForm() {
+		UUID uuid = UUID.fromString("00112233-4455-6677-8899-aabbccddeeff");
+		byte[] expected = new byte[16];
+		for(int i = 0; i < 16; i++) expected[i] = (byte) (i * 0x11);
+		assertTrue(Arrays.equals(expected, BinaryUuids.toBytes(uuid)));
+		assertEquals(uuid, BinaryUuids.fromBytes(expected));
+	}
+
+	public void testRoundTrips() {
+		UUID[] uuids = { new UUID(0L, 0L), new UUID(-1L, -1L), new UUID(Long.MIN_VALUE, Long.MAX_VALUE) };
+		for(UUID uuid : uuids) assertEquals(uuid, BinaryUuids.fromBytes(BinaryUuids.toBytes(uuid)));
+		for(int i = 0; i < 1000; i++) {
+			UUID uuid = UUID.randomUUID();
+			assertEquals(uuid, BinaryUuids.fromBytes(BinaryUuids.toBytes(uuid)));
+		}
+	}
+
+	public void testOrderFollowsTheTextForm() {
+		UUID low = UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff");
+		UUID high = UUID.fromString("80000000-0000-0000-0000-000000000000");
+		byte[] lowBytes = BinaryUuids.toBytes(low);
+		byte[] highBytes = BinaryUuids.toBytes(high);
+		assertTrue(Arrays.compareUnsigned(lowBytes, highBytes) < 0);
+	}
+
+	public void testRejectsWrongLength() {
+		for(int length : new int[] { 0, 15, 17, 36 }) {
+			try {
+				BinaryUuids.fromBytes(new byte[length]);
+				fail(length + " bytes accepted");
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+}
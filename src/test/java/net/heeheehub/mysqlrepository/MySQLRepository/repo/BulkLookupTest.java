@@ -0,0 +1,108 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+
+/**
+ * Unit tests of the bulk lookups of {@link SQLSession}, run against the {@link FakeDriver}.
+ */
+public class BulkLookupTest extends TestCase {
+
+	@MySQLField("bulk_players")
+	public static class Player {
+		@SQLId
+		public long id;
+		@MySQLColumn("uuid")
+		public UUID uuid;
+
+		public Player() {
+		}
+	}
+
+	private Database database;
+	private SQLSession session;
+
+	public BulkLookupTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(BulkLookupTest.class);
+	}
+
+	@Override
+	protected void setUp() throws SQLException {
+		FakeDriver.reset();
+		database = FakeDriver.database("bulk");
+		session = new SQLSession(database);
+	}
+
+	@Override
+	protected void tearDown() {
+		session.close();
+		FakeDriver.close(database);
+	}
+
+	private static Object[] row(long id) {
+		return new Object[] { id, new UUID(0L, id).toString() };
+	}
+
+	public void testChunksArePaddedToAPowerOfTwo() {
+		FakeDriver.enqueue(new Object[][] { row(3L), row(1L), row(2L) });
+		Map<Long, Player> players = session.getAll(Player.class, List.of(1L, 2L, 3L, 2L));
+
+		assertEquals(List.of(1L, 2L, 3L), new ArrayList<>(players.keySet()));
+		List<FakeDriver.Execution> selects = FakeDriver.executions("SELECT");
+		assertEquals(1, selects.size());
+		assertEquals("SELECT `id`, `uuid` FROM `bulk_players` WHERE `id` IN (?, ?, ?, ?)", selects.get(0).sql());
+		assertEquals(List.of(1L, 2L, 3L, 3L), selects.get(0).parameters());
+	}
+
+	public void testLargeListsAreSplitIntoChunks() {
+		List<Long> ids = new ArrayList<>();
+		for(long id = 1; id <= 300; id++) ids.add(id);
+		session.getAll(Player.class, ids);
+
+		List<FakeDriver.Execution> selects = FakeDriver.executions("SELECT");
+		assertEquals(2, selects.size());
+		assertEquals(256, selects.get(0).parameters().size());
+		assertEquals(64, selects.get(1).parameters().size());
+	}
+
+	public void testManagedEntitiesAreNotQueriedAgain() {
+		FakeDriver.enqueue(new Object[][] { row(1L) });
+		Player first = session.getAll(Player.class, List.of(1L)).get(1L);
+		Map<Long, Player> again = session.getAll(Player.class, List.of(1L));
+		assertSame(first, again.get(1L));
+		assertEquals(1, FakeDriver.executions("SELECT").size());
+	}
+
+	public void testLookupByUuidColumn() {
+		FakeDriver.enqueue(new Object[][] { row(2L), row(1L) });
+		Map<UUID, Player> players = session.getAll(Player.class, "uuid", List.of(new UUID(0L, 1L), new UUID(0L, 2L)));
+		assertEquals(2L, players.get(new UUID(0L, 2L)).id);
+		assertEquals(1L, players.get(new UUID(0L, 1L)).id);
+		assertEquals(List.of(new UUID(0L, 1L).toString(), new UUID(0L, 2L).toString()),
+				FakeDriver.executions("SELECT").get(0).parameters());
+	}
+
+	public void testLookupByUnknownColumnIsRejected() {
+		try {
+			session.getAll(Player.class, "owner", List.of(UUID.randomUUID()));
+			fail("unknown column accepted");
+		} catch (IllegalArgumentException expected) {
+			assertEquals("Unknown column owner for class Player", expected.getMessage());
+		}
+		assertTrue(FakeDriver.executions().isEmpty());
+	}
+}
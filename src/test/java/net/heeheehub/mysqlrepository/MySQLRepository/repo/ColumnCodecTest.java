@@ -0,0 +1,72 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit tests of the copies and snapshots of {@link ColumnCodec}s.
+ */
+public class ColumnCodecTest extends TestCase {
+
+	public static class Home {
+		public String world;
+		public List<Integer> position = new ArrayList<>();
+	}
+
+	public ColumnCodecTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(ColumnCodecTest.class);
+	}
+
+	public void testJsonCopiesAreDeep() {
+		ColumnCodec<Home> codec = ColumnCodec.json(Home.class);
+		Home home = new Home();
+		home.world = "world";
+		home.position.add(1);
+		Home copy = codec.copy(home);
+		assertNotSame(home, copy);
+		assertNotSame(home.position, copy.position);
+
+		home.position.add(2);
+		assertEquals(List.of(1), copy.position);
+	}
+
+	public void testJsonSnapshotsCompareByContent() {
+		ColumnCodec<Home> codec = ColumnCodec.json(Home.class);
+		Home home = new Home();
+		home.world = "world";
+		Object before = codec.snapshot(home);
+		assertEquals(before, codec.snapshot(codec.copy(home)));
+
+		home.world = "nether";
+		assertFalse(before.equals(codec.snapshot(home)));
+	}
+
+	public void testBuiltInMutableTypesAreCloned() {
+		byte[] bytes = { 1, 2, 3 };
+		byte[] copy = (byte[]) CodecRegistry.resolve(byte[].class).copy(bytes);
+		assertNotSame(bytes, copy);
+		assertEquals(3, copy[2]);
+
+		Timestamp timestamp = new Timestamp(1_000L);
+		timestamp.setNanos(5);
+		Object copied = CodecRegistry.resolve(Timestamp.class).copy(timestamp);
+		assertNotSame(timestamp, copied);
+		assertEquals(timestamp, copied);
+	}
+
+	public void testImmutableTypesAreShared() {
+		String text = new String("text");
+		assertSame(text, CodecRegistry.resolve(String.class).copy(text));
+		Long number = 1234567L;
+		assertSame(number, CodecRegistry.resolve(Long.class).snapshot(number));
+	}
+}
@@ -0,0 +1,128 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit tests of {@link ConnectionPool}, run against the {@link FakeDriver}.
+ */
+public class ConnectionPoolTest extends TestCase {
+
+	private ConnectionPool pool;
+
+	public ConnectionPoolTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(ConnectionPoolTest.class);
+	}
+
+	@Override
+	protected void setUp() throws SQLException {
+		FakeDriver.reset();
+		pool = new ConnectionPool(FakeDriver.url("pool"), "test", "test", new PoolSettings(1, 2, 60_000L, 200L, 0L));
+	}
+
+	@Override
+	protected void tearDown() {
+		pool.close();
+	}
+
+	public void testOpensTheMinimumAndReusesConnections() throws SQLException {
+		assertEquals(1, pool.getTotal());
+		assertEquals(1, pool.getIdle());
+		Connection first = pool.borrow();
+		assertEquals(1, pool.getActive());
+		first.close();
+		assertTrue(first.isClosed());
+		Connection second = pool.borrow();
+		second.close();
+		assertEquals(1, FakeDriver.connections().size());
+		assertEquals(0, pool.getActive());
+	}
+
+	public void testBorrowTimesOutAtTheMaximum() throws SQLException {
+		Connection first = pool.borrow();
+		Connection second = pool.borrow();
+		try {
+			pool.borrow();
+			fail("borrowed more than the maximum");
+		} catch (SQLTimeoutException expected) {
+		}
+		assertEquals(1, pool.getBorrowTimeouts());
+		first.close();
+		second.close();
+		assertEquals(2, pool.getIdle());
+	}
+
+	public void testRetainedConnectionReturnsOnLastClose() throws SQLException {
+		Connection connection = ConnectionPool.retain(pool.borrow());
+		connection.close();
+		assertEquals(1, pool.getActive());
+		connection.close();
+		assertEquals(0, pool.getActive());
+		try {
+			connection.createStatement();
+			fail("returned connection still usable");
+		} catch (SQLException expected) {
+		}
+	}
+
+	public void testReleaseRollsBackAndRestoresSessionState() throws SQLException {
+		Connection connection = pool.borrow();
+		connection.setAutoCommit(false);
+		connection.setReadOnly(true);
+		connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+		connection.setCatalog("other");
+		connection.close();
+
+		FakeDriver.FakeConnection physical = FakeDriver.connections().get(0);
+		assertEquals(1, physical.rollbacks);
+		assertTrue(physical.autoCommit);
+		assertFalse(physical.readOnly);
+		assertEquals(Connection.TRANSACTION_REPEATABLE_READ, physical.isolation);
+		assertEquals("test", physical.catalog);
+		assertFalse(physical.closed);
+		assertEquals(1, pool.getIdle());
+	}
+
+	public void testCloseClosesIdleConnectionsAndReturnedOnes() throws SQLException {
+		Connection borrowed = pool.borrow();
+		Connection idle = pool.borrow();
+		idle.close();
+		pool.close();
+		assertTrue(pool.isClosed());
+		assertTrue(FakeDriver.connections().get(1).closed);
+		assertFalse(FakeDriver.connections().get(0).closed);
+		borrowed.close();
+		assertTrue(FakeDriver.connections().get(0).closed);
+		try {
+			pool.borrow();
+			fail("closed pool lent a connection");
+		} catch (SQLException expected) {
+		}
+	}
+
+	public void testCloseStopsTheHousekeepingThread() throws Exception {
+		int before = housekeepers();
+		ConnectionPool other = new ConnectionPool(FakeDriver.url("pool"), "test", "test", new PoolSettings());
+		assertEquals(before + 1, housekeepers());
+		other.close();
+		for(int attempt = 0; attempt < 100 && housekeepers() > before; attempt++) Thread.sleep(10);
+		assertEquals(before, housekeepers());
+	}
+
+	private static int housekeepers() {
+		int count = 0;
+		for(Thread thread : Thread.getAllStackTraces().keySet()) {
+			if(thread.getName().equals("MySQLRepository-pool-housekeeper") && thread.isAlive()) count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,119 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+
+/**
+ * Unit tests of the column-level dirty checking of {@link SQLSession#update(Object)}, run against the {@link FakeDriver}.
+ */
+public class DirtyCheckTest extends TestCase {
+
+	public static class Home {
+		public String world;
+		public List<Integer> position = new ArrayList<>();
+	}
+
+	@MySQLField("dirty_heroes")
+	public static class Hero {
+		@SQLId
+		public long id;
+		@MySQLColumn("name")
+		public String name;
+		@MySQLColumn("home")
+		public Home home;
+		@MySQLColumn("last_seen")
+		public Timestamp lastSeen;
+		@MySQLColumn("data")
+		public byte[] data;
+
+		public Hero() {
+		}
+	}
+
+	private Database database;
+	private SQLSession session;
+
+	public DirtyCheckTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(DirtyCheckTest.class);
+	}
+
+	@Override
+	protected void setUp() throws SQLException {
+		CodecRegistry.register(Home.class, ColumnCodec.json(Home.class));
+		FakeDriver.reset();
+		database = FakeDriver.database("dirty");
+		session = new SQLSession(database);
+	}
+
+	@Override
+	protected void tearDown() {
+		session.close();
+		FakeDriver.close(database);
+	}
+
+	private Hero load() {
+		FakeDriver.enqueue(new Object[][] {
+				{ 1L, "hero", "{\"world\":\"world\",\"position\":[1,2,3]}", new Timestamp(1_000L), new byte[] { 1, 2 } } });
+		Hero hero = session.get(Hero.class, 1L);
+		assertEquals("world", hero.home.world);
+		return hero;
+	}
+
+	private List<FakeDriver.Execution> updates() {
+		return FakeDriver.executions("UPDATE");
+	}
+
+	public void testUnchangedEntityIsNotWritten() throws Exception {
+		Hero hero = load();
+		hero.name = new String("hero");
+		hero.home = ColumnCodec.json(Home.class).copy(hero.home);
+		session.update(hero);
+		assertTrue(updates().isEmpty());
+	}
+
+	public void testOnlyChangedColumnsAreWritten() throws Exception {
+		Hero hero = load();
+		hero.name = "renamed";
+		session.update(hero);
+		assertEquals(1, updates().size());
+		assertEquals("UPDATE `dirty_heroes` SET `name` = ? WHERE `id` = ?", updates().get(0).sql());
+		assertEquals(List.of("renamed", 1L), updates().get(0).parameters());
+
+		session.update(hero);
+		assertEquals(1, updates().size());
+	}
+
+	public void testCodecValueMutatedInPlaceIsWritten() throws Exception {
+		Hero hero = load();
+		hero.home.position.add(4);
+		session.update(hero);
+		assertEquals(1, updates().size());
+		assertEquals("UPDATE `dirty_heroes` SET `home` = ? WHERE `id` = ?", updates().get(0).sql());
+		assertEquals("{\"world\":\"world\",\"position\":[1,2,3,4]}", updates().get(0).parameters().get(0));
+
+		session.update(hero);
+		assertEquals(1, updates().size());
+	}
+
+	public void testDateAndBytesMutatedInPlaceAreWritten() throws Exception {
+		Hero hero = load();
+		hero.lastSeen.setTime(2_000L);
+		hero.data[0] = 9;
+		session.update(hero);
+		assertEquals(1, updates().size());
+		assertEquals("UPDATE `dirty_heroes` SET `last_seen` = ?, `data` = ? WHERE `id` = ?", updates().get(0).sql());
+	}
+}
@@ -0,0 +1,146 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+
+/**
+ * Unit tests of {@link EntityCache}.
+ */
+public class EntityCacheTest extends TestCase {
+
+	public static class Inventory {
+		public List<String> items = new ArrayList<>();
+	}
+
+	@MySQLField(value = "cached_players", cached = true)
+	public static class Player {
+		@SQLId
+		public long id;
+		@MySQLColumn("name")
+		public String name;
+		@MySQLColumn("inventory")
+		public Inventory inventory = new Inventory();
+		@MySQLColumn("last_seen")
+		public Timestamp lastSeen = new Timestamp(1_000L);
+
+		public Player() {
+		}
+
+		Player(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	@MySQLField(value = "cached_guilds", cached = true)
+	public static class Guild {
+		@SQLId
+		public long id;
+		@MySQLColumn("name")
+		public String name;
+
+		public Guild() {
+		}
+
+		Guild(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	private EntityMetadata meta;
+
+	public EntityCacheTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(EntityCacheTest.class);
+	}
+
+	@Override
+	protected void setUp() {
+		CodecRegistry.register(Inventory.class, ColumnCodec.json(Inventory.class));
+		meta = EntityMetadata.of(Player.class);
+	}
+
+	public void testHitBuildsAnEqualInstance() {
+		EntityCache cache = new EntityCache(EntityCache.DEFAULT_MAX_WEIGHT);
+		Player player = new Player(1L, "steve");
+		player.inventory.items.add("sword");
+		cache.put(meta, 1L, player);
+
+		Player hit = (Player) cache.get(meta, 1L);
+		assertNotSame(player, hit);
+		assertEquals(1L, hit.id);
+		assertEquals("steve", hit.name);
+		assertEquals(List.of("sword"), hit.inventory.items);
+		assertEquals(player.lastSeen, hit.lastSeen);
+		assertNull(cache.get(meta, 2L));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	public void testCachedStateIsNotSharedWithTheWriter() {
+		EntityCache cache = new EntityCache(EntityCache.DEFAULT_MAX_WEIGHT);
+		Player player = new Player(1L, "steve");
+		player.inventory.items.add("sword");
+		cache.put(meta, 1L, player);
+
+		player.inventory.items.add("shield");
+		player.lastSeen.setTime(2_000L);
+		Player hit = (Player) cache.get(meta, 1L);
+		assertEquals(List.of("sword"), hit.inventory.items);
+		assertEquals(1_000L, hit.lastSeen.getTime());
+	}
+
+	public void testHitsDoNotShareStateWithEachOther() {
+		EntityCache cache = new EntityCache(EntityCache.DEFAULT_MAX_WEIGHT);
+		cache.put(meta, 1L, new Player(1L, "steve"));
+
+		Player first = (Player) cache.get(meta, 1L);
+		first.inventory.items.add("bow");
+		first.lastSeen.setTime(3_000L);
+		Player second = (Player) cache.get(meta, 1L);
+		assertNotSame(first.inventory, second.inventory);
+		assertTrue(second.inventory.items.isEmpty());
+		assertEquals(1_000L, second.lastSeen.getTime());
+	}
+
+	public void testInvalidate() {
+		EntityCache cache = new EntityCache(EntityCache.DEFAULT_MAX_WEIGHT);
+		cache.put(meta, 1L, new Player(1L, "steve"));
+		cache.invalidate(Player.class, 1L);
+		assertNull(cache.get(meta, 1L));
+		assertEquals(1, cache.getInvalidations());
+		assertEquals(0L, cache.getWeight());
+	}
+
+	public void testWeightBoundEvictsTheLeastRecentlyUsedEntryOfAnyClass() {
+		EntityMetadata guilds = EntityMetadata.of(Guild.class);
+		EntityCache cache = new EntityCache(Long.MAX_VALUE);
+		cache.put(meta, 1L, new Player(1L, "steve"));
+		cache.put(meta, 2L, new Player(2L, "alex"));
+		long players = cache.getWeight();
+		cache.put(guilds, 1L, new Guild(1L, "knights"));
+		long guild = cache.getWeight() - players;
+		assertNotNull(cache.get(meta, 1L));
+
+		cache.setMaxWeight(cache.getWeight() + guild - players / 2);
+		cache.put(guilds, 2L, new Guild(2L, "rogues"));
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get(meta, 2L));
+		assertNotNull(cache.get(meta, 1L));
+		assertNotNull(cache.get(guilds, 1L));
+		assertNotNull(cache.get(guilds, 2L));
+		assertTrue(cache.getWeight() <= cache.getMaxWeight());
+	}
+}
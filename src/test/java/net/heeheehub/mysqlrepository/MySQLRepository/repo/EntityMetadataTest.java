@@ -0,0 +1,71 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+
+/**
+ * Unit tests of the codec resolution of {@link EntityMetadata}.
+ */
+public class EntityMetadataTest extends TestCase {
+
+	public static class Unmapped {
+	}
+
+	@MySQLField("unmapped_owners")
+	public static class UnmappedOwner {
+		@SQLId
+		public long id;
+		@MySQLColumn("unmapped")
+		public Unmapped unmapped;
+	}
+
+	@MySQLField("list_owners")
+	public static class ListOwner {
+		@SQLId
+		public long id;
+		@MySQLColumn("items")
+		public List<String> items;
+	}
+
+	@MySQLField("text_owners")
+	public static class TextOwner {
+		@SQLId
+		public long id;
+		@MySQLColumn("text")
+		public CharSequence text;
+	}
+
+	public EntityMetadataTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(EntityMetadataTest.class);
+	}
+
+	public void testFieldWithoutCodecIsRejected() {
+		try {
+			EntityMetadata.of(UnmappedOwner.class);
+			fail("field without codec accepted");
+		} catch (IllegalArgumentException expected) {
+			assertTrue(expected.getMessage(), expected.getMessage().contains("UnmappedOwner.unmapped"));
+			assertTrue(expected.getMessage(), expected.getMessage().contains("CodecRegistry.register(Unmapped.class"));
+		}
+		try {
+			EntityMetadata.of(ListOwner.class);
+			fail("interface field without codec accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testTextFallbackIsKeptForFieldsHoldingStrings() {
+		EntityMetadata meta = EntityMetadata.of(TextOwner.class);
+		assertSame(CodecRegistry.FALLBACK, meta.getColumn("text").getCodec());
+	}
+}
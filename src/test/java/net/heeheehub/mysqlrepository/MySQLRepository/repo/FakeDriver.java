@@ -0,0 +1,364 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * An in-process JDBC driver for {@code jdbc:mysql://fake...} URLs, so the unit tests need no server.
+ * <p>
+ * Connections keep the state set on them, statements record what they run and queries return the rows
+ * {@link #enqueue(Object[][]) queued} by the test, in order. Inserts return generated keys counting up
+ * from {@link #setNextKey(long)}, one per row. Every JDBC object is a dynamic proxy.
+ * </p>
+ */
+final class FakeDriver implements Driver {
+
+	/**
+	 * The host name accepted by the driver.
+	 */
+	static final String HOST = "fake";
+
+	/**
+	 * A statement run by a session: its SQL and its parameters by index.
+	 */
+	record Execution(String sql, List<Object> parameters) {}
+
+	private static final FakeDriver INSTANCE = new FakeDriver();
+	private static final List<FakeConnection> CONNECTIONS = Collections.synchronizedList(new ArrayList<>());
+	private static final List<Execution> EXECUTIONS = Collections.synchronizedList(new ArrayList<>());
+	private static final Deque<Object[][]> RESULTS = new ArrayDeque<>();
+	private static long nextKey = 1L;
+	private static boolean registered;
+
+	private FakeDriver() {
+	}
+
+	/**
+	 * Registers the driver once and forgets everything recorded by earlier tests.
+	 */
+	static synchronized void reset() throws SQLException {
+		if(!registered) {
+			DriverManager.registerDriver(INSTANCE);
+			registered = true;
+		}
+		CONNECTIONS.clear();
+		EXECUTIONS.clear();
+		RESULTS.clear();
+		nextKey = 1L;
+	}
+
+	/**
+	 * @return The JDBC url of a fake database.
+	 */
+	static String url(String dbName) {
+		return Database.url(HOST, 3306, dbName);
+	}
+
+	/**
+	 * Creates a database served by the driver. Its pool starts on the first borrowed connection.
+	 */
+	static Database database(String dbName) {
+		return new Database(HOST, 3306, dbName, "test", "test", new PoolSettings(1, 4, 60_000L, 1_000L, 0L));
+	}
+
+	/**
+	 * Closes the pool of a database created by {@link #database(String)}, if it was started.
+	 */
+	static void close(Database database) {
+		ConnectionPool pool = database.getPool();
+		if(pool != null) pool.close();
+	}
+
+	/**
+	 * @return The connections opened since the last {@link #reset()}, in order.
+	 */
+	static List<FakeConnection> connections() {
+		synchronized (CONNECTIONS) {
+			return new ArrayList<>(CONNECTIONS);
+		}
+	}
+
+	/**
+	 * @return The statements run since the last {@link #reset()}, in order, one per batched row.
+	 */
+	static List<Execution> executions() {
+		synchronized (EXECUTIONS) {
+			return new ArrayList<>(EXECUTIONS);
+		}
+	}
+
+	/**
+	 * @return The statements run since the last {@link #reset()} whose SQL starts with a prefix.
+	 */
+	static List<Execution> executions(String prefix) {
+		List<Execution> matching = new ArrayList<>();
+		for(Execution execution : executions()) {
+			if(execution.sql().startsWith(prefix)) matching.add(execution);
+		}
+		return matching;
+	}
+
+	/**
+	 * Queues the rows returned by the next query.
+	 */
+	static synchronized void enqueue(Object[][] rows) {
+		RESULTS.addLast(rows);
+	}
+
+	/**
+	 * Sets the next generated key.
+	 */
+	static synchronized void setNextKey(long key) {
+		nextKey = key;
+	}
+
+	private static synchronized Object[][] nextResult() {
+		Object[][] rows = RESULTS.pollFirst();
+		return rows == null ? new Object[0][] : rows;
+	}
+
+	private static synchronized Object[][] generateKeys(int count) {
+		Object[][] keys = new Object[count][];
+		for(int i = 0; i < count; i++) keys[i] = new Object[] { nextKey++ };
+		return keys;
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) {
+		if(!acceptsURL(url)) return null;
+		FakeConnection connection = new FakeConnection();
+		CONNECTIONS.add(connection);
+		return connection.proxy;
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith("jdbc:mysql://" + HOST + ":");
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(FakeDriver.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	private static Object common(Object proxy, Method method, Object[] args) {
+		switch(method.getName()) {
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "toString":
+			return "Fake" + proxy.getClass().getInterfaces()[0].getSimpleName();
+		}
+		Class<?> type = method.getReturnType();
+		if(type == boolean.class) return false;
+		if(type == int.class) return 0;
+		if(type == long.class) return 0L;
+		return null;
+	}
+
+	/**
+	 * The state of one physical connection.
+	 */
+	static final class FakeConnection implements InvocationHandler {
+		final Connection proxy = proxy(Connection.class, this);
+		boolean autoCommit = true;
+		boolean readOnly;
+		int isolation = Connection.TRANSACTION_REPEATABLE_READ;
+		String catalog = "test";
+		int rollbacks;
+		boolean closed;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			switch(method.getName()) {
+			case "prepareStatement":
+				return proxy(PreparedStatement.class, new FakeStatement((String) args[0]));
+			case "createStatement":
+				return proxy(PreparedStatement.class, new FakeStatement(null));
+			case "setAutoCommit":
+				autoCommit = (Boolean) args[0];
+				return null;
+			case "getAutoCommit":
+				return autoCommit;
+			case "setReadOnly":
+				readOnly = (Boolean) args[0];
+				return null;
+			case "isReadOnly":
+				return readOnly;
+			case "setTransactionIsolation":
+				isolation = (Integer) args[0];
+				return null;
+			case "getTransactionIsolation":
+				return isolation;
+			case "setCatalog":
+				catalog = (String) args[0];
+				return null;
+			case "getCatalog":
+				return catalog;
+			case "rollback":
+				rollbacks++;
+				return null;
+			case "isValid":
+				return !closed;
+			case "isClosed":
+				return closed;
+			case "close":
+				closed = true;
+				return null;
+			default:
+				return common(proxy, method, args);
+			}
+		}
+	}
+
+	private static final class FakeStatement implements InvocationHandler {
+		private final String sql;
+		private final TreeMap<Integer, Object> parameters = new TreeMap<>();
+		private int batch;
+		private int keys;
+
+		private FakeStatement(String sql) {
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			if(name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+				parameters.put(index, name.equals("setNull") ? null : args[1]);
+				return null;
+			}
+			switch(name) {
+			case "executeQuery":
+				record(args);
+				return proxy(ResultSet.class, new FakeResultSet(nextResult()));
+			case "executeUpdate":
+				record(args);
+				keys = 1;
+				return 1;
+			case "execute":
+				record(args);
+				return false;
+			case "addBatch":
+				record(args);
+				batch++;
+				return null;
+			case "executeBatch":
+				int[] counts = new int[batch];
+				java.util.Arrays.fill(counts, 1);
+				keys = batch;
+				batch = 0;
+				return counts;
+			case "getGeneratedKeys":
+				return proxy(ResultSet.class, new FakeResultSet(generateKeys(keys)));
+			case "clearParameters":
+				parameters.clear();
+				return null;
+			default:
+				return common(proxy, method, args);
+			}
+		}
+
+		private void record(Object[] args) {
+			String statement = args != null && args.length > 0 && args[0] instanceof String text ? text : sql;
+			EXECUTIONS.add(new Execution(statement, new ArrayList<>(parameters.values())));
+			parameters.clear();
+		}
+	}
+
+	private static final class FakeResultSet implements InvocationHandler {
+		private final Object[][] rows;
+		private int row = -1;
+		private boolean wasNull;
+
+		private FakeResultSet(Object[][] rows) {
+			this.rows = rows;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			switch(method.getName()) {
+			case "next":
+				return ++row < rows.length;
+			case "wasNull":
+				return wasNull;
+			case "getMetaData":
+				int columns = rows.length == 0 ? 0 : rows[0].length;
+				return proxy(ResultSetMetaData.class, (p, m, a) -> m.getName().equals("getColumnCount") ? columns : common(p, m, a));
+			case "getObject":
+				return value(args);
+			case "getString":
+				Object text = value(args);
+				return text == null ? null : text.toString();
+			case "getLong":
+				Object number = value(args);
+				return number == null ? 0L : ((Number) number).longValue();
+			case "getInt":
+				number = value(args);
+				return number == null ? 0 : ((Number) number).intValue();
+			case "getDouble":
+				number = value(args);
+				return number == null ? 0d : ((Number) number).doubleValue();
+			case "getBoolean":
+				return Boolean.TRUE.equals(value(args));
+			case "getBytes":
+				return value(args);
+			case "getTimestamp":
+				return (Timestamp) value(args);
+			default:
+				return common(proxy, method, args);
+			}
+		}
+
+		private Object value(Object[] args) {
+			Object value = rows[row][(Integer) args[0] - 1];
+			wasNull = value == null;
+			return value;
+		}
+	}
+}
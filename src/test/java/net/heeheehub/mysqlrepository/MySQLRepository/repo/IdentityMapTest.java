@@ -0,0 +1,225 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit tests of {@link IdentityMap}.
+ */
+public class IdentityMapTest extends TestCase {
+
+	public IdentityMapTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(IdentityMapTest.class);
+	}
+
+	public void testPutGetRemove() {
+		IdentityMap map = new IdentityMap();
+		Object[] entities = new Object[1000];
+		for(int i = 0; i < entities.length; i++) {
+			entities[i] = new Object();
+			map.put(String.class, i * 1024L - 500, entities[i], new Object[] { i });
+		}
+		assertEquals(1000, map.size(String.class));
+		for(int i = 0; i < entities.length; i++) {
+			assertSame(entities[i], map.get(String.class, i * 1024L - 500));
+			assertEquals(i, map.getSnapshot(String.class, i * 1024L - 500)[0]);
+		}
+		assertNull(map.get(String.class, 1L));
+		assertNull(map.get(Integer.class, -500L));
+
+		map.remove(String.class, -500L);
+		assertFalse(map.contains(String.class, -500L));
+		assertNull(map.getSnapshot(String.class, -500L));
+		assertEquals(999, map.size());
+	}
+
+	public void testReplaceKeepsSingleEntry() {
+		IdentityMap map = new IdentityMap();
+		Object first = new Object();
+		Object second = new Object();
+		map.put(String.class, 7L, first, new Object[] { "a" });
+		map.put(String.class, 7L, second, new Object[] { "b" });
+		assertEquals(1, map.size(String.class));
+		assertSame(second, map.get(String.class, 7L));
+
+		map.replaceSnapshot(String.class, 7L, new Object[] { "c" });
+		assertEquals("c", map.getSnapshot(String.class, 7L)[0]);
+		map.replaceSnapshot(String.class, 8L, new Object[] { "d" });
+		assertFalse(map.contains(String.class, 8L));
+	}
+
+	public void testLookupsSkipTombstones() {
+		IdentityMap map = new IdentityMap();
+		for(long id = 0; id < 512; id++) map.put(String.class, id, Long.valueOf(id), null);
+		for(long id = 1; id < 512; id += 2) map.remove(String.class, id);
+		assertEquals(256, map.size(String.class));
+		for(long id = 0; id < 512; id++) {
+			if(id % 2 == 0) assertEquals(Long.valueOf(id), map.get(String.class, id));
+			else assertNull(map.get(String.class, id));
+		}
+		for(long id = 1; id < 512; id += 2) map.put(String.class, id, Long.valueOf(id), null);
+		assertEquals(512, map.size(String.class));
+		for(long id = 0; id < 512; id++) assertEquals(Long.valueOf(id), map.get(String.class, id));
+	}
+
+	public void testChurnDoesNotFillTableWithTombstones() {
+		IdentityMap map = new IdentityMap();
+		map.put(String.class, -1L, "kept", null);
+		for(long id = 0; id < 100_000; id++) {
+			map.put(String.class, id, "churn", null);
+			map.remove(String.class, id);
+		}
+		assertEquals(1, map.size(String.class));
+		assertEquals("kept", map.get(String.class, -1L));
+		assertNull(map.get(String.class, 99_999L));
+	}
+
+	public void testCapEvictsOldest() {
+		IdentityMap map = new IdentityMap(3, IdentityMap.ReferenceMode.STRONG);
+		for(long id = 1; id <= 4; id++) map.put(String.class, id, "e" + id, null);
+		assertEquals(3, map.size(String.class));
+		assertEquals(1, map.getEvictions());
+		assertFalse(map.contains(String.class, 1L));
+		for(long id = 2; id <= 4; id++) assertTrue(map.contains(String.class, id));
+	}
+
+	public void testCapSkipsRemovedAndReManagedEntities() {
+		IdentityMap map = new IdentityMap(3, IdentityMap.ReferenceMode.STRONG);
+		map.put(String.class, 1L, "e1", null);
+		map.put(String.class, 2L, "e2", null);
+		map.put(String.class, 3L, "e3", null);
+		map.remove(String.class, 1L);
+		map.put(String.class, 1L, "e1 again", null);
+		map.put(String.class, 4L, "e4", null);
+
+		assertEquals(1, map.getEvictions());
+		assertFalse(map.contains(String.class, 2L));
+		assertEquals("e1 again", map.get(String.class, 1L));
+		assertTrue(map.contains(String.class, 3L));
+		assertTrue(map.contains(String.class, 4L));
+	}
+
+	public void testCapIsPerClass() {
+		IdentityMap map = new IdentityMap(2, IdentityMap.ReferenceMode.STRONG);
+		map.put(String.class, 1L, "s1", null);
+		map.put(String.class, 2L, "s2", null);
+		map.put(Integer.class, 1L, "i1", null);
+		map.put(Integer.class, 2L, "i2", null);
+		assertEquals(0, map.getEvictions());
+		assertEquals(4, map.size());
+		assertEquals(Integer.valueOf(2), map.sizes().get(String.class));
+	}
+
+	public void testOrderRingCompactsStaleEntries() {
+		IdentityMap map = new IdentityMap(8, IdentityMap.ReferenceMode.STRONG);
+		for(long id = 0; id < 1000; id++) {
+			map.put(String.class, id, "churn", null);
+			map.remove(String.class, id);
+		}
+		for(long id = 1000; id < 1009; id++) map.put(String.class, id, "e" + id, null);
+		assertEquals(8, map.size(String.class));
+		assertEquals(1, map.getEvictions());
+		assertFalse(map.contains(String.class, 1000L));
+		for(long id = 1001; id < 1009; id++) assertTrue(map.contains(String.class, id));
+	}
+
+	public void testOrderRingKeepsOrderWhenResized() {
+		IdentityMap map = new IdentityMap(10, IdentityMap.ReferenceMode.STRONG);
+		for(long id = 0; id < 20; id++) map.put(String.class, id, "e" + id, null);
+		assertEquals(10, map.getEvictions());
+
+		map.setMaxEntriesPerClass(0);
+		for(long id = 20; id < 100; id++) map.put(String.class, id, "e" + id, null);
+		assertEquals(90, map.size(String.class));
+
+		map.setMaxEntriesPerClass(40);
+		map.put(String.class, 100L, "e100", null);
+		assertEquals(40, map.size(String.class));
+		assertEquals(61, map.getEvictions());
+		for(long id = 10; id < 61; id++) assertFalse(map.contains(String.class, id));
+		for(long id = 61; id <= 100; id++) assertTrue(map.contains(String.class, id));
+	}
+
+	public void testClear() {
+		IdentityMap map = new IdentityMap();
+		map.put(String.class, 1L, "s", null);
+		map.put(Integer.class, 1L, "i", null);
+		map.clear(String.class);
+		assertFalse(map.contains(String.class, 1L));
+		assertTrue(map.contains(Integer.class, 1L));
+		map.clear();
+		assertEquals(0, map.size());
+	}
+
+	public void testWeakEntriesArePurgedOnceCollected() throws InterruptedException {
+		IdentityMap map = new IdentityMap(0, IdentityMap.ReferenceMode.WEAK);
+		Object kept = new Object();
+		map.put(String.class, 1L, kept, new Object[0]);
+		map.put(String.class, 2L, new Object(), new Object[0]);
+		assertEquals(2, map.size(String.class));
+
+		for(int attempt = 0; attempt < 50 && map.size(String.class) > 1; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+			map.put(String.class, 3L + attempt, kept, null);
+			map.remove(String.class, 3L + attempt);
+		}
+		assertEquals(1, map.size(String.class));
+		assertEquals(1, map.getCollected());
+		assertSame(kept, map.get(String.class, 1L));
+		assertNull(map.get(String.class, 2L));
+		assertNull(map.getSnapshot(String.class, 2L));
+	}
+
+	public void testReclaimedWeakEntryIsDroppedOnLookup() throws InterruptedException {
+		IdentityMap map = new IdentityMap(0, IdentityMap.ReferenceMode.WEAK);
+		map.put(String.class, 1L, new Object(), new Object[0]);
+		for(int attempt = 0; attempt < 50 && map.get(String.class, 1L) != null; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(map.get(String.class, 1L));
+		assertEquals(0, map.size(String.class));
+		assertEquals(1, map.getCollected());
+	}
+
+	public void testSoftEntriesStayWhileReachable() {
+		IdentityMap map = new IdentityMap(0, IdentityMap.ReferenceMode.SOFT);
+		Object entity = new Object();
+		Object[] snapshot = new Object[0];
+		map.put(String.class, 1L, entity, snapshot);
+		System.gc();
+		map.put(String.class, 2L, entity, null);
+		assertSame(entity, map.get(String.class, 1L));
+		assertSame(snapshot, map.getSnapshot(String.class, 1L));
+		assertEquals(0, map.getCollected());
+
+		map.remove(String.class, 1L);
+		assertNull(map.get(String.class, 1L));
+		assertEquals(1, map.size(String.class));
+	}
+
+	public void testReferenceModeAppliesToNewEntries() {
+		IdentityMap map = new IdentityMap();
+		Object strong = new Object();
+		map.put(String.class, 1L, strong, null);
+		map.setReferenceMode(IdentityMap.ReferenceMode.WEAK);
+		assertEquals(IdentityMap.ReferenceMode.WEAK, map.getReferenceMode());
+		assertSame(strong, map.get(String.class, 1L));
+		try {
+			map.setReferenceMode(null);
+			fail("null reference mode accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			map.setMaxEntriesPerClass(-1);
+			fail("negative cap accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
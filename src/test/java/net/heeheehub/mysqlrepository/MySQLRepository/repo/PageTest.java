@@ -0,0 +1,168 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLForeignKey;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+
+/**
+ * Unit tests of the continuation tokens of {@link Page}.
+ */
+public class PageTest extends TestCase {
+
+	@MySQLField("page_guilds")
+	public static class Guild {
+		@SQLId
+		public long id;
+
+		public Guild() {
+		}
+	}
+
+	@MySQLField("page_members")
+	public static class Member {
+		@SQLId
+		public long id;
+		@MySQLColumn("guild")
+		@SQLForeignKey(table = "page_guilds", attribute = "id")
+		public Ref<Guild> guild;
+		@MySQLColumn("joined")
+		public Date joined;
+
+		public Member() {
+		}
+	}
+
+	private Database database;
+	private SQLSession session;
+
+	public PageTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(PageTest.class);
+	}
+
+	@Override
+	protected void setUp() throws SQLException {
+		FakeDriver.reset();
+		database = FakeDriver.database("page");
+		session = new SQLSession(database);
+	}
+
+	@Override
+	protected void tearDown() {
+		session.close();
+		FakeDriver.close(database);
+	}
+
+	public void testRoundTripsEverySupportedType() {
+		Object[] keys = { Long.MIN_VALUE, 0L, Long.MAX_VALUE, -7, Integer.MAX_VALUE, 1.5d, -0.0d,
+				"", "player", "né \u0000 日本", UUID.randomUUID() };
+		for(Object key : keys) {
+			String token = Page.encode("sort_key", key);
+			assertEquals(key, Page.decode("sort_key", token));
+		}
+	}
+
+	public void testKeepsTheKeyType() {
+		assertEquals(Long.valueOf(42L), Page.decode("id", Page.encode("id", 42L)));
+		assertEquals(Integer.valueOf(42), Page.decode("id", Page.encode("id", 42)));
+		assertEquals("42", Page.decode("id", Page.encode("id", "42")));
+	}
+
+	public void testTokensAreUrlSafe() {
+		String token = Page.encode("name", "?&/+= ÿþý");
+		for(char c : token.toCharArray()) {
+			assertTrue("unexpected character " + c + " in " + token,
+					Character.isLetterOrDigit(c) || c == '-' || c == '_');
+		}
+	}
+
+	public void testRejectsTokenOfAnotherColumn() {
+		String token = Page.encode("id", 1L);
+		try {
+			Page.decode("name", token);
+			fail("token of id accepted for name");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			Page.decode("i", token);
+			fail("token of id accepted for a prefix of it");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testRejectsMalformedTokens() {
+		String[] tokens = { "not base64!", "", Page.encode("id", 1L).substring(0, 2),
+				encodeRaw("id\u0000X1"), encodeRaw("id\u0000Lone"), encodeRaw("id\u0000Unot-a-uuid"), encodeRaw("id") };
+		for(String token : tokens) {
+			try {
+				Page.decode("id", token);
+				fail("malformed token accepted: " + token);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	public void testRejectsUnsupportedKeyTypes() {
+		try {
+			Page.encode("created", new Date());
+			fail("Date key accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			Page.encode("id", null);
+			fail("null key accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testPageExposesItemsAndToken() {
+		Page<String> last = new Page<>(List.of("a", "b"), null);
+		assertFalse(last.hasNext());
+		assertEquals(2, last.getItems().size());
+		Page<String> next = new Page<>(List.of("a"), "token");
+		assertTrue(next.hasNext());
+		assertEquals("token", next.getNextToken());
+	}
+
+	public void testQueryPagesByScalarKey() {
+		FakeDriver.enqueue(new Object[][] { { 1L, 7L, null }, { 2L, 7L, null }, { 3L, 7L, null } });
+		Page<Member> first = session.query(Member.class).page("id", true, 2, null);
+		assertEquals(2, first.getItems().size());
+		assertEquals(2L, Page.decode("id", first.getNextToken()));
+
+		session.query(Member.class).page("id", true, 2, first.getNextToken());
+		List<FakeDriver.Execution> selects = FakeDriver.executions("SELECT");
+		assertTrue(selects.get(1).sql(), selects.get(1).sql().endsWith(" WHERE obj.`id` > ? ORDER BY obj.`id` ASC LIMIT ?"));
+		assertEquals(List.of(2L, 3L), selects.get(1).parameters());
+	}
+
+	public void testQueryRejectsNonScalarKeysUpFront() {
+		for(String column : new String[] { "guild", "joined" }) {
+			try {
+				session.query(Member.class).page(column, true, 10, null);
+				fail("non-scalar key column accepted: " + column);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		assertTrue(FakeDriver.executions().isEmpty());
+	}
+
+	private static String encodeRaw(String decoded) {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+	}
+}
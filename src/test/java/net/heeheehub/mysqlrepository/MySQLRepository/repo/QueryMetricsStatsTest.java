@@ -0,0 +1,83 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit tests of the latency histogram of {@link QueryMetrics}.
+ */
+public class QueryMetricsStatsTest extends TestCase {
+
+	public QueryMetricsStatsTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(QueryMetricsStatsTest.class);
+	}
+
+	public void testSmallLatenciesHaveTheirOwnBucket() {
+		for(long micros = 0; micros < 32; micros++) {
+			assertEquals(micros, QueryMetrics.Stats.bucket(micros));
+			assertEquals((double) micros, QueryMetrics.Stats.value((int) micros), 0.0);
+		}
+		assertEquals(0, QueryMetrics.Stats.bucket(-5L));
+	}
+
+	public void testLogarithmicBucketBoundaries() {
+		assertEquals(32, QueryMetrics.Stats.bucket(32L));
+		assertEquals(32, QueryMetrics.Stats.bucket(33L));
+		assertEquals(33, QueryMetrics.Stats.bucket(34L));
+		assertEquals(47, QueryMetrics.Stats.bucket(63L));
+		assertEquals(48, QueryMetrics.Stats.bucket(64L));
+		assertEquals(48, QueryMetrics.Stats.bucket(67L));
+		assertEquals(49, QueryMetrics.Stats.bucket(68L));
+	}
+
+	public void testBucketsAreMonotonic() {
+		int previous = 0;
+		for(long micros = 0; micros < 1L << 20; micros++) {
+			int bucket = QueryMetrics.Stats.bucket(micros);
+			assertTrue("bucket of " + micros + " went down", bucket >= previous);
+			assertTrue("bucket of " + micros + " skipped one", bucket <= previous + 1);
+			previous = bucket;
+		}
+	}
+
+	public void testMidpointIsWithinHalfABucket() {
+		for(long micros = 32; micros < 1L << 39; micros = micros * 3 / 2 + 1) {
+			double value = QueryMetrics.Stats.value(QueryMetrics.Stats.bucket(micros));
+			assertTrue("midpoint " + value + " too far from " + micros, Math.abs(value - micros) <= micros / 32.0);
+		}
+	}
+
+	public void testHugeLatenciesShareTheLastBucket() {
+		int last = QueryMetrics.Stats.bucket((1L << 40) - 1);
+		assertTrue(last < QueryMetrics.Stats.BUCKETS);
+		assertEquals(last, QueryMetrics.Stats.bucket(1L << 40));
+		assertEquals(last, QueryMetrics.Stats.bucket(Long.MAX_VALUE));
+	}
+
+	public void testSnapshotPercentiles() {
+		QueryMetrics.Stats stats = new QueryMetrics.Stats();
+		for(int i = 0; i < 98; i++) stats.record(1_000_000L);
+		stats.record(100_000_000L);
+		stats.record(100_000_000L);
+
+		QueryMetrics.OperationStats snapshot = stats.snapshot("Player", "SELECT");
+		assertEquals(100, snapshot.getCount());
+		assertEquals(1.0, snapshot.getP50Millis(), 1.0 / 32);
+		assertEquals(100.0, snapshot.getP99Millis(), 100.0 / 32);
+		assertEquals(100.0, snapshot.getMaxMillis(), 0.0);
+		assertEquals(2.98, snapshot.getMeanMillis(), 1e-9);
+		assertEquals(298.0, snapshot.getTotalMillis(), 1e-9);
+	}
+
+	public void testEmptySnapshot() {
+		QueryMetrics.OperationStats snapshot = new QueryMetrics.Stats().snapshot("Player", "SELECT");
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0.0, snapshot.getP50Millis(), 0.0);
+		assertEquals(0.0, snapshot.getMeanMillis(), 0.0);
+	}
+}
@@ -0,0 +1,123 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+
+/**
+ * Unit tests of the SQL built and bound by {@link Query}, run against the {@link FakeDriver}.
+ */
+public class QueryTest extends TestCase {
+
+	public enum Rank {
+		MEMBER, ADMIN
+	}
+
+	@MySQLField("query_players")
+	public static class Player {
+		@SQLId
+		public long id;
+		@MySQLColumn("uuid")
+		public UUID uuid;
+		@MySQLColumn("level")
+		public int level;
+		@MySQLColumn("rank")
+		public Rank rank;
+
+		public Player() {
+		}
+	}
+
+	private Database database;
+	private SQLSession session;
+
+	public QueryTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(QueryTest.class);
+	}
+
+	@Override
+	protected void setUp() throws SQLException {
+		FakeDriver.reset();
+		database = FakeDriver.database("query");
+		session = new SQLSession(database);
+	}
+
+	@Override
+	protected void tearDown() {
+		session.close();
+		FakeDriver.close(database);
+	}
+
+	private FakeDriver.Execution lastSelect() {
+		List<FakeDriver.Execution> selects = FakeDriver.executions("SELECT");
+		return selects.get(selects.size() - 1);
+	}
+
+	public void testConditionsOrderAndLimitAreBound() {
+		FakeDriver.enqueue(new Object[][] { { 1L, new UUID(0L, 1L).toString(), 12, "ADMIN" } });
+		List<Player> players = session.query(Player.class).gt("level", 10).eq("rank", Rank.ADMIN)
+				.orderBy("level", false).limit(5).list();
+
+		assertEquals(1, players.size());
+		assertEquals(Rank.ADMIN, players.get(0).rank);
+		FakeDriver.Execution select = lastSelect();
+		assertTrue(select.sql(), select.sql().endsWith(
+				" FROM `query_players` obj WHERE obj.`level` > ? AND obj.`rank` = ? ORDER BY obj.`level` DESC LIMIT ?"));
+		assertEquals(List.of(10, "ADMIN", 5L), select.parameters());
+	}
+
+	public void testInListsArePaddedToAPowerOfTwo() {
+		session.query(Player.class).in("level", List.of(1, 2, 3)).list();
+		FakeDriver.Execution three = lastSelect();
+		assertTrue(three.sql(), three.sql().endsWith(" WHERE obj.`level` IN (?, ?, ?, ?)"));
+		assertEquals(List.of(1, 2, 3, 3), three.parameters());
+
+		session.query(Player.class).in("level", List.of(5, 6, 7, 8)).list();
+		FakeDriver.Execution four = lastSelect();
+		assertSame(three.sql(), four.sql());
+		assertEquals(List.of(5, 6, 7, 8), four.parameters());
+
+		session.query(Player.class).in("level", List.of(1, 2, 3, 4, 5)).list();
+		assertEquals(8, lastSelect().parameters().size());
+	}
+
+	public void testEmptyInListMatchesNothing() {
+		session.query(Player.class).in("level", List.of()).list();
+		assertTrue(lastSelect().sql(), lastSelect().sql().endsWith(" WHERE 1 = 0"));
+		assertTrue(lastSelect().parameters().isEmpty());
+	}
+
+	public void testStatementShapesAreCachedAcrossValues() {
+		session.query(Player.class).eq("uuid", new UUID(0L, 1L)).list();
+		String first = lastSelect().sql();
+		session.query(Player.class).eq("uuid", new UUID(0L, 2L)).list();
+		assertSame(first, lastSelect().sql());
+		assertEquals(List.of(new UUID(0L, 2L).toString()), lastSelect().parameters());
+	}
+
+	public void testCount() {
+		FakeDriver.enqueue(new Object[][] { { 42L } });
+		assertEquals(42L, session.query(Player.class).between("level", 1, 9).orderBy("level", true).count());
+		assertEquals("SELECT COUNT(*) FROM `query_players` obj WHERE obj.`level` BETWEEN ? AND ?", lastSelect().sql());
+		assertEquals(List.of(1, 9), lastSelect().parameters());
+	}
+
+	public void testUnknownColumnIsRejected() {
+		try {
+			session.query(Player.class).eq("name", "steve");
+			fail("unknown column accepted");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
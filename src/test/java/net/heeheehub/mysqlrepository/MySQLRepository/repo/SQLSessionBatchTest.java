@@ -0,0 +1,151 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+
+/**
+ * Unit tests of the batched writes of {@link SQLSession}, run against the {@link FakeDriver}.
+ */
+public class SQLSessionBatchTest extends TestCase {
+
+	@MySQLField("batch_players")
+	public static class Player {
+		@SQLId
+		public long id;
+		@MySQLColumn("name")
+		public String name;
+
+		public Player() {
+		}
+
+		Player(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	@MySQLField("batch_guilds")
+	public static class Guild {
+		@SQLId
+		public Long id;
+		@MySQLColumn("name")
+		public String name;
+
+		public Guild() {
+		}
+
+		Guild(Long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	private Database database;
+	private SQLSession session;
+
+	public SQLSessionBatchTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(SQLSessionBatchTest.class);
+	}
+
+	@Override
+	protected void setUp() throws SQLException {
+		FakeDriver.reset();
+		database = FakeDriver.database("batch");
+		session = new SQLSession(database);
+	}
+
+	@Override
+	protected void tearDown() {
+		session.close();
+		FakeDriver.close(database);
+	}
+
+	public void testPersistAllWritesGeneratedKeysToPrimitiveIds() throws SQLException {
+		FakeDriver.setNextKey(100L);
+		List<Player> players = List.of(new Player(0L, "a"), new Player(0L, "b"), new Player(0L, "c"));
+		session.beginTransaction();
+		session.persistAll(players);
+		session.endTransaction();
+
+		for(int i = 0; i < players.size(); i++) {
+			assertEquals(100L + i, players.get(i).id);
+			assertSame(players.get(i), session.getIdentityMap().get(Player.class, 100L + i));
+		}
+		assertNull(session.getIdentityMap().get(Player.class, 0L));
+		assertEquals(3, FakeDriver.executions("INSERT").size());
+	}
+
+	public void testPersistAllWritesGeneratedKeysToNullIds() throws SQLException {
+		FakeDriver.setNextKey(7L);
+		List<Guild> guilds = List.of(new Guild(null, "a"), new Guild(null, "b"));
+		session.beginTransaction();
+		session.persistAll(guilds);
+		session.endTransaction();
+
+		assertEquals(Long.valueOf(7L), guilds.get(0).id);
+		assertEquals(Long.valueOf(8L), guilds.get(1).id);
+	}
+
+	public void testPersistAllKeepsAssignedIds() throws SQLException {
+		FakeDriver.setNextKey(100L);
+		List<Player> players = List.of(new Player(5L, "a"), new Player(0L, "b"));
+		session.beginTransaction();
+		session.persistAll(players);
+		session.endTransaction();
+
+		assertEquals(5L, players.get(0).id);
+		assertEquals(100L, players.get(1).id);
+		assertSame(players.get(0), session.getIdentityMap().get(Player.class, 5L));
+		assertSame(players.get(1), session.getIdentityMap().get(Player.class, 100L));
+	}
+
+	public void testPersistAllSplitsBatches() throws SQLException {
+		database.setBatchSize(2);
+		FakeDriver.setNextKey(1L);
+		List<Player> players = List.of(new Player(0L, "a"), new Player(0L, "b"), new Player(0L, "c"));
+		session.beginTransaction();
+		session.persistAll(players);
+		session.endTransaction();
+
+		assertEquals(1L, players.get(0).id);
+		assertEquals(2L, players.get(1).id);
+		assertEquals(3L, players.get(2).id);
+	}
+
+	public void testUpsertAllWritesGeneratedKeysToPrimitiveIds() {
+		FakeDriver.setNextKey(40L);
+		List<Player> players = List.of(new Player(0L, "a"), new Player(0L, "b"), new Player(9L, "c"));
+		session.upsertAll(players);
+
+		assertEquals(40L, players.get(0).id);
+		assertEquals(41L, players.get(1).id);
+		assertEquals(9L, players.get(2).id);
+		assertSame(players.get(1), session.getIdentityMap().get(Player.class, 41L));
+	}
+
+	public void testDeleteAllForgetsDeletedEntities() throws SQLException {
+		FakeDriver.setNextKey(1L);
+		List<Player> players = List.of(new Player(0L, "a"), new Player(0L, "b"));
+		session.beginTransaction();
+		session.persistAll(players);
+		session.endTransaction();
+
+		session.deleteAll(players);
+		List<FakeDriver.Execution> deletes = FakeDriver.executions("DELETE");
+		assertEquals(2, deletes.size());
+		assertEquals(List.of(1L), deletes.get(0).parameters());
+		assertEquals(List.of(2L), deletes.get(1).parameters());
+		assertNull(session.getIdentityMap().get(Player.class, 1L));
+	}
+}
@@ -0,0 +1,97 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+
+/**
+ * Unit tests of the interleaved IDs of a {@link ShardSet}, run against the {@link FakeDriver}.
+ */
+public class ShardSetTest extends TestCase {
+
+	@MySQLField("shard_players")
+	public static class Player {
+		@SQLId
+		public long id;
+		@MySQLColumn("name")
+		public String name;
+
+		public Player() {
+		}
+
+		Player(String name) {
+			this.name = name;
+		}
+	}
+
+	private List<Database> databases;
+
+	public ShardSetTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(ShardSetTest.class);
+	}
+
+	@Override
+	protected void setUp() throws SQLException {
+		FakeDriver.reset();
+		databases = List.of(FakeDriver.database("shard_a"), FakeDriver.database("shard_b"), FakeDriver.database("shard_c"));
+	}
+
+	@Override
+	protected void tearDown() {
+		for(Database database : databases) FakeDriver.close(database);
+	}
+
+	public void testShardsAreInterleaved() {
+		new ShardSet("players", databases);
+		for(int i = 0; i < databases.size(); i++) {
+			assertEquals(3, databases.get(i).getIdIncrement());
+			assertEquals("SET SESSION auto_increment_increment = 3, auto_increment_offset = " + (i + 1), databases.get(i).getInitSql());
+		}
+	}
+
+	public void testIdsTellTheShard() {
+		ShardSet set = new ShardSet("players", databases);
+		assertEquals(0, set.shardOf(1L));
+		assertEquals(1, set.shardOf(2L));
+		assertEquals(2, set.shardOf(3L));
+		assertEquals(0, set.shardOf(4L));
+		assertEquals(1, set.shardOf(11L));
+	}
+
+	public void testBatchedIdsAreSteppedByTheShardCount() throws SQLException {
+		new ShardSet("players", databases);
+		FakeDriver.setNextKey(11L);
+		List<Player> players = List.of(new Player("a"), new Player("b"), new Player("c"));
+		SQLSession session = new SQLSession(databases.get(1));
+		try {
+			session.beginTransaction();
+			session.persistAll(players);
+			session.endTransaction();
+		} finally {
+			session.close();
+		}
+
+		assertEquals(11L, players.get(0).id);
+		assertEquals(14L, players.get(1).id);
+		assertEquals(17L, players.get(2).id);
+	}
+
+	public void testDatabaseOfAnotherSetIsRejected() {
+		new ShardSet("players", databases);
+		try {
+			new ShardSet("guilds", List.of(databases.get(1), databases.get(0)));
+			fail("database of another set accepted");
+		} catch (IllegalStateException expected) {
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package net.heeheehub.mysqlrepository.MySQLRepository.repo;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLColumn;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.MySQLField;
+import net.heeheehub.mysqlrepository.MySQLRepository.object.SQLId;
+
+/**
+ * Unit tests of the single-statement upserts of {@link SQLSession}, run against the {@link FakeDriver}.
+ */
+public class UpsertTest extends TestCase {
+
+	@MySQLField("upsert_players")
+	public static class Player {
+		@SQLId
+		public long id;
+		@MySQLColumn("name")
+		public String name;
+		@MySQLColumn("level")
+		public int level;
+
+		public Player() {
+		}
+
+		Player(long id, String name, int level) {
+			this.id = id;
+			this.name = name;
+			this.level = level;
+		}
+	}
+
+	private Database database;
+	private SQLSession session;
+
+	public UpsertTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(UpsertTest.class);
+	}
+
+	@Override
+	protected void setUp() throws SQLException {
+		FakeDriver.reset();
+		database = FakeDriver.database("upsert");
+		session = new SQLSession(database);
+	}
+
+	@Override
+	protected void tearDown() {
+		session.close();
+		FakeDriver.close(database);
+	}
+
+	public void testUpsertWritesTheKeyOfTheRow() {
+		FakeDriver.setNextKey(12L);
+		Player player = new Player(0L, "steve", 3);
+		assertEquals(Long.valueOf(12L), session.upsert(player));
+
+		assertEquals(12L, player.id);
+		assertSame(player, session.getIdentityMap().get(Player.class, 12L));
+		List<FakeDriver.Execution> inserts = FakeDriver.executions("INSERT");
+		assertEquals(1, inserts.size());
+		assertTrue(inserts.get(0).sql(), inserts.get(0).sql().endsWith(
+				" ON DUPLICATE KEY UPDATE `id` = LAST_INSERT_ID(`id`), `name` = VALUES(`name`), `level` = VALUES(`level`)"));
+		assertEquals(List.of(0L, "steve", 3), inserts.get(0).parameters());
+	}
+
+	public void testUpdateColumnsLimitTheOverwrittenColumns() {
+		session.upsert(new Player(5L, "steve", 3), "level");
+		String sql = FakeDriver.executions("INSERT").get(0).sql();
+		assertTrue(sql, sql.endsWith(" ON DUPLICATE KEY UPDATE `id` = LAST_INSERT_ID(`id`), `level` = VALUES(`level`)"));
+	}
+
+	public void testStatementsAreCachedPerColumnSet() {
+		EntityMetadata meta = EntityMetadata.of(Player.class);
+		assertSame(meta.getUpsertSql(), meta.getUpsertSql());
+		assertSame(meta.getUpsertSql("name", "level"), meta.getUpsertSql("name", "level"));
+		assertFalse(meta.getUpsertSql("name").equals(meta.getUpsertSql("level")));
+
+		session.upsert(new Player(1L, "a", 1), "name");
+		session.upsert(new Player(2L, "b", 2), "name");
+		List<FakeDriver.Execution> inserts = FakeDriver.executions("INSERT");
+		assertSame(meta.getUpsertSql("name"), inserts.get(0).sql());
+		assertSame(inserts.get(0).sql(), inserts.get(1).sql());
+	}
+
+	public void testUnknownAndIdColumnsAreRejected() {
+		for(String column : new String[] { "rank", "id" }) {
+			try {
+				session.upsert(new Player(1L, "a", 1), column);
+				fail("column accepted: " + column);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		assertTrue(FakeDriver.executions().isEmpty());
+	}
+}